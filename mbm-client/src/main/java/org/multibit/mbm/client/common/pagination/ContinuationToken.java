@@ -0,0 +1,138 @@
+package org.multibit.mbm.client.common.pagination;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import org.multibit.mbm.client.common.utils.Base64;
+import org.multibit.mbm.client.common.utils.ObjectUtils;
+
+import java.io.IOException;
+
+/**
+ * <p>Value object to provide the following to keyset (seek) pagination:</p>
+ * <ul>
+ * <li>Storage of the position reached by a previous page</li>
+ * <li>Encoding to and from an opaque URL-safe token</li>
+ * </ul>
+ * <p>Clients should treat the encoded form as opaque and simply hand it back on the next request.</p>
+ *
+ * @since 0.0.1
+ *
+ */
+public class ContinuationToken {
+
+  private static final String SEPARATOR = ":";
+
+  /**
+   * The highest page number a client may request (so that the following page number can still be represented)
+   */
+  public static final int MAX_PAGE_NUMBER = Integer.MAX_VALUE - 1;
+
+  private final int pageNumber;
+  private final long lastId;
+
+  /**
+   * @param pageNumber The 1-based index of the page that this token will retrieve
+   * @param lastId     The primary key of the last entity on the preceding page
+   */
+  public ContinuationToken(int pageNumber, long lastId) {
+    Preconditions.checkState(pageNumber > 0, "'pageNumber' must be greater than zero");
+    Preconditions.checkState(lastId >= 0, "'lastId' must not be negative");
+    this.pageNumber = pageNumber;
+    this.lastId = lastId;
+  }
+
+  /**
+   * @param token The opaque token previously provided by {@link #encode()}
+   *
+   * @return The decoded continuation token
+   *
+   * @throws IllegalArgumentException If the token is malformed or its page number is out of range
+   */
+  public static ContinuationToken decode(String token) {
+    Preconditions.checkNotNull(token, "token cannot be null");
+
+    final String raw;
+    try {
+      raw = new String(Base64.decode(token, Base64.URL_SAFE), Charsets.UTF_8);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Continuation token is not valid Base64", e);
+    }
+
+    String[] fields = raw.split(SEPARATOR);
+    if (fields.length != 2) {
+      throw new IllegalArgumentException("Continuation token is malformed");
+    }
+
+    final int pageNumber;
+    final long lastId;
+    try {
+      pageNumber = Integer.parseInt(fields[0]);
+      lastId = Long.parseLong(fields[1]);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Continuation token is malformed", e);
+    }
+    if (pageNumber > MAX_PAGE_NUMBER) {
+      throw new IllegalArgumentException("Continuation token is out of range");
+    }
+
+    try {
+      return new ContinuationToken(pageNumber, lastId);
+    } catch (IllegalStateException e) {
+      throw new IllegalArgumentException("Continuation token is out of range", e);
+    }
+  }
+
+  /**
+   * @return The opaque URL-safe form of this token
+   */
+  public String encode() {
+    byte[] raw = (pageNumber + SEPARATOR + lastId).getBytes(Charsets.UTF_8);
+    try {
+      return Base64.encodeBytes(raw, Base64.URL_SAFE);
+    } catch (IOException e) {
+      // Cannot happen without the GZIP option
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * @return The 1-based index of the page that this token will retrieve
+   */
+  public int getPageNumber() {
+    return pageNumber;
+  }
+
+  /**
+   * @return The primary key of the last entity on the preceding page (seek from here)
+   */
+  public long getLastId() {
+    return lastId;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (obj == null) {
+      return false;
+    }
+    if (getClass() != obj.getClass()) {
+      return false;
+    }
+    final ContinuationToken other = (ContinuationToken) obj;
+
+    return ObjectUtils.isEqual(
+      pageNumber, other.pageNumber,
+      lastId, other.lastId
+    );
+  }
+
+  @Override
+  public int hashCode() {
+    return ObjectUtils.getHashCode(pageNumber, lastId);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("ContinuationToken[pageNumber=%s, lastId=%s]]", pageNumber, lastId);
+  }
+
+}
@@ -1,5 +1,6 @@
 package org.multibit.mbm.client.common.pagination;
 
+import com.google.common.base.Optional;
 import com.google.common.collect.Lists;
 
 import java.util.ArrayList;
@@ -51,4 +52,41 @@ public class PaginatedLists {
 
   }
 
+  /**
+   * Provide a paginated list based on an {@link ArrayList} where the total number of results is known
+   *
+   * @param pageNumber     The current page number
+   * @param resultsPerPage The number of results per page
+   * @param totalResults   The total number of results across all pages
+   * @param totalExact     True if the total was counted, false if it was estimated
+   * @param items          The collection of items to use to populate the list
+   * @param <T>            The generic type
+   *
+   * @return An {@link ArrayList} decorated with pagination meta data
+   */
+  public static <T> PaginatedArrayList<T> newCountedPaginatedArrayList(int pageNumber, int resultsPerPage, long totalResults, boolean totalExact, Collection<T> items) {
+
+    ArrayList<T> list = Lists.newArrayList(items);
+    return new PaginatedArrayList<T>(new Pagination(pageNumber, resultsPerPage, totalResults, totalExact), list);
+
+  }
+
+  /**
+   * Provide a paginated list based on an {@link ArrayList} produced by keyset (seek) pagination
+   *
+   * @param resultsPerPage The number of results per page
+   * @param currentToken   The token used to reach this page (absent for the first page)
+   * @param nextToken      The token to reach the following page (absent for the last page)
+   * @param items          The collection of items to use to populate the list
+   * @param <T>            The generic type
+   *
+   * @return An {@link ArrayList} decorated with keyset pagination meta data
+   */
+  public static <T> PaginatedArrayList<T> newKeysetPaginatedArrayList(int resultsPerPage, Optional<ContinuationToken> currentToken, Optional<ContinuationToken> nextToken, Collection<T> items) {
+
+    ArrayList<T> list = Lists.newArrayList(items);
+    return new PaginatedArrayList<T>(Pagination.newKeysetPagination(resultsPerPage, currentToken, nextToken), list);
+
+  }
+
 }
@@ -1,11 +1,14 @@
 package org.multibit.mbm.client.common.pagination;
 
+import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 
 /**
  * <p>Value object to provide the following to domain:</p>
  * <ul>
  * <li>Storage of pagination state</li>
+ * <li>Storage of continuation tokens when using keyset (seek) pagination</li>
+ * <li>Storage of the total number of results (if known) and whether it is exact or estimated</li>
  * </ul>
  *
  * @since 0.0.1
@@ -16,19 +19,75 @@ public class Pagination {
   private final int currentPage;
   private final int totalPages;
   private final int resultsPerPage;
+  private final Optional<Long> totalResults;
+  private final boolean totalExact;
+
+  private final boolean keyset;
+  private final Optional<ContinuationToken> currentToken;
+  private final Optional<ContinuationToken> nextToken;
 
   /**
    * @param currentPage    The 1-based index of the current page
    * @param totalPages     The 1-based count of total pages
-   * @param resultsPerPage The 1-based count of results per page
+   * @param resultsPerPage The 1-based count of results per page (the total number of results is unknown)
    */
   public Pagination(int currentPage, int totalPages, int resultsPerPage) {
+    this(currentPage, totalPages, resultsPerPage, Optional.<Long>absent(), false, false, Optional.<ContinuationToken>absent(), Optional.<ContinuationToken>absent());
+  }
+
+  /**
+   * @param currentPage    The 1-based index of the current page
+   * @param resultsPerPage The 1-based count of results per page
+   * @param totalResults   The total number of results across all pages
+   * @param totalExact     True if the total was counted rather than estimated
+   */
+  public Pagination(int currentPage, int resultsPerPage, long totalResults, boolean totalExact) {
+    this(currentPage, totalPages(totalResults, resultsPerPage), resultsPerPage, Optional.of(totalResults), totalExact, false, Optional.<ContinuationToken>absent(), Optional.<ContinuationToken>absent());
+  }
+
+  private Pagination(int currentPage, int totalPages, int resultsPerPage, Optional<Long> totalResults, boolean totalExact, boolean keyset, Optional<ContinuationToken> currentToken, Optional<ContinuationToken> nextToken) {
     Preconditions.checkState(totalPages > 0, "'totalPages' must be greater than zero");
     Preconditions.checkState(currentPage > 0, "'currentPage' must be greater than zero");
     Preconditions.checkState(resultsPerPage > 0, "'resultsPerPage' must be greater than zero");
+    Preconditions.checkNotNull(totalResults, "'totalResults' must be present or absent");
+    Preconditions.checkState(!totalResults.isPresent() || totalResults.get() >= 0, "'totalResults' must not be negative");
+    Preconditions.checkNotNull(currentToken, "'currentToken' must be present or absent");
+    Preconditions.checkNotNull(nextToken, "'nextToken' must be present or absent");
     this.currentPage = currentPage;
     this.totalPages = totalPages;
     this.resultsPerPage = resultsPerPage;
+    this.totalResults = totalResults;
+    this.totalExact = totalExact;
+    this.keyset = keyset;
+    this.currentToken = currentToken;
+    this.nextToken = nextToken;
+  }
+
+  /**
+   * <p>Keyset pagination does not know the total number of pages (or results) so only the current page and the
+   * presence of a following page can be described</p>
+   *
+   * @param resultsPerPage The 1-based count of results per page
+   * @param currentToken   The token used to reach this page (absent for the first page)
+   * @param nextToken      The token to reach the following page (absent for the last page)
+   *
+   * @return A pagination describing a keyset page
+   */
+  public static Pagination newKeysetPagination(int resultsPerPage, Optional<ContinuationToken> currentToken, Optional<ContinuationToken> nextToken) {
+    int currentPage = currentToken.isPresent() ? currentToken.get().getPageNumber() : 1;
+    int totalPages = nextToken.isPresent() ? currentPage + 1 : currentPage;
+    return new Pagination(currentPage, totalPages, resultsPerPage, Optional.<Long>absent(), false, true, currentToken, nextToken);
+  }
+
+  /**
+   * @param totalResults   The total number of results
+   * @param resultsPerPage The 1-based count of results per page
+   *
+   * @return The 1-based count of total pages (no results is still a single empty page)
+   */
+  private static int totalPages(long totalResults, int resultsPerPage) {
+    Preconditions.checkState(resultsPerPage > 0, "'resultsPerPage' must be greater than zero");
+    return (int) Math.max(1, (totalResults + resultsPerPage - 1) / resultsPerPage);
   }
 
   /**
@@ -52,6 +111,21 @@ public class Pagination {
     return resultsPerPage;
   }
 
+  /**
+   * @return The total number of results across all pages (estimated unless {@link #isTotalExact()}), absent if
+   * unknown (e.g. keyset pagination)
+   */
+  public Optional<Long> getTotalResults() {
+    return totalResults;
+  }
+
+  /**
+   * @return True if the total was counted, false if it was estimated (e.g. from maintained counters) or is unknown
+   */
+  public boolean isTotalExact() {
+    return totalExact;
+  }
+
   /**
    * @return The 1-based index of the next page
    */
@@ -66,4 +140,25 @@ public class Pagination {
     return currentPage == 1 ? currentPage : currentPage - 1;
   }
 
+  /**
+   * @return True if this page was produced by keyset (seek) pagination and should be linked using tokens
+   */
+  public boolean isKeyset() {
+    return keyset;
+  }
+
+  /**
+   * @return The continuation token used to reach this page (absent for the first page or offset pagination)
+   */
+  public Optional<ContinuationToken> getCurrentToken() {
+    return currentToken;
+  }
+
+  /**
+   * @return The continuation token to reach the next page (absent for the last page or offset pagination)
+   */
+  public Optional<ContinuationToken> getNextToken() {
+    return nextToken;
+  }
+
 }
@@ -0,0 +1,32 @@
+package org.multibit.mbm.client.interfaces.rest.api.cart;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.Lists;
+
+import java.util.List;
+
+/**
+ * <p>Request to provide the following to the public Cart resource:</p>
+ * <ul>
+ * <li>Provision of line operations to apply in place to an existing Cart</li>
+ * </ul>
+ * <p>Unlike {@link UpdateCartDto} only the lines being changed are sent.</p>
+ *
+ * @since 0.0.1
+ */
+public class PatchCartDto {
+
+  /**
+   * The operations (op, item SKU, quantity)
+   */
+  @JsonProperty("cart_items")
+  List<PatchCartItemDto> cartItems = Lists.newArrayList();
+
+  public List<PatchCartItemDto> getCartItems() {
+    return cartItems;
+  }
+
+  public void setCartItems(List<PatchCartItemDto> cartItems) {
+    this.cartItems = cartItems;
+  }
+}
@@ -0,0 +1,73 @@
+package org.multibit.mbm.client.interfaces.rest.api.cart;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ *  <p>Value object to provide the following to {@link PatchCartDto}:</p>
+ *  <ul>
+ *  <li>Defines a single operation against a CartItem</li>
+ *  </ul>
+ *  <p>The operations are:</p>
+ *  <ul>
+ *  <li>{@link #SET}: replace the quantity of the line</li>
+ *  <li>{@link #INCREMENT}: add the (possibly negative) quantity to the line, never falling below zero</li>
+ *  <li>{@link #REMOVE}: remove the line regardless of quantity</li>
+ *  </ul>
+ *
+ * @since 0.0.1
+ */
+public class PatchCartItemDto {
+
+  public static final String SET = "set";
+  public static final String INCREMENT = "increment";
+  public static final String REMOVE = "remove";
+
+  @JsonProperty
+  private String op;
+
+  @JsonProperty
+  private String sku;
+
+  @JsonProperty
+  private int quantity;
+
+  /**
+   * Default constructor to allow request building
+   */
+  public PatchCartItemDto() {
+  }
+
+  /**
+   * Utility constructor for mandatory fields
+   *
+   * @param op       The operation (one of "set", "increment" or "remove")
+   * @param sku      The Stock Keeping Unit that is the public key
+   * @param quantity The quantity for the operation (ignored on remove)
+   */
+  public PatchCartItemDto(String op, String sku, int quantity) {
+    this.op = op;
+    this.sku = sku;
+    this.quantity = quantity;
+  }
+
+  /**
+   * @return The operation
+   */
+  public String getOp() {
+    return op;
+  }
+
+  /**
+   * @return The SKU
+   */
+  public String getSKU() {
+    return sku;
+  }
+
+  /**
+   * @return The unit quantity
+   */
+  public int getQuantity() {
+    return quantity;
+  }
+}
@@ -94,6 +94,10 @@ public class HmacUtils {
   public static final String PREFIX = "HMAC";
   public static final String X_HMAC_NONCE = "X-HMAC-Nonce";
   public static final String X_HMAC_DATE = "X-HMAC-Date";
+  /**
+   * Carries a new secret key for the API key of the request (it must be used from the next request onwards)
+   */
+  public static final String X_HMAC_SECRET_KEY = "X-HMAC-Secret-Key";
   static final String HEADER_VALUE = PREFIX + " realm=\"%s\"";
 
   /**
@@ -394,7 +398,8 @@ public class HmacUtils {
   private static boolean isEntityRequired(Object entity, String httpMethod) {
     return (
       "POST".equalsIgnoreCase(httpMethod) ||
-        "PUT".equalsIgnoreCase(httpMethod)) &&
+        "PUT".equalsIgnoreCase(httpMethod) ||
+        "PATCH".equalsIgnoreCase(httpMethod)) &&
       entity != null;
   }
 
@@ -0,0 +1,25 @@
+package org.multibit.mbm.client.interfaces.rest.common;
+
+import javax.ws.rs.HttpMethod;
+import java.lang.annotation.*;
+
+/**
+ * <p>Annotation to provide the following to resources:</p>
+ * <ul>
+ * <li>Binds a resource method to HTTP PATCH (RFC 5789) which JAX-RS 1.1 does not provide</li>
+ * </ul>
+ *
+ * @since 0.0.1
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD})
+@HttpMethod(PATCH.NAME)
+public @interface PATCH {
+
+  /**
+   * The HTTP method name (for use by clients)
+   */
+  String NAME = "PATCH";
+
+}
@@ -64,7 +64,9 @@ public class RepresentationBuilder {
     final Representation representation;
 
     // Check for pagination links
-    if (paginationOptional.isPresent()) {
+    if (paginationOptional.isPresent() && paginationOptional.get().isKeyset()) {
+      representation = newKeysetRepresentation(factory, paginationOptional.get());
+    } else if (paginationOptional.isPresent()) {
       Pagination pagination = paginationOptional.get();
 
       // Build a self URI with pagination parameters
@@ -129,6 +131,43 @@ public class RepresentationBuilder {
     return representation;
   }
 
+  /**
+   * Keyset pagination cannot jump to arbitrary pages so only "first" and (if available) "next" are linked
+   *
+   * @param factory    The representation factory
+   * @param pagination The keyset pagination information
+   *
+   * @return The representation with keyset pagination links in place
+   */
+  private Representation newKeysetRepresentation(DefaultRepresentationFactory factory, Pagination pagination) {
+
+    UriBuilder paginatedSelfBuilder = UriBuilder.fromUri(self);
+    if (pagination.getCurrentToken().isPresent()) {
+      paginatedSelfBuilder.queryParam("ct", pagination.getCurrentToken().get().encode());
+    }
+    URI paginatedSelf = paginatedSelfBuilder
+      .queryParam("ps", pagination.getResultsPerPage())
+      .build();
+
+    Representation representation = factory.newRepresentation(paginatedSelf);
+    representation
+      .withLink("first", UriBuilder
+        .fromUri(self)
+        .queryParam("ps", pagination.getResultsPerPage())
+        .build())
+      .withLink("current", paginatedSelf);
+
+    if (pagination.getNextToken().isPresent()) {
+      representation.withLink("next", UriBuilder
+        .fromUri(self)
+        .queryParam("ct", pagination.getNextToken().get().encode())
+        .queryParam("ps", pagination.getResultsPerPage())
+        .build());
+    }
+
+    return representation;
+  }
+
   private void validateState() {
     if (isBuilt) {
       throw new IllegalStateException("Build process is complete - no further changes can be made");
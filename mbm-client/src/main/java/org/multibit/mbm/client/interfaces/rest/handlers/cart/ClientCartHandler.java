@@ -6,9 +6,12 @@ import org.multibit.mbm.client.HalHmacResourceFactory;
 import org.multibit.mbm.client.interfaces.rest.handlers.BaseHandler;
 import org.multibit.mbm.client.interfaces.rest.api.cart.CartDto;
 import org.multibit.mbm.client.interfaces.rest.api.cart.CartItemDto;
+import org.multibit.mbm.client.interfaces.rest.api.cart.PatchCartDto;
+import org.multibit.mbm.client.interfaces.rest.api.cart.PatchCartItemDto;
 import org.multibit.mbm.client.interfaces.rest.api.cart.PublicCartItemDto;
 import org.multibit.mbm.client.interfaces.rest.api.cart.UpdateCartDto;
 import org.multibit.mbm.client.interfaces.rest.api.user.UserDto;
+import org.multibit.mbm.client.interfaces.rest.common.PATCH;
 
 import javax.ws.rs.core.MediaType;
 import java.util.Collection;
@@ -125,6 +128,42 @@ public class ClientCartHandler extends BaseHandler {
     return buildClientCart(rr, properties);
   }
 
+  /**
+   * <p>Apply line operations to the cart in place</p>
+   * <p>The configured Jersey client must support the PATCH method (the default HttpURLConnection does not so use
+   * the Apache client). A method override header is not an option since the HMAC signature covers the method.</p>
+   *
+   * @param clientUser The authenticated client user
+   * @param cartItems  The line operations (set, increment or remove)
+   *
+   * @return The cart totals with only the changed lines that remain in the cart
+   */
+  public CartDto patchCartItems(UserDto clientUser, List<PatchCartItemDto> cartItems) {
+
+    // Sanity check
+    Preconditions.checkNotNull(clientUser);
+    Preconditions.checkNotNull(clientUser.getApiKey());
+    Preconditions.checkNotNull(clientUser.getSecretKey());
+
+    // TODO Replace "magic string" with auto-discover based on link rel
+    String path = String.format("/cart");
+
+    PatchCartDto patchCartRequest = new PatchCartDto();
+    patchCartRequest.setCartItems(cartItems);
+
+    String hal = HalHmacResourceFactory.INSTANCE
+      .newUserResource(locale, path, clientUser)
+      .entity(patchCartRequest, MediaType.APPLICATION_JSON_TYPE)
+      .method(PATCH.NAME, String.class);
+
+    // Read the HAL
+    ReadableRepresentation rr = unmarshalHal(hal);
+
+    Map<String, Object> properties = rr.getProperties();
+
+    return buildClientCart(rr, properties);
+  }
+
   /**
    * @param properties The HAL representation properties
    *
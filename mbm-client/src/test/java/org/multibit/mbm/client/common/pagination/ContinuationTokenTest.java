@@ -0,0 +1,35 @@
+package org.multibit.mbm.client.common.pagination;
+
+import com.google.common.base.Charsets;
+import org.junit.Test;
+import org.multibit.mbm.client.common.utils.Base64;
+
+import static org.junit.Assert.assertEquals;
+
+public class ContinuationTokenTest {
+
+  @Test
+  public void testEncodeDecode() {
+    ContinuationToken expected = new ContinuationToken(20000, 1234567890L);
+
+    assertEquals(expected, ContinuationToken.decode(expected.encode()));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDecodeMalformed() {
+    ContinuationToken.decode("not-a-token");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDecodeOutOfRange() throws Exception {
+    // Page numbers are 1-based
+    ContinuationToken.decode(Base64.encodeBytes("0:1".getBytes(Charsets.UTF_8), Base64.URL_SAFE));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDecodeLastPageNumber() throws Exception {
+    // The following page number would overflow
+    ContinuationToken.decode(Base64.encodeBytes((Integer.MAX_VALUE + ":1").getBytes(Charsets.UTF_8), Base64.URL_SAFE));
+  }
+
+}
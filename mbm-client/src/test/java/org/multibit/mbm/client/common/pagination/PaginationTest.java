@@ -0,0 +1,45 @@
+package org.multibit.mbm.client.common.pagination;
+
+import com.google.common.base.Optional;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class PaginationTest {
+
+  @Test
+  public void testCountedTotals() {
+
+    Pagination testObject = new Pagination(2, 5, 11, true);
+
+    assertThat(testObject.getTotalPages(), equalTo(3));
+    assertThat(testObject.getTotalResults(), equalTo(Optional.of(11L)));
+    assertThat(testObject.isTotalExact(), equalTo(true));
+    assertThat(testObject.getNextPage(), equalTo(3));
+
+    // No results is still a single empty page
+    testObject = new Pagination(1, 5, 0, true);
+
+    assertThat(testObject.getTotalPages(), equalTo(1));
+    assertThat(testObject.getNextPage(), equalTo(1));
+
+  }
+
+  @Test
+  public void testUnknownTotals() {
+
+    Pagination testObject = new Pagination(1, 3, 10);
+
+    assertThat(testObject.getTotalResults(), equalTo(Optional.<Long>absent()));
+    assertThat(testObject.isTotalExact(), equalTo(false));
+
+    testObject = Pagination.newKeysetPagination(10, Optional.<ContinuationToken>absent(), Optional.of(new ContinuationToken(2, 10L)));
+
+    assertThat(testObject.getTotalPages(), equalTo(2));
+    assertThat(testObject.getTotalResults(), equalTo(Optional.<Long>absent()));
+    assertThat(testObject.isTotalExact(), equalTo(false));
+
+  }
+
+}
@@ -2,11 +2,13 @@ package org.multibit.mbm.client.interfaces.rest.handlers.cart;
 
 import com.google.common.collect.Lists;
 import org.junit.Test;
+import org.multibit.mbm.client.interfaces.rest.api.cart.PatchCartItemDto;
 import org.multibit.mbm.client.interfaces.rest.api.cart.PublicCartItemDto;
 import org.multibit.mbm.client.PublicMerchantClient;
 import org.multibit.mbm.client.interfaces.rest.handlers.BaseHandlerTest;
 import org.multibit.mbm.client.interfaces.rest.api.cart.CartDto;
 import org.multibit.mbm.client.interfaces.rest.api.user.UserDto;
+import org.multibit.mbm.client.interfaces.rest.common.PATCH;
 import org.multibit.mbm.testing.FixtureAsserts;
 
 import java.net.URI;
@@ -110,4 +112,37 @@ public class ClientCartHandlerTest extends BaseHandlerTest {
 
   }
 
+  @Test
+  public void patchCartItems() throws Exception {
+
+    // Arrange
+    final UserDto clientUser = new UserDto();
+    clientUser.setApiKey("apiKey");
+    clientUser.setSecretKey("secretKey");
+
+    URI expectedUri = URI.create("http://localhost:8080/mbm/cart");
+
+    // Test-specific JerseyClient behaviour
+    when(client.resource(expectedUri))
+      .thenReturn(webResource);
+    // Use builder since it is a PATCH
+    when(builder.method(PATCH.NAME, String.class))
+      .thenReturn(FixtureAsserts.jsonFixture("/fixtures/hal/cart/expected-public-patch-cart.json"));
+
+    // Act
+    List<PatchCartItemDto> cartItems = Lists.newArrayList();
+    cartItems.add(new PatchCartItemDto(PatchCartItemDto.INCREMENT, "0316184136", 3));
+    cartItems.add(new PatchCartItemDto(PatchCartItemDto.REMOVE, "0099410672", 0));
+
+    CartDto actualCart = PublicMerchantClient
+      .newInstance(locale)
+      .cart()
+      .patchCartItems(clientUser, cartItems);
+
+    // Assert
+    assertEquals("Unexpected item count", "2", actualCart.getItemTotal());
+    assertEquals("Unexpected changed line count", 1, actualCart.getCartItems().size());
+
+  }
+
 }
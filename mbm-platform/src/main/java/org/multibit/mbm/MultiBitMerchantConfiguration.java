@@ -2,7 +2,25 @@ package org.multibit.mbm;
 
 import com.yammer.dropwizard.config.Configuration;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.yammer.dropwizard.util.Duration;
+import com.yammer.dropwizard.validation.ValidationMethod;
+import org.hibernate.validator.constraints.Length;
 import org.hibernate.validator.constraints.NotEmpty;
+import org.multibit.mbm.client.infrastructure.persistence.archive.EntityArchiver;
+import org.multibit.mbm.client.infrastructure.persistence.datasource.DataSourceConfiguration;
+import org.multibit.mbm.client.infrastructure.persistence.diagnostics.StatementRecorder;
+import org.multibit.mbm.client.infrastructure.persistence.hibernate.search.ItemSearchIndex;
+import org.multibit.mbm.client.infrastructure.persistence.hot.HotCartStore;
+import org.multibit.mbm.client.infrastructure.persistence.memory.InMemoryRepositoryLoader;
+import org.multibit.mbm.client.interfaces.rest.auth.anonymous.AnonymousUserCache;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
+import java.util.List;
 
 /**
  * <p>DropWizard Configuration to provide the following to application:</p>
@@ -15,12 +33,256 @@ import org.hibernate.validator.constraints.NotEmpty;
  */
 public class MultiBitMerchantConfiguration extends Configuration {
 
+  /**
+   * The pooled connections to the primary database
+   */
+  @Valid
+  @NotNull
+  @JsonProperty
+  private DataSourceConfiguration dataSource = new DataSourceConfiguration();
+
+  /**
+   * Read replicas of the primary that serve read-only transactions (none by default)
+   */
+  @Valid
+  @NotNull
+  @JsonProperty
+  private List<DataSourceConfiguration> replicaDataSources = Lists.newArrayList();
+
   @NotEmpty
   @JsonProperty
   private String authenticationCachePolicy="maximumSize=10000, expireAfterAccess=10m";
 
+  /**
+   * How anonymous visitors are held in memory until they do something that must be persisted
+   */
+  @NotEmpty
+  @JsonProperty
+  private String anonymousUserCachePolicy = AnonymousUserCache.DEFAULT_CACHE_POLICY;
+
+  /**
+   * The secret that signs the secret key of each anonymous visitor (must be the same on every instance so that a
+   * visitor survives a restart or being served elsewhere). There is no default.
+   */
+  @NotEmpty
+  @Length(min = 32)
+  @JsonProperty
+  private String anonymousSigningSecret;
+
+  /**
+   * How often the maintained entity counters are checked against the database
+   */
+  @NotNull
+  @JsonProperty
+  private Duration entityCounterReconcileInterval = Duration.minutes(5);
+
+  /**
+   * How often soft deleted entities and abandoned carts are moved to the archive tables
+   */
+  @NotNull
+  @JsonProperty
+  private Duration archiveInterval = Duration.hours(1);
+
+  /**
+   * The number of entities moved to the archive tables in each transaction
+   */
+  @Min(1)
+  @JsonProperty
+  private int archiveBatchSize = EntityArchiver.DEFAULT_BATCH_SIZE;
+
+  /**
+   * How long the cart of a visitor that never registered is left unchanged before it is archived
+   */
+  @NotNull
+  @JsonProperty
+  private Duration abandonedCartAge = Duration.days(30);
+
+  /**
+   * The maximum number of entries held in each second-level and query cache region
+   */
+  @Min(1)
+  @JsonProperty
+  private int secondLevelCacheMaxEntries = 10000;
+
+  /**
+   * How long an entry is held in a second-level or query cache region before it is reloaded
+   */
+  @NotNull
+  @JsonProperty
+  private Duration secondLevelCacheTimeToLive = Duration.minutes(10);
+
+  /**
+   * How complete item search results (and so their counts) are cached between pages
+   */
+  @NotEmpty
+  @JsonProperty
+  private String itemSearchCachePolicy = ItemSearchIndex.DEFAULT_RESULT_CACHE_POLICY;
+
+  /**
+   * Where the resources read from: "hibernate" (the database) or "memory" (a snapshot taken at boot)
+   */
+  @NotEmpty
+  @Pattern(regexp = InMemoryRepositoryLoader.HIBERNATE_PROFILE + "|" + InMemoryRepositoryLoader.MEMORY_PROFILE)
+  @JsonProperty
+  private String readRepository = InMemoryRepositoryLoader.HIBERNATE_PROFILE;
+
+  /**
+   * True if Carts changed by the public are held in memory and flushed in batches (each visitor must then be
+   * served by the same instance)
+   */
+  @JsonProperty
+  private boolean cartWriteBehind = false;
+
+  /**
+   * How often held Carts with changes are flushed to the database
+   */
+  @NotNull
+  @JsonProperty
+  private Duration cartFlushInterval = Duration.seconds(1);
+
+  /**
+   * The number of held Carts written in each transaction
+   */
+  @Min(1)
+  @JsonProperty
+  private int cartFlushBatchSize = HotCartStore.DEFAULT_BATCH_SIZE;
+
+  /**
+   * A directory for the journal of held Cart changes to recover from a crash (changes not yet flushed are lost
+   * on a crash if absent)
+   */
+  @JsonProperty
+  private String cartJournalDirectory = null;
+
+  /**
+   * True if each journal entry is forced to the device before the change is acknowledged (otherwise changes not
+   * yet flushed survive a process crash but not an operating system crash)
+   */
+  @JsonProperty
+  private boolean cartJournalSync = true;
+
+  /**
+   * The number of recent statement executions held for the slow and frequent statement reports
+   */
+  @Min(1)
+  @JsonProperty
+  private int statementRecorderCapacity = StatementRecorder.DEFAULT_CAPACITY;
+
+  /**
+   * A statement execution taking longer than this is logged as slow
+   */
+  @NotNull
+  @JsonProperty
+  private Duration slowStatementThreshold = Duration.milliseconds(250);
+
+  /**
+   * A directory to write all metrics to as CSV for offline analysis (not written if absent)
+   */
+  @JsonProperty
+  private String csvMetricsDirectory = null;
+
+  /**
+   * How often a row is added to each CSV metrics file (at least one second)
+   */
+  @NotNull
+  @JsonProperty
+  private Duration csvMetricsPeriod = Duration.minutes(1);
+
+  public DataSourceConfiguration getDataSource() {
+    return dataSource;
+  }
+
+  public List<DataSourceConfiguration> getReplicaDataSources() {
+    return replicaDataSources;
+  }
+
   public String getAuthenticationCachePolicy() {
     return authenticationCachePolicy;
   }
 
+  public String getAnonymousUserCachePolicy() {
+    return anonymousUserCachePolicy;
+  }
+
+  public String getAnonymousSigningSecret() {
+    return anonymousSigningSecret;
+  }
+
+  @ValidationMethod(message = "anonymousSigningSecret must be changed from the example value")
+  public boolean isAnonymousSigningSecretChanged() {
+    return !AnonymousUserCache.EXAMPLE_SIGNING_SECRET.equals(anonymousSigningSecret);
+  }
+
+  @ValidationMethod(message = "csvMetricsPeriod must be at least 1 second")
+  public boolean isCsvMetricsPeriodValid() {
+    return csvMetricsPeriod == null || csvMetricsPeriod.toMilliseconds() >= 1000;
+  }
+
+  public Duration getEntityCounterReconcileInterval() {
+    return entityCounterReconcileInterval;
+  }
+
+  public Duration getArchiveInterval() {
+    return archiveInterval;
+  }
+
+  public int getArchiveBatchSize() {
+    return archiveBatchSize;
+  }
+
+  public Duration getAbandonedCartAge() {
+    return abandonedCartAge;
+  }
+
+  public int getSecondLevelCacheMaxEntries() {
+    return secondLevelCacheMaxEntries;
+  }
+
+  public Duration getSecondLevelCacheTimeToLive() {
+    return secondLevelCacheTimeToLive;
+  }
+
+  public String getItemSearchCachePolicy() {
+    return itemSearchCachePolicy;
+  }
+
+  public String getReadRepository() {
+    return readRepository;
+  }
+
+  public boolean isCartWriteBehind() {
+    return cartWriteBehind;
+  }
+
+  public Duration getCartFlushInterval() {
+    return cartFlushInterval;
+  }
+
+  public int getCartFlushBatchSize() {
+    return cartFlushBatchSize;
+  }
+
+  public Optional<String> getCartJournalDirectory() {
+    return Optional.fromNullable(cartJournalDirectory);
+  }
+
+  public boolean isCartJournalSync() {
+    return cartJournalSync;
+  }
+
+  public int getStatementRecorderCapacity() {
+    return statementRecorderCapacity;
+  }
+
+  public Duration getSlowStatementThreshold() {
+    return slowStatementThreshold;
+  }
+
+  public Optional<String> getCsvMetricsDirectory() {
+    return Optional.fromNullable(csvMetricsDirectory);
+  }
+
+  public Duration getCsvMetricsPeriod() {
+    return csvMetricsPeriod;
+  }
 }
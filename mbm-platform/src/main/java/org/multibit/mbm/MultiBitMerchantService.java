@@ -1,15 +1,42 @@
 package org.multibit.mbm;
 
+import com.google.common.base.Optional;
 import com.google.common.cache.CacheBuilderSpec;
+import com.google.common.collect.Lists;
 import com.yammer.dropwizard.Service;
 import com.yammer.dropwizard.auth.CachingAuthenticator;
 import com.yammer.dropwizard.config.Bootstrap;
 import com.yammer.dropwizard.config.Environment;
+import com.yammer.dropwizard.lifecycle.Managed;
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.reporting.CsvReporter;
+import org.multibit.mbm.client.infrastructure.persistence.archive.EntityArchiver;
+import org.multibit.mbm.client.infrastructure.persistence.datasource.DataSourceConfiguration;
+import org.multibit.mbm.client.infrastructure.persistence.datasource.DataSourceRouting;
+import org.multibit.mbm.client.infrastructure.persistence.datasource.DataSourceRoutingFilter;
+import org.multibit.mbm.client.infrastructure.persistence.datasource.PooledDataSource;
+import org.multibit.mbm.client.infrastructure.persistence.datasource.PooledDataSourceFactory;
+import org.multibit.mbm.client.infrastructure.persistence.datasource.ReplicaRoutingDataSource;
+import org.multibit.mbm.client.infrastructure.persistence.diagnostics.IndexAdvisor;
+import org.multibit.mbm.client.infrastructure.persistence.diagnostics.RecordingDataSource;
+import org.multibit.mbm.client.infrastructure.persistence.diagnostics.StatementRecorder;
+import org.multibit.mbm.client.infrastructure.persistence.hibernate.cache.HibernateCacheRegions;
+import org.multibit.mbm.client.infrastructure.persistence.hibernate.counters.EntityCounterReconciler;
+import org.multibit.mbm.client.infrastructure.persistence.hibernate.search.ItemSearchIndex;
+import org.multibit.mbm.client.infrastructure.persistence.hibernate.statistics.HibernateStatisticsMetrics;
+import org.multibit.mbm.client.infrastructure.persistence.hot.CartJournal;
+import org.multibit.mbm.client.infrastructure.persistence.hot.HotCartListener;
+import org.multibit.mbm.client.infrastructure.persistence.hot.HotCartStore;
+import org.multibit.mbm.client.infrastructure.persistence.memory.InMemoryRepositoryLoader;
+import org.multibit.mbm.client.infrastructure.persistence.migration.SchemaMigrationRunner;
+import org.multibit.mbm.client.interfaces.rest.auth.anonymous.AnonymousUserCache;
 import org.multibit.mbm.client.interfaces.rest.auth.hmac.HmacServerAuthenticator;
 import org.multibit.mbm.client.interfaces.rest.auth.hmac.HmacServerCredentials;
 import org.multibit.mbm.client.interfaces.rest.auth.hmac.HmacServerRestrictedToProvider;
 import org.multibit.mbm.client.domain.model.model.User;
+import org.multibit.mbm.client.interfaces.rest.health.DataSourcePoolHealthCheck;
 import org.multibit.mbm.client.interfaces.rest.health.TemplatePropertyHealthCheck;
+import org.multibit.mbm.client.interfaces.rest.resources.OptimisticLockingFailureExceptionMapper;
 import org.multibit.mbm.client.interfaces.rest.resources.cart.AdminCartResource;
 import org.multibit.mbm.client.interfaces.rest.resources.cart.PublicCartResource;
 import org.multibit.mbm.client.interfaces.rest.resources.item.AdminItemResource;
@@ -19,10 +46,20 @@ import org.multibit.mbm.client.interfaces.rest.resources.user.AdminUserResource;
 import org.multibit.mbm.client.interfaces.rest.resources.user.ClientUserResource;
 import org.multibit.mbm.client.interfaces.rest.resources.user.CustomerUserResource;
 import org.multibit.mbm.client.interfaces.rest.resources.user.SupplierUserResource;
+import org.multibit.mbm.client.interfaces.rest.tasks.ArchiveTask;
+import org.multibit.mbm.client.interfaces.rest.tasks.StatementReportTask;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.context.ApplicationContext;
 import org.springframework.context.support.ClassPathXmlApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+
+import javax.sql.DataSource;
+import java.io.File;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * <p>Service to provide the following to application:</p>
@@ -60,12 +97,93 @@ public class MultiBitMerchantService extends Service<MultiBitMerchantConfigurati
     log.info("Reading configuration");
 
     // Read the configuration
+    PooledDataSourceFactory dataSourceFactory = new PooledDataSourceFactory();
+    PooledDataSource primaryDataSource = dataSourceFactory.build(configuration.getDataSource(), ReplicaRoutingDataSource.PRIMARY);
+    environment.manage(primaryDataSource);
+    environment.addHealthCheck(new DataSourcePoolHealthCheck(primaryDataSource));
+
+    // Read-only transactions are spread over the replicas (if any)
+    List<PooledDataSource> replicaDataSources = Lists.newArrayList();
+    for (DataSourceConfiguration replicaConfiguration : configuration.getReplicaDataSources()) {
+      PooledDataSource replicaDataSource = dataSourceFactory.build(replicaConfiguration, ReplicaRoutingDataSource.REPLICA_PREFIX + replicaDataSources.size());
+      environment.manage(replicaDataSource);
+      environment.addHealthCheck(new DataSourcePoolHealthCheck(replicaDataSource));
+      replicaDataSources.add(replicaDataSource);
+    }
+    // Bring the schema up to date so that Hibernate only has to validate it
+    new SchemaMigrationRunner(primaryDataSource).migrate();
+
+    // Every statement is recorded so that slow and frequent statements (and missing indexes) can be reported
+    StatementRecorder statementRecorder = new StatementRecorder(
+      configuration.getStatementRecorderCapacity(),
+      configuration.getSlowStatementThreshold().toMilliseconds());
+    DataSource dataSource = new RecordingDataSource(
+      dataSourceFactory.buildRouting(primaryDataSource, replicaDataSources),
+      statementRecorder);
+    environment.addFilter(new DataSourceRoutingFilter(), "/*");
+
+    // Provide the configured DataSource to Spring through a parent context
+    GenericApplicationContext parentContext = new GenericApplicationContext();
+    parentContext.getBeanFactory().registerSingleton("dataSource", dataSource);
+    parentContext.getBeanFactory().registerSingleton("statementRecorder", statementRecorder);
+    parentContext.refresh();
 
     // Start Spring context based on the provided location
     // TODO Externalise this into the configuration - Spring provides too much to ignore
-    ApplicationContext context = new ClassPathXmlApplicationContext(new String[]{
+    // The read repository profile decides whether the resources read from Hibernate or memory
+    ClassPathXmlApplicationContext context = new ClassPathXmlApplicationContext(new String[]{
       "/spring/mbm-context.xml"
-    });
+    }, false, parentContext);
+    context.getEnvironment().setActiveProfiles(configuration.getReadRepository());
+    context.refresh();
+
+    // Apply the configured limits to the second-level and query cache regions
+    HibernateCacheRegions hibernateCacheRegions = context.getBean(HibernateCacheRegions.class);
+    hibernateCacheRegions.configure(
+      configuration.getSecondLevelCacheMaxEntries(),
+      configuration.getSecondLevelCacheTimeToLive().toSeconds());
+    hibernateCacheRegions.registerMetrics();
+
+    // Item search is served from memory so needs the full catalogue before requests arrive
+    ItemSearchIndex itemSearchIndex = context.getBean(ItemSearchIndex.class);
+    itemSearchIndex.configure(CacheBuilderSpec.parse(configuration.getItemSearchCachePolicy()));
+    itemSearchIndex.rebuild();
+
+    // In-memory read services need their snapshot before requests arrive
+    if (InMemoryRepositoryLoader.MEMORY_PROFILE.equals(configuration.getReadRepository())) {
+      context.getBean(InMemoryRepositoryLoader.class).load();
+    }
+
+    // Anonymous visitors are held in memory until they write to their Cart
+    context.getBean(AnonymousUserCache.class).configure(
+      CacheBuilderSpec.parse(configuration.getAnonymousUserCachePolicy()),
+      configuration.getAnonymousSigningSecret());
+
+    // Carts changed by the public can be held in memory and written to the database in batches
+    final HotCartStore hotCartStore = context.getBean(HotCartStore.class);
+    if (configuration.isCartWriteBehind()) {
+      Optional<CartJournal> cartJournal = configuration.getCartJournalDirectory().isPresent()
+        ? Optional.of(new CartJournal(new File(configuration.getCartJournalDirectory().get()), configuration.isCartJournalSync()))
+        : Optional.<CartJournal>absent();
+      hotCartStore.configureWriteBehind(configuration.getCartFlushBatchSize(), cartJournal);
+      // Held Carts changed elsewhere are brought up to date before they are next used
+      context.getBean(HotCartListener.class).register(hotCartStore);
+      // Recovers from the journal on start and flushes everything on stop
+      environment.manage(hotCartStore);
+
+      long cartFlushInterval = configuration.getCartFlushInterval().toMilliseconds();
+      ScheduledExecutorService cartScheduler = environment.managedScheduledExecutorService("hot-carts-%d", 1);
+      cartScheduler.scheduleWithFixedDelay(DataSourceRouting.unitOfWork(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            hotCartStore.flush();
+          } catch (RuntimeException e) {
+            log.warn("Cart flush failed (held changes will be retried)", e);
+          }
+        }
+      }), cartFlushInterval, cartFlushInterval, TimeUnit.MILLISECONDS);
+    }
 
     // Configure authenticator
     HmacServerAuthenticator hmacAuthenticator = context.getBean(HmacServerAuthenticator.class);
@@ -88,11 +206,92 @@ public class MultiBitMerchantService extends Service<MultiBitMerchantConfigurati
     environment.addResource(context.getBean(PublicCartResource.class));
     environment.addResource(context.getBean(PublicItemResource.class));
 
+    // Entity counters are maintained on write but are periodically reconciled to remove drift
+    final EntityCounterReconciler entityCounterReconciler = context.getBean(EntityCounterReconciler.class);
+    long reconcileInterval = configuration.getEntityCounterReconcileInterval().toMilliseconds();
+    ScheduledExecutorService scheduler = environment.managedScheduledExecutorService("entity-counters-%d", 1);
+    scheduler.scheduleWithFixedDelay(DataSourceRouting.unitOfWork(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          entityCounterReconciler.reconcile();
+        } catch (RuntimeException e) {
+          log.warn("Entity counter reconciliation failed", e);
+        }
+      }
+    }), reconcileInterval, reconcileInterval, TimeUnit.MILLISECONDS);
+
+    // Soft deleted entities and abandoned carts are moved out of the hot tables in batches
+    final EntityArchiver entityArchiver = context.getBean(EntityArchiver.class);
+    final int archiveBatchSize = configuration.getArchiveBatchSize();
+    final long abandonedCartAge = configuration.getAbandonedCartAge().toMilliseconds();
+    final Optional<InMemoryRepositoryLoader> inMemoryRepositoryLoader = InMemoryRepositoryLoader.MEMORY_PROFILE.equals(configuration.getReadRepository())
+      ? Optional.of(context.getBean(InMemoryRepositoryLoader.class))
+      : Optional.<InMemoryRepositoryLoader>absent();
+    long archiveInterval = configuration.getArchiveInterval().toMilliseconds();
+    ScheduledExecutorService archiveScheduler = environment.managedScheduledExecutorService("entity-archiver-%d", 1);
+    archiveScheduler.scheduleWithFixedDelay(DataSourceRouting.unitOfWork(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          Map<String, Integer> archived = entityArchiver.archive(archiveBatchSize, new Date(System.currentTimeMillis() - abandonedCartAge));
+          // Abandoned visitors were never soft deleted so may still be held by the in-memory read services
+          if (inMemoryRepositoryLoader.isPresent() && archived.get(EntityArchiver.ABANDONED_CARTS) > 0) {
+            inMemoryRepositoryLoader.get().load();
+          }
+        } catch (RuntimeException e) {
+          log.warn("Archiving failed", e);
+        }
+      }
+    }), archiveInterval, archiveInterval, TimeUnit.MILLISECONDS);
+
+    // Hibernate only keeps cumulative statistics so they are sampled to provide rates
+    final HibernateStatisticsMetrics hibernateStatisticsMetrics = context.getBean(HibernateStatisticsMetrics.class);
+    ScheduledExecutorService statisticsScheduler = environment.managedScheduledExecutorService("hibernate-statistics-%d", 1);
+    statisticsScheduler.scheduleAtFixedRate(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          hibernateStatisticsMetrics.sample();
+        } catch (RuntimeException e) {
+          log.warn("Hibernate statistics sampling failed", e);
+        }
+      }
+    }, 0, HibernateStatisticsMetrics.SAMPLE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+
+    // All metrics (including the above) can also be written locally for offline analysis
+    Optional<String> csvMetricsDirectory = configuration.getCsvMetricsDirectory();
+    if (csvMetricsDirectory.isPresent()) {
+      File directory = new File(csvMetricsDirectory.get());
+      if (!directory.isDirectory() && !directory.mkdirs()) {
+        throw new IllegalStateException("Cannot create the CSV metrics directory '" + directory.getAbsolutePath() + "'");
+      }
+      final CsvReporter csvReporter = new CsvReporter(Metrics.defaultRegistry(), directory);
+      final long csvMetricsPeriod = configuration.getCsvMetricsPeriod().toMilliseconds();
+      environment.manage(new Managed() {
+        @Override
+        public void start() throws Exception {
+          csvReporter.start(csvMetricsPeriod, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void stop() throws Exception {
+          // The polling thread would otherwise outlive the service
+          csvReporter.shutdown();
+        }
+      });
+    }
+
     // Health checks
     environment.addHealthCheck(new TemplatePropertyHealthCheck());
 
+    // Tasks (admin port)
+    environment.addTask(new StatementReportTask(statementRecorder, new IndexAdvisor(dataSource)));
+    environment.addTask(new ArchiveTask(entityArchiver, archiveBatchSize, configuration.getAbandonedCartAge()));
+
     // Providers
     environment.addProvider(new HmacServerRestrictedToProvider<User>(cachingAuthenticator, "REST"));
+    environment.addProvider(new OptimisticLockingFailureExceptionMapper());
 
     // TODO Add the database loader code here
 //    if (configuration.loadInitialData) {
@@ -3,12 +3,26 @@ package org.multibit.mbm.client.domain.model.model;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.xeiam.xchange.currency.MoneyUtils;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Columns;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
+import org.hibernate.annotations.FetchProfile;
+import org.hibernate.annotations.OptimisticLock;
+import org.hibernate.annotations.Type;
+import org.joda.money.BigMoney;
 import org.multibit.mbm.client.common.Identifiable;
 import org.multibit.mbm.client.common.utils.ObjectUtils;
 
 import javax.persistence.*;
 import java.io.Serializable;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * <p>DTO to provide the following to the application</p>
@@ -20,15 +34,39 @@ import java.util.List;
  */
 @Entity
 @Table(name = "carts")
+@FetchProfile(name = Cart.CART_VIEW, fetchOverrides = {
+  @FetchProfile.FetchOverride(entity = Cart.class, association = "cartItems", mode = FetchMode.JOIN)
+})
+@NamedQueries({
+  @NamedQuery(name = "Cart.all", query = "from Cart e order by e.id asc"),
+  @NamedQuery(name = "Cart.after", query = "from Cart e where e.id > ? order by e.id asc"),
+  @NamedQuery(name = "Cart.ids", query = "select e.id from Cart e order by e.id asc"),
+  @NamedQuery(name = "Cart.idsAfter", query = "select e.id from Cart e where e.id > ? order by e.id asc"),
+  @NamedQuery(name = "Cart.withLines", query = "select distinct c from Cart c left join fetch c.cartItems where c.id in (:ids)"),
+  @NamedQuery(name = "Cart.byItem", query = "select distinct ci.primaryKey.cart from CartItem ci where ci.primaryKey.item.id = ?"),
+  @NamedQuery(name = "Cart.updateVersion", query = "update Cart c set c.version = ? where c.id = ? and c.version = ?")
+})
 public class Cart implements Identifiable, Serializable {
 
   private static final long serialVersionUID = 38947590321234L;
 
+  /**
+   * Fetch profile for display of a single Cart and its contents
+   */
+  public static final String CART_VIEW = "cart";
+
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
   @Column(name = "id", nullable = false)
   private Long id = null;
 
+  /**
+   * Incremented on every update so that concurrent writers are detected rather than silently overwritten
+   */
+  @Version
+  @Column(name = "version", nullable = false)
+  private long version = 0;
+
   /**
    * A Cart has a single Customer
    */
@@ -36,18 +74,72 @@ public class Cart implements Identifiable, Serializable {
   private Customer customer = null;
 
   /**
-   * A Cart has many CartItems that need to be eager to have meaning
-   * They also have an order
+   * A Cart has many CartItems in order
+   * Lazy so that reaching a Cart through a User or a CartItem does not load every line (see {@link #CART_VIEW})
    */
   @OneToMany(targetEntity = CartItem.class,
     cascade = {CascadeType.ALL},
     mappedBy = "primaryKey.cart",
-    fetch = FetchType.EAGER,
+    fetch = FetchType.LAZY,
     orphanRemoval = true
   )
+  @Fetch(FetchMode.SELECT)
+  @BatchSize(size = 20)
   @OrderBy(value = "index")
   private List<CartItem> cartItems = Lists.newArrayList();
 
+  /**
+   * When the contents last changed (a Cart left unchanged for long enough is considered abandoned)
+   * Excluded from versioning since saving an existing Cart always forces a version increment
+   */
+  @OptimisticLock(excluded = true)
+  @Temporal(TemporalType.TIMESTAMP)
+  @Column(name = "updated_at")
+  private Date updatedAt = new Date();
+
+  /**
+   * The totals are maintained by the mutation methods so that presenting a Cart does not visit every CartItem
+   * Excluded from versioning for the same reason as the update time (a recalculation following a price change
+   * forces a version increment instead so that a stale Cart can never overwrite the new totals)
+   */
+  @OptimisticLock(excluded = true)
+  @Column(name = "item_total", nullable = false)
+  private int itemTotal = 0;
+
+  @OptimisticLock(excluded = true)
+  @Column(name = "quantity_total", nullable = false)
+  private int quantityTotal = 0;
+
+  // TODO Allow for currency conversion
+  @OptimisticLock(excluded = true)
+  @Columns(columns = {@Column(name = "price_total_amount"), @Column(name = "price_total_currency")})
+  @Type(type = "org.multibit.mbm.client.infrastructure.persistence.hibernate.type.BigMoneyType")
+  private BigMoney priceTotal = MoneyUtils.parseBitcoin("BTC 0.0000");
+
+  @OptimisticLock(excluded = true)
+  @Columns(columns = {@Column(name = "tax_total_amount"), @Column(name = "tax_total_currency")})
+  @Type(type = "org.multibit.mbm.client.infrastructure.persistence.hibernate.type.BigMoneyType")
+  private BigMoney taxTotal = MoneyUtils.parseBitcoin("BTC 0.0000");
+
+  /**
+   * The CartItems keyed by Item ID so that large Carts can be updated without scanning every line
+   * Built on demand from the CartItems (lines holding an Item without an ID are only found by scanning)
+   */
+  @Transient
+  private transient Map<Long, CartItem> cartItemsByItemId = null;
+
+  /**
+   * The number of CartItems reflected by the index (a mismatch indicates the list was changed directly)
+   */
+  @Transient
+  private transient int indexedCartItems = 0;
+
+  /**
+   * The number of indexed CartItems holding an Item without an ID
+   */
+  @Transient
+  private transient int unidentifiedCartItems = 0;
+
   /*
   * Default constructor required for Hibernate
   */
@@ -73,49 +165,174 @@ public class Cart implements Identifiable, Serializable {
   public void setItemQuantity(Item item, int quantity) {
     Preconditions.checkNotNull(item, "item cannot be null");
 
+    updatedAt = new Date();
+
+    Optional<CartItem> removed = applyQuantity(item, quantity);
+    if (removed.isPresent()) {
+      int index = removed.get().getIndex();
+      cartItems.remove(removed.get());
+      indexedCartItems--;
+      // Re-align the index values following the removed cart item
+      reindex(index);
+    }
+
+  }
+
+  /**
+   * <p>Handles the process of updating several Item quantities at once (e.g. from a single client update).
+   * Removed lines are taken out together so the remaining index values are re-aligned at most once.</p>
+   *
+   * @param changes The quantities keyed by Item (>0 is add/update, otherwise remove) in the order new lines are added
+   */
+  @Transient
+  public void applyChanges(Map<Item, Integer> changes) {
+    Preconditions.checkNotNull(changes, "changes cannot be null");
+
+    if (changes.isEmpty()) {
+      return;
+    }
+
+    updatedAt = new Date();
+
+    Set<CartItem> removed = Sets.newIdentityHashSet();
+    int lowestIndex = Integer.MAX_VALUE;
+    for (Map.Entry<Item, Integer> change : changes.entrySet()) {
+      Preconditions.checkNotNull(change.getKey(), "item cannot be null");
+      Preconditions.checkNotNull(change.getValue(), "quantity cannot be null");
+
+      Optional<CartItem> cartItemOptional = applyQuantity(change.getKey(), change.getValue());
+      if (cartItemOptional.isPresent()) {
+        removed.add(cartItemOptional.get());
+        lowestIndex = Math.min(lowestIndex, cartItemOptional.get().getIndex());
+      }
+    }
+
+    if (!removed.isEmpty()) {
+      cartItems.removeAll(removed);
+      indexedCartItems -= removed.size();
+      reindex(lowestIndex);
+    }
+
+  }
+
+  /**
+   * @param item The Item to search for
+   *
+   * @return The CartItem that contains the Item, or absent
+   */
+  @Transient
+  public Optional<CartItem> getCartItemByItem(Item item) {
+    Preconditions.checkNotNull(item, "item cannot be null");
+
+    Map<Long, CartItem> index = getCartItemsByItemId();
+    if (item.getId() != null) {
+      CartItem cartItem = index.get(item.getId());
+      if (cartItem != null) {
+        return Optional.of(cartItem);
+      }
+      if (unidentifiedCartItems == 0) {
+        return Optional.absent();
+      }
+    }
+
+    // The Item (or an Item added since the index was built) has no ID
+    for (CartItem cartItem : cartItems) {
+      if (cartItem.getItem().equals(item)) {
+        return Optional.of(cartItem);
+      }
+    }
+    return Optional.absent();
+  }
+
+  /**
+   * Updates or inserts the line for the Item leaving removal to the caller
+   *
+   * @param item     The Item
+   * @param quantity The quantity (>0 is add/update, otherwise remove)
+   *
+   * @return The CartItem that should be removed, or absent
+   */
+  private Optional<CartItem> applyQuantity(Item item, int quantity) {
+
     Optional<CartItem> cartItemOptional = getCartItemByItem(item);
 
     if (quantity > 0) {
       if (cartItemOptional.isPresent()) {
         // Update
+        subtractFromTotals(cartItemOptional.get());
         cartItemOptional.get().setQuantity(quantity);
+        addToTotals(cartItemOptional.get());
       } else {
         // Insert
         CartItem newCartItem = new CartItem(this, item);
         newCartItem.setIndex(cartItems.size());
         newCartItem.setQuantity(quantity);
         cartItems.add(newCartItem);
+        index(newCartItem);
+        addToTotals(newCartItem);
       }
-    } else {
-      if (cartItemOptional.isPresent()) {
-        // Remove
-        cartItems.remove(cartItemOptional.get());
-        // Re-align the other cart item index values
-        int i=0;
-        for (CartItem cartItem : cartItems) {
-          cartItem.setIndex(i++);
-        }
+      return Optional.absent();
+    }
+
+    if (cartItemOptional.isPresent()) {
+      subtractFromTotals(cartItemOptional.get());
+      // The Item may have been given an ID since the line was indexed so go by the index rather than the ID
+      Long itemId = cartItemOptional.get().getItem().getId();
+      if (itemId != null && cartItemsByItemId.get(itemId) == cartItemOptional.get()) {
+        cartItemsByItemId.remove(itemId);
+      } else {
+        unidentifiedCartItems--;
+      }
+    }
+    return cartItemOptional;
+  }
 
+  /**
+   * @return The index of CartItems by Item ID (rebuilt if the CartItems have been changed directly)
+   */
+  private Map<Long, CartItem> getCartItemsByItemId() {
+    if (cartItemsByItemId == null || indexedCartItems != cartItems.size()) {
+      cartItemsByItemId = Maps.newHashMapWithExpectedSize(cartItems.size());
+      indexedCartItems = 0;
+      unidentifiedCartItems = 0;
+      for (CartItem cartItem : cartItems) {
+        index(cartItem);
       }
     }
+    return cartItemsByItemId;
+  }
 
+  private void index(CartItem cartItem) {
+    Long itemId = cartItem.getItem().getId();
+    if (itemId == null) {
+      unidentifiedCartItems++;
+    } else {
+      cartItemsByItemId.put(itemId, cartItem);
+    }
+    indexedCartItems++;
   }
 
   /**
-   * @param item The Item to search for
-   *
-   * @return The CartItem that contains the Item, or absent
+   * @param from The first position to re-align (earlier cart items are unaffected)
    */
-  @Transient
-  public Optional<CartItem> getCartItemByItem(Item item) {
-    Preconditions.checkNotNull(item, "item cannot be null");
+  private void reindex(int from) {
+    for (int i = Math.max(0, from); i < cartItems.size(); i++) {
+      cartItems.get(i).setIndex(i);
+    }
+  }
 
+  /**
+   * Re-derive the totals from every CartItem (e.g. following a change to the price of an Item)
+   */
+  @Transient
+  public void recalculateTotals() {
+    itemTotal = 0;
+    quantityTotal = 0;
+    priceTotal = MoneyUtils.parseBitcoin("BTC 0.0000");
+    taxTotal = MoneyUtils.parseBitcoin("BTC 0.0000");
     for (CartItem cartItem : cartItems) {
-      if (cartItem.getItem().equals(item)) {
-        return Optional.of(cartItem);
-      }
+      addToTotals(cartItem);
     }
-    return Optional.absent();
   }
 
   /**
@@ -123,20 +340,58 @@ public class Cart implements Identifiable, Serializable {
    */
   @Transient
   public int getItemTotal() {
-    return cartItems.size();
+    ensureTotals();
+    return itemTotal;
   }
 
   /**
-   *
    * @return The total quantity of all items
    */
   @Transient
   public int getQuantityTotal() {
-    int itemCount = 0;
-    for (CartItem cartItem : cartItems) {
-      itemCount += cartItem.getQuantity();
+    ensureTotals();
+    return quantityTotal;
+  }
+
+  /**
+   * @return The total price of all items (excluding tax)
+   */
+  @Transient
+  public BigMoney getPriceTotal() {
+    ensureTotals();
+    return priceTotal;
+  }
+
+  /**
+   * @return The total tax of all items
+   */
+  @Transient
+  public BigMoney getTaxTotal() {
+    ensureTotals();
+    return taxTotal;
+  }
+
+  private void addToTotals(CartItem cartItem) {
+    itemTotal++;
+    quantityTotal += cartItem.getQuantity();
+    priceTotal = priceTotal.plus(cartItem.getPriceSubtotal());
+    taxTotal = taxTotal.plus(cartItem.getTaxSubtotal());
+  }
+
+  private void subtractFromTotals(CartItem cartItem) {
+    itemTotal--;
+    quantityTotal -= cartItem.getQuantity();
+    priceTotal = priceTotal.minus(cartItem.getPriceSubtotal());
+    taxTotal = taxTotal.minus(cartItem.getTaxSubtotal());
+  }
+
+  /**
+   * Re-derive the totals if CartItems have been added or removed without going through this Cart
+   */
+  private void ensureTotals() {
+    if (itemTotal != cartItems.size() || priceTotal == null || taxTotal == null) {
+      recalculateTotals();
     }
-    return itemCount;
   }
 
   /**
@@ -150,6 +405,28 @@ public class Cart implements Identifiable, Serializable {
     this.id = id;
   }
 
+  /**
+   * @return The optimistic locking version (also provided to clients as the entity tag)
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  public void setVersion(long version) {
+    this.version = version;
+  }
+
+  /**
+   * @return When the contents last changed
+   */
+  public Date getUpdatedAt() {
+    return updatedAt;
+  }
+
+  public void setUpdatedAt(Date updatedAt) {
+    this.updatedAt = updatedAt;
+  }
+
   /**
    * @return The Customer that owns this Cart
    */
@@ -162,7 +439,8 @@ public class Cart implements Identifiable, Serializable {
   }
 
   /**
-   * @return The CartItems (contains the ordering index, quantity, date etc)
+   * @return The CartItems (contains the ordering index, quantity, date etc) which should only be changed through
+   * this Cart to keep the totals correct
    */
   public List<CartItem> getCartItems() {
     return cartItems;
@@ -170,6 +448,7 @@ public class Cart implements Identifiable, Serializable {
 
   public void setCartItems(List<CartItem> cartItems) {
     this.cartItems = cartItems;
+    this.cartItemsByItemId = null;
   }
 
   @Override
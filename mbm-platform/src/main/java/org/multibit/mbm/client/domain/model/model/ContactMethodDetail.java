@@ -1,9 +1,12 @@
 package org.multibit.mbm.client.domain.model.model;
 
 import com.google.common.collect.Sets;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import org.multibit.mbm.client.common.utils.ObjectUtils;
 
 import javax.persistence.*;
+import java.io.Serializable;
 import java.util.Set;
 
 /**
@@ -16,10 +19,20 @@ import java.util.Set;
  */
 @Entity
 @Table(name = "contact_method_details")
-public class ContactMethodDetail {
+public class ContactMethodDetail implements Serializable {
+
+  private static final long serialVersionUID = 38947590321901L;
 
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(generator = "contactMethodDetailIdGenerator")
+  @GenericGenerator(
+    name = "contactMethodDetailIdGenerator",
+    strategy = "org.hibernate.id.enhanced.SequenceStyleGenerator",
+    parameters = {
+      @Parameter(name = "sequence_name", value = "contact_method_details_seq"),
+      @Parameter(name = "increment_size", value = "50"),
+      @Parameter(name = "optimizer", value = "pooled-lo")
+    })
   @Column(name = "id", nullable = false)
   private Long id = null;
 
@@ -17,6 +17,10 @@ import java.io.Serializable;
  */
 @Entity
 @Table(name = "customers")
+@NamedQueries({
+  @NamedQuery(name = "Customer.all", query = "from Customer e order by e.id asc"),
+  @NamedQuery(name = "Customer.after", query = "from Customer e where e.id > ? order by e.id asc")
+})
 public class Customer implements Identifiable, Serializable {
 
   private static final long serialVersionUID = 38947590324750L;
@@ -20,6 +20,10 @@ import java.util.Set;
  */
 @Entity
 @Table(name = "deliveries")
+@NamedQueries({
+  @NamedQuery(name = "Delivery.all", query = "from Delivery e order by e.id asc"),
+  @NamedQuery(name = "Delivery.after", query = "from Delivery e where e.id > ? order by e.id asc")
+})
 public class Delivery implements Identifiable, Serializable {
 
   private static final long serialVersionUID = 38947590321234L;
@@ -29,6 +33,13 @@ public class Delivery implements Identifiable, Serializable {
   @Column(name = "id", nullable = false)
   private Long id = null;
 
+  /**
+   * Incremented on every update so that concurrent writers are detected rather than silently overwritten
+   */
+  @Version
+  @Column(name = "version", nullable = false)
+  private long version = 0;
+
   /**
    * Many Deliveries come from a single Supplier
    */
@@ -142,6 +153,17 @@ public class Delivery implements Identifiable, Serializable {
     this.id = id;
   }
 
+  /**
+   * @return The optimistic locking version (also provided to clients as the entity tag)
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  public void setVersion(long version) {
+    this.version = version;
+  }
+
   /**
    * @return The Supplier that owns this Delivery
    */
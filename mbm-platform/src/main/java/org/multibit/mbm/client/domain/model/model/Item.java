@@ -3,7 +3,17 @@ package org.multibit.mbm.client.domain.model.model;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.xeiam.xchange.currency.MoneyUtils;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.Columns;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
+import org.hibernate.annotations.FetchProfile;
+import org.hibernate.annotations.FetchProfiles;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Index;
+import org.hibernate.annotations.Parameter;
 import org.hibernate.annotations.Type;
 import org.joda.money.BigMoney;
 import org.multibit.mbm.client.common.Identifiable;
@@ -20,24 +30,74 @@ import java.util.Set;
  * <li>Provision of persistent state</li>
  * </ul>
  * <p>A Item provides the central link for all the aspects that come together to describe a product for sale.</p>
+ * <p>Collections are loaded with batched selects by default. Single Item views should enable the appropriate
+ * fetch profile to load their graph in a single join instead.</p>
  */
 @Entity
 @Table(name = "items")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "mbm.item")
+@FetchProfiles({
+  @FetchProfile(name = Item.CATALOGUE_VIEW, fetchOverrides = {
+    @FetchProfile.FetchOverride(entity = Item.class, association = "itemFieldMap", mode = FetchMode.JOIN)
+  }),
+  @FetchProfile(name = Item.ADMIN_VIEW, fetchOverrides = {
+    @FetchProfile.FetchOverride(entity = Item.class, association = "itemFieldMap", mode = FetchMode.JOIN),
+    @FetchProfile.FetchOverride(entity = ItemFieldDetail.class, association = "secondaryDetails", mode = FetchMode.JOIN)
+  })
+})
+@NamedQueries({
+  @NamedQuery(name = "Item.all", query = "from Item e where e.deleted = false order by e.id asc"),
+  @NamedQuery(name = "Item.after", query = "from Item e where e.deleted = false and e.id > ? order by e.id asc"),
+  @NamedQuery(name = "Item.ids", query = "select e.id from Item e where e.deleted = false order by e.id asc"),
+  @NamedQuery(name = "Item.idsAfter", query = "select e.id from Item e where e.deleted = false and e.id > ? order by e.id asc"),
+  @NamedQuery(name = "Item.bySKU", query = "select distinct i from Item i left join fetch i.itemFieldMap where i.sku = ?"),
+  @NamedQuery(name = "Item.bySKUs", query = "select distinct i from Item i left join fetch i.itemFieldMap ifm left join fetch ifm.secondaryDetails where i.sku in (:skus)"),
+  @NamedQuery(name = "Item.byGTIN", query = "select distinct i from Item i left join fetch i.itemFieldMap where i.gtin = ?"),
+  @NamedQuery(name = "Item.catalogue", query = "select distinct i from Item i left join fetch i.itemFieldMap ifm left join fetch ifm.secondaryDetails where i.id in (:ids)"),
+  @NamedQuery(name = "Item.summary", query = "select i.id, i.sku, i.gtin, i.localPrice, i.taxRate, ifm.itemField, ifm.primaryDetail.content from Item i left join i.itemFieldMap ifm where i.id in (:ids)")
+})
 public class Item implements Identifiable, Serializable {
 
   private static final long serialVersionUID = 38947590324750L;
 
+  /**
+   * Fetch profile for public catalogue display (fields in the default locale)
+   */
+  public static final String CATALOGUE_VIEW = "item-catalogue";
+
+  /**
+   * Fetch profile for administrative maintenance (fields in all locales)
+   */
+  public static final String ADMIN_VIEW = "item-admin";
+
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  // Pooled sequence (not identity) allows batched inserts during catalogue imports
+  @GeneratedValue(generator = "itemIdGenerator")
+  @GenericGenerator(
+    name = "itemIdGenerator",
+    strategy = "org.hibernate.id.enhanced.SequenceStyleGenerator",
+    parameters = {
+      @Parameter(name = "sequence_name", value = "items_seq"),
+      @Parameter(name = "increment_size", value = "50"),
+      @Parameter(name = "optimizer", value = "pooled-lo")
+    })
   @Column(name = "id", nullable = false)
   private Long id = null;
 
+  /**
+   * Incremented on every update so that concurrent writers are detected rather than silently overwritten
+   */
+  @Version
+  @Column(name = "version", nullable = false)
+  private long version = 0;
+
   /**
    * <p>The <a href="http://en.wikipedia.org/wiki/Stock-keeping_unit">stock-keeping unit</a></p>
    * <p>Provides a mandatory code to identify an item using a local arbitrary structure, e.g. "ABC-123". The GTIN
    * value could be replicated here if appropriate.</p>
    */
   @Column(name = "sku", nullable = false)
+  @Index(name = "idx_items_sku")
   private String sku = null;
 
   /**
@@ -46,10 +106,11 @@ public class Item implements Identifiable, Serializable {
    * In the case of books, ISBN is compatible with the EAN-13 standard.</p>
    */
   @Column(name = "gtin", nullable = true)
+  @Index(name = "idx_items_gtin")
   private String gtin = null;
 
   /**
-   * Indicates if the User has been deleted (archived)
+   * Indicates if the Item has been deleted (the EntityArchiver later moves it to the archive tables)
    */
   @Column(name = "deleted", nullable = false)
   private boolean deleted = false;
@@ -60,13 +121,17 @@ public class Item implements Identifiable, Serializable {
   @Column(name = "reasonForDelete", nullable = true)
   private String reasonForDelete = null;
 
+  /**
+   * Every CartItem referencing this Item across all Carts so must never be eager
+   */
   @OneToMany(
     targetEntity = CartItem.class,
     cascade = {CascadeType.ALL},
     mappedBy = "primaryKey.item",
-    fetch = FetchType.EAGER,
+    fetch = FetchType.LAZY,
     orphanRemoval = true
   )
+  @BatchSize(size = 20)
   private Set<CartItem> cartItems = Sets.newLinkedHashSet();
 
   // TODO An Item has many prices depending on date, volume, discount, premium etc
@@ -78,6 +143,12 @@ public class Item implements Identifiable, Serializable {
   @Column(name = "taxRate", nullable = false)
   private double taxRate = 0.0;
 
+  /**
+   * Set when the price or tax rate of a persistent Item changes so that the Carts holding it can re-derive their totals
+   */
+  @Transient
+  private transient boolean priceChanged = false;
+
   /**
    * This collection is effectively the fields for the Item so must be eager
    */
@@ -87,6 +158,9 @@ public class Item implements Identifiable, Serializable {
     orphanRemoval = true
   )
   @MapKeyEnumerated
+  @Fetch(FetchMode.SELECT)
+  @BatchSize(size = 20)
+  @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "mbm.item.itemFieldMap")
   private Map<ItemField, ItemFieldDetail> itemFieldMap = Maps.newLinkedHashMap();
 
 
@@ -109,6 +183,17 @@ public class Item implements Identifiable, Serializable {
     this.id = id;
   }
 
+  /**
+   * @return The optimistic locking version (also provided to clients as the entity tag)
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  public void setVersion(long version) {
+    this.version = version;
+  }
+
   /**
    * Required
    *
@@ -143,6 +228,9 @@ public class Item implements Identifiable, Serializable {
   }
 
   public void setTaxRate(double taxRate) {
+    if (id != null && this.taxRate != taxRate) {
+      priceChanged = true;
+    }
     this.taxRate = taxRate;
   }
 
@@ -184,9 +272,27 @@ public class Item implements Identifiable, Serializable {
   }
 
   public void setLocalPrice(BigMoney localPrice) {
+    if (id != null && !ObjectUtils.isEqual(this.localPrice, localPrice)) {
+      priceChanged = true;
+    }
     this.localPrice = localPrice;
   }
 
+  /**
+   * @return True if the price or tax rate has changed since this Item was loaded or last saved
+   */
+  @Transient
+  public boolean isPriceChanged() {
+    return priceChanged;
+  }
+
+  /**
+   * Acknowledge a price change once the affected Carts have been updated
+   */
+  public void resetPriceChanged() {
+    this.priceChanged = false;
+  }
+
   /**
    * @return The raw {@link ItemField} map
    */
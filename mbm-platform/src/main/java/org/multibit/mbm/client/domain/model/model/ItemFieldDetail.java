@@ -1,6 +1,13 @@
 package org.multibit.mbm.client.domain.model.model;
 
 import com.google.common.collect.Sets;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import org.multibit.mbm.client.common.Identifiable;
 
 import javax.persistence.*;
@@ -16,10 +23,19 @@ import java.util.Set;
  */
 @Entity
 @Table(name = "item_field_details")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "mbm.itemFieldDetail")
 public class ItemFieldDetail implements Identifiable, Serializable {
 
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(generator = "itemFieldDetailIdGenerator")
+  @GenericGenerator(
+    name = "itemFieldDetailIdGenerator",
+    strategy = "org.hibernate.id.enhanced.SequenceStyleGenerator",
+    parameters = {
+      @Parameter(name = "sequence_name", value = "item_field_details_seq"),
+      @Parameter(name = "increment_size", value = "50"),
+      @Parameter(name = "optimizer", value = "pooled-lo")
+    })
   @Column(name = "id", nullable = false)
   private Long id = null;
 
@@ -37,6 +53,9 @@ public class ItemFieldDetail implements Identifiable, Serializable {
     joinColumns = @JoinColumn(name = "item_field_id"
     ))
   @Column(name = "item_field")
+  @Fetch(FetchMode.SELECT)
+  @BatchSize(size = 20)
+  @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "mbm.itemFieldDetail.secondaryDetails")
   private Set<LocalisedText> secondaryDetails = Sets.newLinkedHashSet();
 
   /**
@@ -0,0 +1,132 @@
+package org.multibit.mbm.client.domain.model.model;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import org.joda.money.BigMoney;
+import org.multibit.mbm.client.common.Identifiable;
+import org.multibit.mbm.client.common.utils.ObjectUtils;
+
+import java.util.Map;
+
+/**
+ * <p>Read model to provide the following to catalogue listings:</p>
+ * <ul>
+ * <li>An immutable projection of an {@link Item} holding only what a listing renders</li>
+ * </ul>
+ * <p>Unlike an Item this is never attached to a persistence context so a page of them carries no
+ * dirty-checking snapshots and only the primary (default locale) content of each field.</p>
+ *
+ * @since 0.0.1
+ */
+public final class ItemSummaryView implements Identifiable {
+
+  private final Long id;
+  private final String sku;
+  private final String gtin;
+  private final BigMoney localPrice;
+  private final double taxRate;
+  private final ImmutableMap<ItemField, String> fieldContent;
+
+  /**
+   * @param id           The Item primary key
+   * @param sku          The Stock Keeping Unit
+   * @param gtin         The Global Trade Item Number (can be null)
+   * @param localPrice   The price per item in the local currency
+   * @param taxRate      The tax rate applicable to the Item
+   * @param fieldContent The primary content of each field present (in field order)
+   */
+  public ItemSummaryView(Long id, String sku, String gtin, BigMoney localPrice, double taxRate, Map<ItemField, String> fieldContent) {
+    Preconditions.checkNotNull(id, "id cannot be null");
+    Preconditions.checkNotNull(fieldContent, "fieldContent cannot be null");
+    this.id = id;
+    this.sku = sku;
+    this.gtin = gtin;
+    this.localPrice = localPrice;
+    this.taxRate = taxRate;
+    this.fieldContent = ImmutableMap.copyOf(fieldContent);
+  }
+
+  /**
+   * @param item A loaded Item
+   *
+   * @return The summary of the Item
+   */
+  public static ItemSummaryView fromItem(Item item) {
+    Preconditions.checkNotNull(item, "item cannot be null");
+
+    Map<ItemField, String> fieldContent = Maps.newEnumMap(ItemField.class);
+    for (ItemField itemField : item.getItemFieldMap().keySet()) {
+      String content = item.getItemFieldContent(itemField);
+      if (content != null) {
+        fieldContent.put(itemField, content);
+      }
+    }
+
+    return new ItemSummaryView(item.getId(), item.getSKU(), item.getGTIN(), item.getLocalPrice(), item.getTaxRate(), fieldContent);
+  }
+
+  @Override
+  public Long getId() {
+    return id;
+  }
+
+  public String getSKU() {
+    return sku;
+  }
+
+  public String getGTIN() {
+    return gtin;
+  }
+
+  public BigMoney getLocalPrice() {
+    return localPrice;
+  }
+
+  public double getTaxRate() {
+    return taxRate;
+  }
+
+  /**
+   * @return The primary content of each field present (in field order)
+   */
+  public ImmutableMap<ItemField, String> getFieldContent() {
+    return fieldContent;
+  }
+
+  /**
+   * @param itemField The item field (e.g. TITLE)
+   *
+   * @return The primary content, or null if the field is not present
+   */
+  public String getItemFieldContent(ItemField itemField) {
+    return fieldContent.get(itemField);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (obj == null) {
+      return false;
+    }
+    if (getClass() != obj.getClass()) {
+      return false;
+    }
+    final ItemSummaryView other = (ItemSummaryView) obj;
+
+    return ObjectUtils.isEqual(
+      id, other.id,
+      sku, other.sku
+    );
+  }
+
+  @Override
+  public int hashCode() {
+    return ObjectUtils.getHashCode(id, sku);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("ItemSummaryView[id=%s, sku='%s', gtin='%s']]", id, sku, gtin);
+  }
+
+}
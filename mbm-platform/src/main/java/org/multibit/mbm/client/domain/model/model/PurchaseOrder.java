@@ -20,6 +20,10 @@ import java.util.Set;
  */
 @Entity
 @Table(name = "purchase_orders")
+@NamedQueries({
+  @NamedQuery(name = "PurchaseOrder.all", query = "from PurchaseOrder e order by e.id asc"),
+  @NamedQuery(name = "PurchaseOrder.after", query = "from PurchaseOrder e where e.id > ? order by e.id asc")
+})
 public class PurchaseOrder implements Identifiable, Serializable {
 
   private static final long serialVersionUID = 38947590321234L;
@@ -29,6 +33,13 @@ public class PurchaseOrder implements Identifiable, Serializable {
   @Column(name = "id", nullable = false)
   private Long id = null;
 
+  /**
+   * Incremented on every update so that concurrent writers are detected rather than silently overwritten
+   */
+  @Version
+  @Column(name = "version", nullable = false)
+  private long version = 0;
+
   /**
    * Many PurchaseOrders for one Supplier
    */
@@ -142,6 +153,17 @@ public class PurchaseOrder implements Identifiable, Serializable {
     this.id = id;
   }
 
+  /**
+   * @return The optimistic locking version (also provided to clients as the entity tag)
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  public void setVersion(long version) {
+    this.version = version;
+  }
+
   /**
    * @return The Supplier that will fulfil this PurchaseOrder
    */
@@ -1,6 +1,8 @@
 package org.multibit.mbm.client.domain.model.model;
 
 import com.google.common.collect.Sets;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.multibit.mbm.client.common.Identifiable;
 import org.multibit.mbm.client.interfaces.rest.auth.Authority;
 
@@ -20,6 +22,15 @@ import java.util.Set;
  */
 @Entity
 @Table(name = "roles")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "mbm.role")
+@NamedQueries({
+  @NamedQuery(name = "Role.all", query = "from Role e where e.deleted = false order by e.id asc"),
+  @NamedQuery(name = "Role.after", query = "from Role e where e.deleted = false and e.id > ? order by e.id asc"),
+  @NamedQuery(name = "Role.ids", query = "select e.id from Role e where e.deleted = false order by e.id asc"),
+  @NamedQuery(name = "Role.idsAfter", query = "select e.id from Role e where e.deleted = false and e.id > ? order by e.id asc"),
+  @NamedQuery(name = "Role.byName", query = "from Role r where r.name = ?"),
+  @NamedQuery(name = "Role.withAuthorities", query = "select distinct r from Role r left join fetch r.authorities where r.id in (:ids)")
+})
 public class Role implements Identifiable, Serializable {
 
   private static final long serialVersionUID = 38452390321234L;
@@ -45,7 +56,7 @@ public class Role implements Identifiable, Serializable {
   private String description = null;
 
   /**
-   * Indicates if the User has been deleted (archived)
+   * Indicates if the Role has been deleted (the EntityArchiver later moves it to the archive tables)
    */
   @Column(name = "deleted", nullable = false)
   private boolean deleted = false;
@@ -82,6 +93,7 @@ public class Role implements Identifiable, Serializable {
   @CollectionTable(name = "authorities",
     joinColumns = @JoinColumn(name = "role_id"))
   @Column(name = "auth_name" )
+  @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "mbm.role.authorities")
   private Set<Authority> authorities = Sets.newLinkedHashSet();
 
   /**
@@ -18,6 +18,10 @@ import java.util.Set;
  */
 @Entity
 @Table(name = "suppliers")
+@NamedQueries({
+  @NamedQuery(name = "Supplier.all", query = "from Supplier e order by e.id asc"),
+  @NamedQuery(name = "Supplier.after", query = "from Supplier e where e.id > ? order by e.id asc")
+})
 public class Supplier implements Identifiable, Serializable {
 
   private static final long serialVersionUID = 32324950734295L;
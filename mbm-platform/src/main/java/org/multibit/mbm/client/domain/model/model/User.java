@@ -3,6 +3,9 @@ package org.multibit.mbm.client.domain.model.model;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import org.joda.time.DateTime;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Index;
+import org.hibernate.annotations.Parameter;
 import org.multibit.mbm.client.common.Identifiable;
 import org.multibit.mbm.client.interfaces.rest.auth.Authority;
 
@@ -24,6 +27,12 @@ import java.util.Set;
  */
 @Entity
 @Table(name = "users")
+@NamedQueries({
+  @NamedQuery(name = "User.all", query = "from User e where e.deleted = false order by e.id asc"),
+  @NamedQuery(name = "User.after", query = "from User e where e.deleted = false and e.id > ? order by e.id asc"),
+  @NamedQuery(name = "User.byApiKey", query = "from User u where u.apiKey = ?"),
+  @NamedQuery(name = "User.byUsername", query = "from User u where u.username = ?")
+})
 public class User implements Identifiable, Serializable {
   private static final long serialVersionUID = 38345280321234L;
 
@@ -31,7 +40,16 @@ public class User implements Identifiable, Serializable {
    * Numerical ID to allow faster indexing (for internal use)
    */
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  // Pooled sequence (not identity) allows batched inserts during user imports
+  @GeneratedValue(generator = "userIdGenerator")
+  @GenericGenerator(
+    name = "userIdGenerator",
+    strategy = "org.hibernate.id.enhanced.SequenceStyleGenerator",
+    parameters = {
+      @Parameter(name = "sequence_name", value = "users_seq"),
+      @Parameter(name = "increment_size", value = "50"),
+      @Parameter(name = "optimizer", value = "pooled-lo")
+    })
   @Column(name = "id", nullable = false)
   protected Long id = null;
 
@@ -41,6 +59,7 @@ public class User implements Identifiable, Serializable {
    * Typically used as an API key</p>
    */
   @Column(name = "api_key", nullable = false)
+  @Index(name = "idx_users_api_key")
   protected String apiKey = null;
 
   /**
@@ -60,6 +79,7 @@ public class User implements Identifiable, Serializable {
    * <p>A username (optional for anonymity reasons)</p>
    */
   @Column(name = "username", nullable = true)
+  @Index(name = "idx_users_username")
   protected String username = null;
 
   /**
@@ -96,7 +116,7 @@ public class User implements Identifiable, Serializable {
   private boolean locked = false;
 
   /**
-   * Indicates if the User has been deleted (archived)
+   * Indicates if the User has been deleted (the EntityArchiver later moves it to the archive tables)
    */
   @Column(name = "deleted", nullable = false)
   private boolean deleted = false;
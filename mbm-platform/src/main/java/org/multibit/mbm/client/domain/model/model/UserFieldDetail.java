@@ -2,7 +2,10 @@ package org.multibit.mbm.client.domain.model.model;
 
 import com.google.common.collect.Sets;
 
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import javax.persistence.*;
+import java.io.Serializable;
 import java.util.Set;
 
 /**
@@ -14,10 +17,20 @@ import java.util.Set;
  */
 @Entity
 @Table(name = "user_field_details")
-public class UserFieldDetail {
+public class UserFieldDetail implements Serializable {
+
+  private static final long serialVersionUID = 38947590321902L;
 
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(generator = "userFieldDetailIdGenerator")
+  @GenericGenerator(
+    name = "userFieldDetailIdGenerator",
+    strategy = "org.hibernate.id.enhanced.SequenceStyleGenerator",
+    parameters = {
+      @Parameter(name = "sequence_name", value = "user_field_details_seq"),
+      @Parameter(name = "increment_size", value = "50"),
+      @Parameter(name = "optimizer", value = "pooled-lo")
+    })
   @Column(name = "id", nullable = false)
   private Long id = null;
 
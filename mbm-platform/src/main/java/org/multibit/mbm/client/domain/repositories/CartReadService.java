@@ -4,8 +4,11 @@ import com.google.common.base.Optional;
 import org.multibit.mbm.client.common.pagination.PaginatedList;
 import org.multibit.mbm.client.domain.model.model.Cart;
 import org.multibit.mbm.client.domain.model.model.Customer;
+import org.multibit.mbm.client.domain.model.model.Item;
 import org.multibit.mbm.client.domain.repositories.common.EntityReadService;
 
+import java.util.List;
+
 public interface CartReadService extends EntityReadService<Cart> {
 
   /**
@@ -43,6 +46,30 @@ public interface CartReadService extends EntityReadService<Cart> {
    */
   Cart saveOrUpdate(Cart cart);
 
+  /**
+   * <p>Persist a Cart on behalf of changes that were applied in memory ahead of the database (see
+   * {@link org.multibit.mbm.client.infrastructure.persistence.hot.HotCartStore}). The Cart must have been read
+   * for this write (it is never a Cart held elsewhere) so the update is checked against the version it was read
+   * with. The database is then brought up to the in-memory version so that the entity tags already given to
+   * clients remain valid.</p>
+   *
+   * @param cart    A persistent Cart read for this write with the changes applied
+   * @param version The in-memory version to leave in the database (ahead of the version the Cart was read with)
+   *
+   * @return The persisted Cart (now carrying the in-memory version)
+   */
+  Cart saveOrUpdate(Cart cart, long version);
+
+  /**
+   * Re-derive the totals of every Cart holding the Item if its price or tax rate has changed since it was loaded
+   * or last saved, then acknowledge the change (see {@link Item#isPriceChanged()})
+   *
+   * @param item The persistent Item
+   *
+   * @return The IDs of the Carts that were updated (empty if the price has not changed)
+   */
+  List<Long> recalculateTotals(Item item);
+
   /**
    * <p>Force an immediate in-transaction flush</p>
    * <p>Normally, this is only used in test code but must be on the interface to ensure
@@ -1,9 +1,15 @@
 package org.multibit.mbm.client.domain.repositories;
 
 import com.google.common.base.Optional;
+import org.multibit.mbm.client.common.pagination.ContinuationToken;
+import org.multibit.mbm.client.common.pagination.PaginatedList;
 import org.multibit.mbm.client.domain.model.model.Item;
+import org.multibit.mbm.client.domain.model.model.ItemSummaryView;
 import org.multibit.mbm.client.domain.repositories.common.EntityReadService;
 
+import java.util.Collection;
+import java.util.Map;
+
 public interface ItemReadService extends EntityReadService<Item> {
 
   /**
@@ -15,6 +21,16 @@ public interface ItemReadService extends EntityReadService<Item> {
    */
   Optional<Item> getBySKU(String sku);
 
+  /**
+   * Attempt to locate several items using their SKUs in a bounded number of round trips (e.g. for all the
+   * lines of an update)
+   *
+   * @param skus The item SKUs
+   *
+   * @return The matching Items keyed by SKU (unknown SKUs are omitted)
+   */
+  Map<String, Item> getBySKUs(Collection<String> skus);
+
   /**
    * Attempt to locate the item using it's GTIN
    *
@@ -24,6 +40,47 @@ public interface ItemReadService extends EntityReadService<Item> {
    */
   Optional<Item> getByGTIN(String gtin);
 
+  /**
+   * Provide a page of Items with all fields and localised text loaded for catalogue display in a bounded
+   * number of round trips (independent of the page size)
+   *
+   * @param pageSize   The page size
+   * @param pageNumber The page number
+   *
+   * @return A page of fully loaded Items
+   */
+  PaginatedList<Item> getCataloguePage(int pageSize, int pageNumber);
+
+  /**
+   * As {@link #getCataloguePage(int, int)} but using keyset pagination
+   *
+   * @param pageSize          The page size
+   * @param continuationToken The token provided by the previous page (absent for the first page)
+   *
+   * @return A page of fully loaded Items with a continuation token if further entries are available
+   */
+  PaginatedList<Item> getCataloguePageAfter(int pageSize, Optional<ContinuationToken> continuationToken);
+
+  /**
+   * Provide a page of immutable Item summaries for catalogue listings without loading any entities
+   *
+   * @param pageSize   The page size
+   * @param pageNumber The page number
+   *
+   * @return A page of Item summaries
+   */
+  PaginatedList<ItemSummaryView> getCatalogueSummaryPage(int pageSize, int pageNumber);
+
+  /**
+   * As {@link #getCatalogueSummaryPage(int, int)} but using keyset pagination
+   *
+   * @param pageSize          The page size
+   * @param continuationToken The token provided by the previous page (absent for the first page)
+   *
+   * @return A page of Item summaries with a continuation token if further entries are available
+   */
+  PaginatedList<ItemSummaryView> getCatalogueSummaryPageAfter(int pageSize, Optional<ContinuationToken> continuationToken);
+
   /**
    * Persist the given Item
    *
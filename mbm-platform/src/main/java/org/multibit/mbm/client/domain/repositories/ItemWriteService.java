@@ -0,0 +1,16 @@
+package org.multibit.mbm.client.domain.repositories;
+
+import org.multibit.mbm.client.domain.model.model.Item;
+import org.multibit.mbm.client.domain.repositories.common.EntityWriteService;
+
+/**
+ * <p>Write service to provide the following to the application:</p>
+ * <ul>
+ * <li>Bulk persistence of {@link Item}s (e.g. a supplier catalogue import)</li>
+ * </ul>
+ *
+ * @since 0.0.1
+ */
+public interface ItemWriteService extends EntityWriteService<Item> {
+
+}
@@ -0,0 +1,16 @@
+package org.multibit.mbm.client.domain.repositories;
+
+import org.multibit.mbm.client.domain.model.model.User;
+import org.multibit.mbm.client.domain.repositories.common.EntityWriteService;
+
+/**
+ * <p>Write service to provide the following to the application:</p>
+ * <ul>
+ * <li>Bulk persistence of {@link User}s (e.g. a migration from another system)</li>
+ * </ul>
+ *
+ * @since 0.0.1
+ */
+public interface UserWriteService extends EntityWriteService<User> {
+
+}
@@ -1,6 +1,7 @@
 package org.multibit.mbm.client.domain.repositories.common;
 
 import com.google.common.base.Optional;
+import org.multibit.mbm.client.common.pagination.ContinuationToken;
 import org.multibit.mbm.client.common.pagination.PaginatedList;
 import org.multibit.mbm.client.domain.model.model.Item;
 
@@ -34,6 +35,19 @@ public interface EntityReadService<T> {
    */
   PaginatedList<T> getPaginatedList(final int pageSize, final int pageNumber);
 
+  /**
+   * <p>Provide a {@link org.multibit.mbm.client.common.pagination.PaginatedList} list of a subset of the entity using
+   * keyset (seek) pagination on the primary key</p>
+   * <p>Unlike {@link #getPaginatedList(int, int)} the cost of each page is independent of its depth and no
+   * total count is performed</p>
+   *
+   * @param pageSize          The total entities returned in one page (1-based)
+   * @param continuationToken The token from the previous page (absent for the first page)
+   *
+   * @return A {@link org.multibit.mbm.client.common.pagination.PaginatedList} with the entities and a token for the next page
+   */
+  PaginatedList<T> getPaginatedListAfter(final int pageSize, final Optional<ContinuationToken> continuationToken);
+
   /**
    * Provide a paged list of all Items filtered by an example
    *
@@ -0,0 +1,28 @@
+package org.multibit.mbm.client.domain.repositories.common;
+
+/**
+ * <p>Interface to provide the following to entity repositories:</p>
+ * <ul>
+ * <li>Provision of common bulk write methods</li>
+ * </ul>
+ * <p>This is the command side counterpart to {@link EntityReadService} and is intended for imports where
+ * the per-entity cost of {@link EntityReadService} style writes would be prohibitive.</p>
+ *
+ * @since 0.0.1
+ *         
+ */
+public interface EntityWriteService<T> {
+
+  /**
+   * <p>Persist all the given entities using batched inserts and updates</p>
+   * <p>Entities are written in a series of transactions (joining any transaction that is already in progress) and
+   * the persistence context is cleared periodically so callers should not rely on any previously loaded entities
+   * remaining attached.</p>
+   *
+   * @param entities The entities (either new or updated)
+   *
+   * @return The number of entities written
+   */
+  int saveAll(Iterable<T> entities);
+
+}
@@ -0,0 +1,93 @@
+package org.multibit.mbm.client.infrastructure.persistence;
+
+import com.google.common.base.Preconditions;
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Meter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Template to provide the following to writers of versioned entities:</p>
+ * <ul>
+ * <li>Bounded retry of an idempotent merge that lost an optimistic locking race</li>
+ * <li>A meter of the conflicts that were absorbed by a retry</li>
+ * </ul>
+ * <p>Each attempt must reload the entity so that the merge is applied to the latest version. Only merges that
+ * produce the same outcome regardless of the intervening write (e.g. setting an absolute cart quantity) are
+ * safe to retry. Once the attempts are exhausted the conflict is re-thrown for the caller to surface.</p>
+ *
+ * @since 0.0.1
+ */
+public class OptimisticRetryTemplate {
+
+  private static final Logger log = LoggerFactory.getLogger(OptimisticRetryTemplate.class);
+
+  public static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+  private static final Meter retries = Metrics.newMeter(OptimisticRetryTemplate.class, "retries", "retries", TimeUnit.SECONDS);
+
+  private final int maxAttempts;
+
+  public OptimisticRetryTemplate() {
+    this(DEFAULT_MAX_ATTEMPTS);
+  }
+
+  /**
+   * @param maxAttempts The maximum number of attempts (including the first)
+   */
+  public OptimisticRetryTemplate(int maxAttempts) {
+    Preconditions.checkState(maxAttempts > 0, "'maxAttempts' must be greater than zero");
+    this.maxAttempts = maxAttempts;
+  }
+
+  /**
+   * @param callback The merge to attempt
+   * @param <T>      The result type
+   *
+   * @return The result of the first successful attempt
+   *
+   * @throws OptimisticLockingFailureException If every attempt conflicted with a concurrent writer
+   */
+  public <T> T execute(Callback<T> callback) {
+    Preconditions.checkNotNull(callback, "callback cannot be null");
+
+    for (int attempt = 1; ; attempt++) {
+      try {
+        return callback.doInAttempt(attempt);
+      } catch (OptimisticLockingFailureException e) {
+        if (attempt >= maxAttempts) {
+          log.warn("Optimistic locking conflict persisted after {} attempts", attempt);
+          throw e;
+        }
+        log.debug("Optimistic locking conflict on attempt {}, retrying", attempt);
+        retries.mark();
+      }
+    }
+  }
+
+  /**
+   * @return The maximum number of attempts (including the first)
+   */
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  /**
+   * <p>A single attempt at an idempotent merge</p>
+   *
+   * @param <T> The result type
+   */
+  public interface Callback<T> {
+
+    /**
+     * @param attempt The 1-based attempt number (anything greater than 1 must reload the entity)
+     *
+     * @return The result
+     */
+    T doInAttempt(int attempt);
+
+  }
+}
@@ -0,0 +1,119 @@
+package org.multibit.mbm.client.infrastructure.persistence.archive;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import java.util.List;
+
+/**
+ * <p>Value object to provide the following to the {@link EntityArchiver}:</p>
+ * <ul>
+ * <li>The tables holding the rows of an aggregate (e.g. an Item with its fields and pricing rules)</li>
+ * <li>The key sets identifying those rows starting from the primary keys of the root table</li>
+ * </ul>
+ * <p>Tables are declared parent first so that rows can be inserted in declaration order and deleted in
+ * reverse without breaking the foreign key constraints of the hot tables.</p>
+ *
+ * @since 0.0.1
+ */
+class ArchiveGraph {
+
+  /**
+   * The key set holding the primary keys of the root table
+   */
+  static final String ROOT = "root";
+
+  private final String rootTable;
+
+  private final List<DerivedKeys> derivedKeys = Lists.newArrayList();
+
+  private final List<ArchivedTable> tables = Lists.newArrayList();
+
+  /**
+   * @param rootTable The table holding the aggregate root (keyed by "id")
+   */
+  ArchiveGraph(String rootTable) {
+    Preconditions.checkNotNull(rootTable, "rootTable cannot be null");
+    this.rootTable = rootTable;
+  }
+
+  /**
+   * Declare a key set read from a table of the graph (e.g. the fields joined to a set of Items)
+   *
+   * @param keySet       The name of the new key set
+   * @param table        The table to read
+   * @param column       The column providing the keys
+   * @param parentColumn The column matched against the parent key set
+   * @param parentKeySet The parent key set (already declared)
+   *
+   * @return The graph for chaining
+   */
+  ArchiveGraph derive(String keySet, String table, String column, String parentColumn, String parentKeySet) {
+    derivedKeys.add(new DerivedKeys(keySet, table, column, parentColumn, parentKeySet));
+    return this;
+  }
+
+  /**
+   * Declare a table of the graph (parents before children)
+   *
+   * @param table  The table
+   * @param column The column matched against the key set
+   * @param keySet The key set identifying the rows
+   *
+   * @return The graph for chaining
+   */
+  ArchiveGraph table(String table, String column, String keySet) {
+    tables.add(new ArchivedTable(table, column, keySet));
+    return this;
+  }
+
+  String getRootTable() {
+    return rootTable;
+  }
+
+  List<DerivedKeys> getDerivedKeys() {
+    return ImmutableList.copyOf(derivedKeys);
+  }
+
+  List<ArchivedTable> getTables() {
+    return ImmutableList.copyOf(tables);
+  }
+
+  /**
+   * A key set read from another table of the graph
+   */
+  static class DerivedKeys {
+
+    final String keySet;
+    final String table;
+    final String column;
+    final String parentColumn;
+    final String parentKeySet;
+
+    private DerivedKeys(String keySet, String table, String column, String parentColumn, String parentKeySet) {
+      this.keySet = keySet;
+      this.table = table;
+      this.column = column;
+      this.parentColumn = parentColumn;
+      this.parentKeySet = parentKeySet;
+    }
+  }
+
+  /**
+   * The rows of a table identified by a key set
+   */
+  static class ArchivedTable {
+
+    final String table;
+    final String column;
+    final String keySet;
+
+    private ArchivedTable(String table, String column, String keySet) {
+      this.table = table;
+      this.column = column;
+      this.keySet = keySet;
+    }
+  }
+
+}
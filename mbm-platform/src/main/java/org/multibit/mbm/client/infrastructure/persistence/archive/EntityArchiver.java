@@ -0,0 +1,415 @@
+package org.multibit.mbm.client.infrastructure.persistence.archive;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Meter;
+import org.multibit.mbm.client.domain.model.model.Item;
+import org.multibit.mbm.client.domain.model.model.Role;
+import org.multibit.mbm.client.domain.model.model.User;
+import org.multibit.mbm.client.infrastructure.persistence.hibernate.cache.HibernateCacheRegions;
+import org.multibit.mbm.client.infrastructure.persistence.hibernate.counters.EntityCounterReconciler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.orm.hibernate3.HibernateTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.Resource;
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Archiver to provide the following to the application:</p>
+ * <ul>
+ * <li>Batched moves of soft deleted Items, Users and Roles into the archive tables</li>
+ * <li>Batched moves of abandoned Carts (with the never registered visitor that owns them)</li>
+ * <li>Restoration of an archived entity into the hot tables</li>
+ * </ul>
+ * <p>Each entity is moved with all of its dependent rows (e.g. a User with its contact details, roles,
+ * Customer and Cart) so the hot tables and their indexes only grow with live data. Rows are moved with SQL
+ * rather than through Hibernate so the second-level cache is evicted and the entity counters are reconciled
+ * after any rows have moved.</p>
+ * <p>Entities that are still referenced from outside their graph are left in place (e.g. an Item in a Cart,
+ * delivery or purchase order, or a Role held by a User) so that restoring any archived entity never breaks a
+ * foreign key. A restored entity is undeleted (and the Cart of a restored visitor counts as just changed) so that
+ * the next run does not archive it again.</p>
+ *
+ * @since 0.0.1
+ */
+@Component("entityArchiver")
+public class EntityArchiver {
+
+  private static final Logger log = LoggerFactory.getLogger(EntityArchiver.class);
+
+  /**
+   * Appended to the name of a hot table to give its archive table (see <code>sql/1/patch-schema.sql</code>)
+   */
+  public static final String ARCHIVE_SUFFIX = "_archive";
+
+  public static final int DEFAULT_BATCH_SIZE = 100;
+
+  public static final String ITEMS = "items";
+  public static final String USERS = "users";
+  public static final String ABANDONED_CARTS = "abandoned carts";
+  public static final String ROLES = "roles";
+
+  private static final ArchiveGraph ITEM_GRAPH = new ArchiveGraph("items")
+    .derive("fields", "items_item_field_details", "itemFieldMap_id", "items_id", ArchiveGraph.ROOT)
+    .table("items", "id", ArchiveGraph.ROOT)
+    .table("item_field_details", "id", "fields")
+    .table("items_item_field_details", "items_id", ArchiveGraph.ROOT)
+    .table("item_field_secondary_details", "item_field_id", "fields")
+    .table("item_pricing_rules", "item_id", ArchiveGraph.ROOT);
+
+  private static final ArchiveGraph ROLE_GRAPH = new ArchiveGraph("roles")
+    .table("roles", "id", ArchiveGraph.ROOT)
+    .table("authorities", "role_id", ArchiveGraph.ROOT);
+
+  private static final ArchiveGraph USER_GRAPH = new ArchiveGraph("users")
+    .derive("customers", "users", "customer_id", "id", ArchiveGraph.ROOT)
+    .derive("carts", "customers", "cart_fk", "id", "customers")
+    .derive("contactMethods", "users_contact_method_details", "contactMethodMap_id", "users_id", ArchiveGraph.ROOT)
+    .derive("userFields", "users_user_field_details", "userFieldMap_id", "users_id", ArchiveGraph.ROOT)
+    .table("carts", "id", "carts")
+    .table("cart_items", "cart_id", "carts")
+    .table("customers", "id", "customers")
+    .table("users", "id", ArchiveGraph.ROOT)
+    .table("user_roles", "user_id", ArchiveGraph.ROOT)
+    .table("contact_method_details", "id", "contactMethods")
+    .table("contact_method_secondary_details", "contact_method_id", "contactMethods")
+    .table("users_contact_method_details", "users_id", ArchiveGraph.ROOT)
+    .table("user_field_details", "id", "userFields")
+    .table("user_field_secondary_details", "user_field_id", "userFields")
+    .table("users_user_field_details", "users_id", ArchiveGraph.ROOT);
+
+  private static final Map<Class<?>, ArchiveGraph> GRAPHS = ImmutableMap.<Class<?>, ArchiveGraph>of(
+    Item.class, ITEM_GRAPH,
+    Role.class, ROLE_GRAPH,
+    User.class, USER_GRAPH);
+
+  /**
+   * Archived Carts may still need the Item so archived references count as well
+   */
+  private static final String DELETED_ITEMS = "select i.id from items i where i.deleted = true"
+    + " and not exists (select 1 from cart_items ci where ci.item_id = i.id)"
+    + " and not exists (select 1 from cart_items_archive ci where ci.item_id = i.id)"
+    + " and not exists (select 1 from delivery_items di where di.item_id = i.id)"
+    + " and not exists (select 1 from purchase_order_items pi where pi.item_id = i.id)"
+    + " order by i.id";
+
+  private static final String DELETED_ROLES = "select r.id from roles r where r.deleted = true"
+    + " and not exists (select 1 from user_roles ur where ur.role_id = r.id)"
+    + " and not exists (select 1 from user_roles_archive ur where ur.role_id = r.id)"
+    + " order by r.id";
+
+  /**
+   * Suppliers are referenced by their deliveries and purchase orders so remain in place
+   */
+  private static final String DELETED_USERS = "select u.id from users u where u.deleted = true"
+    + " and u.supplier_id is null"
+    + " order by u.id";
+
+  /**
+   * A visitor that never registered cannot sign in again so its Cart is abandoned once left unchanged
+   */
+  private static final String ABANDONED_VISITORS = "select u.id from users u"
+    + " join customers c on c.id = u.customer_id"
+    + " join carts ca on ca.id = c.cart_fk"
+    + " where u.deleted = false and u.supplier_id is null and coalesce(u.username, '') = ''"
+    + " and ca.updated_at < ?"
+    + " order by u.id";
+
+  private static final String RESTORED_VISITOR_CART = "update carts set updated_at = ?"
+    + " where id in (select c.cart_fk from customers c join users u on u.customer_id = c.id where u.id = ?)";
+
+  private final Meter archived = Metrics.newMeter(EntityArchiver.class, "archived", "entities", TimeUnit.SECONDS);
+
+  private final Meter restored = Metrics.newMeter(EntityArchiver.class, "restored", "entities", TimeUnit.SECONDS);
+
+  /**
+   * The column list of each hot table (archive tables have the same columns)
+   */
+  private final ConcurrentMap<String, String> columnsByTable = Maps.newConcurrentMap();
+
+  @Resource(name = "dataSource")
+  private DataSource dataSource = null;
+
+  @Resource(name = "transactionManager")
+  private PlatformTransactionManager transactionManager = null;
+
+  @Resource(name = "hibernateTemplate")
+  private HibernateTemplate hibernateTemplate = null;
+
+  @Resource(name = "hibernateCacheRegions")
+  private HibernateCacheRegions hibernateCacheRegions = null;
+
+  @Resource(name = "entityCounterReconciler")
+  private EntityCounterReconciler entityCounterReconciler = null;
+
+  /**
+   * Move all current candidates into the archive tables (one transaction per batch)
+   *
+   * @param batchSize       The number of entities moved in each transaction
+   * @param abandonedBefore Carts of unregistered visitors that have not changed since this time are abandoned
+   *
+   * @return The number of entities archived by type (see {@link #ITEMS} etc)
+   */
+  public Map<String, Integer> archive(int batchSize, Date abandonedBefore) {
+    Preconditions.checkState(batchSize > 0, "batchSize must be positive");
+    Preconditions.checkNotNull(abandonedBefore, "abandonedBefore cannot be null");
+
+    Map<String, Integer> counts = Maps.newLinkedHashMap();
+    counts.put(ITEMS, archiveAll(ITEM_GRAPH, batchSize, DELETED_ITEMS));
+    counts.put(USERS, archiveAll(USER_GRAPH, batchSize, DELETED_USERS));
+    counts.put(ABANDONED_CARTS, archiveAll(USER_GRAPH, batchSize, ABANDONED_VISITORS, new Timestamp(abandonedBefore.getTime())));
+    counts.put(ROLES, archiveAll(ROLE_GRAPH, batchSize, DELETED_ROLES));
+
+    int total = 0;
+    for (int count : counts.values()) {
+      total += count;
+    }
+    if (total > 0) {
+      afterMove();
+      archived.mark(total);
+      log.info("Archived {}", counts);
+    } else {
+      log.debug("Nothing to archive");
+    }
+
+    return counts;
+  }
+
+  /**
+   * Move an archived entity (with its dependent rows) back into the hot tables
+   *
+   * @param entityClass The entity class (Item, User or Role)
+   * @param id          The primary key
+   *
+   * @return True if the entity was found in the archive tables
+   */
+  public boolean restore(Class<?> entityClass, final Long id) {
+    final ArchiveGraph graph = GRAPHS.get(entityClass);
+    Preconditions.checkArgument(graph != null, "'%s' is not archived", entityClass.getSimpleName());
+    Preconditions.checkNotNull(id, "id cannot be null");
+
+    Boolean found = new TransactionTemplate(transactionManager).execute(new TransactionCallback<Boolean>() {
+      @Override
+      public Boolean doInTransaction(TransactionStatus status) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        String archiveTable = graph.getRootTable() + ARCHIVE_SUFFIX;
+        if (jdbcTemplate.queryForInt("select count(*) from " + archiveTable + " where id = ?", id) == 0) {
+          return false;
+        }
+        move(jdbcTemplate, graph, ImmutableList.of(id), false);
+        undelete(jdbcTemplate, graph, id);
+        return true;
+      }
+    });
+
+    if (found) {
+      afterMove();
+      restored.mark();
+      log.info("Restored {} {}", entityClass.getSimpleName(), id);
+    }
+
+    return found;
+  }
+
+  public void setDataSource(DataSource dataSource) {
+    this.dataSource = dataSource;
+  }
+
+  public void setTransactionManager(PlatformTransactionManager transactionManager) {
+    this.transactionManager = transactionManager;
+  }
+
+  public void setHibernateTemplate(HibernateTemplate hibernateTemplate) {
+    this.hibernateTemplate = hibernateTemplate;
+  }
+
+  public void setHibernateCacheRegions(HibernateCacheRegions hibernateCacheRegions) {
+    this.hibernateCacheRegions = hibernateCacheRegions;
+  }
+
+  public void setEntityCounterReconciler(EntityCounterReconciler entityCounterReconciler) {
+    this.entityCounterReconciler = entityCounterReconciler;
+  }
+
+  /**
+   * @param graph          The graph of the candidates
+   * @param batchSize      The number of entities moved in each transaction
+   * @param candidateQuery The query selecting the primary keys of the root table in ascending order
+   * @param parameters     The positional parameter values
+   *
+   * @return The number of entities archived
+   */
+  private int archiveAll(final ArchiveGraph graph, final int batchSize, final String candidateQuery, final Object... parameters) {
+
+    TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+    int count = 0;
+    int moved;
+    do {
+      moved = transactionTemplate.execute(new TransactionCallback<Integer>() {
+        @Override
+        public Integer doInTransaction(TransactionStatus status) {
+          // Pending Hibernate writes (e.g. a soft delete) must be visible to the candidate query
+          hibernateTemplate.flush();
+
+          JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+          List<Long> ids = candidates(jdbcTemplate, batchSize, candidateQuery, parameters);
+          if (!ids.isEmpty()) {
+            move(jdbcTemplate, graph, ids, true);
+          }
+          return ids.size();
+        }
+      });
+      count += moved;
+    } while (moved == batchSize);
+
+    return count;
+  }
+
+  private List<Long> candidates(JdbcTemplate jdbcTemplate, final int batchSize, String candidateQuery, Object... parameters) {
+    return jdbcTemplate.query(candidateQuery, parameters, new ResultSetExtractor<List<Long>>() {
+      @Override
+      public List<Long> extractData(ResultSet resultSet) throws SQLException, DataAccessException {
+        List<Long> ids = Lists.newArrayList();
+        while (ids.size() < batchSize && resultSet.next()) {
+          ids.add(resultSet.getLong(1));
+        }
+        return ids;
+      }
+    });
+  }
+
+  /**
+   * Copy the rows of the graph to the target tables then delete them from the source tables
+   *
+   * @param jdbcTemplate The template (within a transaction)
+   * @param graph        The graph
+   * @param ids          The primary keys of the root table
+   * @param toArchive    True if moving from the hot tables to the archive tables
+   */
+  private void move(JdbcTemplate jdbcTemplate, ArchiveGraph graph, List<Long> ids, boolean toArchive) {
+
+    // All keys are read from the source tables before anything moves
+    Map<String, List<Long>> keySets = Maps.newHashMap();
+    keySets.put(ArchiveGraph.ROOT, ids);
+    for (ArchiveGraph.DerivedKeys derivedKeys : graph.getDerivedKeys()) {
+      List<Long> parentKeys = keySets.get(derivedKeys.parentKeySet);
+      List<Long> keys = Lists.newArrayList();
+      if (!parentKeys.isEmpty()) {
+        keys = jdbcTemplate.queryForList("select " + derivedKeys.column
+          + " from " + source(derivedKeys.table, toArchive)
+          + " where " + derivedKeys.column + " is not null and " + derivedKeys.parentColumn + " in (" + placeholders(parentKeys) + ")",
+          Long.class, parentKeys.toArray());
+      }
+      keySets.put(derivedKeys.keySet, keys);
+    }
+
+    // Parents first so that the hot table constraints are met on restore
+    for (ArchiveGraph.ArchivedTable archivedTable : graph.getTables()) {
+      List<Long> keys = keySets.get(archivedTable.keySet);
+      if (keys.isEmpty()) {
+        continue;
+      }
+      String columns = columns(jdbcTemplate, archivedTable.table);
+      jdbcTemplate.update("insert into " + target(archivedTable.table, toArchive) + " (" + columns + ")"
+        + " select " + columns + " from " + source(archivedTable.table, toArchive)
+        + " where " + archivedTable.column + " in (" + placeholders(keys) + ")",
+        keys.toArray());
+    }
+
+    // Children first so that the hot table constraints are met on archive
+    for (ArchiveGraph.ArchivedTable archivedTable : Lists.reverse(graph.getTables())) {
+      List<Long> keys = keySets.get(archivedTable.keySet);
+      if (keys.isEmpty()) {
+        continue;
+      }
+      jdbcTemplate.update("delete from " + source(archivedTable.table, toArchive)
+        + " where " + archivedTable.column + " in (" + placeholders(keys) + ")",
+        keys.toArray());
+    }
+  }
+
+  /**
+   * Clear the deleted flag of a restored entity and mark its Cart (if any) as changed so that it no longer
+   * matches any of the candidate queries
+   *
+   * @param jdbcTemplate The template (within a transaction)
+   * @param graph        The graph
+   * @param id           The primary key of the root table
+   */
+  private void undelete(JdbcTemplate jdbcTemplate, ArchiveGraph graph, Long id) {
+    jdbcTemplate.update("update " + graph.getRootTable() + " set deleted = false, reasonForDelete = null where id = ?", id);
+    if (graph == USER_GRAPH) {
+      jdbcTemplate.update(RESTORED_VISITOR_CART, new Timestamp(System.currentTimeMillis()), id);
+    }
+  }
+
+  /**
+   * @param jdbcTemplate The template
+   * @param table        The hot table
+   *
+   * @return The comma separated column names (read once from the result set metadata)
+   */
+  private String columns(JdbcTemplate jdbcTemplate, final String table) {
+    String columns = columnsByTable.get(table);
+    if (columns != null) {
+      return columns;
+    }
+    columns = jdbcTemplate.query("select * from " + table + " where 1 = 0", new ResultSetExtractor<String>() {
+      @Override
+      public String extractData(ResultSet resultSet) throws SQLException, DataAccessException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        List<String> names = Lists.newArrayList();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+          names.add(metaData.getColumnName(i));
+        }
+        return Joiner.on(", ").join(names);
+      }
+    });
+    columnsByTable.putIfAbsent(table, columns);
+    return columns;
+  }
+
+  private void afterMove() {
+    // The rows were moved without Hibernate so nothing it holds about them can be trusted
+    hibernateCacheRegions.evictAll();
+    entityCounterReconciler.reconcile();
+  }
+
+  private static String source(String table, boolean toArchive) {
+    return toArchive ? table : table + ARCHIVE_SUFFIX;
+  }
+
+  private static String target(String table, boolean toArchive) {
+    return toArchive ? table + ARCHIVE_SUFFIX : table;
+  }
+
+  private static String placeholders(List<Long> keys) {
+    return Joiner.on(", ").join(Collections.nCopies(keys.size(), "?"));
+  }
+
+}
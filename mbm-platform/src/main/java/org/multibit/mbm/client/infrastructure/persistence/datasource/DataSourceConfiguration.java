@@ -0,0 +1,143 @@
+package org.multibit.mbm.client.infrastructure.persistence.datasource;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.yammer.dropwizard.util.Duration;
+import org.hibernate.validator.constraints.NotEmpty;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * <p>Configuration to provide the following to {@link PooledDataSourceFactory}:</p>
+ * <ul>
+ * <li>Database connectivity (driver, URL and credentials)</li>
+ * <li>Connection pool sizing and prepared statement caching</li>
+ * </ul>
+ * <p>The defaults describe an in-memory HSQL database suitable for development.</p>
+ *
+ * @since 0.0.1
+ */
+public class DataSourceConfiguration {
+
+  @NotEmpty
+  @JsonProperty
+  private String driverClass = "org.hsqldb.jdbcDriver";
+
+  @NotEmpty
+  @JsonProperty
+  private String url = "jdbc:hsqldb:mem:mbm";
+
+  @NotNull
+  @JsonProperty
+  private String user = "sa";
+
+  @NotNull
+  @JsonProperty
+  private String password = "";
+
+  /**
+   * The number of connections kept open even when idle
+   */
+  @Min(0)
+  @JsonProperty
+  private int minSize = 1;
+
+  /**
+   * The maximum number of connections in use at any one time
+   */
+  @Min(1)
+  @JsonProperty
+  private int maxSize = 8;
+
+  /**
+   * How long a request will wait for a connection before failing
+   */
+  @NotNull
+  @JsonProperty
+  private Duration maxWaitForConnection = Duration.seconds(1);
+
+  /**
+   * The number of prepared statements cached per connection (0 to disable)
+   */
+  @Min(0)
+  @JsonProperty
+  private int statementCacheSize = 64;
+
+  /**
+   * Optional query used to validate a connection as it is borrowed from the pool
+   */
+  @JsonProperty
+  private String validationQuery = null;
+
+  public String getDriverClass() {
+    return driverClass;
+  }
+
+  public void setDriverClass(String driverClass) {
+    this.driverClass = driverClass;
+  }
+
+  public String getUrl() {
+    return url;
+  }
+
+  public void setUrl(String url) {
+    this.url = url;
+  }
+
+  public String getUser() {
+    return user;
+  }
+
+  public void setUser(String user) {
+    this.user = user;
+  }
+
+  public String getPassword() {
+    return password;
+  }
+
+  public void setPassword(String password) {
+    this.password = password;
+  }
+
+  public int getMinSize() {
+    return minSize;
+  }
+
+  public void setMinSize(int minSize) {
+    this.minSize = minSize;
+  }
+
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  public void setMaxSize(int maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  public Duration getMaxWaitForConnection() {
+    return maxWaitForConnection;
+  }
+
+  public void setMaxWaitForConnection(Duration maxWaitForConnection) {
+    this.maxWaitForConnection = maxWaitForConnection;
+  }
+
+  public int getStatementCacheSize() {
+    return statementCacheSize;
+  }
+
+  public void setStatementCacheSize(int statementCacheSize) {
+    this.statementCacheSize = statementCacheSize;
+  }
+
+  public String getValidationQuery() {
+    return validationQuery;
+  }
+
+  public void setValidationQuery(String validationQuery) {
+    this.validationQuery = validationQuery;
+  }
+}
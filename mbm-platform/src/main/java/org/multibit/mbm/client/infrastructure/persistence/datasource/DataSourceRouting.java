@@ -0,0 +1,64 @@
+package org.multibit.mbm.client.infrastructure.persistence.datasource;
+
+/**
+ * <p>Thread scoped state to provide the following to {@link ReplicaRoutingDataSource}:</p>
+ * <ul>
+ * <li>Read-your-writes stickiness so that once the primary has been used all later reads on the same
+ * thread also go to the primary (a replica may not have caught up yet)</li>
+ * </ul>
+ * <p>The state must be cleared at the end of each unit of work (see {@link DataSourceRoutingFilter} for requests
+ * and {@link #unitOfWork(Runnable)} for scheduled tasks).</p>
+ *
+ * @since 0.0.1
+ */
+public class DataSourceRouting {
+
+  private static final ThreadLocal<Boolean> sticky = new ThreadLocal<Boolean>();
+
+  /**
+   * Utilities have private constructors
+   */
+  private DataSourceRouting() {
+  }
+
+  /**
+   * Record that the primary has been used by the current thread
+   */
+  public static void markWritten() {
+    sticky.set(Boolean.TRUE);
+  }
+
+  /**
+   * @return True if the current thread must continue to use the primary
+   */
+  public static boolean isSticky() {
+    return Boolean.TRUE.equals(sticky.get());
+  }
+
+  /**
+   * Allow reads on the current thread to use a replica again
+   */
+  public static void clear() {
+    sticky.remove();
+  }
+
+  /**
+   * @param task A task run repeatedly on a pooled thread (e.g. by a scheduler)
+   *
+   * @return The task with stickiness scoped to each run (so that one write does not pin the thread to the primary)
+   */
+  public static Runnable unitOfWork(final Runnable task) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        clear();
+        try {
+          task.run();
+        } finally {
+          clear();
+        }
+      }
+    };
+  }
+
+}
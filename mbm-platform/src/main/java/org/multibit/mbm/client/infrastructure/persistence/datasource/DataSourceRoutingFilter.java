@@ -0,0 +1,41 @@
+package org.multibit.mbm.client.infrastructure.persistence.datasource;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import java.io.IOException;
+
+/**
+ * <p>Servlet filter to provide the following to the application:</p>
+ * <ul>
+ * <li>Read-your-writes stickiness scoped to a single request (pooled threads start each request clean)</li>
+ * </ul>
+ *
+ * @since 0.0.1
+ */
+public class DataSourceRoutingFilter implements Filter {
+
+  @Override
+  public void init(FilterConfig filterConfig) throws ServletException {
+    // Do nothing
+  }
+
+  @Override
+  public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+    DataSourceRouting.clear();
+    try {
+      chain.doFilter(request, response);
+    } finally {
+      DataSourceRouting.clear();
+    }
+  }
+
+  @Override
+  public void destroy() {
+    // Do nothing
+  }
+
+}
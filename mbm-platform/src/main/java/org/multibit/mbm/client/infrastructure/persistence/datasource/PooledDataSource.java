@@ -0,0 +1,123 @@
+package org.multibit.mbm.client.infrastructure.persistence.datasource;
+
+import com.yammer.dropwizard.lifecycle.Managed;
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.Timer;
+import com.yammer.metrics.core.TimerContext;
+import org.apache.tomcat.dbcp.dbcp.BasicDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * <p>DataSource to provide the following to the application:</p>
+ * <ul>
+ * <li>Pooled connections with a prepared statement cache</li>
+ * <li>Gauges for active, idle and waiting connection requests</li>
+ * <li>A timer (including histogram) of connection acquisition time</li>
+ * <li>Lifecycle management so that the pool is closed on shutdown</li>
+ * </ul>
+ *
+ * @since 0.0.1
+ */
+public class PooledDataSource extends BasicDataSource implements Managed {
+
+  private final String name;
+
+  private final AtomicInteger waiting = new AtomicInteger();
+
+  private final Timer acquisition;
+
+  /**
+   * @param name The name used to scope the metrics (e.g. "primary")
+   */
+  public PooledDataSource(String name) {
+    this.name = name;
+    this.acquisition = Metrics.newTimer(PooledDataSource.class, "acquisition", name, TimeUnit.MILLISECONDS, TimeUnit.SECONDS);
+
+    Metrics.newGauge(PooledDataSource.class, "active", name, new Gauge<Integer>() {
+      @Override
+      public Integer value() {
+        return getNumActive();
+      }
+    });
+    Metrics.newGauge(PooledDataSource.class, "idle", name, new Gauge<Integer>() {
+      @Override
+      public Integer value() {
+        return getNumIdle();
+      }
+    });
+    Metrics.newGauge(PooledDataSource.class, "waiting", name, new Gauge<Integer>() {
+      @Override
+      public Integer value() {
+        return getNumWaiting();
+      }
+    });
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    // The pool does not count its waiters so only count a caller that finds every connection in use (and blocks)
+    boolean blocking = isFullyUsed();
+    if (blocking) {
+      waiting.incrementAndGet();
+    }
+    TimerContext context = acquisition.time();
+    try {
+      return super.getConnection();
+    } finally {
+      context.stop();
+      if (blocking) {
+        waiting.decrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * @return The number of threads currently blocked waiting for a connection
+   */
+  public int getNumWaiting() {
+    return waiting.get();
+  }
+
+  /**
+   * @return True if every connection is in use and at least one thread is waiting
+   */
+  public boolean isExhausted() {
+    return getNumActive() >= getMaxActive() && getNumWaiting() > 0;
+  }
+
+  /**
+   * @return True if a connection request would have to wait for a connection to be returned
+   */
+  private boolean isFullyUsed() {
+    return getMaxActive() > 0 && getNumActive() >= getMaxActive() && getNumIdle() == 0;
+  }
+
+  /**
+   * @return The name used to scope the metrics
+   */
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public void start() throws Exception {
+    // Connections are created on demand
+  }
+
+  @Override
+  public void stop() throws Exception {
+    close();
+  }
+
+  // Required for JDBC 4.1 (Java 7) but not present in the pool implementation
+  public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+    throw new SQLFeatureNotSupportedException("Not supported");
+  }
+}
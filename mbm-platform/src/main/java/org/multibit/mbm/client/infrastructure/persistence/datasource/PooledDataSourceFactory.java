@@ -0,0 +1,82 @@
+package org.multibit.mbm.client.infrastructure.persistence.datasource;
+
+import com.google.common.base.Preconditions;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.List;
+
+/**
+ * <p>Factory to provide the following to the application:</p>
+ * <ul>
+ * <li>Construction of a {@link PooledDataSource} from a {@link DataSourceConfiguration}</li>
+ * <li>Construction of a {@link ReplicaRoutingDataSource} over a primary and its replicas</li>
+ * </ul>
+ *
+ * @since 0.0.1
+ */
+public class PooledDataSourceFactory {
+
+  /**
+   * @param configuration The data source configuration
+   * @param name          The name used to scope the pool metrics
+   *
+   * @return A configured pooled data source (connections are created on demand)
+   */
+  public PooledDataSource build(DataSourceConfiguration configuration, String name) {
+    Preconditions.checkNotNull(configuration, "configuration cannot be null");
+    Preconditions.checkState(configuration.getMinSize() <= configuration.getMaxSize(), "'minSize' cannot exceed 'maxSize'");
+
+    PooledDataSource dataSource = new PooledDataSource(name);
+
+    // Connectivity
+    dataSource.setDriverClassName(configuration.getDriverClass());
+    dataSource.setUrl(configuration.getUrl());
+    dataSource.setUsername(configuration.getUser());
+    dataSource.setPassword(configuration.getPassword());
+    dataSource.setDefaultAutoCommit(true);
+
+    // Sizing
+    dataSource.setInitialSize(configuration.getMinSize());
+    dataSource.setMinIdle(configuration.getMinSize());
+    dataSource.setMaxIdle(configuration.getMaxSize());
+    dataSource.setMaxActive(configuration.getMaxSize());
+    dataSource.setMaxWait(configuration.getMaxWaitForConnection().toMilliseconds());
+
+    // Prepared statement cache
+    if (configuration.getStatementCacheSize() > 0) {
+      dataSource.setPoolPreparedStatements(true);
+      dataSource.setMaxOpenPreparedStatements(configuration.getStatementCacheSize());
+    }
+
+    // Validation
+    if (configuration.getValidationQuery() != null) {
+      dataSource.setValidationQuery(configuration.getValidationQuery());
+      dataSource.setTestOnBorrow(true);
+    }
+
+    return dataSource;
+  }
+
+  /**
+   * @param primary  The primary (read-write) data source
+   * @param replicas The replica (read-only) data sources (can be empty)
+   *
+   * @return A data source that defers acquiring a connection until the first statement so that the
+   *         transaction read-only flag is available to select the target
+   */
+  public DataSource buildRouting(DataSource primary, List<? extends DataSource> replicas) {
+
+    LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy();
+    dataSource.setTargetDataSource(new ReplicaRoutingDataSource(primary, replicas));
+
+    // Providing the defaults avoids borrowing a connection from the primary on construction
+    dataSource.setDefaultAutoCommit(true);
+    dataSource.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+    dataSource.afterPropertiesSet();
+
+    return dataSource;
+  }
+
+}
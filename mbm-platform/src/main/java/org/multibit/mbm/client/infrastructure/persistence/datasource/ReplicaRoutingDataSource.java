@@ -0,0 +1,72 @@
+package org.multibit.mbm.client.infrastructure.persistence.datasource;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>DataSource to provide the following to the application:</p>
+ * <ul>
+ * <li>Routing of read-only transactions to one of the replicas (round robin)</li>
+ * <li>Routing of everything else (writes, non-transactional access) to the primary</li>
+ * <li>Read-your-writes stickiness through {@link DataSourceRouting}</li>
+ * </ul>
+ * <p>The read-only flag is only known once the transaction has started so this must be wrapped
+ * in a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy} (see
+ * {@link PooledDataSourceFactory#buildRouting(DataSource, List)}).</p>
+ *
+ * @since 0.0.1
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+  public static final String PRIMARY = "primary";
+
+  public static final String REPLICA_PREFIX = "replica-";
+
+  private final int replicaCount;
+
+  private final AtomicInteger next = new AtomicInteger();
+
+  /**
+   * @param primary  The primary (read-write) data source
+   * @param replicas The replica (read-only) data sources (can be empty)
+   */
+  public ReplicaRoutingDataSource(DataSource primary, List<? extends DataSource> replicas) {
+    Preconditions.checkNotNull(primary, "primary cannot be null");
+    Preconditions.checkNotNull(replicas, "replicas cannot be null");
+
+    Map<Object, Object> targets = Maps.newHashMap();
+    targets.put(PRIMARY, primary);
+    for (int i = 0; i < replicas.size(); i++) {
+      targets.put(REPLICA_PREFIX + i, replicas.get(i));
+    }
+    this.replicaCount = replicas.size();
+
+    setTargetDataSources(targets);
+    setDefaultTargetDataSource(primary);
+    setLenientFallback(false);
+    afterPropertiesSet();
+  }
+
+  @Override
+  protected Object determineCurrentLookupKey() {
+    if (replicaCount > 0
+      && TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+      && !DataSourceRouting.isSticky()) {
+      return REPLICA_PREFIX + (next.getAndIncrement() & Integer.MAX_VALUE) % replicaCount;
+    }
+
+    // Anything that is not known to be read-only may write so subsequent reads must see it
+    if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+      DataSourceRouting.markWritten();
+    }
+    return PRIMARY;
+  }
+
+}
@@ -0,0 +1,169 @@
+package org.multibit.mbm.client.infrastructure.persistence.diagnostics;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.Longs;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <p>Advisor to provide the following to administrators:</p>
+ * <ul>
+ * <li>Detection of recorded lookups on a column that no index leads on</li>
+ * <li>Suggested DDL for a single column index on each (most used first)</li>
+ * </ul>
+ * <p>The SQL is expected in the form Hibernate generates (every column qualified by a table alias) and only
+ * equality and IN predicates against a bound parameter are considered. The suggestions are a starting point
+ * for review rather than something to apply blindly: composite and covering indexes are left to a human.</p>
+ *
+ * @since 0.0.1
+ */
+public class IndexAdvisor {
+
+  /**
+   * Tables are aliased in the FROM and JOIN clauses, e.g. "from users user0_" or "inner join roles role1_"
+   */
+  private static final Pattern TABLE_ALIAS = Pattern.compile("(?:from|join)\\s+(\\w+)\\s+(?:as\\s+)?(\\w+)", Pattern.CASE_INSENSITIVE);
+
+  /**
+   * Lookups compare an aliased column with a parameter, e.g. "user0_.api_key=?" or "item0_.sku in (?, ?)"
+   */
+  private static final Pattern LOOKUP = Pattern.compile("(\\w+)\\.(\\w+)\\s*(?:=\\s*\\?|in\\s*\\(\\s*\\?)", Pattern.CASE_INSENSITIVE);
+
+  private static final Pattern WHERE = Pattern.compile("\\swhere\\s", Pattern.CASE_INSENSITIVE);
+
+  private static final Ordering<IndexSuggestion> BY_LOOKUPS = new Ordering<IndexSuggestion>() {
+    @Override
+    public int compare(IndexSuggestion left, IndexSuggestion right) {
+      return Longs.compare(left.getLookups(), right.getLookups());
+    }
+  };
+
+  private final DataSource dataSource;
+
+  /**
+   * @param dataSource The data source providing the schema metadata for the existing indexes
+   */
+  public IndexAdvisor(DataSource dataSource) {
+    Preconditions.checkNotNull(dataSource, "dataSource cannot be null");
+    this.dataSource = dataSource;
+  }
+
+  /**
+   * @param summaries  The recorded statements
+   * @param minLookups The minimum number of lookups on a column before an index is suggested
+   *
+   * @return The suggested indexes with the most used first
+   *
+   * @throws SQLException If the schema metadata is not available
+   */
+  public List<IndexSuggestion> advise(List<StatementSummary> summaries, long minLookups) throws SQLException {
+    Preconditions.checkNotNull(summaries, "summaries cannot be null");
+
+    Map<String, Map<String, Long>> lookups = countLookups(summaries);
+
+    List<IndexSuggestion> suggestions = Lists.newArrayList();
+    Connection connection = DataSourceUtils.getConnection(dataSource);
+    try {
+      DatabaseMetaData metaData = connection.getMetaData();
+      for (Map.Entry<String, Map<String, Long>> table : lookups.entrySet()) {
+        Set<String> indexed = leadingColumns(metaData, table.getKey());
+        for (Map.Entry<String, Long> column : table.getValue().entrySet()) {
+          if (column.getValue() >= minLookups && !indexed.contains(column.getKey())) {
+            suggestions.add(new IndexSuggestion(table.getKey(), column.getKey(), column.getValue()));
+          }
+        }
+      }
+    } finally {
+      DataSourceUtils.releaseConnection(connection, dataSource);
+    }
+
+    return BY_LOOKUPS.reverse().sortedCopy(suggestions);
+  }
+
+  /**
+   * @param summaries The recorded statements
+   *
+   * @return The number of lookups against each column keyed by table then column (lower case)
+   */
+  Map<String, Map<String, Long>> countLookups(List<StatementSummary> summaries) {
+    Map<String, Map<String, Long>> lookups = Maps.newTreeMap();
+    for (StatementSummary summary : summaries) {
+      String sql = summary.getSql();
+      Matcher where = WHERE.matcher(sql);
+      if (!where.find()) {
+        continue;
+      }
+
+      Map<String, String> tables = Maps.newHashMap();
+      Matcher tableAlias = TABLE_ALIAS.matcher(sql);
+      while (tableAlias.find()) {
+        tables.put(tableAlias.group(2).toLowerCase(), tableAlias.group(1).toLowerCase());
+      }
+
+      Matcher lookup = LOOKUP.matcher(sql.substring(where.start()));
+      while (lookup.find()) {
+        String table = tables.get(lookup.group(1).toLowerCase());
+        if (table == null) {
+          continue;
+        }
+        String column = lookup.group(2).toLowerCase();
+        Map<String, Long> columns = lookups.get(table);
+        if (columns == null) {
+          columns = Maps.newTreeMap();
+          lookups.put(table, columns);
+        }
+        Long count = columns.get(column);
+        columns.put(column, (count == null ? 0 : count) + summary.getExecutions());
+      }
+    }
+    return lookups;
+  }
+
+  /**
+   * @param metaData The schema metadata
+   * @param table    The table name (lower case)
+   *
+   * @return The columns that an index (including the primary key) leads on (lower case)
+   */
+  private Set<String> leadingColumns(DatabaseMetaData metaData, String table) throws SQLException {
+    String name = metaData.storesUpperCaseIdentifiers() ? table.toUpperCase() : table;
+
+    Set<String> columns = Sets.newHashSet();
+    ResultSet indexInfo = metaData.getIndexInfo(null, null, name, false, true);
+    try {
+      while (indexInfo.next()) {
+        if (indexInfo.getShort("ORDINAL_POSITION") == 1 && indexInfo.getString("COLUMN_NAME") != null) {
+          columns.add(indexInfo.getString("COLUMN_NAME").toLowerCase());
+        }
+      }
+    } finally {
+      indexInfo.close();
+    }
+    ResultSet primaryKeys = metaData.getPrimaryKeys(null, null, name);
+    try {
+      while (primaryKeys.next()) {
+        if (primaryKeys.getShort("KEY_SEQ") == 1) {
+          columns.add(primaryKeys.getString("COLUMN_NAME").toLowerCase());
+        }
+      }
+    } finally {
+      primaryKeys.close();
+    }
+    return columns;
+  }
+
+}
@@ -0,0 +1,57 @@
+package org.multibit.mbm.client.infrastructure.persistence.diagnostics;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * <p>Value object to provide the following to the {@link IndexAdvisor}:</p>
+ * <ul>
+ * <li>A column used as a lookup predicate without an index leading on it</li>
+ * <li>The DDL that would add that index</li>
+ * </ul>
+ *
+ * @since 0.0.1
+ */
+public final class IndexSuggestion {
+
+  private final String table;
+  private final String column;
+  private final long lookups;
+
+  /**
+   * @param table   The table name (lower case)
+   * @param column  The column name (lower case)
+   * @param lookups The number of recorded executions filtering on the column
+   */
+  public IndexSuggestion(String table, String column, long lookups) {
+    Preconditions.checkNotNull(table, "table cannot be null");
+    Preconditions.checkNotNull(column, "column cannot be null");
+    this.table = table;
+    this.column = column;
+    this.lookups = lookups;
+  }
+
+  public String getTable() {
+    return table;
+  }
+
+  public String getColumn() {
+    return column;
+  }
+
+  public long getLookups() {
+    return lookups;
+  }
+
+  /**
+   * @return The DDL to create the index (follows the "idx_table_column" naming of the mapped indexes)
+   */
+  public String getDdl() {
+    return String.format("create index idx_%s_%s on %s (%s);", table, column, table, column);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s -- %d lookups", getDdl(), lookups);
+  }
+
+}
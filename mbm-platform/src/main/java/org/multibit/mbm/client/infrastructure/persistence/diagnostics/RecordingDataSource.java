@@ -0,0 +1,240 @@
+package org.multibit.mbm.client.infrastructure.persistence.diagnostics;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.SortedMap;
+
+/**
+ * <p>DataSource to provide the following to the application:</p>
+ * <ul>
+ * <li>Recording of every statement execution (SQL text, bind shape, row count and latency) into a
+ * {@link StatementRecorder}</li>
+ * </ul>
+ * <p>Sits beneath Hibernate so that everything issued through <code>hibernateTemplate</code>, the named queries
+ * and plain JDBC is seen. The latency of a query covers execution and fetching rows but not the time spent by the
+ * caller between rows (e.g. Hibernate hydrating entities).</p>
+ *
+ * @since 0.0.1
+ */
+public class RecordingDataSource extends DelegatingDataSource {
+
+  private final StatementRecorder statementRecorder;
+
+  /**
+   * @param targetDataSource  The data source providing the connections
+   * @param statementRecorder The recorder for the statement executions
+   */
+  public RecordingDataSource(DataSource targetDataSource, StatementRecorder statementRecorder) {
+    super(targetDataSource);
+    Preconditions.checkNotNull(statementRecorder, "statementRecorder cannot be null");
+    this.statementRecorder = statementRecorder;
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    return recording(super.getConnection());
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    return recording(super.getConnection(username, password));
+  }
+
+  public StatementRecorder getStatementRecorder() {
+    return statementRecorder;
+  }
+
+  private Connection recording(Connection connection) {
+    return (Connection) Proxy.newProxyInstance(
+      RecordingDataSource.class.getClassLoader(),
+      new Class<?>[]{Connection.class},
+      new ConnectionHandler(connection));
+  }
+
+  private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      throw e.getTargetException();
+    }
+  }
+
+  /**
+   * Wraps each statement created by the connection
+   */
+  private class ConnectionHandler implements InvocationHandler {
+
+    private final Connection target;
+
+    private ConnectionHandler(Connection target) {
+      this.target = target;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      String name = method.getName();
+      if ("equals".equals(name)) {
+        return proxy == args[0];
+      }
+      if ("hashCode".equals(name)) {
+        return System.identityHashCode(proxy);
+      }
+
+      Object result = RecordingDataSource.invoke(target, method, args);
+
+      if (result instanceof Statement
+        && ("createStatement".equals(name) || "prepareStatement".equals(name) || "prepareCall".equals(name))) {
+        String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+        return Proxy.newProxyInstance(
+          RecordingDataSource.class.getClassLoader(),
+          new Class<?>[]{method.getReturnType()},
+          new StatementHandler((Statement) result, sql));
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Tracks the bound parameters and times each execution
+   */
+  private class StatementHandler implements InvocationHandler {
+
+    private final Statement target;
+    private final String preparedSql;
+    private final SortedMap<Integer, String> binds = Maps.newTreeMap();
+    private String batchShape = null;
+    private int batchSize = 0;
+
+    private StatementHandler(Statement target, String preparedSql) {
+      this.target = target;
+      this.preparedSql = preparedSql;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      String name = method.getName();
+      if ("equals".equals(name)) {
+        return proxy == args[0];
+      }
+      if ("hashCode".equals(name)) {
+        return System.identityHashCode(proxy);
+      }
+
+      // PreparedStatement binding (e.g. setString(1, "abc")) as opposed to configuration (e.g. setFetchSize(10))
+      if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+        binds.put((Integer) args[0], name.substring(3).toLowerCase());
+        return RecordingDataSource.invoke(target, method, args);
+      }
+      if ("clearParameters".equals(name)) {
+        binds.clear();
+        return RecordingDataSource.invoke(target, method, args);
+      }
+      if ("addBatch".equals(name)) {
+        batchShape = bindShape();
+        batchSize++;
+        binds.clear();
+        return RecordingDataSource.invoke(target, method, args);
+      }
+      if (!name.startsWith("execute")) {
+        return RecordingDataSource.invoke(target, method, args);
+      }
+
+      String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : preparedSql;
+      String shape = "executeBatch".equals(name) ? batchShape + " x " + batchSize : bindShape();
+      long start = System.nanoTime();
+      Object result = RecordingDataSource.invoke(target, method, args);
+      long elapsed = System.nanoTime() - start;
+
+      if (result instanceof ResultSet) {
+        // Rows are only known once the caller has read them
+        return Proxy.newProxyInstance(
+          RecordingDataSource.class.getClassLoader(),
+          new Class<?>[]{ResultSet.class},
+          new ResultSetHandler((ResultSet) result, sql, shape, elapsed));
+      }
+
+      long rows = -1;
+      if (result instanceof Integer) {
+        rows = (Integer) result;
+      } else if (result instanceof int[]) {
+        rows = 0;
+        for (int count : (int[]) result) {
+          rows += Math.max(count, 0);
+        }
+        batchShape = null;
+        batchSize = 0;
+      }
+      record(sql, shape, rows, elapsed);
+      return result;
+    }
+
+    private String bindShape() {
+      return "(" + Joiner.on(",").join(binds.values()) + ")";
+    }
+  }
+
+  /**
+   * Counts the rows read and records the execution when the result set is closed
+   */
+  private class ResultSetHandler implements InvocationHandler {
+
+    private final ResultSet target;
+    private final String sql;
+    private final String bindShape;
+    private long elapsed;
+    private long rows = 0;
+    private boolean recorded = false;
+
+    private ResultSetHandler(ResultSet target, String sql, String bindShape, long elapsed) {
+      this.target = target;
+      this.sql = sql;
+      this.bindShape = bindShape;
+      this.elapsed = elapsed;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      String name = method.getName();
+      if ("equals".equals(name)) {
+        return proxy == args[0];
+      }
+      if ("hashCode".equals(name)) {
+        return System.identityHashCode(proxy);
+      }
+
+      if ("next".equals(name)) {
+        long start = System.nanoTime();
+        Object result = RecordingDataSource.invoke(target, method, args);
+        elapsed += System.nanoTime() - start;
+        if (Boolean.TRUE.equals(result)) {
+          rows++;
+        }
+        return result;
+      }
+      if ("close".equals(name) && !recorded) {
+        recorded = true;
+        record(sql, bindShape, rows, elapsed);
+      }
+      return RecordingDataSource.invoke(target, method, args);
+    }
+  }
+
+  private void record(String sql, String bindShape, long rows, long elapsed) {
+    if (sql != null) {
+      statementRecorder.record(new StatementSample(sql, bindShape, rows, elapsed, System.currentTimeMillis()));
+    }
+  }
+
+}
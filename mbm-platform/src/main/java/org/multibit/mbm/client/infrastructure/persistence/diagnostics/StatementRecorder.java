@@ -0,0 +1,157 @@
+package org.multibit.mbm.client.infrastructure.persistence.diagnostics;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
+import com.google.common.primitives.Doubles;
+import com.google.common.primitives.Longs;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>Recorder to provide the following to the {@link RecordingDataSource}:</p>
+ * <ul>
+ * <li>A bounded ring buffer of the most recent statement executions (older samples are overwritten)</li>
+ * <li>The top-N slowest and most frequent statements within the buffer</li>
+ * <li>A warning in the log for any single execution over the slow threshold</li>
+ * </ul>
+ * <p>Recording is a single atomic increment and array write so it is cheap enough to leave on in production.</p>
+ *
+ * @since 0.0.1
+ */
+public class StatementRecorder {
+
+  private static final Logger log = LoggerFactory.getLogger(StatementRecorder.class);
+
+  public static final int DEFAULT_CAPACITY = 1000;
+
+  private static final Ordering<StatementSummary> BY_MEAN = new Ordering<StatementSummary>() {
+    @Override
+    public int compare(StatementSummary left, StatementSummary right) {
+      return Doubles.compare(left.getMeanMillis(), right.getMeanMillis());
+    }
+  };
+
+  private static final Ordering<StatementSummary> BY_EXECUTIONS = new Ordering<StatementSummary>() {
+    @Override
+    public int compare(StatementSummary left, StatementSummary right) {
+      return Longs.compare(left.getExecutions(), right.getExecutions());
+    }
+  };
+
+  private final AtomicReferenceArray<StatementSample> samples;
+
+  private final AtomicLong recorded = new AtomicLong();
+
+  private final long slowThresholdNanos;
+
+  public StatementRecorder() {
+    this(DEFAULT_CAPACITY, 250);
+  }
+
+  /**
+   * @param capacity            The number of samples held
+   * @param slowThresholdMillis The execution time above which a statement is logged as slow
+   */
+  public StatementRecorder(int capacity, long slowThresholdMillis) {
+    Preconditions.checkState(capacity > 0, "'capacity' must be greater than zero");
+    Preconditions.checkState(slowThresholdMillis >= 0, "'slowThresholdMillis' must not be negative");
+    this.samples = new AtomicReferenceArray<StatementSample>(capacity);
+    this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis);
+  }
+
+  /**
+   * @param sample The statement execution
+   */
+  public void record(StatementSample sample) {
+    int slot = (int) (recorded.getAndIncrement() % samples.length());
+    samples.set(slot, sample);
+
+    if (sample.getElapsedNanos() > slowThresholdNanos) {
+      log.warn("Slow statement ({}ms, {} rows): {}", new Object[]{
+        TimeUnit.NANOSECONDS.toMillis(sample.getElapsedNanos()),
+        sample.getRows(),
+        sample.getSql()});
+    }
+  }
+
+  /**
+   * @return The samples currently held (in no particular order)
+   */
+  public List<StatementSample> getSamples() {
+    List<StatementSample> snapshot = Lists.newArrayListWithCapacity(samples.length());
+    for (int i = 0; i < samples.length(); i++) {
+      StatementSample sample = samples.get(i);
+      if (sample != null) {
+        snapshot.add(sample);
+      }
+    }
+    return snapshot;
+  }
+
+  /**
+   * @return A summary of each distinct statement currently held
+   */
+  public List<StatementSummary> summarise() {
+    Map<String, StatementSummary> summaries = Maps.newHashMap();
+    for (StatementSample sample : getSamples()) {
+      StatementSummary summary = summaries.get(sample.getSql());
+      if (summary == null) {
+        summary = new StatementSummary(sample.getSql());
+        summaries.put(sample.getSql(), summary);
+      }
+      summary.add(sample);
+    }
+    return Lists.newArrayList(summaries.values());
+  }
+
+  /**
+   * @param limit The maximum number of statements
+   *
+   * @return The statements with the highest mean execution time (slowest first)
+   */
+  public List<StatementSummary> getSlowest(int limit) {
+    return BY_MEAN.greatestOf(summarise(), limit);
+  }
+
+  /**
+   * @param limit The maximum number of statements
+   *
+   * @return The statements executed most often (most frequent first)
+   */
+  public List<StatementSummary> getMostFrequent(int limit) {
+    return BY_EXECUTIONS.greatestOf(summarise(), limit);
+  }
+
+  /**
+   * @return The number of executions recorded since startup or the last clear (including those overwritten)
+   */
+  public long getRecordedCount() {
+    return recorded.get();
+  }
+
+  /**
+   * @return The number of samples the ring buffer can hold
+   */
+  public int getCapacity() {
+    return samples.length();
+  }
+
+  /**
+   * Discard all held samples and reset the execution count (normally only used in test code)
+   */
+  public void clear() {
+    recorded.set(0);
+    for (int i = 0; i < samples.length(); i++) {
+      samples.set(i, null);
+    }
+  }
+
+}
@@ -0,0 +1,64 @@
+package org.multibit.mbm.client.infrastructure.persistence.diagnostics;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * <p>Value object to provide the following to the {@link StatementRecorder}:</p>
+ * <ul>
+ * <li>A single execution of a JDBC statement</li>
+ * </ul>
+ * <p>Only the parameterised SQL and the types of the bound values are held so that no customer data is kept.</p>
+ *
+ * @since 0.0.1
+ */
+public final class StatementSample {
+
+  private final String sql;
+  private final String bindShape;
+  private final long rows;
+  private final long elapsedNanos;
+  private final long recordedAt;
+
+  /**
+   * @param sql          The SQL text as prepared
+   * @param bindShape    The types of the bound parameters in order (e.g. "(string,long)")
+   * @param rows         The rows read or written (-1 if not known)
+   * @param elapsedNanos The time spent in the driver
+   * @param recordedAt   The time of recording in milliseconds since the epoch
+   */
+  public StatementSample(String sql, String bindShape, long rows, long elapsedNanos, long recordedAt) {
+    Preconditions.checkNotNull(sql, "sql cannot be null");
+    Preconditions.checkNotNull(bindShape, "bindShape cannot be null");
+    this.sql = sql;
+    this.bindShape = bindShape;
+    this.rows = rows;
+    this.elapsedNanos = elapsedNanos;
+    this.recordedAt = recordedAt;
+  }
+
+  public String getSql() {
+    return sql;
+  }
+
+  public String getBindShape() {
+    return bindShape;
+  }
+
+  public long getRows() {
+    return rows;
+  }
+
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  public long getRecordedAt() {
+    return recordedAt;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("StatementSample[sql=%s, bindShape=%s, rows=%s, elapsedNanos=%s]", sql, bindShape, rows, elapsedNanos);
+  }
+
+}
@@ -0,0 +1,77 @@
+package org.multibit.mbm.client.infrastructure.persistence.diagnostics;
+
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Sets;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Aggregate to provide the following to the {@link StatementRecorder}:</p>
+ * <ul>
+ * <li>Totals for every sample of the same SQL text currently held in the ring buffer</li>
+ * </ul>
+ *
+ * @since 0.0.1
+ */
+public final class StatementSummary {
+
+  private final String sql;
+  private final Set<String> bindShapes = Sets.newHashSet();
+  private long executions = 0;
+  private long totalRows = 0;
+  private long totalNanos = 0;
+  private long maxNanos = 0;
+
+  StatementSummary(String sql) {
+    this.sql = sql;
+  }
+
+  void add(StatementSample sample) {
+    bindShapes.add(sample.getBindShape());
+    executions++;
+    if (sample.getRows() > 0) {
+      totalRows += sample.getRows();
+    }
+    totalNanos += sample.getElapsedNanos();
+    maxNanos = Math.max(maxNanos, sample.getElapsedNanos());
+  }
+
+  public String getSql() {
+    return sql;
+  }
+
+  /**
+   * @return The distinct parameter types seen (more than one suggests a type mismatch defeating an index)
+   */
+  public Set<String> getBindShapes() {
+    return ImmutableSortedSet.copyOf(bindShapes);
+  }
+
+  public long getExecutions() {
+    return executions;
+  }
+
+  public long getTotalRows() {
+    return totalRows;
+  }
+
+  public double getMeanMillis() {
+    return executions == 0 ? 0 : (double) totalNanos / executions / TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  public double getMaxMillis() {
+    return (double) maxNanos / TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  public double getTotalMillis() {
+    return (double) totalNanos / TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%6d x %9.3fms mean %9.3fms max %8d rows %s %s",
+      executions, getMeanMillis(), getMaxMillis(), totalRows, getBindShapes(), sql.replaceAll("\\s+", " "));
+  }
+
+}
@@ -3,36 +3,51 @@ package org.multibit.mbm.client.infrastructure.persistence.hibernate;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.hibernate.HibernateException;
 import org.hibernate.Query;
 import org.hibernate.Session;
-import org.hibernate.criterion.Projections;
+import org.multibit.mbm.client.common.Identifiable;
+import org.multibit.mbm.client.common.pagination.ContinuationToken;
 import org.multibit.mbm.client.common.pagination.PaginatedList;
 import org.multibit.mbm.client.common.pagination.PaginatedLists;
 import org.multibit.mbm.client.domain.model.model.Item;
 import org.multibit.mbm.client.domain.repositories.common.EntityReadService;
+import org.multibit.mbm.client.infrastructure.persistence.hibernate.counters.EntityCounterReconciler;
+import org.multibit.mbm.client.infrastructure.persistence.hibernate.queries.NamedQueryRegistry;
 import org.springframework.orm.hibernate3.HibernateCallback;
 import org.springframework.orm.hibernate3.HibernateTemplate;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Resource;
 import java.sql.SQLException;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * <p>Base class to provide the following to Hibernate DAOs:</p>
  * <ul>
  * <li>Provision of useful utility methods</li>
+ * <li>Read-only transactions by default so that lookups can be served by a replica (writes must be
+ * annotated as read-write to reach the primary)</li>
  * </ul>
  *
  * @since 0.0.1
  *         
  */
+@Transactional(readOnly = true)
 public abstract class BaseHibernateReadService<T> implements EntityReadService<T> {
 
   @Resource(name = "hibernateTemplate")
   protected HibernateTemplate hibernateTemplate = null;
 
+  @Resource(name = "entityCounterReconciler")
+  protected EntityCounterReconciler entityCounterReconciler = null;
+
+  @Resource(name = "namedQueryRegistry")
+  protected NamedQueryRegistry namedQueryRegistry = null;
+
   /**
    * @param collection The collection to check
    *
@@ -60,21 +75,28 @@ public abstract class BaseHibernateReadService<T> implements EntityReadService<T
   /**
    * @param clazz The class for the criteria
    *
-   * @return The number of rows in the table
+   * @return The number of rows in the table (maintained rather than counted on each call)
    */
   protected Number rowCount(final Class<T> clazz) {
-    Number rowCount = (Number) hibernateTemplate.execute(new HibernateCallback() {
-      public Object doInHibernate(Session session) throws HibernateException, SQLException {
-        return session
-          .createCriteria(clazz)
-          .setProjection(Projections.rowCount())
-          .uniqueResult();
-      }
-    });
+    return entityCounterReconciler.rowCount(clazz);
+  }
 
-    Preconditions.checkNotNull(rowCount, "rowCount cannot be null");
+  /**
+   * @param clazz The class for the criteria (must support soft deletion)
+   *
+   * @return The number of rows in the table that are not flagged as deleted (maintained rather than counted on each call)
+   */
+  protected Number liveRowCount(final Class<T> clazz) {
+    return entityCounterReconciler.liveRowCount(clazz);
+  }
 
-    return rowCount;
+  /**
+   * @param clazz The class for the criteria
+   *
+   * @return The number of rows the list queries can return (soft deleted rows are excluded where supported)
+   */
+  protected Number listedRowCount(final Class<T> clazz) {
+    return entityCounterReconciler.isSoftDeletable(clazz) ? liveRowCount(clazz) : rowCount(clazz);
   }
 
   /**
@@ -103,39 +125,298 @@ public abstract class BaseHibernateReadService<T> implements EntityReadService<T
     return Optional.absent();
   }
 
+  /**
+   * Performs an ID lookup using a fetch profile to load the required graph, initializes and wraps in an Optional
+   *
+   * @param clazz        The target class
+   * @param id           The primary ID
+   * @param fetchProfile The fetch profile describing the view (e.g. {@link Item#CATALOGUE_VIEW})
+   *
+   * @return An optional and an initialized entity if present
+   */
+  @SuppressWarnings("unchecked")
+  public Optional<T> getById(final Class<T> clazz, final Long id, final String fetchProfile) {
+    T entity = (T) hibernateTemplate.execute(new HibernateCallback() {
+      public Object doInHibernate(Session session) throws HibernateException, SQLException {
+        session.enableFetchProfile(fetchProfile);
+        try {
+          return session.get(clazz, id);
+        } finally {
+          session.disableFetchProfile(fetchProfile);
+        }
+      }
+    });
+    // Initialize the entry
+    if (entity != null) {
+      return Optional.of(initialized(entity));
+    }
+    return Optional.absent();
+  }
+
+  /**
+   * Equivalent to {@link HibernateTemplate#findByNamedQuery(String, Object...)} but timed by the {@link NamedQueryRegistry}
+   *
+   * @param queryName The named query with positional parameters
+   * @param values    The positional parameter values
+   *
+   * @return The matching entities
+   */
+  protected List findNamed(final String queryName, final Object... values) {
+    return hibernateTemplate.executeFind(new HibernateCallback() {
+      public Object doInHibernate(Session session) throws HibernateException, SQLException {
+        Query query = namedQueryRegistry.getNamedQuery(session, queryName);
+        for (int i = 0; i < values.length; i++) {
+          query.setParameter(i, values[i]);
+        }
+        return namedQueryRegistry.list(queryName, query);
+      }
+    });
+  }
+
+  /**
+   * As {@link #findNamed(String, Object...)} but with the results held in a query cache region
+   *
+   * @param queryRegion The query cache region (see {@link org.multibit.mbm.client.infrastructure.persistence.hibernate.cache.HibernateCacheRegions})
+   * @param queryName   The named query with positional parameters
+   * @param values      The positional parameter values
+   *
+   * @return The matching entities
+   */
+  protected List findCached(final String queryRegion, final String queryName, final Object... values) {
+    return hibernateTemplate.executeFind(new HibernateCallback() {
+      public Object doInHibernate(Session session) throws HibernateException, SQLException {
+        Query query = namedQueryRegistry
+          .getNamedQuery(session, queryName)
+          .setCacheable(true)
+          .setCacheRegion(queryRegion);
+        for (int i = 0; i < values.length; i++) {
+          query.setParameter(i, values[i]);
+        }
+        return namedQueryRegistry.list(queryName, query);
+      }
+    });
+  }
+
   public void setHibernateTemplate(HibernateTemplate hibernateTemplate) {
     this.hibernateTemplate = hibernateTemplate;
   }
 
+  public void setEntityCounterReconciler(EntityCounterReconciler entityCounterReconciler) {
+    this.entityCounterReconciler = entityCounterReconciler;
+  }
+
+  public void setNamedQueryRegistry(NamedQueryRegistry namedQueryRegistry) {
+    this.namedQueryRegistry = namedQueryRegistry;
+  }
+
   /**
    * @param pageSize   The page size
    * @param pageNumber The page number
-   * @param clazz      The class to which this will apply
+   * @param clazz      The class to which this will apply (must declare {@link NamedQueryRegistry#ALL})
    *
    * @return The paginated list
    */
   protected PaginatedList<T> buildPaginatedList(final int pageSize, final int pageNumber, final Class<T> clazz) {
 
-    Number total = rowCount(clazz);
+    // Maintained counters can drift between reconciliations so the total is only an estimate
+    Number total = listedRowCount(clazz);
 
     if (total == null) {
-      return PaginatedLists.newPaginatedArrayList(0, 0, Lists.<T>newArrayList());
+      return PaginatedLists.newCountedPaginatedArrayList(pageNumber, pageSize, 0L, false, Lists.<T>newArrayList());
     }
 
-    int totalPages = (int) Math.ceil(total.doubleValue() / pageSize);
+    final String queryName = NamedQueryRegistry.queryName(clazz, NamedQueryRegistry.ALL);
 
     @SuppressWarnings("unchecked")
     List<T> list = (List<T>) hibernateTemplate.executeFind(new HibernateCallback() {
       public Object doInHibernate(Session session) throws HibernateException, SQLException {
-        Query query = session
-          .createQuery("from " + clazz.getSimpleName())
+        Query query = namedQueryRegistry
+          .getNamedQuery(session, queryName)
           .setMaxResults(pageSize)
           .setFirstResult(pageSize * (pageNumber - 1)); // Apply 0-based index
-        return query.list();
+        return namedQueryRegistry.list(queryName, query);
       }
     });
 
-    return PaginatedLists.newPaginatedArrayList(pageNumber, totalPages, list);
+    return PaginatedLists.newCountedPaginatedArrayList(pageNumber, pageSize, total.longValue(), false, list);
+  }
+
+  /**
+   * <p>Seek directly to the page following the continuation token using the primary key index so that
+   * the cost is the same for every page and no row count is required</p>
+   *
+   * @param pageSize          The page size
+   * @param continuationToken The token from the previous page (absent for the first page)
+   * @param clazz             The class to which this will apply (must declare {@link NamedQueryRegistry#AFTER})
+   *
+   * @return The paginated list with a continuation token if further entries are available
+   */
+  protected PaginatedList<T> buildKeysetPaginatedList(final int pageSize, final Optional<ContinuationToken> continuationToken, final Class<T> clazz) {
+
+    Preconditions.checkState(pageSize > 0, "pageSize is 1-based and must be positive");
+    Preconditions.checkNotNull(continuationToken, "continuationToken must be present or absent");
+
+    final long lastId = continuationToken.isPresent() ? continuationToken.get().getLastId() : 0L;
+
+    final String queryName = NamedQueryRegistry.queryName(clazz, NamedQueryRegistry.AFTER);
+
+    @SuppressWarnings("unchecked")
+    List<T> list = (List<T>) hibernateTemplate.executeFind(new HibernateCallback() {
+      public Object doInHibernate(Session session) throws HibernateException, SQLException {
+        Query query = namedQueryRegistry
+          .getNamedQuery(session, queryName)
+          .setLong(0, lastId)
+          .setMaxResults(pageSize + 1); // Look ahead by one to detect a following page
+        return namedQueryRegistry.list(queryName, query);
+      }
+    });
+
+    Optional<ContinuationToken> nextToken = nextToken(list, pageSize, continuationToken);
+
+    return PaginatedLists.newKeysetPaginatedArrayList(pageSize, continuationToken, nextToken, list);
+  }
+
+  /**
+   * <p>Two-phase paging (phase 1): page over distinct primary keys so that the limit is applied in SQL
+   * and is not distorted by any rows introduced by joins</p>
+   *
+   * @param idQueryName The named query selecting distinct primary keys in page order (positional parameters)
+   * @param firstResult The 0-based index of the first result
+   * @param maxResults  The maximum number of results
+   * @param values      The positional parameter values
+   *
+   * @return The primary keys in page order
+   */
+  @SuppressWarnings("unchecked")
+  protected List<Long> findIds(final String idQueryName, final int firstResult, final int maxResults, final Object... values) {
+    return (List<Long>) hibernateTemplate.executeFind(new HibernateCallback() {
+      public Object doInHibernate(Session session) throws HibernateException, SQLException {
+        Query query = namedQueryRegistry
+          .getNamedQuery(session, idQueryName)
+          .setFirstResult(firstResult)
+          .setMaxResults(maxResults);
+        for (int i = 0; i < values.length; i++) {
+          query.setParameter(i, values[i]);
+        }
+        return namedQueryRegistry.list(idQueryName, query);
+      }
+    });
+  }
+
+  /**
+   * <p>Two-phase paging (phase 2): load the entities with their collections in a single fetch</p>
+   *
+   * @param hydrateQueryName The named query with fetch joins restricted by <code>in (:ids)</code>
+   * @param ids              The primary keys in page order
+   *
+   * @return The entities in page order
+   */
+  @SuppressWarnings("unchecked")
+  protected List<T> hydrate(final String hydrateQueryName, final List<Long> ids) {
+
+    if (ids.isEmpty()) {
+      return Lists.newArrayList();
+    }
+
+    List<T> entities = (List<T>) hibernateTemplate.executeFind(new HibernateCallback() {
+      public Object doInHibernate(Session session) throws HibernateException, SQLException {
+        Query query = namedQueryRegistry
+          .getNamedQuery(session, hydrateQueryName)
+          .setParameterList("ids", ids);
+        return namedQueryRegistry.list(hydrateQueryName, query);
+      }
+    });
+
+    // Restore the page order (the ids may be ranked rather than ascending)
+    Map<Long, T> entitiesById = Maps.newHashMap();
+    for (T entity : entities) {
+      entitiesById.put(((Identifiable) entity).getId(), entity);
+    }
+    List<T> page = Lists.newArrayListWithCapacity(ids.size());
+    for (Long id : ids) {
+      T entity = entitiesById.get(id);
+      if (entity != null) {
+        page.add(entity);
+      }
+    }
+    return page;
+  }
+
+  /**
+   * <p>Offset pagination using two phases (see {@link #findIds} and {@link #hydrate})</p>
+   *
+   * @param pageSize         The page size
+   * @param pageNumber       The page number
+   * @param clazz            The class to which this will apply (must declare {@link NamedQueryRegistry#IDS})
+   * @param hydrateQueryName The named query with fetch joins restricted by <code>in (:ids)</code>
+   *
+   * @return The paginated list
+   */
+  protected PaginatedList<T> buildTwoPhasePaginatedList(final int pageSize, final int pageNumber, final Class<T> clazz, final String hydrateQueryName) {
+
+    Preconditions.checkState(pageSize > 0, "pageSize is 1-based and must be positive");
+    Preconditions.checkState(pageNumber > 0, "pageNumber is 1-based and must be positive");
+
+    Number total = listedRowCount(clazz);
+
+    List<Long> ids = findIds(
+      NamedQueryRegistry.queryName(clazz, NamedQueryRegistry.IDS),
+      pageSize * (pageNumber - 1), // Apply 0-based index
+      pageSize);
+
+    return PaginatedLists.newCountedPaginatedArrayList(pageNumber, pageSize, total == null ? 0L : total.longValue(), false, hydrate(hydrateQueryName, ids));
+  }
+
+  /**
+   * <p>Keyset pagination using two phases (see {@link #findIds} and {@link #hydrate})</p>
+   *
+   * @param pageSize          The page size
+   * @param continuationToken The token from the previous page (absent for the first page)
+   * @param clazz             The class to which this will apply (must declare {@link NamedQueryRegistry#IDS_AFTER})
+   * @param hydrateQueryName  The named query with fetch joins restricted by <code>in (:ids)</code>
+   *
+   * @return The paginated list with a continuation token if further entries are available
+   */
+  protected PaginatedList<T> buildTwoPhaseKeysetPaginatedList(final int pageSize, final Optional<ContinuationToken> continuationToken, final Class<T> clazz, final String hydrateQueryName) {
+
+    Preconditions.checkState(pageSize > 0, "pageSize is 1-based and must be positive");
+    Preconditions.checkNotNull(continuationToken, "continuationToken must be present or absent");
+
+    long lastId = continuationToken.isPresent() ? continuationToken.get().getLastId() : 0L;
+
+    List<Long> ids = findIds(
+      NamedQueryRegistry.queryName(clazz, NamedQueryRegistry.IDS_AFTER),
+      0,
+      pageSize + 1, // Look ahead by one to detect a following page
+      lastId);
+
+    Optional<ContinuationToken> nextToken = nextToken(ids, pageSize, continuationToken);
+
+    return PaginatedLists.newKeysetPaginatedArrayList(pageSize, continuationToken, nextToken, hydrate(hydrateQueryName, ids));
+  }
+
+  /**
+   * <p>Keyset paging: trim the results of a look-ahead by one to the page and provide the token for the
+   * following page</p>
+   *
+   * @param results           The primary keys or entities in page order (up to one more than the page size)
+   * @param pageSize          The page size
+   * @param continuationToken The token for this page (absent for the first page)
+   *
+   * @return The token for the following page (absent if this is the last page)
+   */
+  protected Optional<ContinuationToken> nextToken(List<?> results, int pageSize, Optional<ContinuationToken> continuationToken) {
+
+    if (results.size() <= pageSize) {
+      return Optional.absent();
+    }
+    results.subList(pageSize, results.size()).clear();
+
+    Object last = results.get(pageSize - 1);
+    long lastId = last instanceof Identifiable ? ((Identifiable) last).getId() : (Long) last;
+    int nextPageNumber = continuationToken.isPresent() ? continuationToken.get().getPageNumber() + 1 : 2;
+
+    return Optional.of(new ContinuationToken(nextPageNumber, lastId));
   }
 
   @Override
@@ -0,0 +1,156 @@
+package org.multibit.mbm.client.infrastructure.persistence.hibernate;
+
+import com.google.common.base.Preconditions;
+import org.hibernate.CacheMode;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.multibit.mbm.client.domain.repositories.common.EntityWriteService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.orm.hibernate3.HibernateCallback;
+import org.springframework.orm.hibernate3.HibernateTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.Resource;
+import java.sql.SQLException;
+import java.util.Iterator;
+
+/**
+ * <p>Base class to provide the following to Hibernate write services:</p>
+ * <ul>
+ * <li>Batched bulk writes with periodic flush and clear to keep the persistence context small</li>
+ * <li>Periodic commits so that a large import does not become a single long running transaction</li>
+ * </ul>
+ * <p>JDBC batching is configured through <code>hibernate.jdbc.batch_size</code> and requires entities to use a
+ * sequence (not identity) based ID generator.</p>
+ *
+ * @since 0.0.1
+ */
+public abstract class BaseHibernateWriteService<T> implements EntityWriteService<T> {
+
+  private static final Logger log = LoggerFactory.getLogger(BaseHibernateWriteService.class);
+
+  /**
+   * Used if <code>hibernate.jdbc.batch_size</code> has not been configured
+   */
+  private static final int DEFAULT_BATCH_SIZE = 50;
+
+  /**
+   * The number of JDBC batches written in each transaction
+   */
+  private static final int DEFAULT_BATCHES_PER_COMMIT = 20;
+
+  @Resource(name = "hibernateTemplate")
+  protected HibernateTemplate hibernateTemplate = null;
+
+  @Resource(name = "transactionManager")
+  protected PlatformTransactionManager transactionManager = null;
+
+  private int batchSize = 0;
+
+  private int batchesPerCommit = DEFAULT_BATCHES_PER_COMMIT;
+
+  @Override
+  public int saveAll(Iterable<T> entities) {
+    Preconditions.checkNotNull(entities, "entities cannot be null");
+
+    final int batchSize = getBatchSize();
+    final int commitSize = batchSize * batchesPerCommit;
+    final Iterator<T> iterator = entities.iterator();
+
+    TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+    int total = 0;
+    while (iterator.hasNext()) {
+      Integer written = (Integer) transactionTemplate.execute(new TransactionCallback() {
+        public Object doInTransaction(TransactionStatus status) {
+          return hibernateTemplate.execute(new HibernateCallback() {
+            public Object doInHibernate(Session session) throws HibernateException, SQLException {
+              return saveChunk(session, iterator, batchSize, commitSize);
+            }
+          });
+        }
+      });
+      total += written;
+      log.debug("Bulk write of {} entities committed ({} in total)", written, total);
+    }
+
+    return total;
+  }
+
+  /**
+   * Called within the session after each entity is saved (before the chunk is flushed and committed)
+   *
+   * @param entity The entity that has been saved (a primary key will have been assigned)
+   */
+  protected void afterSave(T entity) {
+    // Do nothing by default
+  }
+
+  /**
+   * @param session    The current session
+   * @param iterator   The source of entities
+   * @param batchSize  The number of entities to write before a flush and clear
+   * @param commitSize The maximum number of entities to write in this transaction
+   *
+   * @return The number of entities written
+   */
+  private int saveChunk(Session session, Iterator<T> iterator, int batchSize, int commitSize) {
+
+    // Bulk writes would only churn the second-level cache
+    CacheMode originalCacheMode = session.getCacheMode();
+    session.setCacheMode(CacheMode.IGNORE);
+    try {
+      int count = 0;
+      while (iterator.hasNext() && count < commitSize) {
+        T entity = iterator.next();
+        session.saveOrUpdate(entity);
+        afterSave(entity);
+        count++;
+        if (count % batchSize == 0) {
+          // Send the JDBC batch and release the memory held by the persistence context
+          session.flush();
+          session.clear();
+        }
+      }
+      session.flush();
+      session.clear();
+      return count;
+    } finally {
+      session.setCacheMode(originalCacheMode);
+    }
+  }
+
+  /**
+   * @return The number of entities written before a flush and clear (matches the JDBC batch size by default)
+   */
+  public int getBatchSize() {
+    if (batchSize > 0) {
+      return batchSize;
+    }
+    int jdbcBatchSize = ((SessionFactoryImplementor) hibernateTemplate.getSessionFactory()).getSettings().getJdbcBatchSize();
+    return jdbcBatchSize > 0 ? jdbcBatchSize : DEFAULT_BATCH_SIZE;
+  }
+
+  public void setBatchSize(int batchSize) {
+    Preconditions.checkState(batchSize > 0, "'batchSize' must be greater than zero");
+    this.batchSize = batchSize;
+  }
+
+  public void setBatchesPerCommit(int batchesPerCommit) {
+    Preconditions.checkState(batchesPerCommit > 0, "'batchesPerCommit' must be greater than zero");
+    this.batchesPerCommit = batchesPerCommit;
+  }
+
+  public void setHibernateTemplate(HibernateTemplate hibernateTemplate) {
+    this.hibernateTemplate = hibernateTemplate;
+  }
+
+  public void setTransactionManager(PlatformTransactionManager transactionManager) {
+    this.transactionManager = transactionManager;
+  }
+}
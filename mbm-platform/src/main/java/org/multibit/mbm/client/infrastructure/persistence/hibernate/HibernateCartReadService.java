@@ -2,23 +2,45 @@ package org.multibit.mbm.client.infrastructure.persistence.hibernate;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import org.hibernate.HibernateException;
+import org.hibernate.LockMode;
+import org.hibernate.Query;
+import org.hibernate.Session;
+import org.hibernate.engine.EntityEntry;
+import org.hibernate.engine.SessionImplementor;
+import org.multibit.mbm.client.common.pagination.ContinuationToken;
 import org.multibit.mbm.client.common.pagination.PaginatedList;
 import org.multibit.mbm.client.domain.repositories.CartReadService;
 import org.multibit.mbm.client.domain.model.model.Cart;
 import org.multibit.mbm.client.domain.model.model.CartBuilder;
 import org.multibit.mbm.client.domain.model.model.Customer;
+import org.multibit.mbm.client.domain.model.model.Item;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.orm.hibernate3.HibernateCallback;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.SQLException;
+import java.util.List;
 
 @Repository("hibernateCartDao")
 public class HibernateCartReadService extends BaseHibernateReadService<Cart> implements CartReadService {
 
+  private static final String BY_ITEM_QUERY = "Cart.byItem";
+
+  private static final String UPDATE_VERSION_QUERY = "Cart.updateVersion";
+
+  private static final String WITH_LINES_QUERY = "Cart.withLines";
+
   @SuppressWarnings("unchecked")
   @Override
   public Optional<Cart> getById(Long id) {
-    return getById(Cart.class, id);
+    return getById(Cart.class, id, Cart.CART_VIEW);
   }
 
   @Override
+  @Transactional
   public Optional<Cart> getInitialisedCartByCustomer(Customer customer) {
     Preconditions.checkNotNull(customer, "customer cannot be null");
 
@@ -44,19 +66,107 @@ public class HibernateCartReadService extends BaseHibernateReadService<Cart> imp
 
   @SuppressWarnings("unchecked")
   public PaginatedList<Cart> getPaginatedList(final int pageSize, final int pageNumber) {
-    return buildPaginatedList(pageSize, pageNumber, Cart.class);
+    // Each Cart is presented with its lines
+    return buildTwoPhasePaginatedList(pageSize, pageNumber, Cart.class, WITH_LINES_QUERY);
+  }
+
+  @Override
+  public PaginatedList<Cart> getPaginatedListAfter(int pageSize, Optional<ContinuationToken> continuationToken) {
+    return buildTwoPhaseKeysetPaginatedList(pageSize, continuationToken, Cart.class, WITH_LINES_QUERY);
   }
 
   @Override
-  public Cart saveOrUpdate(Cart cart) {
+  @Transactional
+  public Cart saveOrUpdate(final Cart cart) {
     Preconditions.checkNotNull(cart, "cart cannot be null");
+    // Reattaching a detached Cart already issues a versioned update of the Cart row on flush
+    boolean managed = hibernateTemplate.contains(cart);
     hibernateTemplate.saveOrUpdate(cart);
+    if (managed) {
+      // Changing a quantity only dirties the CartItem so force a versioned update of the Cart row at commit (a
+      // compare-and-set that takes no row lock) to detect a concurrent writer
+      forceVersionIncrement(cart);
+    }
+    return cart;
+  }
+
+  @Override
+  @Transactional
+  public Cart saveOrUpdate(final Cart cart, final long version) {
+    Preconditions.checkNotNull(cart, "cart cannot be null");
+    Preconditions.checkNotNull(cart.getId(), "cart must be persistent");
+    Preconditions.checkArgument(version > cart.getVersion(), "version must be ahead of the version read");
+
+    if (!hibernateTemplate.contains(cart)) {
+      // Reattaching issues a versioned update of the Cart row on flush
+      hibernateTemplate.update(cart);
+    }
+    hibernateTemplate.flush();
+    int updated = (Integer) hibernateTemplate.execute(new HibernateCallback() {
+      public Object doInHibernate(Session session) throws HibernateException, SQLException {
+        // A compare-and-set of the version so that a concurrent writer is detected
+        Query query = namedQueryRegistry.getNamedQuery(session, UPDATE_VERSION_QUERY)
+          .setParameter(0, version)
+          .setParameter(1, cart.getId())
+          .setParameter(2, cart.getVersion());
+        int updated = namedQueryRegistry.executeUpdate(UPDATE_VERSION_QUERY, query);
+        if (updated > 0) {
+          // Record the version written in the session so that the Cart is not seen as stale (or changed) at commit
+          EntityEntry entry = ((SessionImplementor) session).getPersistenceContext().getEntry(cart);
+          Object[] loadedState = entry.getLoadedState();
+          loadedState[entry.getPersister().getVersionProperty()] = version;
+          entry.postUpdate(cart, loadedState, version);
+        }
+        return updated;
+      }
+    });
+    if (updated == 0) {
+      throw new ObjectOptimisticLockingFailureException(Cart.class, cart.getId());
+    }
     return cart;
   }
 
+  @SuppressWarnings("unchecked")
+  @Override
+  @Transactional
+  public List<Long> recalculateTotals(Item item) {
+    Preconditions.checkNotNull(item, "item cannot be null");
+    Preconditions.checkNotNull(item.getId(), "item must be persistent");
+
+    List<Long> ids = Lists.newArrayList();
+    if (!item.isPriceChanged()) {
+      return ids;
+    }
+    for (Cart cart : (List<Cart>) findNamed(BY_ITEM_QUERY, item.getId())) {
+      // The totals are excluded from versioning so increment the version explicitly, otherwise a Customer saving a
+      // Cart loaded before the price change would overwrite the new totals rather than conflict and retry
+      cart.recalculateTotals();
+      forceVersionIncrement(cart);
+      ids.add(cart.getId());
+    }
+    item.resetPriceChanged();
+    return ids;
+  }
+
+  /**
+   * @param cart A Cart associated with the current session
+   */
+  private void forceVersionIncrement(final Cart cart) {
+    hibernateTemplate.execute(new HibernateCallback() {
+      public Object doInHibernate(Session session) throws HibernateException, SQLException {
+        // Session.lock() ranks this mode below READ so it would be ignored for a loaded Cart
+        SessionImplementor sessionImplementor = (SessionImplementor) session;
+        EntityEntry entry = sessionImplementor.getPersistenceContext().getEntry(cart);
+        entry.getPersister().lock(entry.getId(), entry.getVersion(), cart, LockMode.OPTIMISTIC_FORCE_INCREMENT, sessionImplementor);
+        return null;
+      }
+    });
+  }
+
   /**
    * Force an immediate in-transaction flush (normally only used in test code)
    */
+  @Transactional
   public void flush() {
     hibernateTemplate.flush();
   }
@@ -1,26 +1,27 @@
 package org.multibit.mbm.client.infrastructure.persistence.hibernate;
 
 import com.google.common.base.Optional;
+import org.multibit.mbm.client.common.pagination.ContinuationToken;
 import org.multibit.mbm.client.common.pagination.PaginatedList;
 import org.multibit.mbm.client.domain.model.model.Item;
 import org.multibit.mbm.client.domain.repositories.CustomerReadService;
 import org.multibit.mbm.client.domain.model.model.Customer;
 import org.springframework.orm.hibernate3.HibernateTemplate;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.util.List;
 
 @Repository("hibernateCustomerDao")
 public class HibernateCustomerReadService extends BaseHibernateReadService<Customer> implements CustomerReadService {
 
   @Override
   public Optional<Customer> getCustomerByOpenId(String openId) {
-    List customers = hibernateTemplate.find("from Customer c where c.openId = ?", openId);
-
-    return first(customers);
+    // Customer has no OpenId property so this query could never be compiled
+    throw new IllegalStateException("Not yet supported");
   }
 
   @Override
+  @Transactional
   public Customer saveOrUpdate(Customer customer) {
     hibernateTemplate.saveOrUpdate(customer);
     return customer;
@@ -29,6 +30,7 @@ public class HibernateCustomerReadService extends BaseHibernateReadService<Custo
   /**
    * Force an immediate in-transaction flush (normally only used in test code)
    */
+  @Transactional
   public void flush() {
     hibernateTemplate.flush();
   }
@@ -53,6 +55,11 @@ public class HibernateCustomerReadService extends BaseHibernateReadService<Custo
     return buildPaginatedList(pageSize, pageNumber, Customer.class);
   }
 
+  @Override
+  public PaginatedList<Customer> getPaginatedListAfter(int pageSize, Optional<ContinuationToken> continuationToken) {
+    return buildKeysetPaginatedList(pageSize, continuationToken, Customer.class);
+  }
+
   @Override
   public PaginatedList<Item> getPaginatedListByExample(int pageSize, int pageNumber, Customer example) {
     throw new IllegalStateException("Not yet supported");
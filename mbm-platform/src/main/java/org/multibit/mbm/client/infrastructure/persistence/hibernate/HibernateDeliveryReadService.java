@@ -2,12 +2,14 @@ package org.multibit.mbm.client.infrastructure.persistence.hibernate;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import org.multibit.mbm.client.common.pagination.ContinuationToken;
 import org.multibit.mbm.client.common.pagination.PaginatedList;
 import org.multibit.mbm.client.domain.model.model.Delivery;
 import org.multibit.mbm.client.domain.model.model.DeliveryBuilder;
 import org.multibit.mbm.client.domain.model.model.Supplier;
 import org.multibit.mbm.client.domain.repositories.DeliveryReadService;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 @Repository("hibernateDeliveryDao")
 public class HibernateDeliveryReadService extends BaseHibernateReadService<Delivery> implements DeliveryReadService {
@@ -19,6 +21,7 @@ public class HibernateDeliveryReadService extends BaseHibernateReadService<Deliv
   }
 
   @Override
+  @Transactional
   public Optional<Delivery> getInitialisedDeliveryBySupplier(Supplier supplier) {
     Preconditions.checkNotNull(supplier, "supplier cannot be null");
 
@@ -61,6 +64,12 @@ public class HibernateDeliveryReadService extends BaseHibernateReadService<Deliv
   }
 
   @Override
+  public PaginatedList<Delivery> getPaginatedListAfter(int pageSize, Optional<ContinuationToken> continuationToken) {
+    return buildKeysetPaginatedList(pageSize, continuationToken, Delivery.class);
+  }
+
+  @Override
+  @Transactional
   public Delivery saveOrUpdate(Delivery delivery) {
     Preconditions.checkNotNull(delivery, "delivery cannot be null");
     hibernateTemplate.saveOrUpdate(delivery);
@@ -70,6 +79,7 @@ public class HibernateDeliveryReadService extends BaseHibernateReadService<Deliv
   /**
    * Force an immediate in-transaction flush (normally only used in test code)
    */
+  @Transactional
   public void flush() {
     hibernateTemplate.flush();
   }
@@ -2,41 +2,115 @@ package org.multibit.mbm.client.infrastructure.persistence.hibernate;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import org.hibernate.HibernateException;
+import org.hibernate.Query;
 import org.hibernate.Session;
-import org.hibernate.transform.DistinctRootEntityResultTransformer;
+import org.joda.money.BigMoney;
+import org.multibit.mbm.client.common.pagination.ContinuationToken;
 import org.multibit.mbm.client.common.pagination.PaginatedList;
 import org.multibit.mbm.client.common.pagination.PaginatedLists;
 import org.multibit.mbm.client.domain.model.model.Item;
 import org.multibit.mbm.client.domain.model.model.ItemField;
-import org.multibit.mbm.client.domain.model.model.ItemFieldDetail;
+import org.multibit.mbm.client.domain.model.model.ItemSummaryView;
+import org.multibit.mbm.client.domain.repositories.CartReadService;
 import org.multibit.mbm.client.domain.repositories.ItemNotFoundException;
 import org.multibit.mbm.client.domain.repositories.ItemReadService;
+import org.multibit.mbm.client.infrastructure.persistence.hibernate.cache.HibernateCacheRegions;
+import org.multibit.mbm.client.infrastructure.persistence.hibernate.queries.NamedQueryRegistry;
+import org.multibit.mbm.client.infrastructure.persistence.hibernate.search.ItemSearchIndex;
 import org.springframework.orm.hibernate3.HibernateCallback;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.annotation.Resource;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
 @Repository("hibernateItemDao")
 public class HibernateItemReadService extends BaseHibernateReadService<Item> implements ItemReadService {
 
+  /**
+   * Loads a page of Items with their field details and localised text in a single join
+   */
+  private static final String CATALOGUE_QUERY = "Item.catalogue";
+
+  /**
+   * Loads the Items matching a set of SKUs with their fields and localised text in a single statement
+   */
+  private static final String BY_SKUS_QUERY = "Item.bySKUs";
+
+  /**
+   * Keeps the IN clause well within the parameter limits of the supported databases
+   */
+  static final int MAX_SKUS_PER_QUERY = 500;
+
+  /**
+   * Projects a page of Items onto one row per field (primary content only) without loading any entities
+   */
+  private static final String SUMMARY_QUERY = "Item.summary";
+
+  @Resource(name = "hibernateCacheRegions")
+  private HibernateCacheRegions hibernateCacheRegions = null;
+
+  @Resource(name = "itemSearchIndex")
+  private ItemSearchIndex itemSearchIndex = null;
+
+  @Resource(name = "cartReadService")
+  private CartReadService cartReadService = null;
+
   @Override
   public Optional<Item> getById(Long id) throws ItemNotFoundException {
-    return getById(Item.class, id);
+    // Only used for maintenance so provide all locales
+    return getById(Item.class, id, Item.ADMIN_VIEW);
   }
 
   @Override
   public Optional<Item> getBySKU(String sku) {
-    List items = hibernateTemplate.find("from Item i where i.sku = ?", sku);
+    // Catalogue view (HQL ignores fetch profiles so the join is explicit)
+    List items = findCached(HibernateCacheRegions.ITEM_QUERIES, "Item.bySKU", sku);
     return first(items);
   }
 
 
+  @SuppressWarnings("unchecked")
+  @Override
+  public Map<String, Item> getBySKUs(Collection<String> skus) {
+    Preconditions.checkNotNull(skus, "skus cannot be null");
+
+    Map<String, Item> items = Maps.newHashMap();
+
+    // Sorting keeps the chunks (and so the cached query results) the same for a repeated request
+    for (final List<String> chunk : Iterables.partition(Sets.newTreeSet(skus), MAX_SKUS_PER_QUERY)) {
+      List<Item> chunkItems = (List<Item>) hibernateTemplate.executeFind(new HibernateCallback() {
+        public Object doInHibernate(Session session) throws HibernateException, SQLException {
+          Query query = namedQueryRegistry
+            .getNamedQuery(session, BY_SKUS_QUERY)
+            .setParameterList("skus", chunk)
+            .setCacheable(true)
+            .setCacheRegion(HibernateCacheRegions.ITEM_QUERIES);
+          return namedQueryRegistry.list(BY_SKUS_QUERY, query);
+        }
+      });
+      for (Item item : chunkItems) {
+        // Match the first result behaviour of a single SKU lookup
+        if (!items.containsKey(item.getSKU())) {
+          items.put(item.getSKU(), item);
+        }
+      }
+    }
+    return items;
+  }
+
   @Override
   public Optional<Item> getByGTIN(String gtin) {
-    List items = hibernateTemplate.find("from Item i where i.gtin = ?", gtin);
+    // Catalogue view (HQL ignores fetch profiles so the join is explicit)
+    List items = findCached(HibernateCacheRegions.ITEM_QUERIES, "Item.byGTIN", gtin);
     return first(items);
   }
 
@@ -49,6 +123,8 @@ public class HibernateItemReadService extends BaseHibernateReadService<Item> imp
    */
   @Override
   protected Item initialized(Item entity) {
+    // The item field map is always present but the cart items are deliberately left uninitialized
+    // since they reference every Cart containing this Item
     return entity;
   }
 
@@ -61,86 +137,161 @@ public class HibernateItemReadService extends BaseHibernateReadService<Item> imp
     return buildPaginatedList(pageSize, pageNumber, Item.class);
   }
 
-  @SuppressWarnings("unchecked")
-  public PaginatedList<Item> getPaginatedListByExample(final int pageSize, final int pageNumber, final Item example) {
+  @Override
+  public PaginatedList<Item> getPaginatedListAfter(int pageSize, Optional<ContinuationToken> continuationToken) {
+    return buildKeysetPaginatedList(pageSize, continuationToken, Item.class);
+  }
 
-    Preconditions.checkState(pageSize>0,"pageSize is 1-based and must be positive");
-    Preconditions.checkState(pageNumber>0,"pageSize is 1-based and must be positive");
-    Preconditions.checkNotNull(example, "example cannot be null");
+  @Override
+  public PaginatedList<Item> getCataloguePage(final int pageSize, final int pageNumber) {
+    return buildTwoPhasePaginatedList(pageSize, pageNumber, Item.class, CATALOGUE_QUERY);
+  }
 
-    Number total = rowCount(Item.class);
+  @Override
+  public PaginatedList<Item> getCataloguePageAfter(final int pageSize, final Optional<ContinuationToken> continuationToken) {
+    return buildTwoPhaseKeysetPaginatedList(pageSize, continuationToken, Item.class, CATALOGUE_QUERY);
+  }
 
-    int totalPages = (int) Math.ceil(total.doubleValue() / pageSize);
+  @Override
+  public PaginatedList<ItemSummaryView> getCatalogueSummaryPage(final int pageSize, final int pageNumber) {
 
-    List<Item> list = hibernateTemplate.executeFind(new HibernateCallback() {
-      public Object doInHibernate(Session session) throws HibernateException, SQLException {
+    Preconditions.checkState(pageSize > 0, "pageSize is 1-based and must be positive");
+    Preconditions.checkState(pageNumber > 0, "pageNumber is 1-based and must be positive");
 
-        // Examine the example object to determine the query
-        String hql = buildHql(example);
+    Number total = listedRowCount(Item.class);
 
-        // Do the work now that the HQL is created
-        return (List<Item>) session
-          .createQuery(hql)
-          .setFirstResult(pageSize * (pageNumber - 1)) // Apply offset
-          .setMaxResults(pageSize)
-          .setResultTransformer(DistinctRootEntityResultTransformer.INSTANCE)
-          .list();
-      }
+    List<Long> ids = findIds(
+      NamedQueryRegistry.queryName(Item.class, NamedQueryRegistry.IDS),
+      pageSize * (pageNumber - 1), // Apply 0-based index
+      pageSize);
 
-      /**
-       * @param example The example entity
-       * @return The HQL required to locate matching entities
-       */
-      private String buildHql(Item example) {
-        Preconditions.checkNotNull(example, "example cannot be null");
-
-        // The basic starting point
-        String hql = "select i from Item i ";
-
-        if (example != null) {
-          // Check for simple inline fields (if applicable)
-
-          // Check for complex joined fields (if applicable)
-          if (!example.getItemFieldMap().isEmpty()) {
-            // Potential for a complex query
-            // Require an inner join on the item field map since there is at least one entry using it
-            hql += "inner join i.itemFieldMap ifm where ";
-
-            // Currently restrict searching against primary field entries (makes code and query simpler)
-            boolean first = true;
-            for (Map.Entry<ItemField, ItemFieldDetail> entry : example.getItemFieldMap().entrySet()) {
-              ItemFieldDetail itemFieldDetail = entry.getValue();
-              // Compare against the ItemField ordinal and apply a wildcard using a disjunction (OR) between fields
-              if (!first) {
-                hql += "or ";
-              }
-              hql += "(ifm.itemField = " + itemFieldDetail.getItemField().ordinal();
-              hql += " and lower(ifm.primaryDetail.content) like lower('%" + itemFieldDetail.getPrimaryDetail().getContent() + "%')) ";
-              first = false;
-            }
-          }
-        }
+    return PaginatedLists.newCountedPaginatedArrayList(pageNumber, pageSize, total == null ? 0L : total.longValue(), false, summarise(ids));
+  }
 
-        return hql;
-      }
+  @Override
+  public PaginatedList<ItemSummaryView> getCatalogueSummaryPageAfter(final int pageSize, final Optional<ContinuationToken> continuationToken) {
 
-    });
+    Preconditions.checkState(pageSize > 0, "pageSize is 1-based and must be positive");
+    Preconditions.checkNotNull(continuationToken, "continuationToken must be present or absent");
+
+    long lastId = continuationToken.isPresent() ? continuationToken.get().getLastId() : 0L;
+
+    List<Long> ids = findIds(
+      NamedQueryRegistry.queryName(Item.class, NamedQueryRegistry.IDS_AFTER),
+      0,
+      pageSize + 1, // Look ahead by one to detect a following page
+      lastId);
+
+    Optional<ContinuationToken> nextToken = nextToken(ids, pageSize, continuationToken);
+
+    return PaginatedLists.newKeysetPaginatedArrayList(pageSize, continuationToken, nextToken, summarise(ids));
+  }
+
+  @Override
+  public PaginatedList<Item> getPaginatedListByExample(final int pageSize, final int pageNumber, final Item example) {
+
+    Preconditions.checkState(pageSize>0,"pageSize is 1-based and must be positive");
+    Preconditions.checkState(pageNumber>0,"pageSize is 1-based and must be positive");
+    Preconditions.checkNotNull(example, "example cannot be null");
 
-    return PaginatedLists.newPaginatedArrayList(pageNumber, totalPages, list);
+    if (example.getItemFieldMap().isEmpty()) {
+      // Nothing to match against so everything matches
+      return getCataloguePage(pageSize, pageNumber);
+    }
+
+    // Matching fields are combined with a disjunction (OR) and ranked by the number matched
+    // (the complete match is cached so later pages and the count cost nothing)
+    List<Long> ids = itemSearchIndex.search(example.getItemFieldMap().values());
+
+    int fromIndex = Math.min(pageSize * (pageNumber - 1), ids.size()); // Apply 0-based index
+    int toIndex = Math.min(fromIndex + pageSize, ids.size());
+
+    return PaginatedLists.newCountedPaginatedArrayList(pageNumber, pageSize, ids.size(), true, hydrate(CATALOGUE_QUERY, ids.subList(fromIndex, toIndex)));
 
   }
 
   @Override
+  @Transactional
   public Item saveOrUpdate(Item item) {
     hibernateTemplate.saveOrUpdate(item);
+    hibernateCacheRegions.evictItem(item);
+    itemSearchIndex.update(item);
+    // Carts hold running totals based on the previous price
+    cartReadService.recalculateTotals(item);
     return item;
   }
 
   /**
    * Force an immediate in-transaction flush (normally only used in test code)
    */
+  @Transactional
   public void flush() {
     hibernateTemplate.flush();
   }
 
+  public void setCartReadService(CartReadService cartReadService) {
+    this.cartReadService = cartReadService;
+  }
+
+  public void setHibernateCacheRegions(HibernateCacheRegions hibernateCacheRegions) {
+    this.hibernateCacheRegions = hibernateCacheRegions;
+  }
+
+  public void setItemSearchIndex(ItemSearchIndex itemSearchIndex) {
+    this.itemSearchIndex = itemSearchIndex;
+  }
+
+  /**
+   * @param ids The primary keys in page order
+   *
+   * @return The Item summaries in page order assembled from the projected rows
+   */
+  @SuppressWarnings("unchecked")
+  private List<ItemSummaryView> summarise(final List<Long> ids) {
+
+    if (ids.isEmpty()) {
+      return Lists.newArrayList();
+    }
+
+    List<Object[]> rows = (List<Object[]>) hibernateTemplate.executeFind(new HibernateCallback() {
+      public Object doInHibernate(Session session) throws HibernateException, SQLException {
+        Query query = namedQueryRegistry
+          .getNamedQuery(session, SUMMARY_QUERY)
+          .setParameterList("ids", ids);
+        return namedQueryRegistry.list(SUMMARY_QUERY, query);
+      }
+    });
+
+    // Group the field rows by Item (scalar projections never enter the persistence context)
+    Map<Long, Object[]> columnsById = Maps.newHashMap();
+    Map<Long, Map<ItemField, String>> fieldContentById = Maps.newHashMap();
+    for (Object[] row : rows) {
+      Long id = (Long) row[0];
+      Map<ItemField, String> fieldContent = fieldContentById.get(id);
+      if (fieldContent == null) {
+        columnsById.put(id, row);
+        fieldContent = Maps.newEnumMap(ItemField.class);
+        fieldContentById.put(id, fieldContent);
+      }
+      if (row[5] != null && row[6] != null) {
+        fieldContent.put((ItemField) row[5], (String) row[6]);
+      }
+    }
+
+    List<ItemSummaryView> page = Lists.newArrayListWithCapacity(ids.size());
+    for (Long id : ids) {
+      Object[] columns = columnsById.get(id);
+      if (columns != null) {
+        page.add(new ItemSummaryView(
+          id,
+          (String) columns[1],
+          (String) columns[2],
+          (BigMoney) columns[3],
+          (Double) columns[4],
+          fieldContentById.get(id)));
+      }
+    }
+    return page;
+  }
+
 }
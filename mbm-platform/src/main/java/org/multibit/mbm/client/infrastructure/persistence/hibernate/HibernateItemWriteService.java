@@ -0,0 +1,35 @@
+package org.multibit.mbm.client.infrastructure.persistence.hibernate;
+
+import org.multibit.mbm.client.domain.model.model.Item;
+import org.multibit.mbm.client.domain.repositories.CartReadService;
+import org.multibit.mbm.client.domain.repositories.ItemWriteService;
+import org.multibit.mbm.client.infrastructure.persistence.hibernate.search.ItemSearchIndex;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.Resource;
+
+@Repository("hibernateItemWriteDao")
+public class HibernateItemWriteService extends BaseHibernateWriteService<Item> implements ItemWriteService {
+
+  @Resource(name = "itemSearchIndex")
+  private ItemSearchIndex itemSearchIndex = null;
+
+  @Resource(name = "cartReadService")
+  private CartReadService cartReadService = null;
+
+  @Override
+  protected void afterSave(Item item) {
+    itemSearchIndex.update(item);
+    // Carts hold running totals based on the previous price
+    cartReadService.recalculateTotals(item);
+  }
+
+  public void setItemSearchIndex(ItemSearchIndex itemSearchIndex) {
+    this.itemSearchIndex = itemSearchIndex;
+  }
+
+  public void setCartReadService(CartReadService cartReadService) {
+    this.cartReadService = cartReadService;
+  }
+
+}
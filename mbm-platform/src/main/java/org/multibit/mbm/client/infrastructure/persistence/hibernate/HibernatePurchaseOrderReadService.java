@@ -2,12 +2,14 @@ package org.multibit.mbm.client.infrastructure.persistence.hibernate;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import org.multibit.mbm.client.common.pagination.ContinuationToken;
 import org.multibit.mbm.client.common.pagination.PaginatedList;
 import org.multibit.mbm.client.domain.model.model.PurchaseOrder;
 import org.multibit.mbm.client.domain.model.model.PurchaseOrderBuilder;
 import org.multibit.mbm.client.domain.model.model.Supplier;
 import org.multibit.mbm.client.domain.repositories.PurchaseOrderReadService;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 @Repository("hibernatePurchaseOrderDao")
 public class HibernatePurchaseOrderReadService extends BaseHibernateReadService<PurchaseOrder> implements PurchaseOrderReadService {
@@ -19,6 +21,7 @@ public class HibernatePurchaseOrderReadService extends BaseHibernateReadService<
   }
 
   @Override
+  @Transactional
   public Optional<PurchaseOrder> getInitialisedPurchaseOrderBySupplier(Supplier supplier) {
     Preconditions.checkNotNull(supplier, "supplier cannot be null");
 
@@ -61,6 +64,12 @@ public class HibernatePurchaseOrderReadService extends BaseHibernateReadService<
   }
 
   @Override
+  public PaginatedList<PurchaseOrder> getPaginatedListAfter(int pageSize, Optional<ContinuationToken> continuationToken) {
+    return buildKeysetPaginatedList(pageSize, continuationToken, PurchaseOrder.class);
+  }
+
+  @Override
+  @Transactional
   public PurchaseOrder saveOrUpdate(PurchaseOrder purchaseOrder) {
     Preconditions.checkNotNull(purchaseOrder, "purchaseOrder cannot be null");
     hibernateTemplate.saveOrUpdate(purchaseOrder);
@@ -70,6 +79,7 @@ public class HibernatePurchaseOrderReadService extends BaseHibernateReadService<
   /**
    * Force an immediate in-transaction flush (normally only used in test code)
    */
+  @Transactional
   public void flush() {
     hibernateTemplate.flush();
   }
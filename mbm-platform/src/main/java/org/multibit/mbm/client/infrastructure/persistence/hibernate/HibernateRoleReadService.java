@@ -1,18 +1,30 @@
 package org.multibit.mbm.client.infrastructure.persistence.hibernate;
 
 import com.google.common.base.Optional;
+import org.multibit.mbm.client.common.pagination.ContinuationToken;
 import org.multibit.mbm.client.common.pagination.PaginatedList;
 import org.multibit.mbm.client.domain.model.model.Role;
 import org.multibit.mbm.client.domain.repositories.RoleReadService;
+import org.multibit.mbm.client.infrastructure.persistence.hibernate.cache.HibernateCacheRegions;
 import org.multibit.mbm.client.interfaces.rest.auth.Authority;
 import org.springframework.orm.hibernate3.HibernateTemplate;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.annotation.Resource;
 import java.util.List;
 
 @Repository("hibernateRoleDao")
 public class HibernateRoleReadService extends BaseHibernateReadService<Role> implements RoleReadService {
 
+  /**
+   * Loads a page of Roles with their authorities (the admin representation lists them all)
+   */
+  private static final String ROLE_QUERY = "Role.withAuthorities";
+
+  @Resource(name = "hibernateCacheRegions")
+  private HibernateCacheRegions hibernateCacheRegions = null;
+
   @SuppressWarnings("unchecked")
   @Override
   public Optional<Role> getById(Long id) {
@@ -26,23 +38,31 @@ public class HibernateRoleReadService extends BaseHibernateReadService<Role> imp
 
   @Override
   public Optional<Role> getByName(String name) {
-    List roles = hibernateTemplate.find("from Role r where r.name = ?", name);
+    List roles = findCached(HibernateCacheRegions.ROLE_QUERIES, "Role.byName", name);
     return first(roles);
   }
 
   public PaginatedList<Role> getPaginatedList(final int pageSize, final int pageNumber) {
-    return buildPaginatedList(pageSize, pageNumber, Role.class);
+    return buildTwoPhasePaginatedList(pageSize, pageNumber, Role.class, ROLE_QUERY);
   }
 
   @Override
+  public PaginatedList<Role> getPaginatedListAfter(int pageSize, Optional<ContinuationToken> continuationToken) {
+    return buildTwoPhaseKeysetPaginatedList(pageSize, continuationToken, Role.class, ROLE_QUERY);
+  }
+
+  @Override
+  @Transactional
   public Role saveOrUpdate(Role role) {
     hibernateTemplate.saveOrUpdate(role);
+    hibernateCacheRegions.evictRole(role);
     return role;
   }
 
   /**
    * Force an immediate in-transaction flush (normally only used in test code)
    */
+  @Transactional
   public void flush() {
     hibernateTemplate.flush();
   }
@@ -55,4 +75,8 @@ public class HibernateRoleReadService extends BaseHibernateReadService<Role> imp
   public void setHibernateTemplate(HibernateTemplate hibernateTemplate) {
     this.hibernateTemplate = hibernateTemplate;
   }
+
+  public void setHibernateCacheRegions(HibernateCacheRegions hibernateCacheRegions) {
+    this.hibernateCacheRegions = hibernateCacheRegions;
+  }
 }
@@ -1,11 +1,13 @@
 package org.multibit.mbm.client.infrastructure.persistence.hibernate;
 
 import com.google.common.base.Optional;
+import org.multibit.mbm.client.common.pagination.ContinuationToken;
 import org.multibit.mbm.client.common.pagination.PaginatedList;
 import org.multibit.mbm.client.domain.model.model.Supplier;
 import org.multibit.mbm.client.domain.repositories.SupplierReadService;
 import org.springframework.orm.hibernate3.HibernateTemplate;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 @Repository("hibernateSupplierDao")
 public class HibernateSupplierReadService extends BaseHibernateReadService<Supplier> implements SupplierReadService {
@@ -17,6 +19,7 @@ public class HibernateSupplierReadService extends BaseHibernateReadService<Suppl
   }
 
   @Override
+  @Transactional
   public Supplier saveOrUpdate(Supplier supplier) {
     hibernateTemplate.saveOrUpdate(supplier);
     return supplier;
@@ -32,9 +35,15 @@ public class HibernateSupplierReadService extends BaseHibernateReadService<Suppl
     return buildPaginatedList(pageSize, pageNumber, Supplier.class);
   }
 
+  @Override
+  public PaginatedList<Supplier> getPaginatedListAfter(int pageSize, Optional<ContinuationToken> continuationToken) {
+    return buildKeysetPaginatedList(pageSize, continuationToken, Supplier.class);
+  }
+
   /**
    * Force an immediate in-transaction flush (normally only used in test code)
    */
+  @Transactional
   public void flush() {
     hibernateTemplate.flush();
   }
@@ -2,11 +2,13 @@ package org.multibit.mbm.client.infrastructure.persistence.hibernate;
 
 import com.google.common.base.Optional;
 import org.jasypt.util.password.StrongPasswordEncryptor;
+import org.multibit.mbm.client.common.pagination.ContinuationToken;
 import org.multibit.mbm.client.common.pagination.PaginatedList;
 import org.multibit.mbm.client.domain.model.model.User;
 import org.multibit.mbm.client.domain.repositories.UserReadService;
 import org.springframework.orm.hibernate3.HibernateTemplate;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -22,14 +24,14 @@ public class HibernateUserReadService extends BaseHibernateReadService<User> imp
   @SuppressWarnings("unchecked")
   @Override
   public Optional<User> getByApiKey(String uuid) {
-    List users = hibernateTemplate.find("from User u where u.apiKey = ?", uuid);
+    List users = findNamed("User.byApiKey", uuid);
     return first(users);
   }
 
   @Override
   @SuppressWarnings("unchecked")
   public Optional<User> getByCredentials(String username, String passwordDigest) {
-    List<User> users = hibernateTemplate.find("from User u where u.username = ? ", username);
+    List<User> users = findNamed("User.byUsername", username);
 
     if (isNotFound(users)) return Optional.absent();
 
@@ -58,6 +60,10 @@ public class HibernateUserReadService extends BaseHibernateReadService<User> imp
     hibernateTemplate.initialize(entity.getContactMethodMap());
     if (entity.getCustomer() != null) {
       hibernateTemplate.initialize(entity.getCustomer());
+      // The Cart of a principal is presented with its lines
+      if (entity.getCustomer().getCart() != null) {
+        hibernateTemplate.initialize(entity.getCustomer().getCart().getCartItems());
+      }
     }
     if (entity.getSupplier() != null) {
       hibernateTemplate.initialize(entity.getSupplier());
@@ -71,6 +77,12 @@ public class HibernateUserReadService extends BaseHibernateReadService<User> imp
   }
 
   @Override
+  public PaginatedList<User> getPaginatedListAfter(int pageSize, Optional<ContinuationToken> continuationToken) {
+    return buildKeysetPaginatedList(pageSize, continuationToken, User.class);
+  }
+
+  @Override
+  @Transactional
   public User saveOrUpdate(User user) {
     hibernateTemplate.saveOrUpdate(user);
     return user;
@@ -79,6 +91,7 @@ public class HibernateUserReadService extends BaseHibernateReadService<User> imp
   /**
    * Force an immediate in-transaction flush (normally only used in test code)
    */
+  @Transactional
   public void flush() {
     hibernateTemplate.flush();
   }
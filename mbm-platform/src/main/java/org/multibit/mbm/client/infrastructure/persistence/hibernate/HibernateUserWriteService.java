@@ -0,0 +1,10 @@
+package org.multibit.mbm.client.infrastructure.persistence.hibernate;
+
+import org.multibit.mbm.client.domain.model.model.User;
+import org.multibit.mbm.client.domain.repositories.UserWriteService;
+import org.springframework.stereotype.Repository;
+
+@Repository("hibernateUserWriteDao")
+public class HibernateUserWriteService extends BaseHibernateWriteService<User> implements UserWriteService {
+
+}
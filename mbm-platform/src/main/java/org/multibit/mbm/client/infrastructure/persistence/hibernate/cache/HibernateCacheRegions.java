@@ -0,0 +1,213 @@
+package org.multibit.mbm.client.infrastructure.persistence.hibernate.cache;
+
+import com.google.common.base.Preconditions;
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.util.RatioGauge;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.config.CacheConfiguration;
+import org.hibernate.Cache;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
+import org.multibit.mbm.client.domain.model.model.Item;
+import org.multibit.mbm.client.domain.model.model.ItemFieldDetail;
+import org.multibit.mbm.client.domain.model.model.Role;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.orm.hibernate3.HibernateTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.Resource;
+
+/**
+ * <p>Registry to provide the following to read services:</p>
+ * <ul>
+ * <li>Names of the second-level and query cache regions declared in <code>/ehcache/mbm-ehcache.xml</code></li>
+ * <li>Runtime sizing of the regions from the application configuration</li>
+ * <li>Eviction of regions affected by a write</li>
+ * <li>Hit ratio gauges for each region</li>
+ * </ul>
+ * <p>Evictions requested within a Spring managed transaction are only applied after it commits so that a
+ * concurrent reader cannot re-populate a region with the state that is about to be replaced.</p>
+ *
+ * @since 0.0.1
+ */
+@Component("hibernateCacheRegions")
+public class HibernateCacheRegions {
+
+  private static final Logger log = LoggerFactory.getLogger(HibernateCacheRegions.class);
+
+  /**
+   * All application regions share this prefix (Hibernate internal regions are left alone)
+   */
+  public static final String PREFIX = "mbm.";
+
+  public static final String ITEM = "mbm.item";
+  public static final String ITEM_FIELD_MAP = "mbm.item.itemFieldMap";
+  public static final String ITEM_FIELD_DETAIL = "mbm.itemFieldDetail";
+  public static final String ITEM_FIELD_DETAIL_SECONDARY_DETAILS = "mbm.itemFieldDetail.secondaryDetails";
+  public static final String ITEM_QUERIES = "mbm.query.item";
+
+  public static final String ROLE = "mbm.role";
+  public static final String ROLE_AUTHORITIES = "mbm.role.authorities";
+  public static final String ROLE_QUERIES = "mbm.query.role";
+
+  @Resource(name = "hibernateTemplate")
+  private HibernateTemplate hibernateTemplate = null;
+
+  /**
+   * Apply the configured limits to all application regions
+   *
+   * @param maxEntries        The maximum number of entries held in each region
+   * @param timeToLiveSeconds The maximum time an entry is held in a region
+   */
+  public void configure(int maxEntries, long timeToLiveSeconds) {
+    Preconditions.checkState(maxEntries > 0, "'maxEntries' must be greater than zero");
+    Preconditions.checkState(timeToLiveSeconds > 0, "'timeToLiveSeconds' must be greater than zero");
+
+    CacheManager cacheManager = CacheManager.getInstance();
+    for (String name : cacheManager.getCacheNames()) {
+      if (!name.startsWith(PREFIX)) {
+        continue;
+      }
+      Ehcache ehcache = cacheManager.getEhcache(name);
+      CacheConfiguration cacheConfiguration = ehcache.getCacheConfiguration();
+      cacheConfiguration.setMaxElementsInMemory(maxEntries);
+      cacheConfiguration.setTimeToLiveSeconds(timeToLiveSeconds);
+      log.debug("Cache region '{}' limited to {} entries for {}s", new Object[]{name, maxEntries, timeToLiveSeconds});
+    }
+  }
+
+  /**
+   * Register a hit ratio gauge for each application region
+   */
+  public void registerMetrics() {
+    for (String name : CacheManager.getInstance().getCacheNames()) {
+      if (name.startsWith(PREFIX)) {
+        Metrics.newGauge(HibernateCacheRegions.class, "hit-ratio", name, new RegionHitRatioGauge(name));
+      }
+    }
+  }
+
+  /**
+   * Evict the cached state of an Item (and the item queries) once the current transaction (if any) commits
+   *
+   * @param item The item that has been written
+   */
+  public void evictItem(final Item item) {
+    Preconditions.checkNotNull(item, "item cannot be null");
+
+    afterCommit(new Runnable() {
+      @Override
+      public void run() {
+        Cache cache = hibernateTemplate.getSessionFactory().getCache();
+        if (item.getId() != null) {
+          cache.evictEntity(Item.class, item.getId());
+          cache.evictCollection(Item.class.getName() + ".itemFieldMap", item.getId());
+        }
+        for (ItemFieldDetail itemFieldDetail : item.getItemFieldMap().values()) {
+          if (itemFieldDetail.getId() != null) {
+            cache.evictEntity(ItemFieldDetail.class, itemFieldDetail.getId());
+            cache.evictCollection(ItemFieldDetail.class.getName() + ".secondaryDetails", itemFieldDetail.getId());
+          }
+        }
+        cache.evictQueryRegion(ITEM_QUERIES);
+      }
+    });
+  }
+
+  /**
+   * Evict the cached state of a Role (and the role queries) once the current transaction (if any) commits
+   *
+   * @param role The role that has been written
+   */
+  public void evictRole(final Role role) {
+    Preconditions.checkNotNull(role, "role cannot be null");
+
+    afterCommit(new Runnable() {
+      @Override
+      public void run() {
+        Cache cache = hibernateTemplate.getSessionFactory().getCache();
+        if (role.getId() != null) {
+          cache.evictEntity(Role.class, role.getId());
+          cache.evictCollection(Role.class.getName() + ".authorities", role.getId());
+        }
+        cache.evictQueryRegion(ROLE_QUERIES);
+      }
+    });
+  }
+
+  /**
+   * Evict everything from all regions (e.g. after rows have been moved without Hibernate)
+   */
+  public void evictAll() {
+    Cache cache = hibernateTemplate.getSessionFactory().getCache();
+    cache.evictEntityRegions();
+    cache.evictCollectionRegions();
+    cache.evictQueryRegions();
+    cache.evictDefaultQueryRegion();
+  }
+
+  /**
+   * @param name The region name
+   *
+   * @return The ratio of hits to lookups for the region (NaN if not used yet)
+   */
+  public double hitRatio(String name) {
+    SecondLevelCacheStatistics statistics = regionStatistics(name);
+    if (statistics == null) {
+      return Double.NaN;
+    }
+    long lookups = statistics.getHitCount() + statistics.getMissCount();
+    return lookups == 0 ? Double.NaN : (double) statistics.getHitCount() / lookups;
+  }
+
+  public void setHibernateTemplate(HibernateTemplate hibernateTemplate) {
+    this.hibernateTemplate = hibernateTemplate;
+  }
+
+  private SecondLevelCacheStatistics regionStatistics(String name) {
+    Statistics statistics = hibernateTemplate.getSessionFactory().getStatistics();
+    // Query regions are only created on first use so may not be present
+    return statistics.getSecondLevelCacheStatistics(name);
+  }
+
+  private void afterCommit(final Runnable eviction) {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+        @Override
+        public void afterCommit() {
+          eviction.run();
+        }
+      });
+    } else {
+      eviction.run();
+    }
+  }
+
+  /**
+   * Gauge to provide the hit ratio of a single region
+   */
+  private class RegionHitRatioGauge extends RatioGauge {
+
+    private final String name;
+
+    private RegionHitRatioGauge(String name) {
+      this.name = name;
+    }
+
+    @Override
+    protected double getNumerator() {
+      SecondLevelCacheStatistics statistics = regionStatistics(name);
+      return statistics == null ? 0 : statistics.getHitCount();
+    }
+
+    @Override
+    protected double getDenominator() {
+      SecondLevelCacheStatistics statistics = regionStatistics(name);
+      return statistics == null ? 0 : statistics.getHitCount() + statistics.getMissCount();
+    }
+  }
+}
@@ -0,0 +1,94 @@
+package org.multibit.mbm.client.infrastructure.persistence.hibernate.counters;
+
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.Hibernate;
+import org.hibernate.type.Type;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.io.Serializable;
+
+/**
+ * <p>Hibernate interceptor to provide the following to {@link EntityCounters}:</p>
+ * <ul>
+ * <li>Detection of inserts, deletes and soft deletes as they are flushed</li>
+ * </ul>
+ * <p>Working at the session level means that cascaded writes (e.g. a Cart saved through its Customer)
+ * are counted as well as direct calls to <code>saveOrUpdate()</code> on the read services.</p>
+ *
+ * @since 0.0.1
+ */
+@Component("entityCounterInterceptor")
+public class EntityCounterInterceptor extends EmptyInterceptor {
+
+  private static final long serialVersionUID = 3895734968723459L;
+
+  /**
+   * The property name used by entities that support soft deletion
+   */
+  private static final String DELETED_PROPERTY = "deleted";
+
+  @Resource(name = "entityCounters")
+  private transient EntityCounters entityCounters;
+
+  @Override
+  public boolean onSave(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+    Class<?> clazz = Hibernate.getClass(entity);
+    entityCounters.adjust(EntityCounters.totalKey(clazz), 1);
+
+    Boolean deleted = deletedFlag(state, propertyNames);
+    if (Boolean.FALSE.equals(deleted)) {
+      entityCounters.adjust(EntityCounters.liveKey(clazz), 1);
+    }
+
+    // State has not been modified
+    return false;
+  }
+
+  @Override
+  public void onDelete(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+    Class<?> clazz = Hibernate.getClass(entity);
+    entityCounters.adjust(EntityCounters.totalKey(clazz), -1);
+
+    Boolean deleted = deletedFlag(state, propertyNames);
+    if (Boolean.FALSE.equals(deleted)) {
+      entityCounters.adjust(EntityCounters.liveKey(clazz), -1);
+    }
+  }
+
+  @Override
+  public boolean onFlushDirty(Object entity, Serializable id, Object[] currentState, Object[] previousState, String[] propertyNames, Type[] types) {
+
+    // Detached entities have no snapshot so leave any change to reconciliation
+    Boolean wasDeleted = deletedFlag(previousState, propertyNames);
+    Boolean isDeleted = deletedFlag(currentState, propertyNames);
+    if (wasDeleted != null && isDeleted != null && !wasDeleted.equals(isDeleted)) {
+      entityCounters.adjust(EntityCounters.liveKey(Hibernate.getClass(entity)), isDeleted ? -1 : 1);
+    }
+
+    // State has not been modified
+    return false;
+  }
+
+  /**
+   * @param state         The entity state (can be null)
+   * @param propertyNames The property names
+   *
+   * @return The value of the soft delete flag or null if not supported
+   */
+  private Boolean deletedFlag(Object[] state, String[] propertyNames) {
+    if (state == null || propertyNames == null) {
+      return null;
+    }
+    for (int i = 0; i < propertyNames.length; i++) {
+      if (DELETED_PROPERTY.equals(propertyNames[i]) && state[i] instanceof Boolean) {
+        return (Boolean) state[i];
+      }
+    }
+    return null;
+  }
+
+  public void setEntityCounters(EntityCounters entityCounters) {
+    this.entityCounters = entityCounters;
+  }
+}
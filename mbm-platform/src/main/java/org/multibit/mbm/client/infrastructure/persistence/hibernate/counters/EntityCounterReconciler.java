@@ -0,0 +1,132 @@
+package org.multibit.mbm.client.infrastructure.persistence.hibernate.counters;
+
+import com.google.common.base.Preconditions;
+import org.hibernate.Criteria;
+import org.hibernate.EntityMode;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.metadata.ClassMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.orm.hibernate3.HibernateCallback;
+import org.springframework.orm.hibernate3.HibernateTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * <p>Reconciler to provide the following to {@link EntityCounters}:</p>
+ * <ul>
+ * <li>Seeding of counters from the database on first use</li>
+ * <li>Periodic correction of any drift (e.g. concurrent seeding, detached soft deletes, manual SQL)</li>
+ * </ul>
+ *
+ * @since 0.0.1
+ */
+@Component("entityCounterReconciler")
+public class EntityCounterReconciler {
+
+  private static final Logger log = LoggerFactory.getLogger(EntityCounterReconciler.class);
+
+  private static final String DELETED_PROPERTY = "deleted";
+
+  @Resource(name = "hibernateTemplate")
+  private HibernateTemplate hibernateTemplate = null;
+
+  @Resource(name = "entityCounters")
+  private EntityCounters entityCounters = null;
+
+  /**
+   * @param clazz The entity class
+   *
+   * @return The number of rows in the table (from the counter if available)
+   */
+  public long rowCount(Class<?> clazz) {
+    String key = EntityCounters.totalKey(clazz);
+    if (entityCounters.get(key).isPresent()) {
+      return entityCounters.get(key).get();
+    }
+    return entityCounters.seed(key, countRows(clazz, false));
+  }
+
+  /**
+   * @param clazz The entity class (must support soft deletion)
+   *
+   * @return The number of rows that are not flagged as deleted (from the counter if available)
+   */
+  public long liveRowCount(Class<?> clazz) {
+    String key = EntityCounters.liveKey(clazz);
+    if (entityCounters.get(key).isPresent()) {
+      return entityCounters.get(key).get();
+    }
+    return entityCounters.seed(key, countRows(clazz, true));
+  }
+
+  /**
+   * @param clazz The entity class
+   *
+   * @return True if the entity is soft deleted using a "deleted" flag
+   */
+  public boolean isSoftDeletable(Class<?> clazz) {
+    ClassMetadata classMetadata = hibernateTemplate.getSessionFactory().getClassMetadata(clazz);
+    return classMetadata != null && Arrays.asList(classMetadata.getPropertyNames()).contains(DELETED_PROPERTY);
+  }
+
+  /**
+   * Overwrite all counters for mapped entities with authoritative values from the database
+   */
+  public void reconcile() {
+
+    log.debug("Reconciling entity counters");
+
+    for (Object value : hibernateTemplate.getSessionFactory().getAllClassMetadata().values()) {
+      ClassMetadata classMetadata = (ClassMetadata) value;
+      Class<?> clazz = classMetadata.getMappedClass(EntityMode.POJO);
+      if (clazz == null) {
+        continue;
+      }
+      entityCounters.reconcile(EntityCounters.totalKey(clazz), countRows(clazz, false));
+      if (Arrays.asList(classMetadata.getPropertyNames()).contains(DELETED_PROPERTY)) {
+        entityCounters.reconcile(EntityCounters.liveKey(clazz), countRows(clazz, true));
+      }
+    }
+
+    log.debug("Entity counters reconciled: {}", entityCounters.snapshot());
+  }
+
+  /**
+   * @param clazz    The entity class
+   * @param liveOnly True if soft deleted rows should be excluded
+   *
+   * @return The number of rows in the database
+   */
+  private long countRows(final Class<?> clazz, final boolean liveOnly) {
+    Number rowCount = (Number) hibernateTemplate.execute(new HibernateCallback() {
+      public Object doInHibernate(Session session) throws HibernateException, SQLException {
+        Criteria criteria = session
+          .createCriteria(clazz)
+          .setProjection(Projections.rowCount());
+        if (liveOnly) {
+          criteria.add(Restrictions.eq(DELETED_PROPERTY, false));
+        }
+        return criteria.uniqueResult();
+      }
+    });
+
+    Preconditions.checkNotNull(rowCount, "rowCount cannot be null");
+
+    return rowCount.longValue();
+  }
+
+  public void setHibernateTemplate(HibernateTemplate hibernateTemplate) {
+    this.hibernateTemplate = hibernateTemplate;
+  }
+
+  public void setEntityCounters(EntityCounters entityCounters) {
+    this.entityCounters = entityCounters;
+  }
+}
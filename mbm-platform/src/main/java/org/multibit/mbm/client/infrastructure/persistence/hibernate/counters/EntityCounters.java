@@ -0,0 +1,138 @@
+package org.multibit.mbm.client.infrastructure.persistence.hibernate.counters;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Registry to provide the following to read services:</p>
+ * <ul>
+ * <li>Maintained per-entity row totals so that pagination does not require a table scan</li>
+ * <li>Maintained filtered totals (e.g. entities that have not been soft deleted)</li>
+ * </ul>
+ * <p>Adjustments made within a Spring managed transaction are only applied after it commits. Outside of a
+ * transaction the write has already been flushed so adjustments apply immediately.</p>
+ * <p>Counters are seeded lazily from the database and periodically reconciled by the
+ * {@link EntityCounterReconciler} to remove any drift.</p>
+ *
+ * @since 0.0.1
+ */
+@Component("entityCounters")
+public class EntityCounters {
+
+  private static final String LIVE_SUFFIX = ".live";
+
+  private final ConcurrentMap<String, AtomicLong> counters = Maps.newConcurrentMap();
+
+  /**
+   * @param clazz The entity class
+   *
+   * @return The key for the count of all rows
+   */
+  public static String totalKey(Class<?> clazz) {
+    return clazz.getSimpleName();
+  }
+
+  /**
+   * @param clazz The entity class
+   *
+   * @return The key for the count of rows that are not flagged as deleted
+   */
+  public static String liveKey(Class<?> clazz) {
+    return clazz.getSimpleName() + LIVE_SUFFIX;
+  }
+
+  /**
+   * @param key The counter key
+   *
+   * @return The current count if the counter has been seeded
+   */
+  public Optional<Long> get(String key) {
+    AtomicLong counter = counters.get(key);
+    if (counter == null) {
+      return Optional.absent();
+    }
+    return Optional.of(counter.get());
+  }
+
+  /**
+   * Provide an initial value only if no other thread has already done so
+   *
+   * @param key   The counter key
+   * @param value The value from the database
+   *
+   * @return The count after seeding
+   */
+  public long seed(String key, long value) {
+    AtomicLong existing = counters.putIfAbsent(key, new AtomicLong(value));
+    return existing == null ? value : existing.get();
+  }
+
+  /**
+   * Overwrite the counter with an authoritative value from the database
+   *
+   * @param key   The counter key
+   * @param value The value from the database
+   */
+  public void reconcile(String key, long value) {
+    AtomicLong existing = counters.putIfAbsent(key, new AtomicLong(value));
+    if (existing != null) {
+      existing.set(value);
+    }
+  }
+
+  /**
+   * Adjust the counter once the current transaction (if any) commits
+   *
+   * @param key   The counter key
+   * @param delta The change in rows (e.g. +1 for an insert)
+   */
+  public void adjust(final String key, final long delta) {
+    Preconditions.checkNotNull(key, "key cannot be null");
+
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+        @Override
+        public void afterCommit() {
+          apply(key, delta);
+        }
+      });
+    } else {
+      apply(key, delta);
+    }
+  }
+
+  /**
+   * @return A snapshot of all seeded counters
+   */
+  public Map<String, Long> snapshot() {
+    Map<String, Long> snapshot = Maps.newTreeMap();
+    for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+      snapshot.put(entry.getKey(), entry.getValue().get());
+    }
+    return snapshot;
+  }
+
+  /**
+   * Forget all counters so that they are re-seeded on next use
+   */
+  public void clear() {
+    counters.clear();
+  }
+
+  private void apply(String key, long delta) {
+    // Unseeded counters are left alone since the seed will include this change
+    AtomicLong counter = counters.get(key);
+    if (counter != null) {
+      counter.addAndGet(delta);
+    }
+  }
+
+}
@@ -0,0 +1,161 @@
+package org.multibit.mbm.client.infrastructure.persistence.hibernate.queries;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Maps;
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Timer;
+import com.yammer.metrics.core.TimerContext;
+import org.hibernate.Query;
+import org.hibernate.Session;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Registry to provide the following to read services:</p>
+ * <ul>
+ * <li>Lookup of the named queries declared against each entity (compiled when the session factory starts)</li>
+ * <li>The naming convention for the paging queries that every paginated entity declares</li>
+ * <li>Execution counts and timings for each named query (also published as metrics)</li>
+ * <li>The HQL behind each named query (Hibernate statistics are keyed by the HQL rather than the name)</li>
+ * </ul>
+ * <p>All HQL is declared with <code>@NamedQuery</code> so a typo fails the application at startup rather
+ * than on first use, and this is the single place to see what is reaching the database.</p>
+ *
+ * @since 0.0.1
+ */
+@Component("namedQueryRegistry")
+public class NamedQueryRegistry {
+
+  /**
+   * All entities in primary key order: <code>from X e order by e.id asc</code>
+   */
+  public static final String ALL = "all";
+
+  /**
+   * Entities following a primary key: <code>from X e where e.id > ? order by e.id asc</code>
+   */
+  public static final String AFTER = "after";
+
+  /**
+   * All primary keys in order: <code>select e.id from X e order by e.id asc</code>
+   */
+  public static final String IDS = "ids";
+
+  /**
+   * Primary keys following a primary key: <code>select e.id from X e where e.id > ? order by e.id asc</code>
+   */
+  public static final String IDS_AFTER = "idsAfter";
+
+  private final ConcurrentMap<String, Timer> timers = Maps.newConcurrentMap();
+
+  private final ConcurrentMap<String, String> queryStrings = Maps.newConcurrentMap();
+
+  /**
+   * @param clazz  The entity class declaring the query
+   * @param suffix The query suffix (e.g. {@link #ALL})
+   *
+   * @return The query name (e.g. "Item.all")
+   */
+  public static String queryName(Class<?> clazz, String suffix) {
+    return clazz.getSimpleName() + "." + suffix;
+  }
+
+  /**
+   * @param session   The current session
+   * @param queryName The query name
+   *
+   * @return The precompiled query ready for parameter binding
+   */
+  public Query getNamedQuery(Session session, String queryName) {
+    Preconditions.checkNotNull(queryName, "queryName cannot be null");
+    Query query = session.getNamedQuery(queryName);
+    queryStrings.putIfAbsent(queryName, query.getQueryString());
+    return query;
+  }
+
+  /**
+   * Execute a query obtained from {@link #getNamedQuery(Session, String)} and record the timing against its name
+   *
+   * @param queryName The query name
+   * @param query     The query with all parameters bound
+   *
+   * @return The results
+   */
+  public List list(String queryName, Query query) {
+    TimerContext context = timer(queryName).time();
+    try {
+      return query.list();
+    } finally {
+      context.stop();
+    }
+  }
+
+  /**
+   * As {@link #list(String, Query)} but for a bulk update or delete
+   *
+   * @param queryName The query name
+   * @param query     The query with all parameters bound
+   *
+   * @return The number of rows affected
+   */
+  public int executeUpdate(String queryName, Query query) {
+    TimerContext context = timer(queryName).time();
+    try {
+      return query.executeUpdate();
+    } finally {
+      context.stop();
+    }
+  }
+
+  /**
+   * @return The names of all queries executed so far (in name order)
+   */
+  public Set<String> getQueryNames() {
+    return ImmutableSortedSet.copyOf(timers.keySet());
+  }
+
+  /**
+   * @return The HQL of all queries obtained so far keyed by query name (in name order)
+   */
+  public Map<String, String> getQueryStrings() {
+    return ImmutableSortedMap.copyOf(queryStrings);
+  }
+
+  /**
+   * @param queryName The query name
+   *
+   * @return The number of executions so far
+   */
+  public long getExecutionCount(String queryName) {
+    Timer timer = timers.get(queryName);
+    return timer == null ? 0 : timer.count();
+  }
+
+  /**
+   * @param queryName The query name
+   *
+   * @return The mean execution time in milliseconds (zero if not executed yet)
+   */
+  public double getMeanMillis(String queryName) {
+    Timer timer = timers.get(queryName);
+    return timer == null ? 0 : timer.mean();
+  }
+
+  private Timer timer(String queryName) {
+    Timer timer = timers.get(queryName);
+    if (timer == null) {
+      // Metrics returns the existing timer if another thread got here first
+      timers.putIfAbsent(queryName, Metrics.newTimer(NamedQueryRegistry.class, "query", queryName, TimeUnit.MILLISECONDS, TimeUnit.SECONDS));
+      timer = timers.get(queryName);
+    }
+    return timer;
+  }
+
+}
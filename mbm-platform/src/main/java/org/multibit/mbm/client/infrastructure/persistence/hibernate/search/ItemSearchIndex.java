@@ -0,0 +1,439 @@
+package org.multibit.mbm.client.infrastructure.persistence.hibernate.search;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheBuilderSpec;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Timer;
+import com.yammer.metrics.core.TimerContext;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.multibit.mbm.client.domain.model.model.Item;
+import org.multibit.mbm.client.domain.model.model.ItemField;
+import org.multibit.mbm.client.domain.model.model.ItemFieldDetail;
+import org.multibit.mbm.client.domain.model.model.LocalisedText;
+import org.multibit.mbm.client.infrastructure.persistence.hibernate.queries.NamedQueryRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.orm.hibernate3.HibernateCallback;
+import org.springframework.orm.hibernate3.HibernateTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.Resource;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * <p>In-process inverted index to provide the following to the Item read service:</p>
+ * <ul>
+ * <li>Tokenised lookup of the localised text held against each {@link ItemField} and locale</li>
+ * <li>Prefix matching so that "cent heat" finds "Plumbing and Central Heating"</li>
+ * <li>Ranking by the number of example fields matched (then by primary key)</li>
+ * <li>Caching of complete results by a normalised query fingerprint (cleared on every update)</li>
+ * <li>Incremental update once a transaction that saved an Item commits</li>
+ * <li>A full rebuild from the database (normally at startup)</li>
+ * </ul>
+ * <p>Only Item primary keys are held so the matching Items must be hydrated by the caller.</p>
+ *
+ * @since 0.0.1
+ */
+@Component("itemSearchIndex")
+public class ItemSearchIndex {
+
+  private static final Logger log = LoggerFactory.getLogger(ItemSearchIndex.class);
+
+  /**
+   * Anything other than a letter or a digit separates tokens
+   */
+  private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+  /**
+   * The number of Items hydrated in each round trip during a rebuild
+   */
+  private static final int REBUILD_CHUNK_SIZE = 500;
+
+  private static final String CATALOGUE_QUERY = "Item.catalogue";
+
+  /**
+   * Results are short lived since any Item write clears them anyway
+   */
+  public static final String DEFAULT_RESULT_CACHE_POLICY = "maximumSize=1000, expireAfterWrite=30s";
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  private final Timer searches = Metrics.newTimer(ItemSearchIndex.class, "searches", TimeUnit.MICROSECONDS, TimeUnit.SECONDS);
+
+  private Postings postings = new Postings();
+
+  /**
+   * Complete ranked results keyed by query fingerprint so that paging through them is free
+   */
+  private volatile Cache<String, List<Long>> results = CacheBuilder.from(DEFAULT_RESULT_CACHE_POLICY).build();
+
+  @Resource(name = "hibernateTemplate")
+  private HibernateTemplate hibernateTemplate = null;
+
+  @Resource(name = "namedQueryRegistry")
+  private NamedQueryRegistry namedQueryRegistry = null;
+
+  /**
+   * @param criteria The field details from an example Item (the primary detail of each is used)
+   *
+   * @return The primary keys of Items matching any criterion (all tokens within a criterion must match) in rank order
+   */
+  public List<Long> search(Collection<ItemFieldDetail> criteria) {
+    Preconditions.checkNotNull(criteria, "criteria cannot be null");
+
+    TimerContext context = searches.time();
+    lock.readLock().lock();
+    try {
+      // Equivalent queries (token order, case, punctuation) share the same fingerprint
+      Map<String, List<String>> query = query(criteria);
+      String fingerprint = query.toString();
+
+      List<Long> ids = results.getIfPresent(fingerprint);
+      if (ids == null) {
+        ids = Collections.unmodifiableList(rank(query));
+        results.put(fingerprint, ids);
+      }
+      return ids;
+    } finally {
+      lock.readLock().unlock();
+      context.stop();
+    }
+  }
+
+  /**
+   * Replace the result cache (normally from the application configuration)
+   *
+   * @param resultCachePolicy The cache policy for complete search results
+   */
+  public void configure(CacheBuilderSpec resultCachePolicy) {
+    Preconditions.checkNotNull(resultCachePolicy, "resultCachePolicy cannot be null");
+    results = CacheBuilder.from(resultCachePolicy).build();
+  }
+
+  /**
+   * @param query The normalised query
+   *
+   * @return The matching primary keys in rank order
+   */
+  private List<Long> rank(Map<String, List<String>> query) {
+
+    final Map<Long, Integer> scores = Maps.newHashMap();
+    for (Map.Entry<String, List<String>> criterion : query.entrySet()) {
+      for (Long id : postings.match(criterion.getKey(), criterion.getValue())) {
+        Integer score = scores.get(id);
+        scores.put(id, score == null ? 1 : score + 1);
+      }
+    }
+
+    List<Long> ids = Lists.newArrayList(scores.keySet());
+    Collections.sort(ids, new Comparator<Long>() {
+      @Override
+      public int compare(Long o1, Long o2) {
+        int byScore = scores.get(o2).compareTo(scores.get(o1));
+        return byScore != 0 ? byScore : o1.compareTo(o2);
+      }
+    });
+    return ids;
+  }
+
+  /**
+   * <p>Replace the indexed text of an Item once the current transaction (if any) commits</p>
+   * <p>The text is read immediately so that lazy collections are initialised within the current session. A
+   * deleted Item is removed from the index (as it would be by a rebuild).</p>
+   *
+   * @param item The Item that has been written (must have been assigned a primary key)
+   */
+  public void update(Item item) {
+    Preconditions.checkNotNull(item, "item cannot be null");
+    if (item.getId() == null) {
+      log.warn("Item with SKU '{}' has no primary key so cannot be indexed", item.getSKU());
+      return;
+    }
+
+    final Long id = item.getId();
+    final Map<String, Set<String>> document = item.isDeleted() ? null : document(item);
+
+    Runnable update = new Runnable() {
+      @Override
+      public void run() {
+        lock.writeLock().lock();
+        try {
+          postings.remove(id);
+          if (document != null) {
+            postings.add(id, document);
+          }
+          results.invalidateAll();
+        } finally {
+          lock.writeLock().unlock();
+        }
+      }
+    };
+
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      final Runnable afterCommit = update;
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+        @Override
+        public void afterCommit() {
+          afterCommit.run();
+        }
+      });
+    } else {
+      update.run();
+    }
+  }
+
+  /**
+   * <p>Discard the current index and rebuild it from the Items in the database</p>
+   * <p>Searches continue against the previous index until the rebuild completes but updates made
+   * during the rebuild may be lost so this should only be used before the application is serving requests.</p>
+   */
+  @SuppressWarnings("unchecked")
+  public void rebuild() {
+
+    Postings rebuilt = new Postings();
+    long lastId = 0L;
+    int count = 0;
+
+    while (true) {
+      final long fromId = lastId;
+      List<Item> items = (List<Item>) hibernateTemplate.executeFind(new HibernateCallback() {
+        public Object doInHibernate(Session session) throws HibernateException, SQLException {
+          String idsAfter = NamedQueryRegistry.queryName(Item.class, NamedQueryRegistry.IDS_AFTER);
+          List ids = namedQueryRegistry.list(idsAfter, namedQueryRegistry
+            .getNamedQuery(session, idsAfter)
+            .setLong(0, fromId)
+            .setMaxResults(REBUILD_CHUNK_SIZE));
+          if (ids.isEmpty()) {
+            return ids;
+          }
+          // All fields and locales are indexed
+          return namedQueryRegistry.list(CATALOGUE_QUERY, namedQueryRegistry
+            .getNamedQuery(session, CATALOGUE_QUERY)
+            .setParameterList("ids", ids));
+        }
+      });
+      if (items.isEmpty()) {
+        break;
+      }
+      for (Item item : items) {
+        rebuilt.add(item.getId(), document(item));
+        lastId = Math.max(lastId, item.getId());
+      }
+      count += items.size();
+    }
+
+    lock.writeLock().lock();
+    try {
+      postings = rebuilt;
+      results.invalidateAll();
+    } finally {
+      lock.writeLock().unlock();
+    }
+    log.info("Item search index rebuilt with {} items", count);
+  }
+
+  /**
+   * @return The number of Items currently indexed
+   */
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return postings.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public void setHibernateTemplate(HibernateTemplate hibernateTemplate) {
+    this.hibernateTemplate = hibernateTemplate;
+  }
+
+  public void setNamedQueryRegistry(NamedQueryRegistry namedQueryRegistry) {
+    this.namedQueryRegistry = namedQueryRegistry;
+  }
+
+  /**
+   * @param content The text to tokenise
+   *
+   * @return The lower case tokens in order of appearance (can be empty)
+   */
+  static List<String> tokenize(String content) {
+    List<String> tokens = Lists.newArrayList();
+    if (content == null) {
+      return tokens;
+    }
+    for (String token : TOKEN_SEPARATOR.split(content.toLowerCase(Locale.ROOT))) {
+      if (token.length() > 0) {
+        tokens.add(token);
+      }
+    }
+    return tokens;
+  }
+
+  /**
+   * @param itemField The Item field
+   * @param localeKey The locale key of the text
+   *
+   * @return The key of the postings for the field and locale
+   */
+  private static String fieldKey(ItemField itemField, String localeKey) {
+    return itemField.name() + "|" + localeKey;
+  }
+
+  /**
+   * @param criteria The field details from an example Item
+   *
+   * @return The sorted distinct tokens of each field and locale in sorted order (criteria without tokens match nothing so are dropped)
+   */
+  private static Map<String, List<String>> query(Collection<ItemFieldDetail> criteria) {
+    Map<String, List<String>> query = Maps.newTreeMap();
+    for (ItemFieldDetail criterion : criteria) {
+      LocalisedText text = criterion.getPrimaryDetail();
+      if (text == null) {
+        continue;
+      }
+      Set<String> tokens = Sets.newTreeSet(tokenize(text.getContent()));
+      if (tokens.isEmpty()) {
+        continue;
+      }
+      query.put(fieldKey(criterion.getItemField(), text.getLocaleKey()), Lists.newArrayList(tokens));
+    }
+    return query;
+  }
+
+  /**
+   * @param item The Item
+   *
+   * @return The distinct tokens of each field and locale present in the Item
+   */
+  private static Map<String, Set<String>> document(Item item) {
+    Map<String, Set<String>> document = Maps.newHashMap();
+    for (ItemFieldDetail itemFieldDetail : item.getItemFieldMap().values()) {
+      addText(document, itemFieldDetail.getItemField(), itemFieldDetail.getPrimaryDetail());
+      for (LocalisedText secondaryDetail : itemFieldDetail.getSecondaryDetails()) {
+        addText(document, itemFieldDetail.getItemField(), secondaryDetail);
+      }
+    }
+    return document;
+  }
+
+  private static void addText(Map<String, Set<String>> document, ItemField itemField, LocalisedText text) {
+    if (text == null) {
+      return;
+    }
+    String key = fieldKey(itemField, text.getLocaleKey());
+    Set<String> tokens = document.get(key);
+    if (tokens == null) {
+      tokens = Sets.newHashSet();
+      document.put(key, tokens);
+    }
+    tokens.addAll(tokenize(text.getContent()));
+  }
+
+  /**
+   * <p>The index data (not thread safe so guarded by the enclosing lock)</p>
+   */
+  private static class Postings {
+
+    /**
+     * Field and locale key to the sorted tokens and the Items containing them
+     */
+    private final Map<String, NavigableMap<String, Set<Long>>> fields = Maps.newHashMap();
+
+    /**
+     * Item primary key to the indexed document (allows removal without a scan)
+     */
+    private final Map<Long, Map<String, Set<String>>> documents = Maps.newHashMap();
+
+    private void add(Long id, Map<String, Set<String>> document) {
+      documents.put(id, document);
+      for (Map.Entry<String, Set<String>> entry : document.entrySet()) {
+        NavigableMap<String, Set<Long>> tokens = fields.get(entry.getKey());
+        if (tokens == null) {
+          tokens = Maps.newTreeMap();
+          fields.put(entry.getKey(), tokens);
+        }
+        for (String token : entry.getValue()) {
+          Set<Long> ids = tokens.get(token);
+          if (ids == null) {
+            ids = Sets.newHashSet();
+            tokens.put(token, ids);
+          }
+          ids.add(id);
+        }
+      }
+    }
+
+    private void remove(Long id) {
+      Map<String, Set<String>> document = documents.remove(id);
+      if (document == null) {
+        return;
+      }
+      for (Map.Entry<String, Set<String>> entry : document.entrySet()) {
+        NavigableMap<String, Set<Long>> tokens = fields.get(entry.getKey());
+        for (String token : entry.getValue()) {
+          Set<Long> ids = tokens.get(token);
+          ids.remove(id);
+          if (ids.isEmpty()) {
+            tokens.remove(token);
+          }
+        }
+      }
+    }
+
+    /**
+     * @param fieldKey The field and locale key
+     * @param tokens   The query tokens (each treated as a prefix)
+     *
+     * @return The Items containing every token in the given field and locale
+     */
+    private Set<Long> match(String fieldKey, List<String> tokens) {
+      NavigableMap<String, Set<Long>> field = fields.get(fieldKey);
+      if (field == null || tokens.isEmpty()) {
+        return Collections.emptySet();
+      }
+
+      Set<Long> matches = null;
+      for (String token : tokens) {
+        Set<Long> tokenMatches = Sets.newHashSet();
+        for (Set<Long> ids : field.subMap(token, true, token + Character.MAX_VALUE, false).values()) {
+          tokenMatches.addAll(ids);
+        }
+        if (matches == null) {
+          matches = tokenMatches;
+        } else {
+          matches.retainAll(tokenMatches);
+        }
+        if (matches.isEmpty()) {
+          break;
+        }
+      }
+      return matches;
+    }
+
+    private int size() {
+      return documents.size();
+    }
+  }
+
+}
@@ -0,0 +1,266 @@
+package org.multibit.mbm.client.infrastructure.persistence.hibernate.statistics;
+
+import com.google.common.collect.Sets;
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.Meter;
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
+import org.hibernate.util.StringHelper;
+import org.multibit.mbm.client.infrastructure.persistence.hibernate.queries.NamedQueryRegistry;
+import org.springframework.orm.hibernate3.HibernateTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Bridge to provide the following to the metrics registry (browsable on the admin port):</p>
+ * <ul>
+ * <li>Rates of session, transaction, flush, connection and statement activity</li>
+ * <li>Per entity load, fetch, insert, update and delete counts</li>
+ * <li>Per collection load and fetch counts</li>
+ * <li>Per named query execution count, rows, average and maximum time</li>
+ * <li>Per second-level and query cache region hit, miss and put counts</li>
+ * </ul>
+ * <p>Hibernate only keeps cumulative counters so {@link #sample()} must be called periodically (see
+ * {@link #SAMPLE_INTERVAL_SECONDS}) to turn them into rates. Each sample also registers gauges for any entity,
+ * collection, region or named query that has appeared since the last one. Requires
+ * <code>hibernate.generate_statistics</code>.</p>
+ *
+ * @since 0.0.1
+ */
+@Component("hibernateStatisticsMetrics")
+public class HibernateStatisticsMetrics {
+
+  /**
+   * Matches the tick interval of the metrics meters
+   */
+  public static final long SAMPLE_INTERVAL_SECONDS = 5;
+
+  @Resource(name = "hibernateTemplate")
+  private HibernateTemplate hibernateTemplate = null;
+
+  @Resource(name = "namedQueryRegistry")
+  private NamedQueryRegistry namedQueryRegistry = null;
+
+  private final Set<String> registered = Sets.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+  private final CumulativeMeter sessionsOpened = new CumulativeMeter("sessions-opened", "sessions");
+  private final CumulativeMeter sessionsClosed = new CumulativeMeter("sessions-closed", "sessions");
+  private final CumulativeMeter transactions = new CumulativeMeter("transactions", "transactions");
+  private final CumulativeMeter flushes = new CumulativeMeter("flushes", "flushes");
+  private final CumulativeMeter connections = new CumulativeMeter("connections", "connections");
+  private final CumulativeMeter statementsPrepared = new CumulativeMeter("statements-prepared", "statements");
+  private final CumulativeMeter entityLoads = new CumulativeMeter("entity-loads", "entities");
+  private final CumulativeMeter entityFetches = new CumulativeMeter("entity-fetches", "entities");
+  private final CumulativeMeter collectionFetches = new CumulativeMeter("collection-fetches", "collections");
+  private final CumulativeMeter queryExecutions = new CumulativeMeter("query-executions", "queries");
+
+  /**
+   * Update the rates from the cumulative counters and register gauges for anything new
+   */
+  public synchronized void sample() {
+    Statistics statistics = statistics();
+
+    sessionsOpened.update(statistics.getSessionOpenCount());
+    sessionsClosed.update(statistics.getSessionCloseCount());
+    transactions.update(statistics.getTransactionCount());
+    flushes.update(statistics.getFlushCount());
+    connections.update(statistics.getConnectCount());
+    statementsPrepared.update(statistics.getPrepareStatementCount());
+    entityLoads.update(statistics.getEntityLoadCount());
+    entityFetches.update(statistics.getEntityFetchCount());
+    collectionFetches.update(statistics.getCollectionFetchCount());
+    queryExecutions.update(statistics.getQueryExecutionCount());
+
+    if (registered.add("sessions-open")) {
+      Metrics.newGauge(HibernateStatisticsMetrics.class, "sessions-open", new Gauge<Long>() {
+        @Override
+        public Long value() {
+          Statistics statistics = statistics();
+          return statistics.getSessionOpenCount() - statistics.getSessionCloseCount();
+        }
+      });
+    }
+    for (String entityName : statistics.getEntityNames()) {
+      registerEntity(entityName);
+    }
+    for (String role : statistics.getCollectionRoleNames()) {
+      registerCollection(role);
+    }
+    for (String regionName : statistics.getSecondLevelCacheRegionNames()) {
+      registerRegion(regionName);
+    }
+    for (Map.Entry<String, String> queryString : namedQueryRegistry.getQueryStrings().entrySet()) {
+      registerQuery(queryString.getKey(), queryString.getValue());
+    }
+  }
+
+  public void setHibernateTemplate(HibernateTemplate hibernateTemplate) {
+    this.hibernateTemplate = hibernateTemplate;
+  }
+
+  public void setNamedQueryRegistry(NamedQueryRegistry namedQueryRegistry) {
+    this.namedQueryRegistry = namedQueryRegistry;
+  }
+
+  private Statistics statistics() {
+    return hibernateTemplate.getSessionFactory().getStatistics();
+  }
+
+  /**
+   * @param entityName The fully qualified entity name (scoped by the simple name)
+   */
+  private void registerEntity(final String entityName) {
+    if (!registered.add("entity:" + entityName)) {
+      return;
+    }
+    String scope = StringHelper.unqualify(entityName);
+    Metrics.newGauge(HibernateStatisticsMetrics.class, "entity-loads", scope, new Gauge<Long>() {
+      @Override
+      public Long value() {
+        return statistics().getEntityStatistics(entityName).getLoadCount();
+      }
+    });
+    Metrics.newGauge(HibernateStatisticsMetrics.class, "entity-fetches", scope, new Gauge<Long>() {
+      @Override
+      public Long value() {
+        return statistics().getEntityStatistics(entityName).getFetchCount();
+      }
+    });
+    Metrics.newGauge(HibernateStatisticsMetrics.class, "entity-inserts", scope, new Gauge<Long>() {
+      @Override
+      public Long value() {
+        return statistics().getEntityStatistics(entityName).getInsertCount();
+      }
+    });
+    Metrics.newGauge(HibernateStatisticsMetrics.class, "entity-updates", scope, new Gauge<Long>() {
+      @Override
+      public Long value() {
+        return statistics().getEntityStatistics(entityName).getUpdateCount();
+      }
+    });
+    Metrics.newGauge(HibernateStatisticsMetrics.class, "entity-deletes", scope, new Gauge<Long>() {
+      @Override
+      public Long value() {
+        return statistics().getEntityStatistics(entityName).getDeleteCount();
+      }
+    });
+  }
+
+  /**
+   * @param role The collection role (e.g. "org.example.Item.itemFieldMap" is scoped as "Item.itemFieldMap")
+   */
+  private void registerCollection(final String role) {
+    if (!registered.add("collection:" + role)) {
+      return;
+    }
+    String scope = StringHelper.unqualify(StringHelper.qualifier(role)) + "." + StringHelper.unqualify(role);
+    Metrics.newGauge(HibernateStatisticsMetrics.class, "collection-loads", scope, new Gauge<Long>() {
+      @Override
+      public Long value() {
+        return statistics().getCollectionStatistics(role).getLoadCount();
+      }
+    });
+    Metrics.newGauge(HibernateStatisticsMetrics.class, "collection-fetches", scope, new Gauge<Long>() {
+      @Override
+      public Long value() {
+        return statistics().getCollectionStatistics(role).getFetchCount();
+      }
+    });
+  }
+
+  /**
+   * @param regionName The second-level or query cache region name
+   */
+  private void registerRegion(final String regionName) {
+    if (!registered.add("region:" + regionName)) {
+      return;
+    }
+    Metrics.newGauge(HibernateStatisticsMetrics.class, "cache-hits", regionName, new Gauge<Long>() {
+      @Override
+      public Long value() {
+        SecondLevelCacheStatistics region = statistics().getSecondLevelCacheStatistics(regionName);
+        return region == null ? 0 : region.getHitCount();
+      }
+    });
+    Metrics.newGauge(HibernateStatisticsMetrics.class, "cache-misses", regionName, new Gauge<Long>() {
+      @Override
+      public Long value() {
+        SecondLevelCacheStatistics region = statistics().getSecondLevelCacheStatistics(regionName);
+        return region == null ? 0 : region.getMissCount();
+      }
+    });
+    Metrics.newGauge(HibernateStatisticsMetrics.class, "cache-puts", regionName, new Gauge<Long>() {
+      @Override
+      public Long value() {
+        SecondLevelCacheStatistics region = statistics().getSecondLevelCacheStatistics(regionName);
+        return region == null ? 0 : region.getPutCount();
+      }
+    });
+  }
+
+  /**
+   * @param queryName   The named query (used as the scope)
+   * @param queryString The HQL that Hibernate keys the query statistics by
+   */
+  private void registerQuery(String queryName, final String queryString) {
+    if (!registered.add("query:" + queryName)) {
+      return;
+    }
+    Metrics.newGauge(HibernateStatisticsMetrics.class, "query-executions", queryName, new Gauge<Long>() {
+      @Override
+      public Long value() {
+        return queryStatistics(queryString).getExecutionCount();
+      }
+    });
+    Metrics.newGauge(HibernateStatisticsMetrics.class, "query-rows", queryName, new Gauge<Long>() {
+      @Override
+      public Long value() {
+        return queryStatistics(queryString).getExecutionRowCount();
+      }
+    });
+    Metrics.newGauge(HibernateStatisticsMetrics.class, "query-avg-millis", queryName, new Gauge<Long>() {
+      @Override
+      public Long value() {
+        return queryStatistics(queryString).getExecutionAvgTime();
+      }
+    });
+    Metrics.newGauge(HibernateStatisticsMetrics.class, "query-max-millis", queryName, new Gauge<Long>() {
+      @Override
+      public Long value() {
+        return queryStatistics(queryString).getExecutionMaxTime();
+      }
+    });
+  }
+
+  private QueryStatistics queryStatistics(String queryString) {
+    return statistics().getQueryStatistics(queryString);
+  }
+
+  /**
+   * Meter to provide a rate from a cumulative counter
+   */
+  private static class CumulativeMeter {
+
+    private final Meter meter;
+
+    private long last = 0;
+
+    private CumulativeMeter(String name, String eventType) {
+      this.meter = Metrics.newMeter(HibernateStatisticsMetrics.class, name, eventType, TimeUnit.SECONDS);
+    }
+
+    private void update(long current) {
+      // The counters restart if the statistics are cleared
+      meter.mark(current >= last ? current - last : current);
+      last = current;
+    }
+  }
+
+}
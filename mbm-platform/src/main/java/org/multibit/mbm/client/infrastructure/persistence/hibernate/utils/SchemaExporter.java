@@ -2,15 +2,19 @@ package org.multibit.mbm.client.infrastructure.persistence.hibernate.utils;
 
 import com.google.common.collect.Lists;
 import org.hibernate.cfg.Configuration;
-import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.HSQLDialect;
 import org.hibernate.tool.hbm2ddl.SchemaExport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.persistence.Embeddable;
+import javax.persistence.Entity;
+import javax.persistence.MappedSuperclass;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Enumeration;
 import java.util.List;
 
 public class SchemaExporter {
@@ -25,7 +29,12 @@ public class SchemaExporter {
 
     for (String packageName : packageNames) {
       for (Class<Object> clazz : getClasses(packageName)) {
-        cfg.addAnnotatedClass(clazz);
+        // Builders, enums and the like share the packages with the entities
+        if (clazz.isAnnotationPresent(Entity.class)
+          || clazz.isAnnotationPresent(Embeddable.class)
+          || clazz.isAnnotationPresent(MappedSuperclass.class)) {
+          cfg.addAnnotatedClass(clazz);
+        }
       }
     }
 
@@ -41,9 +50,9 @@ public class SchemaExporter {
     
     log.info("Starting schema export process");
     
-    cfg.setProperty("hibernate.dialect", H2Dialect.class.getCanonicalName());
+    cfg.setProperty("hibernate.dialect", HSQLDialect.class.getCanonicalName());
 
-    File patchSchema = new File("src/main/resources/sql/" + revision + "/patch-schema.sql");
+    File patchSchema = patchSchemaFile(revision);
     if (!patchSchema.exists()) {
       patchSchema.getParentFile().mkdirs();
       patchSchema.createNewFile();
@@ -52,12 +61,21 @@ public class SchemaExporter {
     SchemaExport export = new SchemaExport(cfg);
     export.setDelimiter(";");
     export.setOutputFile(patchSchema.getAbsolutePath());
-    // Generates alter table drops which should be removed at version 0
-    export.execute(true, false, false, false);
+    // Create statements only since the SchemaMigrationRunner applies each revision exactly once
+    export.execute(true, false, false, true);
 
     log.info("Schema export complete. Results in '{}'",patchSchema.getAbsolutePath());
   }
 
+  /**
+   * @param revision The revision number of the database (e.g. 0, 1, 2 etc)
+   *
+   * @return The patch schema for the revision (relative to the module directory)
+   */
+  public static File patchSchemaFile(int revision) {
+    return new File("src/main/resources/sql/" + revision + "/patch-schema.sql");
+  }
+
   /**
    * @param args Command line args (ignored)
    * @throws Exception If something goes wrong
@@ -67,8 +85,8 @@ public class SchemaExporter {
     int revision = 0;
 
     List<String> packages = Lists.newArrayList(
-      "org.multibit.mbm.db.dto",
-      "");
+      "org.multibit.mbm.client.domain.model.model",
+      "org.multibit.mbm.client.domain.model.pricing.rules");
 
     SchemaExporter schemaExporter = new SchemaExporter(packages);
     schemaExporter.execute(revision);
@@ -78,28 +96,31 @@ public class SchemaExporter {
    * Utility method used to fetch Class list based on a package name.
    *
    * @param packageName The package name containing the annotated classes
-   * @return A list of classes within the given package
+   * @return A list of classes within the given package (across all class path directories, e.g. "classes" and "test-classes")
    * @throws ClassNotFoundException If something goes wrong
    */
   private List<Class> getClasses(String packageName) throws ClassNotFoundException {
     List<Class> classes = new ArrayList<Class>();
-    File directory = null;
+    ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+    if (classLoader == null) {
+      throw new ClassNotFoundException("No class loader");
+    }
+    String path = packageName.replace('.', '/');
+    Enumeration<URL> resources;
     try {
-      ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
-      if (classLoader == null) {
-        throw new ClassNotFoundException("No class loader");
-      }
-      String path = packageName.replace('.', '/');
-      URL resource = classLoader.getResource(path);
-      if (resource == null) {
-        throw new ClassNotFoundException("No resource for " + path);
-      }
-      directory = new File(resource.getFile());
-    } catch (NullPointerException x) {
-      throw new ClassNotFoundException(packageName + " (" + directory
-        + ") does not appear to be a valid package");
+      resources = classLoader.getResources(path);
+    } catch (IOException e) {
+      throw new ClassNotFoundException("No resource for " + path, e);
+    }
+    if (!resources.hasMoreElements()) {
+      throw new ClassNotFoundException("No resource for " + path);
     }
-    if (directory.exists()) {
+    while (resources.hasMoreElements()) {
+      File directory = new File(resources.nextElement().getFile());
+      if (!directory.exists()) {
+        throw new ClassNotFoundException(packageName + " (" + directory
+          + ") does not appear to be a valid package");
+      }
       String[] files = directory.list();
       for (int i = 0; i < files.length; i++) {
         if (files[i].endsWith(".class")) {
@@ -108,9 +129,6 @@ public class SchemaExporter {
             + files[i].substring(0, files[i].length() - 6)));
         }
       }
-    } else {
-      throw new ClassNotFoundException(packageName
-        + " is not a valid package");
     }
 
     return classes;
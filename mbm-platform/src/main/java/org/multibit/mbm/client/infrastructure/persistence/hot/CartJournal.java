@@ -0,0 +1,328 @@
+package org.multibit.mbm.client.infrastructure.persistence.hot;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+import org.multibit.mbm.client.domain.model.model.Cart;
+import org.multibit.mbm.client.domain.model.model.CartItem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Append-only log to provide the following to {@link HotCartStore}:</p>
+ * <ul>
+ * <li>A record of every Cart change that has not yet been written to the database</li>
+ * <li>Recovery of those changes after a crash</li>
+ * </ul>
+ * <p>Each entry is the complete contents of one Cart on a single line:</p>
+ * <pre>
+ * &lt;cart id&gt; &lt;version&gt; &lt;persistent version&gt; &lt;writing version&gt; [&lt;sku&gt;:&lt;quantity&gt; ...]
+ * </pre>
+ * <p>so replay only needs the last entry for each Cart. The persistent version is the one the database held when
+ * the change was made (and the writing version one that was being written at the time) so that recovery can tell
+ * whether the Cart has since been changed elsewhere. Lines are keyed by SKU (URL encoded) so that they can be
+ * resolved in a single lookup. Entries are written in segments; a segment is rolled
+ * at the start of each flush and deleted once every change in it has reached the database. An entry is
+ * written (unbuffered) before the change is acknowledged so it survives the process. If synced (the default) it
+ * is also forced to the device before the append returns so it survives the operating system, at the cost of a
+ * disk write on every change.</p>
+ *
+ * @since 0.0.1
+ */
+public class CartJournal {
+
+  private static final Logger log = LoggerFactory.getLogger(CartJournal.class);
+
+  private static final String PREFIX = "carts-";
+  private static final String SUFFIX = ".log";
+
+  private static final Splitter FIELDS = Splitter.on(' ').omitEmptyStrings();
+
+  private final File directory;
+
+  private final boolean sync;
+
+  private long sequence;
+
+  private FileOutputStream segment = null;
+
+  /**
+   * @param directory The directory holding the segments (created if absent)
+   */
+  public CartJournal(File directory) {
+    this(directory, true);
+  }
+
+  /**
+   * @param directory The directory holding the segments (created if absent)
+   * @param sync      True if each entry is forced to the device before the append returns
+   */
+  public CartJournal(File directory, boolean sync) {
+    Preconditions.checkNotNull(directory, "directory cannot be null");
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IllegalStateException("Cannot create the cart journal directory '" + directory.getAbsolutePath() + "'");
+    }
+    this.directory = directory;
+    this.sync = sync;
+
+    // Continue after any segments left by a previous run (they are replayed rather than appended to)
+    List<Long> sequences = sequences();
+    this.sequence = sequences.isEmpty() ? 0 : sequences.get(sequences.size() - 1) + 1;
+  }
+
+  /**
+   * @param entry The contents of a Cart following a change
+   *
+   * @throws IllegalStateException If the entry could not be written (the change must not be acknowledged)
+   */
+  public synchronized void append(Entry entry) {
+    Preconditions.checkNotNull(entry, "entry cannot be null");
+
+    StringBuilder line = new StringBuilder()
+      .append(entry.getCartId())
+      .append(' ')
+      .append(entry.getVersion())
+      .append(' ')
+      .append(entry.getPersistentVersion())
+      .append(' ')
+      .append(entry.getWritingVersion());
+    for (Map.Entry<String, Integer> quantity : entry.getQuantities().entrySet()) {
+      line
+        .append(' ')
+        .append(encode(quantity.getKey()))
+        .append(':')
+        .append(quantity.getValue());
+    }
+    line.append('\n');
+
+    try {
+      if (segment == null) {
+        segment = new FileOutputStream(file(sequence), true);
+      }
+      segment.write(line.toString().getBytes(Charsets.UTF_8));
+      if (sync) {
+        // Only the contents matter (the segment length is recovered from the lines)
+        segment.getChannel().force(false);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Cannot write to the cart journal", e);
+    }
+  }
+
+  /**
+   * Start a new segment for subsequent entries
+   *
+   * @return The sequence of the last segment that will no longer be written to
+   */
+  public synchronized long roll() {
+    close();
+    return sequence++;
+  }
+
+  /**
+   * @param lastSequence The last segment to delete (as returned from {@link #roll()})
+   */
+  public synchronized void delete(long lastSequence) {
+    for (Long existing : sequences()) {
+      if (existing <= lastSequence && !file(existing).delete()) {
+        log.warn("Cannot delete cart journal segment '{}'", file(existing).getAbsolutePath());
+      }
+    }
+  }
+
+  /**
+   * @return The most recent entry for each Cart across all segments
+   */
+  public synchronized Map<Long, Entry> replay() {
+
+    Map<Long, Entry> entries = Maps.newLinkedHashMap();
+    for (Long existing : sequences()) {
+      File file = file(existing);
+      List<String> lines;
+      try {
+        lines = Files.readLines(file, Charsets.UTF_8);
+      } catch (IOException e) {
+        throw new IllegalStateException("Cannot read cart journal segment '" + file.getAbsolutePath() + "'", e);
+      }
+      for (String line : lines) {
+        try {
+          Entry entry = parse(line);
+          entries.put(entry.getCartId(), entry);
+        } catch (RuntimeException e) {
+          // Only expected for the last line written before a crash
+          log.warn("Ignoring incomplete cart journal entry '{}' in '{}'", line, file.getName());
+        }
+      }
+    }
+    return entries;
+  }
+
+  /**
+   * Release the current segment
+   */
+  public synchronized void close() {
+    if (segment != null) {
+      try {
+        segment.close();
+      } catch (IOException e) {
+        log.warn("Cannot close the cart journal", e);
+      }
+      segment = null;
+    }
+  }
+
+  private Entry parse(String line) {
+    Iterator<String> fields = FIELDS.split(line).iterator();
+    long cartId = Long.parseLong(fields.next());
+    long version = Long.parseLong(fields.next());
+    long persistentVersion = Long.parseLong(fields.next());
+    long writingVersion = Long.parseLong(fields.next());
+
+    Map<String, Integer> quantities = Maps.newLinkedHashMap();
+    while (fields.hasNext()) {
+      String field = fields.next();
+      int separator = field.lastIndexOf(':');
+      Preconditions.checkArgument(separator > 0, "quantity is missing");
+      quantities.put(decode(field.substring(0, separator)), Integer.parseInt(field.substring(separator + 1)));
+    }
+    return new Entry(cartId, version, persistentVersion, writingVersion, quantities);
+  }
+
+  private static String encode(String sku) {
+    try {
+      return URLEncoder.encode(sku, Charsets.UTF_8.name());
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String decode(String sku) {
+    try {
+      return URLDecoder.decode(sku, Charsets.UTF_8.name());
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private File file(long sequence) {
+    return new File(directory, String.format("%s%010d%s", PREFIX, sequence, SUFFIX));
+  }
+
+  /**
+   * @return The sequences of the existing segments in ascending order
+   */
+  private List<Long> sequences() {
+    String[] names = directory.list(new FilenameFilter() {
+      @Override
+      public boolean accept(File dir, String name) {
+        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+      }
+    });
+    List<Long> sequences = Lists.newArrayList();
+    if (names != null) {
+      for (String name : names) {
+        try {
+          sequences.add(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+        } catch (NumberFormatException e) {
+          log.warn("Ignoring unexpected file '{}' in the cart journal directory", name);
+        }
+      }
+    }
+    Collections.sort(sequences);
+    return sequences;
+  }
+
+  /**
+   * The contents of a Cart at a version
+   */
+  public static class Entry {
+
+    private final long cartId;
+    private final long version;
+    private final long persistentVersion;
+    private final long writingVersion;
+    private final Map<String, Integer> quantities;
+
+    public Entry(long cartId, long version, long persistentVersion, long writingVersion, Map<String, Integer> quantities) {
+      this.cartId = cartId;
+      this.version = version;
+      this.persistentVersion = persistentVersion;
+      this.writingVersion = writingVersion;
+      this.quantities = ImmutableMap.copyOf(quantities);
+    }
+
+    /**
+     * @param cart              The Cart
+     * @param persistentVersion The version last written to the database
+     * @param writingVersion    The version being written to the database (the persistent version if none)
+     *
+     * @return The current contents of the Cart
+     */
+    public static Entry of(Cart cart, long persistentVersion, long writingVersion) {
+      Preconditions.checkNotNull(cart.getId(), "cart must be persistent");
+      return new Entry(cart.getId(), cart.getVersion(), persistentVersion, writingVersion, quantities(cart));
+    }
+
+    /**
+     * @param cart The Cart
+     *
+     * @return The quantity of each line keyed by SKU (in line order)
+     */
+    public static Map<String, Integer> quantities(Cart cart) {
+      Map<String, Integer> quantities = Maps.newLinkedHashMap();
+      for (CartItem cartItem : cart.getCartItems()) {
+        quantities.put(cartItem.getItem().getSKU(), cartItem.getQuantity());
+      }
+      return quantities;
+    }
+
+    public long getCartId() {
+      return cartId;
+    }
+
+    public long getVersion() {
+      return version;
+    }
+
+    public long getPersistentVersion() {
+      return persistentVersion;
+    }
+
+    public long getWritingVersion() {
+      return writingVersion;
+    }
+
+    /**
+     * @param databaseVersion The version now in the database
+     *
+     * @return True if the database holds a version this entry was based on (so nothing else has changed the Cart)
+     */
+    public boolean isBasedOn(long databaseVersion) {
+      return databaseVersion == persistentVersion || databaseVersion == writingVersion;
+    }
+
+    /**
+     * @return The quantity of each line keyed by SKU (in line order)
+     */
+    public Map<String, Integer> getQuantities() {
+      return quantities;
+    }
+  }
+
+}
@@ -0,0 +1,76 @@
+package org.multibit.mbm.client.infrastructure.persistence.hot;
+
+import com.google.common.base.Preconditions;
+import org.hibernate.event.PostDeleteEvent;
+import org.hibernate.event.PostDeleteEventListener;
+import org.hibernate.event.PostInsertEvent;
+import org.hibernate.event.PostInsertEventListener;
+import org.hibernate.event.PostUpdateEvent;
+import org.hibernate.event.PostUpdateEventListener;
+import org.multibit.mbm.client.domain.model.model.Cart;
+import org.multibit.mbm.client.domain.model.model.CartItem;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * <p>Hibernate post-commit listener to provide the following to the {@link HotCartStore}:</p>
+ * <ul>
+ * <li>Invalidation of held Carts written elsewhere (e.g. by an administrator or a price change)</li>
+ * </ul>
+ * <p>Only committed writes are seen so a rollback never reaches a held Cart. Stores are registered when
+ * write-behind is configured so this listener does nothing otherwise.</p>
+ *
+ * @since 0.0.1
+ */
+@Component("hotCartListener")
+public class HotCartListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+  private static final long serialVersionUID = 38947590321904L;
+
+  private final transient Set<HotCartStore> hotCartStores = new CopyOnWriteArraySet<HotCartStore>();
+
+  /**
+   * @param hotCartStore The store to invalidate when a Cart is written
+   */
+  public void register(HotCartStore hotCartStore) {
+    Preconditions.checkNotNull(hotCartStore, "hotCartStore cannot be null");
+    hotCartStores.add(hotCartStore);
+  }
+
+  @Override
+  public void onPostInsert(PostInsertEvent event) {
+    invalidate(event.getEntity());
+  }
+
+  @Override
+  public void onPostUpdate(PostUpdateEvent event) {
+    invalidate(event.getEntity());
+  }
+
+  @Override
+  public void onPostDelete(PostDeleteEvent event) {
+    invalidate(event.getEntity());
+  }
+
+  private void invalidate(Object entity) {
+    if (hotCartStores.isEmpty()) {
+      return;
+    }
+    // A change to the lines alone does not update the Cart row
+    Cart cart = null;
+    if (entity instanceof Cart) {
+      cart = (Cart) entity;
+    } else if (entity instanceof CartItem) {
+      cart = ((CartItem) entity).getCart();
+    }
+    if (cart == null) {
+      return;
+    }
+    for (HotCartStore hotCartStore : hotCartStores) {
+      hotCartStore.invalidate(cart.getId());
+    }
+  }
+
+}
@@ -0,0 +1,733 @@
+package org.multibit.mbm.client.infrastructure.persistence.hot;
+
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.Striped;
+import com.yammer.dropwizard.lifecycle.Managed;
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.Meter;
+import org.multibit.mbm.client.domain.model.model.Cart;
+import org.multibit.mbm.client.domain.model.model.CartItem;
+import org.multibit.mbm.client.domain.model.model.Item;
+import org.multibit.mbm.client.domain.repositories.CartReadService;
+import org.multibit.mbm.client.domain.repositories.ItemReadService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.Resource;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>Store to provide the following to the public Cart resource:</p>
+ * <ul>
+ * <li>Serialised changes to each Cart under a striped lock (rather than optimistic retries against the database)</li>
+ * <li>Optionally, write-behind: changed Carts are held in memory and flushed to the database in batches</li>
+ * <li>Optionally, an append-only {@link CartJournal} so that unflushed changes survive a crash</li>
+ * </ul>
+ * <p>With write-behind a change costs a lock and (if journalled) a single append. The Cart version still
+ * advances on every change so entity tags keep their meaning, and a flush brings the database up to the same
+ * version. A Cart is only held while it has changes to write so a Cart that is merely read is never held.</p>
+ * <p>A held Cart is only touched under its lock. Callers read (and render) it through {@link #read} and
+ * {@link #update}, and a write takes a snapshot of its lines that is applied to a Cart read afresh for the write.
+ * Writes are serialised so the version last written is always known before a Cart is written again.</p>
+ * <p>The held Carts are private to this instance so write-behind requires each visitor to be served by the same
+ * instance. A Cart changed elsewhere (e.g. by an administrator or a price change) is reported by the
+ * {@link HotCartListener} once committed, or detected on flush. The held changes have all been acknowledged so
+ * the lines changed here are merged into the database version before the Cart is next used or written. Only a
+ * Cart that no longer exists is discarded.</p>
+ * <p>Without write-behind (the default) each change is written through to the {@link CartReadService}.</p>
+ *
+ * @since 0.0.1
+ */
+@Component("hotCartStore")
+public class HotCartStore implements Managed {
+
+  private static final Logger log = LoggerFactory.getLogger(HotCartStore.class);
+
+  public static final int DEFAULT_BATCH_SIZE = 100;
+
+  private static final int LOCK_STRIPES = 256;
+
+  private final Striped<Lock> locks = Striped.lock(LOCK_STRIPES);
+
+  private final ConcurrentMap<Long, HeldCart> carts = Maps.newConcurrentMap();
+
+  /**
+   * Serialises writes (a scheduled flush, a single Cart flush and recovery)
+   */
+  private final ReentrantLock writeLock = new ReentrantLock();
+
+  /**
+   * The IDs of held Carts with changes the database has not seen
+   */
+  private final Set<Long> dirty = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+
+  private final Meter changes = Metrics.newMeter(HotCartStore.class, "changes", "carts", TimeUnit.SECONDS);
+
+  private final Meter flushed = Metrics.newMeter(HotCartStore.class, "flushed", "carts", TimeUnit.SECONDS);
+
+  private final Meter merged = Metrics.newMeter(HotCartStore.class, "merged", "carts", TimeUnit.SECONDS);
+
+  private final Meter discarded = Metrics.newMeter(HotCartStore.class, "discarded", "carts", TimeUnit.SECONDS);
+
+  @Resource(name = "cartReadService")
+  private CartReadService cartReadService = null;
+
+  @Resource(name = "itemReadService")
+  private ItemReadService itemReadService = null;
+
+  @Resource(name = "transactionManager")
+  private PlatformTransactionManager transactionManager = null;
+
+  private volatile boolean writeBehind = false;
+
+  private int batchSize = DEFAULT_BATCH_SIZE;
+
+  private Optional<CartJournal> journal = Optional.absent();
+
+  public HotCartStore() {
+    Metrics.newGauge(HotCartStore.class, "held", new Gauge<Integer>() {
+      @Override
+      public Integer value() {
+        return carts.size();
+      }
+    });
+    Metrics.newGauge(HotCartStore.class, "dirty", new Gauge<Integer>() {
+      @Override
+      public Integer value() {
+        return dirty.size();
+      }
+    });
+  }
+
+  /**
+   * @param batchSize The number of Carts written in each transaction
+   * @param journal   The journal for crash recovery (absent if unflushed changes may be lost)
+   */
+  public void configureWriteBehind(int batchSize, Optional<CartJournal> journal) {
+    Preconditions.checkArgument(batchSize > 0, "batchSize must be positive");
+    Preconditions.checkNotNull(journal, "journal cannot be null");
+    this.batchSize = batchSize;
+    this.journal = journal;
+    this.writeBehind = true;
+  }
+
+  /**
+   * A change to a Cart
+   */
+  public interface Change {
+
+    /**
+     * @param cart The current Cart (an exception leaves it unchanged provided nothing was applied)
+     */
+    void apply(Cart cart);
+
+  }
+
+  /**
+   * @param cart   The Cart as known to the caller
+   * @param reader Reads the current Cart (without changing it or letting it escape)
+   *
+   * @return The result of the reader
+   */
+  public <T> T read(Cart cart, Function<Cart, T> reader) {
+    Preconditions.checkNotNull(cart, "cart cannot be null");
+    Preconditions.checkNotNull(reader, "reader cannot be null");
+
+    if (!writeBehind || cart.getId() == null) {
+      return reader.apply(cart);
+    }
+
+    Lock lock = locks.get(cart.getId());
+    lock.lock();
+    try {
+      Optional<HeldCart> held = current(cart.getId());
+      if (held.isPresent()) {
+        return reader.apply(held.get().cart);
+      }
+      // The caller may hold an out of date Cart (e.g. on a cached principal) so read the latest without holding it
+      Optional<Cart> latestCart = cartReadService.getById(cart.getId());
+      return reader.apply(latestCart.isPresent() ? latestCart.get() : cart);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @param cart   The Cart as known to the caller
+   * @param change The change to apply
+   * @param reader Reads the changed Cart (without changing it or letting it escape)
+   *
+   * @return The result of the reader
+   */
+  public <T> T update(Cart cart, Change change, Function<Cart, T> reader) {
+    Preconditions.checkNotNull(cart, "cart cannot be null");
+    Preconditions.checkNotNull(change, "change cannot be null");
+    Preconditions.checkNotNull(reader, "reader cannot be null");
+
+    if (!writeBehind || cart.getId() == null) {
+      change.apply(cart);
+      return reader.apply(cartReadService.saveOrUpdate(cart));
+    }
+
+    Lock lock = locks.get(cart.getId());
+    lock.lock();
+    try {
+      Optional<HeldCart> held = hold(cart);
+      if (!held.isPresent()) {
+        // Archived so there is nothing to hold (the write will be refused)
+        change.apply(cart);
+        return reader.apply(cartReadService.saveOrUpdate(cart));
+      }
+      Map<Item, Integer> previousQuantities = Maps.newLinkedHashMap();
+      for (CartItem cartItem : held.get().cart.getCartItems()) {
+        previousQuantities.put(cartItem.getItem(), cartItem.getQuantity());
+      }
+      long previousVersion = held.get().cart.getVersion();
+
+      change.apply(held.get().cart);
+      held.get().cart.setVersion(previousVersion + 1);
+
+      // The change is only kept (and acknowledged) once it is in the journal
+      try {
+        journal(held.get());
+      } catch (RuntimeException e) {
+        rollBack(held.get(), previousQuantities, previousVersion);
+        throw e;
+      }
+      dirty.add(cart.getId());
+      changes.mark();
+
+      // Other requests for the Cart may change it as soon as the lock is released
+      return reader.apply(held.get().cart);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Write all changed Carts to the database in batches (each is released once written)
+   *
+   * @return The number of Carts written
+   */
+  public int flush() {
+    if (!writeBehind) {
+      return 0;
+    }
+
+    writeLock.lock();
+    try {
+      // Anything changed from here on is journalled to a new segment
+      Optional<Long> lastSegment = journal.isPresent() ? Optional.of(journal.get().roll()) : Optional.<Long>absent();
+
+      List<Long> ids = ImmutableList.copyOf(dirty);
+      int written = 0;
+      for (List<Long> batch : Lists.partition(ids, batchSize)) {
+        written += write(batch, true);
+      }
+      flushed.mark(written);
+
+      if (lastSegment.isPresent()) {
+        // A Cart that could not be written is journalled again so that nothing is lost with the earlier segments
+        for (Long id : ids) {
+          Lock lock = locks.get(id);
+          lock.lock();
+          try {
+            HeldCart held = carts.get(id);
+            if (held != null && dirty.contains(id)) {
+              journal(held);
+            }
+          } finally {
+            lock.unlock();
+          }
+        }
+        journal.get().delete(lastSegment.get());
+      }
+
+      return written;
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Write a single Cart immediately (e.g. on checkout)
+   *
+   * @param cart The Cart
+   *
+   * @return True if there were changes to write
+   */
+  public boolean flush(Cart cart) {
+    Preconditions.checkNotNull(cart, "cart cannot be null");
+    if (!writeBehind || cart.getId() == null) {
+      return false;
+    }
+
+    writeLock.lock();
+    try {
+      return write(ImmutableList.of(cart.getId()), true) > 0;
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * <p>Hold the Carts from the journal that did not reach the database and then flush them. A Cart that has been
+   * changed elsewhere since its entry was made is left as it is (the database wins as it would have on flush).</p>
+   *
+   * @return The number of Carts recovered
+   */
+  public int recover() {
+    if (!writeBehind || !journal.isPresent()) {
+      return 0;
+    }
+
+    writeLock.lock();
+    try {
+      Collection<CartJournal.Entry> entries = journal.get().replay().values();
+
+      // Resolve every line in a single lookup rather than one per line
+      Map<String, Item> items = itemReadService.getBySKUs(skus(entries));
+
+      int recovered = 0;
+      for (CartJournal.Entry entry : entries) {
+        Optional<Cart> cart = cartReadService.getById(entry.getCartId());
+        if (!cart.isPresent() || cart.get().getVersion() == entry.getVersion()) {
+          // Archived or already flushed
+          continue;
+        }
+        if (!entry.isBasedOn(cart.get().getVersion())) {
+          log.warn("Cart {} was changed outside the hot cart store so its journalled version {} was discarded",
+            entry.getCartId(), entry.getVersion());
+          discarded.mark();
+          continue;
+        }
+
+        HeldCart held = new HeldCart(cart.get());
+        apply(held.cart, entry.getQuantities(), items);
+        held.cart.setVersion(entry.getVersion());
+        carts.put(entry.getCartId(), held);
+        dirty.add(entry.getCartId());
+        recovered++;
+      }
+
+      log.info("Recovered {} carts from the journal", recovered);
+      flush();
+
+      return recovered;
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * @return The number of Carts held in memory
+   */
+  public int getHeldCount() {
+    return carts.size();
+  }
+
+  /**
+   * @return The number of held Carts with changes the database has not seen
+   */
+  public int getDirtyCount() {
+    return dirty.size();
+  }
+
+  /**
+   * Mark a held Cart as changed outside of this store once the change has committed (see {@link HotCartListener})
+   * so that it is brought up to date before it is next read or changed
+   *
+   * @param cartId The Cart ID
+   */
+  public void invalidate(Long cartId) {
+    if (cartId == null || writeLock.isHeldByCurrentThread()) {
+      // Not persistent or written by this store
+      return;
+    }
+    HeldCart held = carts.get(cartId);
+    if (held != null) {
+      held.stale = true;
+    }
+  }
+
+  @Override
+  public void start() throws Exception {
+    recover();
+  }
+
+  @Override
+  public void stop() throws Exception {
+    try {
+      flush();
+    } finally {
+      if (journal.isPresent()) {
+        journal.get().close();
+      }
+    }
+  }
+
+  public void setCartReadService(CartReadService cartReadService) {
+    this.cartReadService = cartReadService;
+  }
+
+  public void setItemReadService(ItemReadService itemReadService) {
+    this.itemReadService = itemReadService;
+  }
+
+  public void setTransactionManager(PlatformTransactionManager transactionManager) {
+    this.transactionManager = transactionManager;
+  }
+
+  /**
+   * Must be called under the lock for the Cart
+   *
+   * @param cart The Cart as known to the caller
+   *
+   * @return The held Cart (read from the Cart read service when first held since the caller may be stale), absent
+   * if the Cart no longer exists
+   */
+  private Optional<HeldCart> hold(Cart cart) {
+    HeldCart held = current(cart.getId()).orNull();
+    if (held == null) {
+      Optional<Cart> latestCart = cartReadService.getById(cart.getId());
+      if (!latestCart.isPresent()) {
+        return Optional.absent();
+      }
+      held = new HeldCart(latestCart.get());
+      carts.put(cart.getId(), held);
+    }
+    return Optional.of(held);
+  }
+
+  /**
+   * Must be called under the lock for the Cart
+   *
+   * @param id The Cart ID
+   *
+   * @return The held Cart (with any change made elsewhere merged in), absent if not held
+   */
+  private Optional<HeldCart> current(Long id) {
+    HeldCart held = carts.get(id);
+    if (held != null && held.stale) {
+      // Every held Cart has changes to write so they are merged into the version changed elsewhere
+      held = merge(id) ? carts.get(id) : null;
+    }
+    return Optional.fromNullable(held);
+  }
+
+  /**
+   * Must be called under the write lock
+   *
+   * @param ids   The Cart IDs to write in a single transaction
+   * @param merge True if a Cart changed elsewhere should be merged and written again
+   *
+   * @return The number of Carts written
+   */
+  private int write(List<Long> ids, boolean merge) {
+
+    List<CartJournal.Entry> snapshots = snapshot(ids);
+    if (snapshots.isEmpty()) {
+      return 0;
+    }
+
+    boolean committed = false;
+    try {
+      writeInTransaction(snapshots);
+      committed = true;
+    } catch (OptimisticLockingFailureException e) {
+      log.debug("Conflict writing {} carts", snapshots.size());
+    } finally {
+      written(snapshots, committed);
+    }
+    if (committed) {
+      return snapshots.size();
+    }
+
+    if (snapshots.size() > 1) {
+      // Isolate the Cart that was changed elsewhere so that the others are still written
+      int written = 0;
+      for (CartJournal.Entry snapshot : snapshots) {
+        written += write(ImmutableList.of(snapshot.getCartId()), merge);
+      }
+      return written;
+    }
+
+    // A Cart that still conflicts after merging is left for the next flush
+    Long id = snapshots.get(0).getCartId();
+    return merge && merge(id) ? write(ImmutableList.of(id), false) : 0;
+  }
+
+  /**
+   * @param ids The Cart IDs
+   *
+   * @return The contents of each Cart with changes to write (each is then marked as being written)
+   */
+  private List<CartJournal.Entry> snapshot(List<Long> ids) {
+    List<CartJournal.Entry> snapshots = Lists.newArrayList();
+    for (Long id : ids) {
+      Lock lock = locks.get(id);
+      lock.lock();
+      try {
+        HeldCart held = carts.get(id);
+        if (held == null || held.cart.getVersion() == held.persistentVersion) {
+          continue;
+        }
+        held.writingVersion = held.cart.getVersion();
+        snapshots.add(CartJournal.Entry.of(held.cart, held.persistentVersion, held.writingVersion));
+      } finally {
+        lock.unlock();
+      }
+    }
+    return snapshots;
+  }
+
+  private void writeInTransaction(final List<CartJournal.Entry> snapshots) {
+
+    new TransactionTemplate(transactionManager).execute(new TransactionCallback<Void>() {
+      @Override
+      public Void doInTransaction(TransactionStatus status) {
+        // Resolve every line of the batch in a single lookup (with their current prices)
+        Map<String, Item> items = itemReadService.getBySKUs(skus(snapshots));
+
+        for (CartJournal.Entry snapshot : snapshots) {
+          // The held Cart is never written directly since other requests may be changing it
+          Optional<Cart> cart = cartReadService.getById(snapshot.getCartId());
+          if (!cart.isPresent() || cart.get().getVersion() != snapshot.getPersistentVersion()) {
+            throw new ObjectOptimisticLockingFailureException(Cart.class, snapshot.getCartId());
+          }
+          apply(cart.get(), snapshot.getQuantities(), items);
+          cartReadService.saveOrUpdate(cart.get(), snapshot.getVersion());
+        }
+        return null;
+      }
+    });
+
+  }
+
+  /**
+   * @param snapshots The contents that were written
+   * @param committed True if they are now in the database (later changes keep the Cart dirty)
+   */
+  private void written(List<CartJournal.Entry> snapshots, boolean committed) {
+    for (CartJournal.Entry snapshot : snapshots) {
+      Lock lock = locks.get(snapshot.getCartId());
+      lock.lock();
+      try {
+        HeldCart held = carts.get(snapshot.getCartId());
+        if (held == null) {
+          continue;
+        }
+        if (committed) {
+          held.persistentVersion = snapshot.getVersion();
+          held.persistentQuantities = snapshot.getQuantities();
+        }
+        held.writingVersion = held.persistentVersion;
+        if (held.cart.getVersion() == held.persistentVersion) {
+          // Nothing is left to write so release the Cart rather than serve it after it may have changed elsewhere
+          carts.remove(snapshot.getCartId());
+          dirty.remove(snapshot.getCartId());
+        } else {
+          // Changes made during the write were journalled against either version so record the outcome
+          journal(held);
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Rebase a held Cart that was changed elsewhere onto the database version
+   *
+   * @param id The Cart ID
+   *
+   * @return True if the Cart is still held (with the merged changes to write)
+   */
+  private boolean merge(Long id) {
+    Lock lock = locks.get(id);
+    lock.lock();
+    try {
+      HeldCart held = carts.get(id);
+      if (held == null) {
+        return false;
+      }
+      Optional<Cart> latestCart = cartReadService.getById(id);
+      if (!latestCart.isPresent()) {
+        discard(id);
+        return false;
+      }
+
+      // Only the lines changed here since the last write are applied over the database version
+      Map<String, Integer> heldQuantities = CartJournal.Entry.quantities(held.cart);
+      Map<String, Integer> lineChanges = Maps.newLinkedHashMap();
+      for (Map.Entry<String, Integer> line : heldQuantities.entrySet()) {
+        if (!line.getValue().equals(held.persistentQuantities.get(line.getKey()))) {
+          lineChanges.put(line.getKey(), line.getValue());
+        }
+      }
+      for (String sku : held.persistentQuantities.keySet()) {
+        if (!heldQuantities.containsKey(sku)) {
+          lineChanges.put(sku, 0);
+        }
+      }
+
+      HeldCart rebased = new HeldCart(latestCart.get());
+      Map<String, Integer> quantities = Maps.newLinkedHashMap(rebased.persistentQuantities);
+      quantities.putAll(lineChanges);
+      quantities.values().removeAll(Collections.singleton(0));
+      apply(rebased.cart, quantities, itemReadService.getBySKUs(lineChanges.keySet()));
+
+      // Entity tags already given out must never be repeated for different contents
+      rebased.cart.setVersion(Math.max(held.cart.getVersion(), rebased.persistentVersion) + 1);
+      carts.put(id, rebased);
+      dirty.add(id);
+      journal(rebased);
+      merged.mark();
+      log.info("Cart {} was changed outside the hot cart store so {} held line changes were merged into version {}",
+        new Object[]{id, lineChanges.size(), rebased.persistentVersion});
+
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void discard(Long id) {
+    Lock lock = locks.get(id);
+    lock.lock();
+    try {
+      HeldCart held = carts.remove(id);
+      dirty.remove(id);
+      if (held != null) {
+        log.warn("Cart {} no longer exists so {} unflushed changes were discarded",
+          id, held.cart.getVersion() - held.persistentVersion);
+        discarded.mark();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Must be called under the lock for the Cart
+   *
+   * @param held               The held Cart following a change that could not be journalled
+   * @param previousQuantities The lines before the change
+   * @param previousVersion    The version before the change
+   */
+  private void rollBack(HeldCart held, Map<Item, Integer> previousQuantities, long previousVersion) {
+    Map<Item, Integer> changes = Maps.newLinkedHashMap();
+    for (CartItem cartItem : held.cart.getCartItems()) {
+      if (!previousQuantities.containsKey(cartItem.getItem())) {
+        changes.put(cartItem.getItem(), 0);
+      }
+    }
+    changes.putAll(previousQuantities);
+    held.cart.applyChanges(changes);
+    held.cart.setVersion(previousVersion);
+
+    // A Cart with nothing left to write is not held
+    if (!dirty.contains(held.cart.getId())) {
+      carts.remove(held.cart.getId());
+    }
+  }
+
+  /**
+   * Must be called under the lock for the Cart
+   *
+   * @param held The held Cart following a change
+   */
+  private void journal(HeldCart held) {
+    if (journal.isPresent()) {
+      journal.get().append(CartJournal.Entry.of(held.cart, held.persistentVersion, held.writingVersion));
+    }
+  }
+
+  /**
+   * @param cart       A Cart
+   * @param quantities The complete contents keyed by SKU (any other line is removed)
+   * @param items      The Items keyed by SKU (a line without an Item is left as it is)
+   */
+  private static void apply(Cart cart, Map<String, Integer> quantities, Map<String, Item> items) {
+    Map<Item, Integer> changes = Maps.newLinkedHashMap();
+    for (CartItem cartItem : cart.getCartItems()) {
+      if (!quantities.containsKey(cartItem.getItem().getSKU())) {
+        changes.put(cartItem.getItem(), 0);
+      }
+    }
+    for (Map.Entry<String, Integer> quantity : quantities.entrySet()) {
+      Item item = items.get(quantity.getKey());
+      if (item != null) {
+        changes.put(item, quantity.getValue());
+      }
+    }
+    cart.applyChanges(changes);
+  }
+
+  private static Set<String> skus(Collection<CartJournal.Entry> entries) {
+    Set<String> skus = Sets.newHashSet();
+    for (CartJournal.Entry entry : entries) {
+      skus.addAll(entry.getQuantities().keySet());
+    }
+    return skus;
+  }
+
+  /**
+   * A Cart owned by this store (only accessed under its lock)
+   */
+  private static class HeldCart {
+
+    private final Cart cart;
+
+    /**
+     * The version last written to the database
+     */
+    private long persistentVersion;
+
+    /**
+     * The lines at the persistent version (so that a Cart changed elsewhere can be merged)
+     */
+    private Map<String, Integer> persistentQuantities;
+
+    /**
+     * The version being written to the database (the persistent version if none)
+     */
+    private long writingVersion;
+
+    /**
+     * True if the Cart has been changed elsewhere since it was read
+     */
+    private volatile boolean stale = false;
+
+    private HeldCart(Cart cart) {
+      this.cart = cart;
+      this.persistentVersion = cart.getVersion();
+      this.persistentQuantities = CartJournal.Entry.quantities(cart);
+      this.writingVersion = persistentVersion;
+    }
+  }
+
+}
@@ -0,0 +1,329 @@
+package org.multibit.mbm.client.infrastructure.persistence.memory;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import org.multibit.mbm.client.common.Identifiable;
+import org.multibit.mbm.client.common.pagination.ContinuationToken;
+import org.multibit.mbm.client.common.pagination.PaginatedList;
+import org.multibit.mbm.client.common.pagination.PaginatedLists;
+import org.multibit.mbm.client.domain.model.model.Item;
+import org.multibit.mbm.client.domain.repositories.common.EntityReadService;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Base class to provide the following to in-memory read services:</p>
+ * <ul>
+ * <li>Storage of every entity in a concurrent map ordered by primary key</li>
+ * <li>Offset and keyset pagination with exact totals and no database round trips</li>
+ * <li>Loading of a snapshot from the delegate read service (normally Hibernate)</li>
+ * <li>Write-through of all writes to the delegate so that the database remains the system of record</li>
+ * </ul>
+ * <p>Held entities are copies that are never changed (a write replaces them) so pages and searches, which are
+ * only rendered, share them without copying. A lookup of a single entity returns a copy since callers change what
+ * they look up and write it back. A write is only held once its transaction has committed, and an entity written by any other path (e.g. a
+ * bulk import) is reloaded before the next read once the {@link InMemorySnapshotListener} invalidates it.</p>
+ *
+ * @param <T> The entity type
+ * @param <S> The delegate read service type
+ *
+ * @since 0.0.1
+ */
+public abstract class BaseInMemoryReadService<T extends Identifiable, S extends EntityReadService<T>> implements EntityReadService<T> {
+
+  /**
+   * The number of entities requested from the delegate in each page of a snapshot
+   */
+  private static final int LOAD_PAGE_SIZE = 500;
+
+  private final ConcurrentNavigableMap<Long, T> entities = new ConcurrentSkipListMap<Long, T>();
+
+  private final AtomicLong size = new AtomicLong();
+
+  /**
+   * The primary keys of held entities that have been written by another path since they were stored
+   */
+  private final Set<Long> invalidated = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+
+  protected S delegate = null;
+
+  /**
+   * <p>Discard the held entities and load a snapshot from the delegate</p>
+   * <p>Must be called within a transaction so that each entity can be fully initialised before it is detached.</p>
+   *
+   * @return The number of entities loaded
+   */
+  public int load() {
+
+    clear();
+
+    int count = 0;
+    Optional<ContinuationToken> continuationToken = Optional.absent();
+    do {
+      PaginatedList<T> page = delegate.getPaginatedListAfter(LOAD_PAGE_SIZE, continuationToken);
+      for (T entity : page.list()) {
+        // Lookup by ID initialises the collections required by the representations
+        Optional<T> initialised = delegate.getById(entity.getId());
+        if (initialised.isPresent()) {
+          hold(initialised.get());
+          count++;
+        }
+      }
+      continuationToken = page.pagination().getNextToken();
+    } while (continuationToken.isPresent());
+
+    return count;
+  }
+
+  /**
+   * @return The number of entities held
+   */
+  public long size() {
+    return size.get();
+  }
+
+  /**
+   * <p>Hold a copy of an entity once the current transaction commits (immediately if there is none) so that
+   * a rollback or write conflict leaves the held entity unchanged</p>
+   *
+   * @param entity The persisted entity to hold (replaces any earlier version)
+   *
+   * @return The entity
+   */
+  protected T store(final T entity) {
+    Preconditions.checkNotNull(entity, "entity cannot be null");
+    Preconditions.checkNotNull(entity.getId(), "entity must be persisted before it can be held");
+
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+        @Override
+        public void afterCommit() {
+          hold(entity);
+        }
+      });
+    } else {
+      hold(entity);
+    }
+    return entity;
+  }
+
+  /**
+   * Replace the held entity with the current state from the delegate (e.g. after losing a write conflict)
+   *
+   * @param id The primary key (ignored if null)
+   */
+  protected void refresh(Long id) {
+    if (id == null) {
+      return;
+    }
+    Optional<T> current = delegate.getById(id);
+    if (current.isPresent()) {
+      hold(current.get());
+    } else {
+      release(id);
+    }
+  }
+
+  /**
+   * Reload the entity from the delegate before the next read
+   *
+   * @param id The primary key of an entity written without going through this read service
+   */
+  public void invalidate(Long id) {
+    if (id != null) {
+      invalidated.add(id);
+    }
+  }
+
+  /**
+   * Reload every invalidated entity (called before each read so that inserts also appear in pages)
+   */
+  protected void reconcile() {
+    if (invalidated.isEmpty()) {
+      return;
+    }
+    for (Long id : Lists.newArrayList(invalidated)) {
+      if (invalidated.remove(id)) {
+        refresh(id);
+      }
+    }
+  }
+
+  /**
+   * @return The entity type held by this read service
+   */
+  public abstract Class<T> getEntityClass();
+
+  /**
+   * @param entity The entity to copy (all reachable entities must be serializable)
+   *
+   * @return A deep copy of the entity
+   */
+  @SuppressWarnings("unchecked")
+  protected T copy(T entity) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ObjectOutputStream out = new ObjectOutputStream(bytes);
+      out.writeObject(entity);
+      out.close();
+      return (T) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+    } catch (IOException e) {
+      throw new IllegalStateException("Cannot copy " + entity.getClass().getSimpleName() + " " + entity.getId(), e);
+    } catch (ClassNotFoundException e) {
+      throw new IllegalStateException("Cannot copy " + entity.getClass().getSimpleName() + " " + entity.getId(), e);
+    }
+  }
+
+  private void hold(T entity) {
+    // Later changes by the caller must not reach the held entity
+    T held = copy(entity);
+    T previous = entities.put(held.getId(), held);
+    if (previous == null) {
+      size.incrementAndGet();
+    } else {
+      unindex(previous);
+    }
+    // This is the committed state so there is no need to reload it
+    invalidated.remove(held.getId());
+    index(held);
+  }
+
+  private void release(Long id) {
+    T previous = entities.remove(id);
+    if (previous != null) {
+      size.decrementAndGet();
+      unindex(previous);
+    }
+  }
+
+  /**
+   * Update any secondary indices after an entity is stored
+   *
+   * @param entity The entity
+   */
+  protected abstract void index(T entity);
+
+  /**
+   * Remove an entity from any secondary indices after it is replaced or released
+   *
+   * @param entity The entity that was held
+   */
+  protected abstract void unindex(T entity);
+
+  /**
+   * Clear any secondary indices
+   */
+  protected abstract void clearIndices();
+
+  private void clear() {
+    entities.clear();
+    size.set(0);
+    invalidated.clear();
+    clearIndices();
+  }
+
+  /**
+   * @param ids The primary keys
+   *
+   * @return The held entities in the order of the primary keys (shared so they must not be changed)
+   */
+  protected List<T> getByIds(Iterable<Long> ids) {
+    reconcile();
+    List<T> list = Lists.newArrayList();
+    for (Long id : ids) {
+      T entity = entities.get(id);
+      if (entity != null) {
+        list.add(entity);
+      }
+    }
+    return list;
+  }
+
+  @Override
+  public Optional<T> getById(Long id) {
+    if (id == null) {
+      return Optional.absent();
+    }
+    reconcile();
+    T entity = entities.get(id);
+    return entity == null ? Optional.<T>absent() : Optional.of(copy(entity));
+  }
+
+  @Override
+  public PaginatedList<T> getPaginatedList(int pageSize, int pageNumber) {
+
+    Preconditions.checkState(pageSize > 0, "pageSize is 1-based and must be positive");
+    Preconditions.checkState(pageNumber > 0, "pageNumber is 1-based and must be positive");
+
+    reconcile();
+
+    // Skip over the earlier pages (no I/O so this is cheap compared to an SQL offset)
+    Iterator<T> iterator = entities.values().iterator();
+    int skip = pageSize * (pageNumber - 1);
+    while (skip > 0 && iterator.hasNext()) {
+      iterator.next();
+      skip--;
+    }
+    List<T> list = nextPage(iterator, pageSize);
+
+    return PaginatedLists.newCountedPaginatedArrayList(pageNumber, pageSize, size.get(), true, list);
+  }
+
+  @Override
+  public PaginatedList<T> getPaginatedListAfter(int pageSize, Optional<ContinuationToken> continuationToken) {
+
+    Preconditions.checkState(pageSize > 0, "pageSize is 1-based and must be positive");
+    Preconditions.checkNotNull(continuationToken, "continuationToken must be present or absent");
+
+    long lastId = continuationToken.isPresent() ? continuationToken.get().getLastId() : 0L;
+
+    reconcile();
+
+    Iterator<T> iterator = entities.tailMap(lastId, false).values().iterator();
+    List<T> list = nextPage(iterator, pageSize);
+
+    Optional<ContinuationToken> nextToken = Optional.absent();
+    if (iterator.hasNext()) {
+      int nextPageNumber = continuationToken.isPresent() ? continuationToken.get().getPageNumber() + 1 : 2;
+      nextToken = Optional.of(new ContinuationToken(nextPageNumber, list.get(pageSize - 1).getId()));
+    }
+
+    return PaginatedLists.newKeysetPaginatedArrayList(pageSize, continuationToken, nextToken, list);
+  }
+
+  @Override
+  public PaginatedList<Item> getPaginatedListByExample(int pageSize, int pageNumber, T example) {
+    throw new IllegalStateException("Not yet supported for this entity");
+  }
+
+  /**
+   * @return The next held entities (shared so they must not be changed)
+   */
+  private List<T> nextPage(Iterator<T> iterator, int pageSize) {
+    List<T> list = Lists.newArrayListWithCapacity(pageSize);
+    while (list.size() < pageSize && iterator.hasNext()) {
+      list.add(iterator.next());
+    }
+    return list;
+  }
+
+  public void setDelegate(S delegate) {
+    this.delegate = delegate;
+  }
+
+}
@@ -0,0 +1,99 @@
+package org.multibit.mbm.client.infrastructure.persistence.memory;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import org.multibit.mbm.client.domain.model.model.Cart;
+import org.multibit.mbm.client.domain.model.model.Customer;
+import org.multibit.mbm.client.domain.model.model.Item;
+import org.multibit.mbm.client.domain.repositories.CartReadService;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.util.List;
+
+/**
+ * <p>In-memory read service to provide the following to edge nodes:</p>
+ * <ul>
+ * <li>Lookup of Carts by ID and Customer without database round trips</li>
+ * </ul>
+ * <p>A Customer without a Cart is given one through the delegate since that is a write.</p>
+ *
+ * @since 0.0.1
+ */
+public class InMemoryCartReadService extends BaseInMemoryReadService<Cart, CartReadService> implements CartReadService {
+
+  @Override
+  public Class<Cart> getEntityClass() {
+    return Cart.class;
+  }
+
+  @Override
+  protected void index(Cart entity) {
+    // Carts are only found by ID (the Customer references its Cart)
+  }
+
+  @Override
+  protected void unindex(Cart entity) {
+    // No secondary indices
+  }
+
+  @Override
+  protected void clearIndices() {
+    // No secondary indices
+  }
+
+  @Override
+  public Optional<Cart> getInitialisedCartByCustomer(Customer customer) {
+    Preconditions.checkNotNull(customer, "customer cannot be null");
+
+    Cart cart = customer.getCart();
+    if (cart != null) {
+      Optional<Cart> heldCart = getById(cart.getId());
+      if (heldCart.isPresent()) {
+        return heldCart;
+      }
+    }
+
+    Optional<Cart> initialisedCart = delegate.getInitialisedCartByCustomer(customer);
+    if (initialisedCart.isPresent()) {
+      store(initialisedCart.get());
+    }
+    return initialisedCart;
+  }
+
+  @Override
+  public Cart saveOrUpdate(Cart cart) {
+    try {
+      return store(delegate.saveOrUpdate(cart));
+    } catch (OptimisticLockingFailureException e) {
+      // The held copy is stale so replace it before the caller reloads and retries
+      invalidate(cart.getId());
+      throw e;
+    }
+  }
+
+  @Override
+  public Cart saveOrUpdate(Cart cart, long version) {
+    try {
+      return store(delegate.saveOrUpdate(cart, version));
+    } catch (OptimisticLockingFailureException e) {
+      invalidate(cart.getId());
+      throw e;
+    }
+  }
+
+  @Override
+  public List<Long> recalculateTotals(Item item) {
+    List<Long> ids = delegate.recalculateTotals(item);
+    // The held copies still refer to the previous price
+    for (Long id : ids) {
+      invalidate(id);
+    }
+    return ids;
+  }
+
+  @Override
+  public void flush() {
+    delegate.flush();
+  }
+
+}
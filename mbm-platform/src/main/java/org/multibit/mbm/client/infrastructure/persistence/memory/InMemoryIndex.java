@@ -0,0 +1,106 @@
+package org.multibit.mbm.client.infrastructure.persistence.memory;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Maps;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>Secondary index to provide the following to in-memory read services:</p>
+ * <ul>
+ * <li>Lookup of primary keys by a natural key (e.g. SKU or API key)</li>
+ * <li>Correct re-indexing when the natural key of an entity changes</li>
+ * </ul>
+ * <p>Lookups are lock-free against immutable key sets that are replaced under a lock on each write.</p>
+ *
+ * @param <K> The natural key type
+ *
+ * @since 0.0.1
+ */
+class InMemoryIndex<K> {
+
+  private final ConcurrentMap<K, ImmutableSortedSet<Long>> idsByKey = Maps.newConcurrentMap();
+
+  private final ConcurrentMap<Long, K> keysById = Maps.newConcurrentMap();
+
+  /**
+   * @param id  The primary key
+   * @param key The natural key (null removes the entry)
+   */
+  synchronized void put(Long id, K key) {
+    remove(id);
+    if (key == null) {
+      return;
+    }
+    keysById.put(id, key);
+    ImmutableSortedSet<Long> ids = idsByKey.get(key);
+    ImmutableSortedSet.Builder<Long> builder = ImmutableSortedSet.naturalOrder();
+    if (ids != null) {
+      builder.addAll(ids);
+    }
+    idsByKey.put(key, builder.add(id).build());
+  }
+
+  /**
+   * @param id The primary key to remove from the index
+   */
+  synchronized void remove(Long id) {
+    K previousKey = keysById.remove(id);
+    if (previousKey == null) {
+      return;
+    }
+    ImmutableSortedSet<Long> ids = idsByKey.get(previousKey);
+    if (ids == null) {
+      return;
+    }
+    ImmutableSortedSet.Builder<Long> builder = ImmutableSortedSet.naturalOrder();
+    for (Long existing : ids) {
+      if (!existing.equals(id)) {
+        builder.add(existing);
+      }
+    }
+    ImmutableSortedSet<Long> remaining = builder.build();
+    if (remaining.isEmpty()) {
+      idsByKey.remove(previousKey);
+    } else {
+      idsByKey.put(previousKey, remaining);
+    }
+  }
+
+  synchronized void clear() {
+    idsByKey.clear();
+    keysById.clear();
+  }
+
+  /**
+   * @param key The natural key
+   *
+   * @return The matching primary keys in ascending order
+   */
+  Set<Long> get(K key) {
+    if (key == null) {
+      return ImmutableSortedSet.of();
+    }
+    ImmutableSortedSet<Long> ids = idsByKey.get(key);
+    return ids == null ? ImmutableSortedSet.<Long>of() : ids;
+  }
+
+  /**
+   * @param key The natural key
+   *
+   * @return The lowest matching primary key if present
+   */
+  Optional<Long> first(K key) {
+    if (key == null) {
+      return Optional.absent();
+    }
+    ImmutableSortedSet<Long> ids = idsByKey.get(key);
+    if (ids == null || ids.isEmpty()) {
+      return Optional.absent();
+    }
+    return Optional.of(ids.first());
+  }
+
+}
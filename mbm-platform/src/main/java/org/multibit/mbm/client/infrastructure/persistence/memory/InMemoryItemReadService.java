@@ -0,0 +1,161 @@
+package org.multibit.mbm.client.infrastructure.persistence.memory;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.multibit.mbm.client.common.pagination.ContinuationToken;
+import org.multibit.mbm.client.common.pagination.PaginatedList;
+import org.multibit.mbm.client.common.pagination.PaginatedLists;
+import org.multibit.mbm.client.domain.model.model.Item;
+import org.multibit.mbm.client.domain.model.model.ItemSummaryView;
+import org.multibit.mbm.client.domain.repositories.ItemReadService;
+import org.multibit.mbm.client.infrastructure.persistence.hibernate.search.ItemSearchIndex;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>In-memory read service to provide the following to catalogue nodes:</p>
+ * <ul>
+ * <li>Lookup of Items by ID, SKU and GTIN without database round trips</li>
+ * <li>Catalogue pages and summaries served from the held Items</li>
+ * <li>Example searches ranked by the {@link ItemSearchIndex} (kept current by the delegate)</li>
+ * </ul>
+ *
+ * @since 0.0.1
+ */
+public class InMemoryItemReadService extends BaseInMemoryReadService<Item, ItemReadService> implements ItemReadService {
+
+  private final InMemoryIndex<String> skuIndex = new InMemoryIndex<String>();
+
+  private final InMemoryIndex<String> gtinIndex = new InMemoryIndex<String>();
+
+  private ItemSearchIndex itemSearchIndex = null;
+
+  @Override
+  public Class<Item> getEntityClass() {
+    return Item.class;
+  }
+
+  @Override
+  protected void index(Item entity) {
+    skuIndex.put(entity.getId(), entity.getSKU());
+    gtinIndex.put(entity.getId(), entity.getGTIN());
+  }
+
+  @Override
+  protected void unindex(Item entity) {
+    skuIndex.remove(entity.getId());
+    gtinIndex.remove(entity.getId());
+  }
+
+  @Override
+  protected void clearIndices() {
+    skuIndex.clear();
+    gtinIndex.clear();
+  }
+
+  @Override
+  public Optional<Item> getBySKU(String sku) {
+    reconcile();
+    Optional<Long> id = skuIndex.first(sku);
+    return id.isPresent() ? getById(id.get()) : Optional.<Item>absent();
+  }
+
+  @Override
+  public Map<String, Item> getBySKUs(Collection<String> skus) {
+    Map<String, Item> items = Maps.newHashMap();
+    for (String sku : skus) {
+      Optional<Item> item = getBySKU(sku);
+      if (item.isPresent()) {
+        items.put(sku, item.get());
+      }
+    }
+    return items;
+  }
+
+  @Override
+  public Optional<Item> getByGTIN(String gtin) {
+    reconcile();
+    Optional<Long> id = gtinIndex.first(gtin);
+    return id.isPresent() ? getById(id.get()) : Optional.<Item>absent();
+  }
+
+  @Override
+  public PaginatedList<Item> getCataloguePage(int pageSize, int pageNumber) {
+    // Held Items are always fully loaded
+    return getPaginatedList(pageSize, pageNumber);
+  }
+
+  @Override
+  public PaginatedList<Item> getCataloguePageAfter(int pageSize, Optional<ContinuationToken> continuationToken) {
+    return getPaginatedListAfter(pageSize, continuationToken);
+  }
+
+  @Override
+  public PaginatedList<ItemSummaryView> getCatalogueSummaryPage(int pageSize, int pageNumber) {
+    PaginatedList<Item> items = getPaginatedList(pageSize, pageNumber);
+    return PaginatedLists.newCountedPaginatedArrayList(
+      pageNumber,
+      pageSize,
+      items.pagination().getTotalResults().get(),
+      items.pagination().isTotalExact(),
+      summarise(items.list()));
+  }
+
+  @Override
+  public PaginatedList<ItemSummaryView> getCatalogueSummaryPageAfter(int pageSize, Optional<ContinuationToken> continuationToken) {
+    PaginatedList<Item> items = getPaginatedListAfter(pageSize, continuationToken);
+    return PaginatedLists.newKeysetPaginatedArrayList(
+      pageSize,
+      continuationToken,
+      items.pagination().getNextToken(),
+      summarise(items.list()));
+  }
+
+  @Override
+  public PaginatedList<Item> getPaginatedListByExample(int pageSize, int pageNumber, Item example) {
+
+    if (example.getItemFieldMap().isEmpty()) {
+      return getCataloguePage(pageSize, pageNumber);
+    }
+
+    List<Long> ids = itemSearchIndex.search(example.getItemFieldMap().values());
+
+    int fromIndex = Math.min(pageSize * (pageNumber - 1), ids.size()); // Apply 0-based index
+    int toIndex = Math.min(fromIndex + pageSize, ids.size());
+
+    return PaginatedLists.newCountedPaginatedArrayList(pageNumber, pageSize, ids.size(), true, getByIds(ids.subList(fromIndex, toIndex)));
+  }
+
+  @Override
+  public Item saveOrUpdate(Item item) {
+    try {
+      return store(delegate.saveOrUpdate(item));
+    } catch (OptimisticLockingFailureException e) {
+      // The held copy is stale so replace it before the caller reloads and retries
+      invalidate(item.getId());
+      throw e;
+    }
+  }
+
+  @Override
+  public void flush() {
+    delegate.flush();
+  }
+
+  public void setItemSearchIndex(ItemSearchIndex itemSearchIndex) {
+    this.itemSearchIndex = itemSearchIndex;
+  }
+
+  private List<ItemSummaryView> summarise(List<Item> items) {
+    List<ItemSummaryView> summaries = Lists.newArrayListWithCapacity(items.size());
+    for (Item item : items) {
+      summaries.add(ItemSummaryView.fromItem(item));
+    }
+    return summaries;
+  }
+
+}
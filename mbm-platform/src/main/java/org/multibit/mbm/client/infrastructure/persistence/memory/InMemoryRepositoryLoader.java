@@ -0,0 +1,81 @@
+package org.multibit.mbm.client.infrastructure.persistence.memory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * <p>Loader to provide the following to the "memory" repository profile:</p>
+ * <ul>
+ * <li>A snapshot of every in-memory read service taken from the database at boot</li>
+ * </ul>
+ * <p>The snapshot is taken in a single read-only transaction so that lazy associations can be initialised
+ * before the entities are detached.</p>
+ *
+ * @since 0.0.1
+ */
+public class InMemoryRepositoryLoader {
+
+  private static final Logger log = LoggerFactory.getLogger(InMemoryRepositoryLoader.class);
+
+  /**
+   * The Spring profile that selects the in-memory read services
+   */
+  public static final String MEMORY_PROFILE = "memory";
+
+  /**
+   * The Spring profile that selects the Hibernate read services (also used if no profile is active)
+   */
+  public static final String HIBERNATE_PROFILE = "hibernate";
+
+  private PlatformTransactionManager transactionManager = null;
+
+  private List<BaseInMemoryReadService<?, ?>> readServices = Lists.newArrayList();
+
+  private InMemorySnapshotListener snapshotListener = null;
+
+  /**
+   * Replace the contents of every in-memory read service with a snapshot from the database
+   */
+  public void load() {
+    Preconditions.checkNotNull(transactionManager, "transactionManager must be set");
+
+    if (snapshotListener != null) {
+      for (BaseInMemoryReadService<?, ?> readService : readServices) {
+        snapshotListener.register(readService);
+      }
+    }
+
+    TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+    transactionTemplate.setReadOnly(true);
+    transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+      @Override
+      protected void doInTransactionWithoutResult(TransactionStatus status) {
+        for (BaseInMemoryReadService<?, ?> readService : readServices) {
+          int count = readService.load();
+          log.info("Loaded {} entities into {}", count, readService.getClass().getSimpleName());
+        }
+      }
+    });
+  }
+
+  public void setTransactionManager(PlatformTransactionManager transactionManager) {
+    this.transactionManager = transactionManager;
+  }
+
+  public void setSnapshotListener(InMemorySnapshotListener snapshotListener) {
+    this.snapshotListener = snapshotListener;
+  }
+
+  public void setReadServices(List<BaseInMemoryReadService<?, ?>> readServices) {
+    this.readServices = readServices;
+  }
+
+}
@@ -0,0 +1,62 @@
+package org.multibit.mbm.client.infrastructure.persistence.memory;
+
+import com.google.common.base.Optional;
+import org.multibit.mbm.client.domain.model.model.Role;
+import org.multibit.mbm.client.domain.repositories.RoleReadService;
+import org.multibit.mbm.client.interfaces.rest.auth.Authority;
+
+/**
+ * <p>In-memory read service to provide the following to edge nodes:</p>
+ * <ul>
+ * <li>Lookup of Roles by ID, name and authority without database round trips</li>
+ * </ul>
+ *
+ * @since 0.0.1
+ */
+public class InMemoryRoleReadService extends BaseInMemoryReadService<Role, RoleReadService> implements RoleReadService {
+
+  private final InMemoryIndex<String> nameIndex = new InMemoryIndex<String>();
+
+  @Override
+  public Class<Role> getEntityClass() {
+    return Role.class;
+  }
+
+  @Override
+  protected void index(Role entity) {
+    nameIndex.put(entity.getId(), entity.getName());
+  }
+
+  @Override
+  protected void unindex(Role entity) {
+    nameIndex.remove(entity.getId());
+  }
+
+  @Override
+  protected void clearIndices() {
+    nameIndex.clear();
+  }
+
+  @Override
+  public Optional<Role> getByAuthority(Authority authority) {
+    return getByName(authority.name());
+  }
+
+  @Override
+  public Optional<Role> getByName(String name) {
+    reconcile();
+    Optional<Long> id = nameIndex.first(name);
+    return id.isPresent() ? getById(id.get()) : Optional.<Role>absent();
+  }
+
+  @Override
+  public Role saveOrUpdate(Role role) {
+    return store(delegate.saveOrUpdate(role));
+  }
+
+  @Override
+  public void flush() {
+    delegate.flush();
+  }
+
+}
@@ -0,0 +1,72 @@
+package org.multibit.mbm.client.infrastructure.persistence.memory;
+
+import com.google.common.base.Preconditions;
+import org.hibernate.event.PostDeleteEvent;
+import org.hibernate.event.PostDeleteEventListener;
+import org.hibernate.event.PostInsertEvent;
+import org.hibernate.event.PostInsertEventListener;
+import org.hibernate.event.PostUpdateEvent;
+import org.hibernate.event.PostUpdateEventListener;
+import org.multibit.mbm.client.common.Identifiable;
+import org.springframework.stereotype.Component;
+
+import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>Hibernate post-commit listener to provide the following to the in-memory read services:</p>
+ * <ul>
+ * <li>Invalidation of held entities written without going through a read service (e.g. bulk imports,
+ * deliveries and cascades from other entities)</li>
+ * </ul>
+ * <p>Only committed writes are seen so a rollback never reaches a snapshot. Read services are registered
+ * by the {@link InMemoryRepositoryLoader} so this listener does nothing under the "hibernate" profile.</p>
+ *
+ * @since 0.0.1
+ */
+@Component("inMemorySnapshotListener")
+public class InMemorySnapshotListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+  private static final long serialVersionUID = 38947590321903L;
+
+  private final transient ConcurrentMap<Class<?>, BaseInMemoryReadService<?, ?>> readServices = new ConcurrentHashMap<Class<?>, BaseInMemoryReadService<?, ?>>();
+
+  /**
+   * @param readService The read service to invalidate when its entity type is written
+   */
+  public void register(BaseInMemoryReadService<?, ?> readService) {
+    Preconditions.checkNotNull(readService, "readService cannot be null");
+    readServices.put(readService.getEntityClass(), readService);
+  }
+
+  @Override
+  public void onPostInsert(PostInsertEvent event) {
+    invalidate(event.getEntity(), event.getId());
+  }
+
+  @Override
+  public void onPostUpdate(PostUpdateEvent event) {
+    invalidate(event.getEntity(), event.getId());
+  }
+
+  @Override
+  public void onPostDelete(PostDeleteEvent event) {
+    invalidate(event.getEntity(), event.getId());
+  }
+
+  private void invalidate(Object entity, Serializable id) {
+    if (readServices.isEmpty() || !(entity instanceof Identifiable) || !(id instanceof Long)) {
+      return;
+    }
+    // Hibernate may pass a subclass (e.g. a proxy) so check the hierarchy
+    for (Class<?> clazz = entity.getClass(); clazz != null; clazz = clazz.getSuperclass()) {
+      BaseInMemoryReadService<?, ?> readService = readServices.get(clazz);
+      if (readService != null) {
+        readService.invalidate((Long) id);
+        return;
+      }
+    }
+  }
+
+}
@@ -0,0 +1,80 @@
+package org.multibit.mbm.client.infrastructure.persistence.memory;
+
+import com.google.common.base.Optional;
+import org.jasypt.util.password.StrongPasswordEncryptor;
+import org.multibit.mbm.client.domain.model.model.User;
+import org.multibit.mbm.client.domain.repositories.UserReadService;
+
+/**
+ * <p>In-memory read service to provide the following to edge nodes:</p>
+ * <ul>
+ * <li>Lookup of Users by ID, API key and credentials without database round trips</li>
+ * </ul>
+ *
+ * @since 0.0.1
+ */
+public class InMemoryUserReadService extends BaseInMemoryReadService<User, UserReadService> implements UserReadService {
+
+  private final InMemoryIndex<String> apiKeyIndex = new InMemoryIndex<String>();
+
+  private final InMemoryIndex<String> usernameIndex = new InMemoryIndex<String>();
+
+  @Override
+  public Class<User> getEntityClass() {
+    return User.class;
+  }
+
+  @Override
+  protected void index(User entity) {
+    apiKeyIndex.put(entity.getId(), entity.getApiKey());
+    usernameIndex.put(entity.getId(), entity.getUsername());
+  }
+
+  @Override
+  protected void unindex(User entity) {
+    apiKeyIndex.remove(entity.getId());
+    usernameIndex.remove(entity.getId());
+  }
+
+  @Override
+  protected void clearIndices() {
+    apiKeyIndex.clear();
+    usernameIndex.clear();
+  }
+
+  @Override
+  public Optional<User> getByApiKey(String apiKey) {
+    reconcile();
+    Optional<Long> id = apiKeyIndex.first(apiKey);
+    return id.isPresent() ? getById(id.get()) : Optional.<User>absent();
+  }
+
+  @Override
+  public Optional<User> getByCredentials(String username, String passwordDigest) {
+
+    reconcile();
+    StrongPasswordEncryptor passwordEncryptor = new StrongPasswordEncryptor();
+
+    // Check the password against all matching Users
+    for (User user : getByIds(usernameIndex.get(username))) {
+      if (passwordEncryptor.checkPassword(passwordDigest, user.getPasswordDigest())) {
+        // The principal may be changed and written back
+        return Optional.of(copy(user));
+      }
+    }
+
+    // Must have failed to be here
+    return Optional.absent();
+  }
+
+  @Override
+  public User saveOrUpdate(User user) {
+    return store(delegate.saveOrUpdate(user));
+  }
+
+  @Override
+  public void flush() {
+    delegate.flush();
+  }
+
+}
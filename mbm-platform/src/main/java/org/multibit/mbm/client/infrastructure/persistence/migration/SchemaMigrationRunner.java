@@ -0,0 +1,222 @@
+package org.multibit.mbm.client.infrastructure.persistence.migration;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.SortedSet;
+
+/**
+ * <p>Runner to provide the following to the application:</p>
+ * <ul>
+ * <li>Incremental application of <code>sql/&lt;revision&gt;/patch-schema.sql</code> followed by
+ * <code>patch-data.sql</code> (if present) for each revision not yet applied</li>
+ * <li>A record of the applied revisions in the <code>schema_revisions</code> table</li>
+ * </ul>
+ * <p>Revisions are numbered from 0 without gaps. Once the runner has completed Hibernate only needs to validate
+ * the schema against the domain model rather than introspecting and updating it on every start.</p>
+ * <p>A database created before the runner was introduced (i.e. by Hibernate schema update) already holds the
+ * revision 0 tables so revision 0 is recorded as the baseline without being applied.</p>
+ * <p>A failed revision is not recorded but DDL commits implicitly on HSQLDB and MySQL, so any statements that
+ * completed before the failure remain and running the revision again would fail on the objects they created.
+ * Patch scripts should therefore be idempotent where the database allows it (e.g. <code>if not exists</code>),
+ * otherwise a failed revision has to be completed or reverted by hand before the next start.</p>
+ *
+ * @since 0.0.1
+ */
+public class SchemaMigrationRunner {
+
+  private static final Logger log = LoggerFactory.getLogger(SchemaMigrationRunner.class);
+
+  public static final String REVISIONS_TABLE = "schema_revisions";
+
+  private static final String PATCH_SCHEMA = "classpath:/sql/%d/patch-schema.sql";
+  private static final String PATCH_DATA = "classpath:/sql/%d/patch-data.sql";
+
+  private final DataSource dataSource;
+
+  private final ResourceLoader resourceLoader = new DefaultResourceLoader();
+
+  /**
+   * @param dataSource The data source for the primary database (never a replica)
+   */
+  public SchemaMigrationRunner(DataSource dataSource) {
+    Preconditions.checkNotNull(dataSource, "dataSource cannot be null");
+    this.dataSource = dataSource;
+  }
+
+  /**
+   * Apply all outstanding revisions in order
+   *
+   * @return The revisions applied by this run (empty if the schema was already current)
+   *
+   * @throws SQLException If a revision fails (the revision is not recorded but may have been partly applied)
+   */
+  public List<Integer> migrate() throws SQLException {
+
+    List<Integer> applied = Lists.newArrayList();
+
+    Connection connection = DataSourceUtils.getConnection(dataSource);
+    try {
+      if (!tableExists(connection, REVISIONS_TABLE)) {
+        // Revision 0 always creates the users table
+        boolean baseline = tableExists(connection, "users");
+        createRevisionsTable(connection);
+        if (baseline) {
+          log.warn("Existing schema found without '{}' so recording revision 0 as the baseline", REVISIONS_TABLE);
+          recordRevision(connection, 0, 0);
+        }
+      }
+
+      SortedSet<Integer> recorded = getAppliedRevisions(connection);
+      for (int revision : getAvailableRevisions()) {
+        if (recorded.contains(revision)) {
+          continue;
+        }
+        applyRevision(connection, revision);
+        applied.add(revision);
+      }
+    } finally {
+      DataSourceUtils.releaseConnection(connection, dataSource);
+    }
+
+    if (applied.isEmpty()) {
+      log.info("Schema is current");
+    } else {
+      log.info("Applied schema revisions {}", applied);
+    }
+
+    return applied;
+  }
+
+  /**
+   * @return The revisions recorded as applied (in ascending order)
+   *
+   * @throws SQLException If the revisions table is not present
+   */
+  public SortedSet<Integer> getAppliedRevisions() throws SQLException {
+    Connection connection = DataSourceUtils.getConnection(dataSource);
+    try {
+      return getAppliedRevisions(connection);
+    } finally {
+      DataSourceUtils.releaseConnection(connection, dataSource);
+    }
+  }
+
+  /**
+   * @return The revisions available on the class path (contiguous from 0)
+   */
+  public List<Integer> getAvailableRevisions() {
+    List<Integer> revisions = Lists.newArrayList();
+    for (int revision = 0; patchSchema(revision).exists(); revision++) {
+      revisions.add(revision);
+    }
+    return revisions;
+  }
+
+  private Resource patchSchema(int revision) {
+    return resourceLoader.getResource(String.format(PATCH_SCHEMA, revision));
+  }
+
+  private Resource patchData(int revision) {
+    return resourceLoader.getResource(String.format(PATCH_DATA, revision));
+  }
+
+  private void applyRevision(Connection connection, int revision) throws SQLException {
+    log.info("Applying schema revision {}", revision);
+    long start = System.currentTimeMillis();
+
+    ResourceDatabasePopulator populator = new ResourceDatabasePopulator();
+    populator.addScript(patchSchema(revision));
+    Resource patchData = patchData(revision);
+    if (patchData.exists()) {
+      populator.addScript(patchData);
+    }
+
+    // Only undoes the data changes on databases where DDL commits implicitly
+    boolean autoCommit = connection.getAutoCommit();
+    connection.setAutoCommit(false);
+    try {
+      populator.populate(connection);
+      recordRevision(connection, revision, System.currentTimeMillis() - start);
+      connection.commit();
+    } catch (SQLException e) {
+      connection.rollback();
+      log.error("Schema revision {} failed and may be partly applied (check before the next start)", revision);
+      throw e;
+    } catch (RuntimeException e) {
+      // Script failures are reported as DataAccessException
+      connection.rollback();
+      log.error("Schema revision {} failed and may be partly applied (check before the next start)", revision);
+      throw e;
+    } finally {
+      connection.setAutoCommit(autoCommit);
+    }
+  }
+
+  private SortedSet<Integer> getAppliedRevisions(Connection connection) throws SQLException {
+    SortedSet<Integer> revisions = Sets.newTreeSet();
+    Statement statement = connection.createStatement();
+    try {
+      ResultSet resultSet = statement.executeQuery("select revision from " + REVISIONS_TABLE);
+      while (resultSet.next()) {
+        revisions.add(resultSet.getInt(1));
+      }
+      resultSet.close();
+    } finally {
+      statement.close();
+    }
+    return revisions;
+  }
+
+  private void createRevisionsTable(Connection connection) throws SQLException {
+    Statement statement = connection.createStatement();
+    try {
+      statement.executeUpdate("create table " + REVISIONS_TABLE
+        + " (revision integer not null, applied_at timestamp not null, elapsed_millis bigint not null, primary key (revision))");
+    } finally {
+      statement.close();
+    }
+  }
+
+  private void recordRevision(Connection connection, int revision, long elapsedMillis) throws SQLException {
+    PreparedStatement statement = connection.prepareStatement("insert into " + REVISIONS_TABLE
+      + " (revision, applied_at, elapsed_millis) values (?, ?, ?)");
+    try {
+      statement.setInt(1, revision);
+      statement.setTimestamp(2, new Timestamp(System.currentTimeMillis()));
+      statement.setLong(3, elapsedMillis);
+      statement.executeUpdate();
+    } finally {
+      statement.close();
+    }
+  }
+
+  private boolean tableExists(Connection connection, String table) throws SQLException {
+    DatabaseMetaData metaData = connection.getMetaData();
+    String name = metaData.storesUpperCaseIdentifiers() ? table.toUpperCase() : table;
+    ResultSet tables = metaData.getTables(null, null, name, new String[]{"TABLE"});
+    try {
+      return tables.next();
+    } finally {
+      tables.close();
+    }
+  }
+
+}
@@ -1,14 +1,17 @@
 package org.multibit.mbm.client.interfaces.rest.api.representations.hal.cart;
 
+import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.theoryinpractise.halbuilder.DefaultRepresentationFactory;
 import com.theoryinpractise.halbuilder.api.Representation;
-import com.xeiam.xchange.currency.MoneyUtils;
 import org.joda.money.BigMoney;
 import org.multibit.mbm.client.domain.model.model.Cart;
 import org.multibit.mbm.client.domain.model.model.CartItem;
+import org.multibit.mbm.client.domain.model.model.Item;
 import org.multibit.mbm.client.interfaces.rest.api.representations.hal.item.PublicCartItemRepresentation;
 
+import java.util.Collection;
+
 /**
  * <p>Representation to provide the following to the anonymous public and Customers:</p>
  * <ul>
@@ -23,7 +26,40 @@ public class PublicCartRepresentation {
 
   public Representation get(Cart cart) {
     Preconditions.checkNotNull(cart, "cart");
-    Preconditions.checkNotNull(cart.getId(), "id");
+
+    Representation cartRepresentation = getTotals(cart);
+
+    // Create sub-resources based on items
+    for (CartItem cartItem : cart.getCartItems()) {
+      cartRepresentation.withRepresentation("cartitems", publicCartItemRepresentation.get(cartItem));
+    }
+
+    return cartRepresentation;
+  }
+
+  /**
+   * @param cart         The Cart after the changes have been applied
+   * @param changedItems The Items whose lines were changed
+   *
+   * @return The Cart totals with only the changed lines that remain in the Cart (removed lines are omitted)
+   */
+  public Representation getChanges(Cart cart, Collection<Item> changedItems) {
+    Preconditions.checkNotNull(cart, "cart");
+    Preconditions.checkNotNull(changedItems, "changedItems");
+
+    Representation cartRepresentation = getTotals(cart);
+
+    for (Item item : changedItems) {
+      Optional<CartItem> cartItem = cart.getCartItemByItem(item);
+      if (cartItem.isPresent()) {
+        cartRepresentation.withRepresentation("cartitems", publicCartItemRepresentation.get(cartItem.get()));
+      }
+    }
+
+    return cartRepresentation;
+  }
+
+  private Representation getTotals(Cart cart) {
 
     // Do not reveal the ID to non-admins
     String basePath = "/cart";
@@ -32,14 +68,10 @@ public class PublicCartRepresentation {
     String currencySymbol = "Ƀ"; // or &pound; or &euro;
     String currencyCode = "BTC";
 
-    // Calculate the value of the cart items
+    // The totals are maintained by the Cart as its contents change
     // TODO Allow for currency conversion
-    BigMoney cartTotal = MoneyUtils.parseBitcoin("BTC 0.0000");
-    BigMoney taxTotal = MoneyUtils.parseBitcoin("BTC 0.0000");
-    for (CartItem cartItem : cart.getCartItems()) {
-      cartTotal = cartTotal.plus(cartItem.getPriceSubtotal());
-      taxTotal = taxTotal.plus(cartItem.getTaxSubtotal());
-    }
+    BigMoney cartTotal = cart.getPriceTotal();
+    BigMoney taxTotal = cart.getTaxTotal();
 
     // Create top-level resource
     Representation cartRepresentation= new DefaultRepresentationFactory()
@@ -55,12 +87,6 @@ public class PublicCartRepresentation {
       // End of build
       ;
 
-    // Create sub-resources based on items
-    for (CartItem cartItem : cart.getCartItems()) {
-      Representation publicCartItemRepresentation= new PublicCartItemRepresentation().get(cartItem);
-      cartRepresentation.withRepresentation("cartitems", publicCartItemRepresentation);
-    }
-
     return cartRepresentation;
   }
 
@@ -3,7 +3,7 @@ package org.multibit.mbm.client.interfaces.rest.api.representations.hal.item;
 import com.google.common.base.Preconditions;
 import com.theoryinpractise.halbuilder.api.Representation;
 import org.multibit.mbm.client.common.pagination.PaginatedList;
-import org.multibit.mbm.client.domain.model.model.Item;
+import org.multibit.mbm.client.domain.model.model.ItemSummaryView;
 import org.multibit.mbm.client.interfaces.rest.api.hal.Representations;
 
 import javax.ws.rs.core.UriBuilder;
@@ -21,14 +21,14 @@ public class AdminItemCollectionRepresentation {
 
   private final PublicItemRepresentation customerItemRepresentation = new PublicItemRepresentation();
 
-  public Representation get(PaginatedList<Item> items) {
+  public Representation get(PaginatedList<ItemSummaryView> items) {
 
     Preconditions.checkNotNull(items, "items");
 
     URI self = UriBuilder.fromPath("/admin/item").build();
     Representation itemList = Representations.newPaginatedList(self, items);
 
-    for (Item item : items.list()) {
+    for (ItemSummaryView item : items.list()) {
       Representation itemRepresentation = customerItemRepresentation.get(item);
 
       itemRepresentation.withProperty("id", item.getId())
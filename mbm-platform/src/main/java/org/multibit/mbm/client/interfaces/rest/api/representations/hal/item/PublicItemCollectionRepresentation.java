@@ -3,7 +3,7 @@ package org.multibit.mbm.client.interfaces.rest.api.representations.hal.item;
 import com.google.common.base.Preconditions;
 import com.theoryinpractise.halbuilder.api.Representation;
 import org.multibit.mbm.client.common.pagination.PaginatedList;
-import org.multibit.mbm.client.domain.model.model.Item;
+import org.multibit.mbm.client.domain.model.model.ItemSummaryView;
 import org.multibit.mbm.client.interfaces.rest.api.hal.Representations;
 
 import javax.ws.rs.core.UriBuilder;
@@ -21,7 +21,7 @@ public class PublicItemCollectionRepresentation {
 
   private final PublicItemRepresentation publicItemRepresentation = new PublicItemRepresentation();
 
-  public Representation get(PaginatedList<Item> items) {
+  public Representation get(PaginatedList<ItemSummaryView> items) {
 
     Preconditions.checkNotNull(items, "items");
 
@@ -29,7 +29,7 @@ public class PublicItemCollectionRepresentation {
     Representation itemList = Representations.newPaginatedList(self, items);
 
     // Use the reduced public fields as embedded resources
-    for (Item item : items.list()) {
+    for (ItemSummaryView item : items.list()) {
       Representation itemRepresentation = publicItemRepresentation.get(item);
       itemList.withRepresentation("item", itemRepresentation);
     }
@@ -4,9 +4,11 @@ import com.google.common.base.Preconditions;
 import com.theoryinpractise.halbuilder.DefaultRepresentationFactory;
 import com.theoryinpractise.halbuilder.api.Representation;
 import com.theoryinpractise.halbuilder.api.RepresentationFactory;
+import org.joda.money.BigMoney;
 import org.multibit.mbm.client.domain.model.model.Item;
 import org.multibit.mbm.client.domain.model.model.ItemField;
 import org.multibit.mbm.client.domain.model.model.ItemFieldDetail;
+import org.multibit.mbm.client.domain.model.model.ItemSummaryView;
 import org.multibit.mbm.client.domain.model.model.LocalisedText;
 
 import java.util.Map;
@@ -28,30 +30,13 @@ public class PublicItemRepresentation {
 
     RepresentationFactory factory = new DefaultRepresentationFactory();
 
-    // Create the slug from the title (if it is present)
-    String title = item.getItemFieldContent(ItemField.TITLE);
-    String slug = null;
-    if (title != null) {
-      slug = title
-        .replaceAll("\\p{Punct}", "")
-        .replaceAll("\\p{Space}", "-")
-        .toLowerCase();
-    }
-
-    // Calculate the price
-    // TODO Consider currency choice from preferences
-    String price = item.getLocalPrice().getAmount().toPlainString();
-    String taxRate = String.valueOf(item.getTaxRate());
-
-    Representation userRepresentation = factory
-      .newRepresentation("/item/" + item.getSKU())
-      .withProperty("sku", item.getSKU())
-      .withProperty("gtin", item.getGTIN())
-      .withProperty("price", price)
-      .withProperty("tax_rate", taxRate)
-      .withProperty("slug", slug)
-      // End of build
-      ;
+    Representation userRepresentation = newItemRepresentation(
+      factory,
+      item.getSKU(),
+      item.getGTIN(),
+      item.getLocalPrice(),
+      item.getTaxRate(),
+      item.getItemFieldContent(ItemField.TITLE));
 
     // Convert the ContactMethodDetails map into primary and secondary property entries
     for (Map.Entry<ItemField, ItemFieldDetail> entry : item.getItemFieldMap().entrySet()) {
@@ -85,4 +70,63 @@ public class PublicItemRepresentation {
 
   }
 
+  /**
+   * <p>Catalogue listings only carry the primary content of each field so secondary details are omitted</p>
+   *
+   * @param itemSummary The Item summary
+   *
+   * @return The representation
+   */
+  public Representation get(ItemSummaryView itemSummary) {
+    Preconditions.checkNotNull(itemSummary, "itemSummary");
+
+    RepresentationFactory factory = new DefaultRepresentationFactory();
+
+    Representation userRepresentation = newItemRepresentation(
+      factory,
+      itemSummary.getSKU(),
+      itemSummary.getGTIN(),
+      itemSummary.getLocalPrice(),
+      itemSummary.getTaxRate(),
+      itemSummary.getItemFieldContent(ItemField.TITLE));
+
+    for (Map.Entry<ItemField, String> entry : itemSummary.getFieldContent().entrySet()) {
+      String propertyName = entry.getKey().getPropertyNameSingular();
+      if (entry.getKey().isLink()) {
+        userRepresentation.withLink(propertyName, entry.getValue());
+      } else {
+        userRepresentation.withProperty(propertyName, entry.getValue());
+      }
+    }
+
+    return userRepresentation;
+
+  }
+
+  private Representation newItemRepresentation(RepresentationFactory factory, String sku, String gtin, BigMoney localPrice, double taxRate, String title) {
+
+    // Create the slug from the title (if it is present)
+    String slug = null;
+    if (title != null) {
+      slug = title
+        .replaceAll("\\p{Punct}", "")
+        .replaceAll("\\p{Space}", "-")
+        .toLowerCase();
+    }
+
+    // Calculate the price
+    // TODO Consider currency choice from preferences
+    String price = localPrice.getAmount().toPlainString();
+
+    return factory
+      .newRepresentation("/item/" + sku)
+      .withProperty("sku", sku)
+      .withProperty("gtin", gtin)
+      .withProperty("price", price)
+      .withProperty("tax_rate", String.valueOf(taxRate))
+      .withProperty("slug", slug)
+      // End of build
+      ;
+  }
+
 }
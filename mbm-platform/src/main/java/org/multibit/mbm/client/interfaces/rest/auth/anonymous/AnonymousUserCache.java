@@ -0,0 +1,224 @@
+package org.multibit.mbm.client.interfaces.rest.auth.anonymous;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheBuilderSpec;
+import com.sun.jersey.core.util.Base64;
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.Meter;
+import org.multibit.mbm.client.domain.model.model.Customer;
+import org.multibit.mbm.client.domain.model.model.CustomerBuilder;
+import org.multibit.mbm.client.domain.model.model.Role;
+import org.multibit.mbm.client.domain.model.model.User;
+import org.multibit.mbm.client.domain.model.model.UserBuilder;
+import org.multibit.mbm.client.domain.repositories.RoleReadService;
+import org.multibit.mbm.client.domain.repositories.UserReadService;
+import org.multibit.mbm.client.interfaces.rest.auth.Authority;
+import org.multibit.mbm.client.interfaces.rest.auth.hmac.HmacUtils;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.security.SecureRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Cache to provide the following to the public resources:</p>
+ * <ul>
+ * <li>Anonymous Users (with a Customer and an empty Cart) held only in memory</li>
+ * <li>A secret key for each anonymous API key that is signed by this server rather than stored</li>
+ * <li>Promotion of an anonymous User to a persistent one when it does something that must survive</li>
+ * </ul>
+ * <p>Crawlers and visitors that only browse never reach the database. Since the secret key is derived from the
+ * API key an anonymous User that has been evicted (but not promoted) can be restored from its signed request
+ * alone, albeit with an empty Cart. The signing secret is configured so this also holds across a restart and
+ * on every instance sharing the same secret. A promoted User keeps its API key but is given a random secret
+ * key (which the client must use from then on) since anyone knowing the signing secret could derive the signed
+ * one.</p>
+ *
+ * @since 0.0.1
+ */
+@Component("anonymousUserCache")
+public class AnonymousUserCache {
+
+  public static final String DEFAULT_CACHE_POLICY = "maximumSize=100000, expireAfterAccess=30m";
+
+  /**
+   * The signing secret shipped in earlier example configurations (refused since it is public)
+   */
+  public static final String EXAMPLE_SIGNING_SECRET = "change-this-anonymous-signing-secret";
+
+  private static final String SIGNING_ALGORITHM = "HmacSHA256";
+
+  private final Meter created = Metrics.newMeter(AnonymousUserCache.class, "created", "users", TimeUnit.SECONDS);
+
+  private final Meter promoted = Metrics.newMeter(AnonymousUserCache.class, "promoted", "users", TimeUnit.SECONDS);
+
+  /**
+   * The signing key is random until configured (so anonymous sessions would not survive a restart)
+   */
+  private volatile byte[] signingKey;
+
+  private volatile Cache<String, User> users = CacheBuilder.from(DEFAULT_CACHE_POLICY).build();
+
+  @Resource(name = "userReadService")
+  private UserReadService userReadService = null;
+
+  @Resource(name = "roleReadService")
+  private RoleReadService roleReadService = null;
+
+  public AnonymousUserCache() {
+    byte[] seed = new byte[32];
+    new SecureRandom().nextBytes(seed);
+    signingKey = Base64.encode(seed);
+
+    Metrics.newGauge(AnonymousUserCache.class, "size", new Gauge<Long>() {
+      @Override
+      public Long value() {
+        return users.size();
+      }
+    });
+  }
+
+  /**
+   * @param cachePolicy   The policy for holding anonymous Users (e.g. "maximumSize=100000, expireAfterAccess=30m")
+   * @param signingSecret The secret used to sign the secret key of each anonymous User (shared by all instances)
+   */
+  public void configure(CacheBuilderSpec cachePolicy, String signingSecret) {
+    Preconditions.checkNotNull(cachePolicy, "cachePolicy cannot be null");
+    Preconditions.checkArgument(!Strings.isNullOrEmpty(signingSecret), "signingSecret cannot be empty");
+    Preconditions.checkArgument(!EXAMPLE_SIGNING_SECRET.equals(signingSecret), "signingSecret must be changed from the example value");
+    users = CacheBuilder.from(cachePolicy).build();
+    signingKey = signingSecret.getBytes(Charsets.UTF_8);
+  }
+
+  /**
+   * @return A new anonymous User with the public role
+   */
+  public User create() {
+    User user = build(UUID.randomUUID().toString());
+    users.put(user.getApiKey(), user);
+    created.mark();
+    return user;
+  }
+
+  /**
+   * @param apiKey The API key
+   *
+   * @return The anonymous User if it is held
+   */
+  public Optional<User> getByApiKey(String apiKey) {
+    return Optional.fromNullable(users.getIfPresent(apiKey));
+  }
+
+  /**
+   * <p>The secret key an anonymous User with this API key would be given. The caller should verify a request
+   * signed with it before calling {@link #restore(String)} since any API key will produce a secret key.</p>
+   *
+   * @param apiKey The API key
+   *
+   * @return The signed secret key
+   */
+  public String getSecretKey(String apiKey) {
+    Preconditions.checkNotNull(apiKey, "apiKey cannot be null");
+    return sign(apiKey);
+  }
+
+  /**
+   * <p>Rebuild an anonymous User that is no longer held. The caller must verify a request signed with the secret
+   * key (see {@link #getSecretKey(String)}) before calling this and {@link #put(User)} since any API key will
+   * produce a User.</p>
+   *
+   * @param apiKey The API key
+   *
+   * @return An anonymous User with the signed secret key and an empty Cart
+   */
+  public User restore(String apiKey) {
+    Preconditions.checkNotNull(apiKey, "apiKey cannot be null");
+    return build(apiKey);
+  }
+
+  /**
+   * @param user The anonymous User to hold (normally following {@link #restore(String)})
+   */
+  public void put(User user) {
+    Preconditions.checkState(isAnonymous(user), "user must be anonymous");
+    users.put(user.getApiKey(), user);
+  }
+
+  /**
+   * @param user The User
+   *
+   * @return True if the User has not been persisted
+   */
+  public boolean isAnonymous(User user) {
+    Preconditions.checkNotNull(user, "user cannot be null");
+    return user.getId() == null;
+  }
+
+  /**
+   * <p>Persist an anonymous User (with its Customer and Cart). Concurrent requests from the same visitor
+   * share the same User instance so only the first will write.</p>
+   * <p>The signed secret key is only used while the User is anonymous so the persistent User is given a random
+   * secret key that the caller must return to the client.</p>
+   *
+   * @param user The User
+   *
+   * @return The persistent User (unchanged if not anonymous)
+   */
+  public User promote(User user) {
+    synchronized (user) {
+      if (!isAnonymous(user)) {
+        return user;
+      }
+      user.setSecretKey(UUID.randomUUID().toString() + UUID.randomUUID().toString());
+      User persistentUser = userReadService.saveOrUpdate(user);
+      users.invalidate(user.getApiKey());
+      promoted.mark();
+      return persistentUser;
+    }
+  }
+
+  /**
+   * Discard all anonymous Users (normally only used in test code)
+   */
+  public void clear() {
+    users.invalidateAll();
+  }
+
+  public void setUserReadService(UserReadService userReadService) {
+    this.userReadService = userReadService;
+  }
+
+  public void setRoleReadService(RoleReadService roleReadService) {
+    this.roleReadService = roleReadService;
+  }
+
+  private User build(String apiKey) {
+    Optional<Role> publicRole = roleReadService.getByName(Authority.ROLE_PUBLIC.name());
+    Preconditions.checkState(publicRole.isPresent(), "'" + Authority.ROLE_PUBLIC.name() + "' is not defined");
+
+    // The Customer provides an empty Cart
+    Customer customer = CustomerBuilder
+      .newInstance()
+      .build();
+
+    return UserBuilder
+      .newInstance()
+      .withApiKey(apiKey)
+      .withSecretKey(sign(apiKey))
+      .withCustomer(customer)
+      .withRole(publicRole.get())
+      .build();
+  }
+
+  private String sign(String apiKey) {
+    return new String(HmacUtils.computeSignature(SIGNING_ALGORITHM, apiKey.getBytes(), signingKey));
+  }
+
+}
@@ -5,6 +5,7 @@ import com.yammer.dropwizard.auth.AuthenticationException;
 import com.yammer.dropwizard.auth.Authenticator;
 import org.multibit.mbm.client.domain.repositories.UserReadService;
 import org.multibit.mbm.client.domain.model.model.User;
+import org.multibit.mbm.client.interfaces.rest.auth.anonymous.AnonymousUserCache;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Resource;
@@ -20,16 +21,32 @@ import javax.annotation.Resource;
 @Component
 public class HmacServerAuthenticator implements Authenticator<HmacServerCredentials, User> {
 
-  @Resource(name="hibernateUserDao")
+  @Resource(name = "userReadService")
   private UserReadService userReadService;
 
+  @Resource(name = "anonymousUserCache")
+  private AnonymousUserCache anonymousUserCache;
+
   @Override
   public Optional<User> authenticate(HmacServerCredentials credentials) throws AuthenticationException {
 
-    // Get the User referred to by the API key
-    Optional<User> user = userReadService.getByApiKey(credentials.getApiKey());
+    // Get the User referred to by the API key (anonymous Users are only held in memory)
+    Optional<User> user = anonymousUserCache.getByApiKey(credentials.getApiKey());
     if (!user.isPresent()) {
-      return Optional.absent();
+      user = userReadService.getByApiKey(credentials.getApiKey());
+    }
+    if (!user.isPresent()) {
+      // An evicted anonymous User can be rebuilt since its secret key is signed by this server but any API key
+      // would produce one so only do so once the request is known to be signed with it
+      if (!isSigned(credentials, anonymousUserCache.getSecretKey(credentials.getApiKey()))) {
+        return Optional.absent();
+      }
+      User restored = anonymousUserCache.restore(credentials.getApiKey());
+      if (!restored.hasAllAuthorities(credentials.getRequiredAuthorities())) {
+        return Optional.absent();
+      }
+      anonymousUserCache.put(restored);
+      return Optional.of(restored);
     }
 
     // Check that their authorities match their credentials
@@ -37,17 +54,7 @@ public class HmacServerAuthenticator implements Authenticator<HmacServerCredenti
       return Optional.absent();
     }
 
-    // Locate their secret key
-    String secretKey = user.get().getSecretKey();
-
-    String computedSignature = new String(
-      HmacUtils.computeSignature(
-        credentials.getAlgorithm(),
-        credentials.getCanonicalRepresentation().getBytes(),
-        secretKey.getBytes()));
-
-    // Avoid timing attacks by verifying every byte every time
-    if (isEqual(computedSignature.getBytes(), credentials.getDigest().getBytes())) {
+    if (isSigned(credentials, user.get().getSecretKey())) {
       return user;
     }
 
@@ -59,6 +66,27 @@ public class HmacServerAuthenticator implements Authenticator<HmacServerCredenti
     this.userReadService = userReadService;
   }
 
+  public void setAnonymousUserCache(AnonymousUserCache anonymousUserCache) {
+    this.anonymousUserCache = anonymousUserCache;
+  }
+
+  /**
+   * @param credentials The credentials
+   * @param secretKey   The secret key the request should have been signed with
+   *
+   * @return True if the digest in the credentials matches the one computed with the secret key
+   */
+  private boolean isSigned(HmacServerCredentials credentials, String secretKey) {
+    String computedSignature = new String(
+      HmacUtils.computeSignature(
+        credentials.getAlgorithm(),
+        credentials.getCanonicalRepresentation().getBytes(),
+        secretKey.getBytes()));
+
+    // Avoid timing attacks by verifying every byte every time
+    return isEqual(computedSignature.getBytes(), credentials.getDigest().getBytes());
+  }
+
   /**
    * Performs a byte array comparison with a constant time
    *
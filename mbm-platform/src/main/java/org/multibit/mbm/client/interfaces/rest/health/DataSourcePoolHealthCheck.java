@@ -0,0 +1,54 @@
+package org.multibit.mbm.client.interfaces.rest.health;
+
+import com.google.common.base.Preconditions;
+import com.yammer.metrics.core.HealthCheck;
+import org.multibit.mbm.client.infrastructure.persistence.datasource.PooledDataSource;
+
+import java.sql.Connection;
+
+/**
+ * <p>HealthCheck to provide the following to application:</p>
+ * <ul>
+ * <li>Detection of an exhausted connection pool (all connections in use and requests waiting)</li>
+ * <li>Verification that a connection can be acquired and is valid</li>
+ * </ul>
+ *
+ * @since 0.0.1
+ */
+public class DataSourcePoolHealthCheck extends HealthCheck {
+
+  private static final int VALIDATION_TIMEOUT_SECONDS = 1;
+
+  private final PooledDataSource dataSource;
+
+  public DataSourcePoolHealthCheck(PooledDataSource dataSource) {
+    super("datasource-" + Preconditions.checkNotNull(dataSource, "dataSource cannot be null").getName());
+    this.dataSource = dataSource;
+  }
+
+  @Override
+  protected Result check() throws Exception {
+
+    String usage = String.format("active=%d, idle=%d, waiting=%d, max=%d",
+      dataSource.getNumActive(),
+      dataSource.getNumIdle(),
+      dataSource.getNumWaiting(),
+      dataSource.getMaxActive());
+
+    if (dataSource.isExhausted()) {
+      return Result.unhealthy("Connection pool exhausted (" + usage + ")");
+    }
+
+    // Acquisition is subject to the configured maximum wait
+    Connection connection = dataSource.getConnection();
+    try {
+      if (!connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+        return Result.unhealthy("Connection is not valid (" + usage + ")");
+      }
+    } finally {
+      connection.close();
+    }
+
+    return Result.healthy(usage);
+  }
+}
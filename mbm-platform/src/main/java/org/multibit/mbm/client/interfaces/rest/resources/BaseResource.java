@@ -2,11 +2,13 @@ package org.multibit.mbm.client.interfaces.rest.resources;
 
 import com.google.common.base.Optional;
 import com.theoryinpractise.halbuilder.api.Representation;
+import org.multibit.mbm.client.common.pagination.ContinuationToken;
 import org.multibit.mbm.client.interfaces.rest.api.hal.HalMediaType;
 
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.*;
 import java.net.URI;
+import java.util.List;
 
 /**
  * <p>Abstract base class to provide the following to resources:</p>
@@ -19,12 +21,19 @@ import java.net.URI;
  */
 public abstract class BaseResource {
 
+  protected static final String PREFER = "Prefer";
+  protected static final String PREFERENCE_APPLIED = "Preference-Applied";
+  protected static final String RETURN_MINIMAL = "return=minimal";
+
   @Context
   protected UriInfo uriInfo;
 
   @Context
   protected HttpHeaders httpHeaders;
 
+  @Context
+  protected Request request;
+
   /**
    * @param representation The representation for the entity
    *
@@ -38,6 +47,29 @@ public abstract class BaseResource {
     return Response.ok().type(acceptedMediaType).entity(body).build();
   }
 
+  /**
+   * @param representation The representation for the entity
+   * @param version        The optimistic locking version of the entity
+   *
+   * @return A configured HTTP 200 OK response carrying the version as an entity tag for later conditional updates
+   */
+  protected Response ok(Representation representation, long version) {
+    MediaType acceptedMediaType = getAcceptedMediaType(httpHeaders);
+
+    String body = representation.toString(acceptedMediaType.toString());
+
+    return Response.ok().type(acceptedMediaType).tag(entityTag(version)).entity(body).build();
+  }
+
+  /**
+   * @param version The optimistic locking version of the entity
+   *
+   * @return A configured HTTP 204 NO_CONTENT response honouring a "return=minimal" preference
+   */
+  protected Response noContent(long version) {
+    return Response.noContent().tag(entityTag(version)).header(PREFERENCE_APPLIED, RETURN_MINIMAL).build();
+  }
+
   /**
    * @param representation The representation for the entity
    *
@@ -65,6 +97,62 @@ public abstract class BaseResource {
     return new WebApplicationException(Response.Status.NOT_FOUND);
   }
 
+  /**
+   * @return True if the client has made the request conditional on the version it holds
+   */
+  protected boolean isConditional() {
+    List<String> ifMatch = httpHeaders.getRequestHeader(HttpHeaders.IF_MATCH);
+    return ifMatch != null && !ifMatch.isEmpty();
+  }
+
+  /**
+   * @return True if the client has asked (through "Prefer: return=minimal") for no representation in the response
+   */
+  protected boolean isReturnMinimal() {
+    List<String> prefer = httpHeaders.getRequestHeader(PREFER);
+    if (prefer == null) {
+      return false;
+    }
+    for (String preferences : prefer) {
+      for (String preference : preferences.split(",")) {
+        if (RETURN_MINIMAL.equalsIgnoreCase(preference.trim())) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Evaluate any If-Match precondition against the current version of the entity
+   *
+   * @param version The current optimistic locking version of the entity
+   *
+   * @throws WebApplicationException (HTTP PRECONDITION_FAILED) if the client holds a different version
+   */
+  protected void assertPreconditions(long version) {
+    Response.ResponseBuilder builder = request.evaluatePreconditions(entityTag(version));
+    if (builder != null) {
+      throw new WebApplicationException(builder.build());
+    }
+  }
+
+  /**
+   * @param rawContinuationToken The unvalidated continuation token from a previous keyset page
+   *
+   * @return The decoded continuation token (absent for the first page)
+   */
+  protected Optional<ContinuationToken> continuationToken(Optional<String> rawContinuationToken) {
+    if (!rawContinuationToken.isPresent()) {
+      return Optional.absent();
+    }
+    try {
+      return Optional.of(ContinuationToken.decode(rawContinuationToken.get()));
+    } catch (IllegalArgumentException e) {
+      throw badRequest();
+    }
+  }
+
   /**
    * Determines which of the acceptable media types will be the chosen one
    * based on the q-factor
@@ -91,6 +179,15 @@ public abstract class BaseResource {
     return accepted.get();
   }
 
+  /**
+   * @param version The optimistic locking version of the entity
+   *
+   * @return The strong entity tag for the version
+   */
+  private EntityTag entityTag(long version) {
+    return new EntityTag(String.valueOf(version));
+  }
+
   protected URI self() {
     return uriInfo.getRequestUri();
   }
@@ -0,0 +1,33 @@
+package org.multibit.mbm.client.interfaces.rest.resources;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * <p>Provider to provide the following to resources:</p>
+ * <ul>
+ * <li>Translation of a lost optimistic locking race into a HTTP response</li>
+ * </ul>
+ * <p>A stale If-Match is refused earlier with PRECONDITION_FAILED, so this only covers a concurrent writer that
+ * committed while the request was being applied. The client should GET the latest version and try again.</p>
+ *
+ * @since 0.0.1
+ */
+@Provider
+public class OptimisticLockingFailureExceptionMapper implements ExceptionMapper<OptimisticLockingFailureException> {
+
+  private static final Logger log = LoggerFactory.getLogger(OptimisticLockingFailureExceptionMapper.class);
+
+  @Override
+  public Response toResponse(OptimisticLockingFailureException e) {
+    log.debug("Concurrent update rejected: {}", e.getMessage());
+
+    return Response.status(Response.Status.CONFLICT).build();
+  }
+
+}
@@ -2,6 +2,8 @@ package org.multibit.mbm.client.interfaces.rest.resources.cart;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.theoryinpractise.halbuilder.api.Representation;
 import com.yammer.dropwizard.jersey.caching.CacheControl;
 import com.yammer.metrics.annotation.Timed;
@@ -27,6 +29,8 @@ import javax.annotation.Resource;
 import javax.ws.rs.*;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -45,10 +49,10 @@ import java.util.concurrent.TimeUnit;
 @Consumes(MediaType.APPLICATION_JSON)
 public class AdminCartResource extends BaseResource {
 
-  @Resource(name = "hibernateCartDao")
+  @Resource(name = "cartReadService")
   CartReadService cartDao;
 
-  @Resource(name = "hibernateItemDao")
+  @Resource(name = "itemReadService")
   ItemReadService itemReadService;
 
   /**
@@ -104,6 +108,7 @@ public class AdminCartResource extends BaseResource {
 
     // Verify and apply any changes to the Cart
     Cart cart = cartOptional.get();
+    assertPreconditions(cart.getVersion());
     apply(updateCartRequest,cart);
 
     // Persist the updated cart
@@ -112,7 +117,7 @@ public class AdminCartResource extends BaseResource {
     // Provide a representation to the client
     Representation representation = new AdminCartRepresentation().get(cart);
 
-    return ok(representation);
+    return ok(representation, cart.getVersion());
 
   }
 
@@ -123,15 +128,25 @@ public class AdminCartResource extends BaseResource {
    */
   private void apply(AdminUpdateCartDto updateRequest, Cart entity) {
 
+    List<String> skus = Lists.newArrayList();
     for (PublicCartItemDto customerCartItem : updateRequest.getCartItems()) {
       Preconditions.checkNotNull(customerCartItem.getSKU(), "id");
       ResourceAsserts.assertPositive(customerCartItem.getQuantity(), "quantity");
+      skus.add(customerCartItem.getSKU());
+    }
 
-      Optional<Item> item = itemReadService.getBySKU(customerCartItem.getSKU());
-      ResourceAsserts.assertPresent(item,"item");
+    // Resolve every line in a single lookup rather than one per line
+    Map<String, Item> items = itemReadService.getBySKUs(skus);
 
-      entity.setItemQuantity(item.get(),customerCartItem.getQuantity());
+    Map<Item, Integer> changes = Maps.newLinkedHashMap();
+    for (PublicCartItemDto customerCartItem : updateRequest.getCartItems()) {
+      Optional<Item> item = Optional.fromNullable(items.get(customerCartItem.getSKU()));
+      ResourceAsserts.assertPresent(item, "item");
+
+      changes.put(item.get(), customerCartItem.getQuantity());
     }
+
+    entity.applyChanges(changes);
   }
 
   public void setCartDao(CartReadService cartDao) {
@@ -1,21 +1,33 @@
 package org.multibit.mbm.client.interfaces.rest.resources.cart;
 
+import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.theoryinpractise.halbuilder.api.Representation;
 import com.yammer.dropwizard.jersey.caching.CacheControl;
 import com.yammer.metrics.annotation.Timed;
 import org.multibit.mbm.client.domain.model.model.Cart;
+import org.multibit.mbm.client.domain.model.model.CartItem;
 import org.multibit.mbm.client.domain.model.model.Item;
 import org.multibit.mbm.client.domain.model.model.User;
 import org.multibit.mbm.client.domain.repositories.CartReadService;
 import org.multibit.mbm.client.domain.repositories.ItemReadService;
+import org.multibit.mbm.client.infrastructure.persistence.OptimisticRetryTemplate;
+import org.multibit.mbm.client.infrastructure.persistence.hot.HotCartStore;
+import org.multibit.mbm.client.interfaces.rest.api.cart.PatchCartDto;
+import org.multibit.mbm.client.interfaces.rest.api.cart.PatchCartItemDto;
 import org.multibit.mbm.client.interfaces.rest.api.cart.PublicCartItemDto;
 import org.multibit.mbm.client.interfaces.rest.api.cart.UpdateCartDto;
 import org.multibit.mbm.client.interfaces.rest.api.hal.HalMediaType;
 import org.multibit.mbm.client.interfaces.rest.api.representations.hal.cart.PublicCartRepresentation;
 import org.multibit.mbm.client.interfaces.rest.auth.Authority;
 import org.multibit.mbm.client.interfaces.rest.auth.annotation.RestrictedTo;
+import org.multibit.mbm.client.interfaces.rest.auth.anonymous.AnonymousUserCache;
+import org.multibit.mbm.client.interfaces.rest.auth.hmac.HmacUtils;
+import org.multibit.mbm.client.interfaces.rest.common.PATCH;
 import org.multibit.mbm.client.interfaces.rest.common.ResourceAsserts;
 import org.multibit.mbm.client.interfaces.rest.links.cart.CartLinks;
 import org.multibit.mbm.client.interfaces.rest.resources.BaseResource;
@@ -27,6 +39,9 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.Response;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -45,12 +60,20 @@ import java.util.concurrent.TimeUnit;
 @Produces({HalMediaType.APPLICATION_HAL_JSON, HalMediaType.APPLICATION_HAL_XML})
 public class PublicCartResource extends BaseResource {
 
-  @Resource(name="hibernateCartDao")
+  @Resource(name = "cartReadService")
   CartReadService cartDao;
 
-  @Resource(name="hibernateItemDao")
+  @Resource(name = "itemReadService")
   ItemReadService itemReadService;
 
+  @Resource(name = "anonymousUserCache")
+  AnonymousUserCache anonymousUserCache;
+
+  @Resource(name = "hotCartStore")
+  HotCartStore hotCartStore;
+
+  OptimisticRetryTemplate retryTemplate = new OptimisticRetryTemplate();
+
   /**
    * Provides this Customer's Cart
    *
@@ -68,16 +91,28 @@ public class PublicCartResource extends BaseResource {
     // Validation
     Preconditions.checkNotNull(publicUser.getCustomer(), "customer");
 
-    Cart cart = publicUser.getCustomer().getCart();
-
-    Representation representation = new PublicCartRepresentation().get(cart);
+    // The Cart may have changes that are only held in memory
+    return hotCartStore.read(publicUser.getCustomer().getCart(), new Function<Cart, Response>() {
+      @Override
+      public Response apply(Cart cart) {
+        Representation representation = new PublicCartRepresentation().get(cart);
 
-    return ok(representation);
+        return ok(representation, cart.getVersion());
+      }
+    });
 
   }
 
   /**
-   * Update an existing Cart with the populated fields
+   * <p>Update an existing Cart with the populated fields</p>
+   * <p>Setting absolute quantities is idempotent so an update that loses a race with a concurrent writer is
+   * reapplied to the latest version of the Cart (a bounded number of times) rather than taking a row lock. A
+   * client that provides If-Match is refused (412) instead since it has asked for its version only.</p>
+   * <p>An anonymous User is persisted (with its Customer and Cart) on its first update and its new secret key is
+   * returned in the {@value HmacUtils#X_HMAC_SECRET_KEY} header.</p>
+   * <p>Changes are made through the {@link HotCartStore} so with write-behind configured they are serialised in
+   * memory (no conflicts arise) and reach the database on the next flush. The response is built under the same
+   * lock so that it always matches its entity tag.</p>
    *
    * @param publicUser A cart with administrator rights
    *
@@ -87,23 +122,137 @@ public class PublicCartResource extends BaseResource {
   @Timed
   public Response update(
     @RestrictedTo({Authority.ROLE_PUBLIC})
-    User publicUser,
-    UpdateCartDto updateCartRequest) {
+    final User publicUser,
+    final UpdateCartDto updateCartRequest) {
 
-    // Retrieve the cart
-    Cart cart = publicUser.getCustomer().getCart();
+    // Validation
+    Preconditions.checkNotNull(publicUser.getCustomer(), "customer");
+
+    // A Cart write must survive so the visitor can no longer be held only in memory
+    final boolean anonymous = anonymousUserCache.isAnonymous(publicUser);
+    final User user = anonymousUserCache.promote(publicUser);
+
+    OptimisticRetryTemplate retryTemplate = isConditional() ? new OptimisticRetryTemplate(1) : this.retryTemplate;
+
+    Response response = retryTemplate.execute(new OptimisticRetryTemplate.Callback<Response>() {
+      @Override
+      public Response doInAttempt(int attempt) {
+
+        // Retrieve the cart (reloading after a conflict to merge into the latest version)
+        return hotCartStore.update(currentCart(user, attempt), new HotCartStore.Change() {
+          @Override
+          public void apply(Cart cart) {
+            assertPreconditions(cart.getVersion());
+
+            // Verify and apply any changes to the Cart
+            PublicCartResource.this.apply(updateCartRequest, cart);
+          }
+        }, new Function<Cart, Response>() {
+          @Override
+          public Response apply(Cart cart) {
+            // Provide a representation to the client
+            Representation representation = new PublicCartRepresentation().get(cart);
+
+            return ok(representation, cart.getVersion());
+          }
+        });
+      }
+    });
+
+    return anonymous ? withSecretKey(response, user) : response;
+
+  }
+
+  /**
+   * <p>Apply line operations ("set", "increment" or "remove") in place to the existing Cart</p>
+   * <p>Only the lines being changed are sent and only those lines (along with the new totals) are returned.
+   * Removed lines are absent from the response. A client sending "Prefer: return=minimal" receives 204 with the
+   * new entity tag instead.</p>
+   * <p>An increment is not idempotent but each retry after a conflict reapplies the operations to the latest
+   * version of the Cart so no increment is lost or counted twice.</p>
+   *
+   * @param publicUser   A public User
+   * @param patchRequest The line operations
+   *
+   * @return A response containing the changed lines and the Cart totals
+   */
+  @PATCH
+  @Timed
+  public Response patch(
+    @RestrictedTo({Authority.ROLE_PUBLIC})
+    final User publicUser,
+    final PatchCartDto patchRequest) {
+
+    // Validation
+    Preconditions.checkNotNull(publicUser.getCustomer(), "customer");
+    ResourceAsserts.assertNotNull(patchRequest, "patchRequest");
 
-    // Verify and apply any changes to the Cart
-    apply(updateCartRequest,cart);
+    // A Cart write must survive so the visitor can no longer be held only in memory
+    final boolean anonymous = anonymousUserCache.isAnonymous(publicUser);
+    final User user = anonymousUserCache.promote(publicUser);
 
-    // Persist the updated cart
-    cart = cartDao.saveOrUpdate(cart);
+    OptimisticRetryTemplate retryTemplate = isConditional() ? new OptimisticRetryTemplate(1) : this.retryTemplate;
 
-    // Provide a representation to the client
-    Representation representation = new PublicCartRepresentation().get(cart);
+    final Set<Item> changedItems = Sets.newLinkedHashSet();
+    Response response = retryTemplate.execute(new OptimisticRetryTemplate.Callback<Response>() {
+      @Override
+      public Response doInAttempt(int attempt) {
+
+        return hotCartStore.update(currentCart(user, attempt), new HotCartStore.Change() {
+          @Override
+          public void apply(Cart cart) {
+            assertPreconditions(cart.getVersion());
+
+            // Verify and apply the operations to the Cart
+            changedItems.clear();
+            changedItems.addAll(PublicCartResource.this.apply(patchRequest, cart));
+          }
+        }, new Function<Cart, Response>() {
+          @Override
+          public Response apply(Cart cart) {
+            if (isReturnMinimal()) {
+              return noContent(cart.getVersion());
+            }
+
+            // Provide only the changes to the client
+            Representation representation = new PublicCartRepresentation().getChanges(cart, changedItems);
+
+            return ok(representation, cart.getVersion());
+          }
+        });
+      }
+    });
+
+    return anonymous ? withSecretKey(response, user) : response;
+
+  }
+
+  /**
+   * @param response The response to the request that promoted the User
+   * @param user     The promoted User
+   *
+   * @return The response carrying the new secret key (the signed one is no longer accepted)
+   */
+  private Response withSecretKey(Response response, User user) {
+    return Response.fromResponse(response).header(HmacUtils.X_HMAC_SECRET_KEY, user.getSecretKey()).build();
+  }
 
-    return ok(representation);
+  /**
+   * @param publicUser The public User
+   * @param attempt    The attempt (starting at 1)
+   *
+   * @return The Cart held by the User, reloaded after a conflict to merge into the latest version
+   */
+  private Cart currentCart(User publicUser, int attempt) {
 
+    Cart cart = publicUser.getCustomer().getCart();
+    if (attempt > 1) {
+      // The principal may be shared between requests so the reloaded Cart is not put back onto it
+      Optional<Cart> latestCart = cartDao.getById(cart.getId());
+      ResourceAsserts.assertPresent(latestCart, "cart");
+      cart = latestCart.get();
+    }
+    return cart;
   }
 
   /**
@@ -113,15 +262,83 @@ public class PublicCartResource extends BaseResource {
    */
   private void apply(UpdateCartDto updateRequest, Cart entity) {
 
+    List<String> skus = Lists.newArrayList();
     for (PublicCartItemDto customerCartItem : updateRequest.getCartItems()) {
       Preconditions.checkNotNull(customerCartItem.getSKU(), "sku");
       ResourceAsserts.assertPositive(customerCartItem.getQuantity(), "quantity");
+      skus.add(customerCartItem.getSKU());
+    }
+
+    // Resolve every line in a single lookup rather than one per line
+    Map<String, Item> items = itemReadService.getBySKUs(skus);
+
+    Map<Item, Integer> changes = Maps.newLinkedHashMap();
+    for (PublicCartItemDto customerCartItem : updateRequest.getCartItems()) {
+      Optional<Item> item = Optional.fromNullable(items.get(customerCartItem.getSKU()));
+      ResourceAsserts.assertPresent(item, "item");
+
+      changes.put(item.get(), customerCartItem.getQuantity());
+    }
+
+    entity.applyChanges(changes);
+  }
+
+  /**
+   * @param patchRequest The patch request containing the line operations
+   * @param entity       The entity to which these operations will be applied
+   *
+   * @return The Items whose lines were changed
+   */
+  private Set<Item> apply(PatchCartDto patchRequest, Cart entity) {
+
+    List<String> skus = Lists.newArrayList();
+    for (PatchCartItemDto operation : patchRequest.getCartItems()) {
+      ResourceAsserts.assertNotNull(operation.getOp(), "op");
+      ResourceAsserts.assertNotNull(operation.getSKU(), "sku");
+      if (PatchCartItemDto.SET.equals(operation.getOp())) {
+        ResourceAsserts.assertPositive(operation.getQuantity(), "quantity");
+      } else {
+        ResourceAsserts.assertTrue(
+          PatchCartItemDto.INCREMENT.equals(operation.getOp()) || PatchCartItemDto.REMOVE.equals(operation.getOp()),
+          "op is one of set, increment or remove");
+      }
+      skus.add(operation.getSKU());
+    }
+
+    Map<String, Item> items = itemReadService.getBySKUs(skus);
+
+    // Later operations on the same line build on the earlier ones
+    Map<Item, Integer> changes = Maps.newLinkedHashMap();
+    for (PatchCartItemDto operation : patchRequest.getCartItems()) {
+      Optional<Item> item = Optional.fromNullable(items.get(operation.getSKU()));
+      ResourceAsserts.assertPresent(item, "item");
+
+      final int quantity;
+      if (PatchCartItemDto.SET.equals(operation.getOp())) {
+        quantity = operation.getQuantity();
+      } else if (PatchCartItemDto.INCREMENT.equals(operation.getOp())) {
+        quantity = Math.max(0, currentQuantity(entity, changes, item.get()) + operation.getQuantity());
+      } else {
+        quantity = 0;
+      }
+      changes.put(item.get(), quantity);
+    }
+
+    entity.applyChanges(changes);
 
-      Optional<Item> item = itemReadService.getBySKU(customerCartItem.getSKU());
-      ResourceAsserts.assertPresent(item,"item");
+    return changes.keySet();
+  }
 
-      entity.setItemQuantity(item.get(),customerCartItem.getQuantity());
+  /**
+   * @return The quantity of the Item taking into account any pending changes
+   */
+  private int currentQuantity(Cart entity, Map<Item, Integer> changes, Item item) {
+    Integer pending = changes.get(item);
+    if (pending != null) {
+      return pending;
     }
+    Optional<CartItem> cartItem = entity.getCartItemByItem(item);
+    return cartItem.isPresent() ? cartItem.get().getQuantity() : 0;
   }
 
   public void setCartDao(CartReadService cartDao) {
@@ -131,4 +348,16 @@ public class PublicCartResource extends BaseResource {
   public void setItemReadService(ItemReadService itemReadService) {
     this.itemReadService = itemReadService;
   }
+
+  public void setAnonymousUserCache(AnonymousUserCache anonymousUserCache) {
+    this.anonymousUserCache = anonymousUserCache;
+  }
+
+  public void setHotCartStore(HotCartStore hotCartStore) {
+    this.hotCartStore = hotCartStore;
+  }
+
+  public void setRetryTemplate(OptimisticRetryTemplate retryTemplate) {
+    this.retryTemplate = retryTemplate;
+  }
 }
\ No newline at end of file
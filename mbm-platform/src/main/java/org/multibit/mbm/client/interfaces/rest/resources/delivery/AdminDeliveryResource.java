@@ -2,6 +2,7 @@ package org.multibit.mbm.client.interfaces.rest.resources.delivery;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 import com.theoryinpractise.halbuilder.api.Representation;
 import com.yammer.dropwizard.jersey.caching.CacheControl;
 import com.yammer.metrics.annotation.Timed;
@@ -25,6 +26,8 @@ import org.springframework.stereotype.Component;
 import javax.annotation.Resource;
 import javax.ws.rs.*;
 import javax.ws.rs.core.Response;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -45,7 +48,7 @@ public class AdminDeliveryResource extends BaseResource {
   @Resource(name = "hibernateDeliveryDao")
   DeliveryReadService deliveryReadService;
 
-  @Resource(name = "hibernateItemDao")
+  @Resource(name = "itemReadService")
   ItemReadService itemReadService;
 
   /**
@@ -120,12 +123,19 @@ public class AdminDeliveryResource extends BaseResource {
    */
   private void apply(AdminUpdateDeliveryDto updateRequest, Delivery entity) {
 
+    List<String> skus = Lists.newArrayList();
     for (SupplierDeliveryItemDto supplierDeliveryItem : updateRequest.getDeliveryItems()) {
       Preconditions.checkNotNull(supplierDeliveryItem.getSKU(), "id");
       ResourceAsserts.assertPositive(supplierDeliveryItem.getQuantity(), "quantity");
+      skus.add(supplierDeliveryItem.getSKU());
+    }
+
+    // Resolve every line in a single lookup rather than one per line
+    Map<String, Item> items = itemReadService.getBySKUs(skus);
 
-      Optional<Item> item = itemReadService.getBySKU(supplierDeliveryItem.getSKU());
-      ResourceAsserts.assertPresent(item,"item");
+    for (SupplierDeliveryItemDto supplierDeliveryItem : updateRequest.getDeliveryItems()) {
+      Optional<Item> item = Optional.fromNullable(items.get(supplierDeliveryItem.getSKU()));
+      ResourceAsserts.assertPresent(item, "item");
 
       entity.setItemQuantity(item.get(),supplierDeliveryItem.getQuantity());
     }
@@ -6,6 +6,7 @@ import com.yammer.dropwizard.jersey.caching.CacheControl;
 import com.yammer.metrics.annotation.Timed;
 import org.multibit.mbm.client.common.pagination.PaginatedList;
 import org.multibit.mbm.client.domain.model.model.Item;
+import org.multibit.mbm.client.domain.model.model.ItemSummaryView;
 import org.multibit.mbm.client.domain.model.model.ItemBuilder;
 import org.multibit.mbm.client.domain.model.model.User;
 import org.multibit.mbm.client.domain.repositories.ItemReadService;
@@ -40,7 +41,7 @@ import java.util.concurrent.TimeUnit;
 @Produces({HalMediaType.APPLICATION_HAL_JSON, HalMediaType.APPLICATION_HAL_XML})
 public class AdminItemResource extends BaseResource {
 
-  @Resource(name = "hibernateItemDao")
+  @Resource(name = "itemReadService")
   ItemReadService itemReadService;
 
   /**
@@ -80,9 +81,10 @@ public class AdminItemResource extends BaseResource {
   /**
    * Provide a paged response of all items in the system
    *
-   * @param adminUser     A User with administrator rights
-   * @param rawPageSize   The unvalidated page size
-   * @param rawPageNumber The unvalidated page number
+   * @param adminUser            A User with administrator rights
+   * @param rawPageSize          The unvalidated page size
+   * @param rawPageNumber        The unvalidated page number (omit to use keyset pagination)
+   * @param rawContinuationToken The unvalidated continuation token from a previous keyset page
    *
    * @return A response containing a paged list of all items
    */
@@ -93,13 +95,20 @@ public class AdminItemResource extends BaseResource {
     @RestrictedTo({Authority.ROLE_ADMIN})
     User adminUser,
     @QueryParam("ps") Optional<String> rawPageSize,
-    @QueryParam("pn") Optional<String> rawPageNumber) {
+    @QueryParam("pn") Optional<String> rawPageNumber,
+    @QueryParam("ct") Optional<String> rawContinuationToken) {
 
     // Validation
     int pageSize = Integer.valueOf(rawPageSize.get());
-    int pageNumber = Integer.valueOf(rawPageNumber.get());
 
-    PaginatedList<Item> items = itemReadService.getPaginatedList(pageSize, pageNumber);
+    final PaginatedList<ItemSummaryView> items;
+    if (rawPageNumber.isPresent() && !rawContinuationToken.isPresent()) {
+      int pageNumber = Integer.valueOf(rawPageNumber.get());
+      items = itemReadService.getCatalogueSummaryPage(pageSize, pageNumber);
+    } else {
+      // Keyset pagination keeps the cost of deep pages the same as the first
+      items = itemReadService.getCatalogueSummaryPageAfter(pageSize, continuationToken(rawContinuationToken));
+    }
 
     // Provide a representation to the client
     Representation representation = new AdminItemCollectionRepresentation().get(items);
@@ -109,7 +118,9 @@ public class AdminItemResource extends BaseResource {
   }
 
   /**
-   * Update an existing Item with the populated fields
+   * <p>Update an existing Item with the populated fields</p>
+   * <p>A client providing the entity tag of the Item as If-Match will have the update refused (412) rather than
+   * overwrite a concurrent change. Otherwise a concurrent change is reported as a conflict (409).</p>
    *
    * @param adminUser A item with administrator rights
    *
@@ -131,6 +142,7 @@ public class AdminItemResource extends BaseResource {
     // Verify and apply any changes to the Item
     // TODO Fill in all details and provide general null safe field checking
     Item persistentItem = item.get();
+    assertPreconditions(persistentItem.getVersion());
     persistentItem.setSKU(updateItemRequest.getSKU());
     persistentItem.setGTIN(updateItemRequest.getGTIN());
 
@@ -140,7 +152,7 @@ public class AdminItemResource extends BaseResource {
     // Provide a representation to the client
     Representation representation = new AdminItemRepresentation().get(persistentItem);
 
-    return ok(representation);
+    return ok(representation, persistentItem.getVersion());
 
   }
 
@@ -166,6 +178,7 @@ public class AdminItemResource extends BaseResource {
 
     // Verify and apply any changes to the Item
     Item persistentItem = item.get();
+    assertPreconditions(persistentItem.getVersion());
     persistentItem.setDeleted(true);
     persistentItem.setReasonForDelete(deleteEntityRequest.getReason());
 
@@ -175,7 +188,7 @@ public class AdminItemResource extends BaseResource {
     // Provide a representation to the client
     Representation representation = new AdminItemRepresentation().get(persistentItem);
 
-    return ok(representation);
+    return ok(representation, persistentItem.getVersion());
 
   }
 
@@ -6,6 +6,7 @@ import com.yammer.dropwizard.jersey.caching.CacheControl;
 import com.yammer.metrics.annotation.Timed;
 import org.multibit.mbm.client.common.pagination.PaginatedList;
 import org.multibit.mbm.client.domain.model.model.Item;
+import org.multibit.mbm.client.domain.model.model.ItemSummaryView;
 import org.multibit.mbm.client.domain.repositories.ItemReadService;
 import org.multibit.mbm.client.interfaces.rest.api.hal.HalMediaType;
 import org.multibit.mbm.client.interfaces.rest.api.representations.hal.item.PublicItemCollectionRepresentation;
@@ -35,14 +36,15 @@ import java.util.concurrent.TimeUnit;
 @Produces({HalMediaType.APPLICATION_HAL_JSON, HalMediaType.APPLICATION_HAL_XML, MediaType.APPLICATION_JSON})
 public class PublicItemResource extends BaseResource {
 
-  @Resource(name = "hibernateItemDao")
+  @Resource(name = "itemReadService")
   ItemReadService itemReadService;
 
   /**
    * Provide a paged response of all items in the system
    *
-   * @param rawPageSize   The unvalidated page size
-   * @param rawPageNumber The unvalidated page number
+   * @param rawPageSize          The unvalidated page size
+   * @param rawPageNumber        The unvalidated page number (omit to use keyset pagination)
+   * @param rawContinuationToken The unvalidated continuation token from a previous keyset page
    *
    * @return A response containing a paged list of all items
    */
@@ -52,13 +54,20 @@ public class PublicItemResource extends BaseResource {
   @CacheControl(maxAge = 6, maxAgeUnit = TimeUnit.HOURS)
   public Response retrievePromotionalItemsByPage(
     @QueryParam("ps") Optional<String> rawPageSize,
-    @QueryParam("pn") Optional<String> rawPageNumber) {
+    @QueryParam("pn") Optional<String> rawPageNumber,
+    @QueryParam("ct") Optional<String> rawContinuationToken) {
 
     // Validation
     int pageSize = Integer.valueOf(rawPageSize.get());
-    int pageNumber = Integer.valueOf(rawPageNumber.get());
 
-    PaginatedList<Item> items = itemReadService.getPaginatedList(pageSize, pageNumber);
+    final PaginatedList<ItemSummaryView> items;
+    if (rawPageNumber.isPresent() && !rawContinuationToken.isPresent()) {
+      int pageNumber = Integer.valueOf(rawPageNumber.get());
+      items = itemReadService.getCatalogueSummaryPage(pageSize, pageNumber);
+    } else {
+      // Keyset pagination keeps the cost of deep pages the same as the first
+      items = itemReadService.getCatalogueSummaryPageAfter(pageSize, continuationToken(rawContinuationToken));
+    }
 
     // Provide a representation to the client
     Representation representation = new PublicItemCollectionRepresentation().get(items);
@@ -2,6 +2,7 @@ package org.multibit.mbm.client.interfaces.rest.resources.purchaseorder;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 import com.theoryinpractise.halbuilder.api.Representation;
 import com.yammer.dropwizard.jersey.caching.CacheControl;
 import com.yammer.metrics.annotation.Timed;
@@ -25,6 +26,8 @@ import org.springframework.stereotype.Component;
 import javax.annotation.Resource;
 import javax.ws.rs.*;
 import javax.ws.rs.core.Response;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -43,7 +46,7 @@ public class AdminPurchaseOrderResource extends BaseResource {
   @Resource(name = "hibernatePurchaseOrderDao")
   PurchaseOrderReadService purchaseOrderReadService;
 
-  @Resource(name = "hibernateItemDao")
+  @Resource(name = "itemReadService")
   ItemReadService itemReadService;
 
   /**
@@ -118,12 +121,19 @@ public class AdminPurchaseOrderResource extends BaseResource {
    */
   private void apply(AdminUpdatePurchaseOrderRequest updateRequest, PurchaseOrder entity) {
 
+    List<String> skus = Lists.newArrayList();
     for (BuyerPurchaseOrderItem supplierPurchaseOrderItem : updateRequest.getPurchaseOrderItems()) {
       Preconditions.checkNotNull(supplierPurchaseOrderItem.getSKU(), "id");
       ResourceAsserts.assertPositive(supplierPurchaseOrderItem.getQuantity(), "quantity");
+      skus.add(supplierPurchaseOrderItem.getSKU());
+    }
+
+    // Resolve every line in a single lookup rather than one per line
+    Map<String, Item> items = itemReadService.getBySKUs(skus);
 
-      Optional<Item> item = itemReadService.getBySKU(supplierPurchaseOrderItem.getSKU());
-      ResourceAsserts.assertPresent(item,"item");
+    for (BuyerPurchaseOrderItem supplierPurchaseOrderItem : updateRequest.getPurchaseOrderItems()) {
+      Optional<Item> item = Optional.fromNullable(items.get(supplierPurchaseOrderItem.getSKU()));
+      ResourceAsserts.assertPresent(item, "item");
 
       entity.setItemQuantity(item.get(),supplierPurchaseOrderItem.getQuantity());
     }
@@ -40,7 +40,7 @@ import java.util.concurrent.TimeUnit;
 @Produces({HalMediaType.APPLICATION_HAL_JSON, HalMediaType.APPLICATION_HAL_XML})
 public class AdminRoleResource extends BaseResource {
 
-  @Resource(name = "hibernateRoleDao")
+  @Resource(name = "roleReadService")
   RoleReadService roleReadService;
 
   /**
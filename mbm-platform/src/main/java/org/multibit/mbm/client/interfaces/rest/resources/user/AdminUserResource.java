@@ -39,7 +39,7 @@ import java.util.concurrent.TimeUnit;
 @Produces({HalMediaType.APPLICATION_HAL_JSON, HalMediaType.APPLICATION_HAL_XML})
 public class AdminUserResource extends BaseResource {
 
-  @Resource(name = "hibernateUserDao")
+  @Resource(name = "userReadService")
   private UserReadService userReadService;
 
   /**
@@ -81,9 +81,10 @@ public class AdminUserResource extends BaseResource {
   /**
    * Provide a paged response of all users in the system
    *
-   * @param adminUser     A user with administrator rights
-   * @param rawPageSize   The unvalidated page size
-   * @param rawPageNumber The unvalidated page number
+   * @param adminUser            A user with administrator rights
+   * @param rawPageSize          The unvalidated page size
+   * @param rawPageNumber        The unvalidated page number (omit to use keyset pagination)
+   * @param rawContinuationToken The unvalidated continuation token from a previous keyset page
    *
    * @return A response containing a paged list of all users
    */
@@ -94,13 +95,20 @@ public class AdminUserResource extends BaseResource {
   public Response retrieveAllByPage(
     @RestrictedTo({Authority.ROLE_ADMIN}) User adminUser,
     @QueryParam("ps") Optional<String> rawPageSize,
-    @QueryParam("pn") Optional<String> rawPageNumber) {
+    @QueryParam("pn") Optional<String> rawPageNumber,
+    @QueryParam("ct") Optional<String> rawContinuationToken) {
 
     // Validation
     int pageSize = Integer.valueOf(rawPageSize.get());
-    int pageNumber = Integer.valueOf(rawPageNumber.get());
 
-    PaginatedList<User> users = userReadService.getPaginatedList(pageSize, pageNumber);
+    final PaginatedList<User> users;
+    if (rawPageNumber.isPresent() && !rawContinuationToken.isPresent()) {
+      int pageNumber = Integer.valueOf(rawPageNumber.get());
+      users = userReadService.getPaginatedList(pageSize, pageNumber);
+    } else {
+      // Keyset pagination keeps the cost of deep pages the same as the first
+      users = userReadService.getPaginatedListAfter(pageSize, continuationToken(rawContinuationToken));
+    }
 
     // Provide a representation to the client
     Representation representation = new AdminUserCollectionRepresentation().get(users, Optional.of(adminUser));
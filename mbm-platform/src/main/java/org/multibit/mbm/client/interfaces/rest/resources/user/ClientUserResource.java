@@ -13,6 +13,7 @@ import org.multibit.mbm.client.interfaces.rest.api.user.WebFormAuthenticationDto
 import org.multibit.mbm.client.interfaces.rest.api.user.WebFormRegistrationDto;
 import org.multibit.mbm.client.interfaces.rest.auth.Authority;
 import org.multibit.mbm.client.interfaces.rest.auth.annotation.RestrictedTo;
+import org.multibit.mbm.client.interfaces.rest.auth.anonymous.AnonymousUserCache;
 import org.multibit.mbm.client.interfaces.rest.common.ResourceAsserts;
 import org.multibit.mbm.client.interfaces.rest.resources.BaseResource;
 import org.springframework.stereotype.Component;
@@ -38,12 +39,15 @@ import java.net.URI;
 @Produces({HalMediaType.APPLICATION_HAL_JSON, HalMediaType.APPLICATION_HAL_XML})
 public class ClientUserResource extends BaseResource {
 
-  @Resource(name = "hibernateUserDao")
+  @Resource(name = "userReadService")
   private UserReadService userReadService;
 
-  @Resource(name = "hibernateRoleDao")
+  @Resource(name = "roleReadService")
   private RoleReadService roleReadService;
 
+  @Resource(name = "anonymousUserCache")
+  private AnonymousUserCache anonymousUserCache;
+
   /**
    * @param clientUser The client application acting as the proxy for this user
    *
@@ -56,27 +60,11 @@ public class ClientUserResource extends BaseResource {
     @RestrictedTo({Authority.ROLE_CLIENT})
     User clientUser) {
 
-    // Retrieve the role by its authority name
-    Optional<Role> optionalRole = roleReadService.getByName(Authority.ROLE_PUBLIC.name());
-    ResourceAsserts.assertPresent(optionalRole,"role");
-
-    // Build a new Customer for the anonymous user
-    Customer customer = CustomerBuilder
-      .newInstance()
-      .build();
-
-    // Build an anonymous new User
-    User user = UserBuilder
-      .newInstance()
-      .withCustomer(customer)
-      .withRole(optionalRole.get())
-      .build();
-
-    // Persist the User with cascade for the Customer
-    User persistentUser = userReadService.saveOrUpdate(user);
+    // Held in memory until the visitor does something worth persisting (see PublicCartResource)
+    User anonymousUser = anonymousUserCache.create();
 
     // Provide a minimal representation to the client
-    Representation representation = new ClientUserRepresentation().get(persistentUser);
+    Representation representation = new ClientUserRepresentation().get(anonymousUser);
     URI location = UriBuilder.fromResource(CustomerUserResource.class).build();
 
     return created(representation, location);
@@ -162,4 +150,8 @@ public class ClientUserResource extends BaseResource {
   public void setRoleReadService(RoleReadService roleReadService) {
     this.roleReadService = roleReadService;
   }
+
+  public void setAnonymousUserCache(AnonymousUserCache anonymousUserCache) {
+    this.anonymousUserCache = anonymousUserCache;
+  }
 }
\ No newline at end of file
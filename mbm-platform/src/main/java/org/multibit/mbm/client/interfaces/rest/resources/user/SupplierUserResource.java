@@ -35,7 +35,7 @@ import java.net.URI;
 @Produces({HalMediaType.APPLICATION_HAL_JSON, HalMediaType.APPLICATION_HAL_XML})
 public class SupplierUserResource extends BaseResource {
 
-  @Resource(name = "hibernateUserDao")
+  @Resource(name = "userReadService")
   private UserReadService userReadService;
 
   /**
@@ -0,0 +1,89 @@
+package org.multibit.mbm.client.interfaces.rest.tasks;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableCollection;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableMultimap;
+import com.yammer.dropwizard.tasks.Task;
+import com.yammer.dropwizard.util.Duration;
+import org.multibit.mbm.client.domain.model.model.Item;
+import org.multibit.mbm.client.domain.model.model.Role;
+import org.multibit.mbm.client.domain.model.model.User;
+import org.multibit.mbm.client.infrastructure.persistence.archive.EntityArchiver;
+
+import java.io.PrintWriter;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * <p>Task to provide the following to administrators (on the admin port):</p>
+ * <ul>
+ * <li>An immediate archive run rather than waiting for the schedule</li>
+ * <li>Restoration of a single archived entity</li>
+ * </ul>
+ * <p>Examples:</p>
+ * <ul>
+ * <li><code>curl -X POST "http://localhost:8081/tasks/archive"</code></li>
+ * <li><code>curl -X POST "http://localhost:8081/tasks/archive?restore=item&amp;id=12"</code></li>
+ * </ul>
+ * <p>Parameters (all optional):</p>
+ * <ul>
+ * <li><code>restore</code>: the type of entity to restore ("item", "user" or "role") instead of archiving</li>
+ * <li><code>id</code>: the primary key of the entity to restore</li>
+ * </ul>
+ *
+ * @since 0.0.1
+ */
+public class ArchiveTask extends Task {
+
+  public static final String NAME = "archive";
+
+  private static final Map<String, Class<?>> RESTORABLE = ImmutableMap.<String, Class<?>>of(
+    "item", Item.class,
+    "user", User.class,
+    "role", Role.class);
+
+  private final EntityArchiver entityArchiver;
+  private final int batchSize;
+  private final Duration abandonedCartAge;
+
+  /**
+   * @param entityArchiver   The archiver
+   * @param batchSize        The number of entities moved in each transaction
+   * @param abandonedCartAge How long the cart of an unregistered visitor is left unchanged before it is archived
+   */
+  public ArchiveTask(EntityArchiver entityArchiver, int batchSize, Duration abandonedCartAge) {
+    super(NAME);
+    Preconditions.checkNotNull(entityArchiver, "entityArchiver cannot be null");
+    Preconditions.checkNotNull(abandonedCartAge, "abandonedCartAge cannot be null");
+    this.entityArchiver = entityArchiver;
+    this.batchSize = batchSize;
+    this.abandonedCartAge = abandonedCartAge;
+  }
+
+  @Override
+  public void execute(ImmutableMultimap<String, String> parameters, PrintWriter output) throws Exception {
+
+    ImmutableCollection<String> restore = parameters.get("restore");
+    if (restore.isEmpty()) {
+      Date abandonedBefore = new Date(System.currentTimeMillis() - abandonedCartAge.toMilliseconds());
+      output.printf("Archived %s%n", entityArchiver.archive(batchSize, abandonedBefore));
+    } else {
+      String type = restore.iterator().next();
+      Class<?> entityClass = RESTORABLE.get(type);
+      Preconditions.checkArgument(entityClass != null, "'%s' cannot be restored (expected one of %s)", type, RESTORABLE.keySet());
+      ImmutableCollection<String> id = parameters.get("id");
+      Preconditions.checkArgument(!id.isEmpty(), "'id' is required to restore");
+
+      Long primaryKey = Long.valueOf(id.iterator().next());
+      if (entityArchiver.restore(entityClass, primaryKey)) {
+        output.printf("Restored %s %d%n", type, primaryKey);
+      } else {
+        output.printf("No archived %s %d%n", type, primaryKey);
+      }
+    }
+
+    output.flush();
+  }
+
+}
@@ -0,0 +1,87 @@
+package org.multibit.mbm.client.interfaces.rest.tasks;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableCollection;
+import com.google.common.collect.ImmutableMultimap;
+import com.yammer.dropwizard.tasks.Task;
+import org.multibit.mbm.client.infrastructure.persistence.diagnostics.IndexAdvisor;
+import org.multibit.mbm.client.infrastructure.persistence.diagnostics.IndexSuggestion;
+import org.multibit.mbm.client.infrastructure.persistence.diagnostics.StatementRecorder;
+import org.multibit.mbm.client.infrastructure.persistence.diagnostics.StatementSummary;
+
+import java.io.PrintWriter;
+import java.util.List;
+
+/**
+ * <p>Task to provide the following to administrators (on the admin port):</p>
+ * <ul>
+ * <li>The top-N slowest and most frequent statements from the {@link StatementRecorder}</li>
+ * <li>Suggested index DDL from the {@link IndexAdvisor}</li>
+ * </ul>
+ * <p>The DDL is only printed. The {@link org.multibit.mbm.client.infrastructure.persistence.migration.SchemaMigrationRunner}
+ * never applies a recorded revision again, so it belongs in the patch schema of a new revision (added to the
+ * source tree and released as usual).</p>
+ * <p>Example: <code>curl -X POST "http://localhost:8081/tasks/statements?limit=5&amp;minLookups=100"</code></p>
+ * <p>Parameters (all optional):</p>
+ * <ul>
+ * <li><code>limit</code>: the number of statements in each list (default 10)</li>
+ * <li><code>minLookups</code>: the lookups on a column before an index is suggested (default 10)</li>
+ * </ul>
+ *
+ * @since 0.0.1
+ */
+public class StatementReportTask extends Task {
+
+  public static final String NAME = "statements";
+
+  private static final int DEFAULT_LIMIT = 10;
+  private static final int DEFAULT_MIN_LOOKUPS = 10;
+
+  private final StatementRecorder statementRecorder;
+  private final IndexAdvisor indexAdvisor;
+
+  /**
+   * @param statementRecorder The recorder of the statement executions
+   * @param indexAdvisor      The advisor for missing indexes
+   */
+  public StatementReportTask(StatementRecorder statementRecorder, IndexAdvisor indexAdvisor) {
+    super(NAME);
+    Preconditions.checkNotNull(statementRecorder, "statementRecorder cannot be null");
+    Preconditions.checkNotNull(indexAdvisor, "indexAdvisor cannot be null");
+    this.statementRecorder = statementRecorder;
+    this.indexAdvisor = indexAdvisor;
+  }
+
+  @Override
+  public void execute(ImmutableMultimap<String, String> parameters, PrintWriter output) throws Exception {
+
+    int limit = intParameter(parameters, "limit", DEFAULT_LIMIT);
+    int minLookups = intParameter(parameters, "minLookups", DEFAULT_MIN_LOOKUPS);
+
+    output.printf("Recorded %d statements (buffer holds the latest %d)%n", statementRecorder.getRecordedCount(), statementRecorder.getCapacity());
+
+    output.printf("%nSlowest %d (by mean)%n", limit);
+    for (StatementSummary summary : statementRecorder.getSlowest(limit)) {
+      output.println(summary);
+    }
+
+    output.printf("%nMost frequent %d%n", limit);
+    for (StatementSummary summary : statementRecorder.getMostFrequent(limit)) {
+      output.println(summary);
+    }
+
+    List<IndexSuggestion> suggestions = indexAdvisor.advise(statementRecorder.summarise(), minLookups);
+    output.printf("%nSuggested indexes (at least %d lookups) for the patch schema of a new revision%n", minLookups);
+    for (IndexSuggestion suggestion : suggestions) {
+      output.println(suggestion);
+    }
+
+    output.flush();
+  }
+
+  private int intParameter(ImmutableMultimap<String, String> parameters, String name, int defaultValue) {
+    ImmutableCollection<String> values = parameters.get(name);
+    return values.isEmpty() ? defaultValue : Integer.parseInt(values.iterator().next());
+  }
+
+}
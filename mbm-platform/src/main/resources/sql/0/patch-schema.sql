@@ -1,50 +1,58 @@
-drop table authorities if exists;
-drop table cart_items if exists;
-drop table carts if exists;
-drop table contact_method_details if exists;
-drop table contact_method_secondary_details if exists;
-drop table customers if exists;
-drop table item_field_details if exists;
-drop table item_field_secondary_details if exists;
-drop table items if exists;
-drop table items_item_field_details if exists;
-drop table roles if exists;
-drop table user_field_details if exists;
-drop table user_field_secondary_details if exists;
-drop table user_roles if exists;
-drop table users if exists;
-drop table users_contact_method_details if exists;
-drop table users_user_field_details if exists;
 create table authorities (role_id bigint not null, auth_name varchar(255));
-create table cart_items (quantity integer not null, item_id bigint, cart_id bigint, primary key (cart_id, item_id));
-create table carts (id bigint generated by default as identity unique, primary key (id));
-create table contact_method_details (id bigint generated by default as identity unique, primary_detail varchar(255), primary key (id));
+create table cart_items (index integer not null, quantity integer not null, item_id bigint, cart_id bigint, primary key (cart_id, item_id));
+create table carts (id bigint generated by default as identity (start with 1), version bigint not null, primary key (id));
+create table contact_method_details (id bigint not null, primary_detail varchar(255), primary key (id));
 create table contact_method_secondary_details (contact_method_id bigint not null, secondary_detail varchar(255));
-create table customers (id bigint generated by default as identity unique, cart_fk bigint, primary key (id));
-create table item_field_details (id bigint generated by default as identity unique, item_detail integer not null, content varchar(255) not null, locale_key varchar(255) not null, primary key (id));
-create table item_field_secondary_details (item_field_id bigint not null, content varchar(255) not null, locale_key varchar(255) not null, primary key (item_field_id, content, locale_key));
-create table items (id bigint generated by default as identity unique, gtin varchar(255), sku varchar(255) not null, primary key (id));
-create table items_item_field_details (items_id bigint not null, itemFieldMap_id bigint not null, itemFieldMap_KEY binary(255), primary key (items_id, itemFieldMap_KEY), unique (itemFieldMap_id));
-create table roles (id bigint generated by default as identity unique, description varchar(255) not null, internal boolean not null, name varchar(255) not null, primary key (id));
-create table user_field_details (id bigint generated by default as identity unique, content varchar(255) not null, locale_key varchar(255) not null, user_detail integer not null, primary key (id));
-create table user_field_secondary_details (user_field_id bigint not null, content varchar(255) not null, locale_key varchar(255) not null, primary key (user_field_id, content, locale_key));
-create table user_roles (role_id bigint, user_id bigint, primary key (role_id, user_id));
-create table users (id bigint generated by default as identity unique, created_at binary(255), locked boolean not null, open_id varchar(255), password varchar(255), password_reset_at binary(255), public_name varchar(255), staff boolean not null, username varchar(255), uuid varchar(255) not null, customer_id bigint, primary key (id));
-create table users_contact_method_details (users_id bigint not null, contactMethodMap_id bigint not null, contactMethodMap_KEY binary(255), primary key (users_id, contactMethodMap_KEY), unique (contactMethodMap_id));
-create table users_user_field_details (users_id bigint not null, userFieldMap_id bigint not null, userFieldMap_KEY binary(255), primary key (users_id, userFieldMap_KEY), unique (userFieldMap_id));
-alter table authorities add constraint FK2B0F132190357D1 foreign key (role_id) references roles;
-alter table cart_items add constraint FK8907EDE14A4AD4B1 foreign key (cart_id) references carts;
-alter table cart_items add constraint FK8907EDE1D2AE3E84 foreign key (item_id) references items;
-alter table contact_method_secondary_details add constraint FK1734DD8743C85F5 foreign key (contact_method_id) references contact_method_details;
-alter table customers add constraint FK600E7C554A4AD45B foreign key (cart_fk) references carts;
-alter table item_field_secondary_details add constraint FK94F58D467C282F1A foreign key (item_field_id) references item_field_details;
-alter table items_item_field_details add constraint FKDB6E56B070F12453 foreign key (itemFieldMap_id) references item_field_details;
-alter table items_item_field_details add constraint FKDB6E56B09AC8F6B7 foreign key (items_id) references items;
-alter table user_field_secondary_details add constraint FK3A6255FEC5B2535D foreign key (user_field_id) references user_field_details;
-alter table user_roles add constraint FK7342994990357D1 foreign key (role_id) references roles;
-alter table user_roles add constraint FK73429949AE2E1BB1 foreign key (user_id) references users;
-alter table users add constraint FK6A68E083D0BE373 foreign key (customer_id) references customers;
-alter table users_contact_method_details add constraint FK931686FAA71EF454 foreign key (users_id) references users;
-alter table users_contact_method_details add constraint FK931686FABBCC7D3A foreign key (contactMethodMap_id) references contact_method_details;
-alter table users_user_field_details add constraint FK47C20A20497CD696 foreign key (userFieldMap_id) references user_field_details;
-alter table users_user_field_details add constraint FK47C20A20A71EF454 foreign key (users_id) references users;
+create table customers (id bigint generated by default as identity (start with 1), cart_fk bigint, primary key (id));
+create table deliveries (id bigint generated by default as identity (start with 1), version bigint not null, supplier_id bigint, primary key (id));
+create table delivery_items (batchReference varchar(255), quantity integer not null, supplierGTIN varchar(255), supplierSKU varchar(255), delivery_id bigint, item_id bigint, primary key (delivery_id, item_id));
+create table item_field_details (id bigint not null, item_detail integer not null, content varchar(4096) not null, locale_key varchar(255) not null, primary key (id));
+create table item_field_secondary_details (item_field_id bigint not null, content varchar(4096) not null, locale_key varchar(255) not null, primary key (item_field_id, content, locale_key));
+create table item_pricing_rules (index integer not null, pricing_rule_id bigint, item_id bigint, primary key (item_id, pricing_rule_id));
+create table items (id bigint not null, deleted bit not null, gtin varchar(255), amount numeric(19,2), currency varchar(255), reasonForDelete varchar(255), sku varchar(255) not null, taxRate double not null, version bigint not null, primary key (id));
+create table items_item_field_details (items_id bigint not null, itemFieldMap_id bigint not null, itemFieldMap_KEY integer, primary key (items_id, itemFieldMap_KEY), unique (itemFieldMap_id));
+create table pricing_rules (rule varchar(31) not null, id bigint generated by default as identity (start with 1), percentage double, primary key (id));
+create table purchase_order_items (batchReference varchar(255), quantity integer not null, supplierGTIN varchar(255), supplierSKU varchar(255), unitPrice varbinary(255), unitTax varbinary(255), item_id bigint, purchaseOrder_id bigint, primary key (item_id, purchaseOrder_id));
+create table purchase_orders (id bigint generated by default as identity (start with 1), version bigint not null, supplier_id bigint, primary key (id));
+create table roles (id bigint generated by default as identity (start with 1), deleted bit not null, description varchar(255) not null, internal bit not null, name varchar(255) not null, reasonForDelete varchar(255), primary key (id));
+create table suppliers (id bigint generated by default as identity (start with 1), primary key (id));
+create table user_field_details (id bigint not null, content varchar(4096) not null, locale_key varchar(255) not null, user_detail integer not null, primary key (id));
+create table user_field_secondary_details (user_field_id bigint not null, content varchar(4096) not null, locale_key varchar(255) not null, primary key (user_field_id, content, locale_key));
+create table user_roles (user_id bigint, role_id bigint, primary key (role_id, user_id));
+create table users (id bigint not null, api_key varchar(255) not null, created_at varbinary(255), deleted bit not null, locked bit not null, password varchar(255), password_reset_at varbinary(255), reasonForDelete varchar(255), secret_key varchar(255), session_key varchar(255), staff bit not null, username varchar(255), customer_id bigint, supplier_id bigint, primary key (id));
+create table users_contact_method_details (users_id bigint not null, contactMethodMap_id bigint not null, contactMethodMap_KEY integer, primary key (users_id, contactMethodMap_KEY), unique (contactMethodMap_id));
+create table users_user_field_details (users_id bigint not null, userFieldMap_id bigint not null, userFieldMap_KEY integer, primary key (users_id, userFieldMap_KEY), unique (userFieldMap_id));
+alter table authorities add constraint FK2B0F13215B95CE91 foreign key (role_id) references roles;
+alter table cart_items add constraint FK8907EDE12A88D651 foreign key (cart_id) references carts;
+alter table cart_items add constraint FK8907EDE187A2ED71 foreign key (item_id) references items;
+alter table contact_method_secondary_details add constraint FK1734DD8D515B735 foreign key (contact_method_id) references contact_method_details;
+alter table customers add constraint FK600E7C552A88D5FB foreign key (cart_fk) references carts;
+alter table deliveries add constraint FK403DBF925B322351 foreign key (supplier_id) references suppliers;
+alter table delivery_items add constraint FKA91F9FB587A2ED71 foreign key (item_id) references items;
+alter table delivery_items add constraint FKA91F9FB5D4191251 foreign key (delivery_id) references deliveries;
+alter table item_field_secondary_details add constraint FK94F58D46C490DA0D foreign key (item_field_id) references item_field_details;
+alter table item_pricing_rules add constraint FKF3C5CF1249D7E130 foreign key (pricing_rule_id) references pricing_rules;
+alter table item_pricing_rules add constraint FKF3C5CF1287A2ED71 foreign key (item_id) references items;
+create index idx_items_gtin on items (gtin);
+create index idx_items_sku on items (sku);
+alter table items_item_field_details add constraint FKDB6E56B04FBDA5A4 foreign key (items_id) references items;
+alter table items_item_field_details add constraint FKDB6E56B0B959CF46 foreign key (itemFieldMap_id) references item_field_details;
+alter table purchase_order_items add constraint FKA009895187A2ED71 foreign key (item_id) references items;
+alter table purchase_order_items add constraint FKA0098951C231FFC3 foreign key (purchaseOrder_id) references purchase_orders;
+alter table purchase_orders add constraint FKC307E7E35B322351 foreign key (supplier_id) references suppliers;
+alter table user_field_secondary_details add constraint FK3A6255FE2B56249D foreign key (user_field_id) references user_field_details;
+alter table user_roles add constraint FK73429949C09271 foreign key (user_id) references users;
+alter table user_roles add constraint FK734299495B95CE91 foreign key (role_id) references roles;
+create index idx_users_api_key on users (api_key);
+create index idx_users_username on users (username);
+alter table users add constraint FK6A68E0896049211 foreign key (customer_id) references customers;
+alter table users add constraint FK6A68E085B322351 foreign key (supplier_id) references suppliers;
+alter table users_contact_method_details add constraint FK931686FAF9B16B14 foreign key (users_id) references users;
+alter table users_contact_method_details add constraint FK931686FA1CA5AE7A foreign key (contactMethodMap_id) references contact_method_details;
+alter table users_user_field_details add constraint FK47C20A20AF20A7D6 foreign key (userFieldMap_id) references user_field_details;
+alter table users_user_field_details add constraint FK47C20A20F9B16B14 foreign key (users_id) references users;
+create sequence contact_method_details_seq start with 1 increment by 50;
+create sequence item_field_details_seq start with 1 increment by 50;
+create sequence items_seq start with 1 increment by 50;
+create sequence user_field_details_seq start with 1 increment by 50;
+create sequence users_seq start with 1 increment by 50;
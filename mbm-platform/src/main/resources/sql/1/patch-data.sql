@@ -0,0 +1,2 @@
+-- Existing carts are treated as changed when the revision is applied rather than immediately abandoned
+update carts set updated_at = current_timestamp where updated_at is null;
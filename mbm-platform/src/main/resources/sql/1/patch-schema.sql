@@ -0,0 +1,46 @@
+-- Abandoned carts are identified by the time their contents last changed
+alter table carts add column updated_at timestamp;
+
+-- Archive tables hold the rows moved out of the hot tables by the EntityArchiver (no constraints so that
+-- rows can be moved in any order). A column added to a hot table must also be added to its archive table.
+create table items_archive as (select * from items) with no data;
+create table items_item_field_details_archive as (select * from items_item_field_details) with no data;
+create table item_field_details_archive as (select * from item_field_details) with no data;
+create table item_field_secondary_details_archive as (select * from item_field_secondary_details) with no data;
+create table item_pricing_rules_archive as (select * from item_pricing_rules) with no data;
+create table roles_archive as (select * from roles) with no data;
+create table authorities_archive as (select * from authorities) with no data;
+create table users_archive as (select * from users) with no data;
+create table user_roles_archive as (select * from user_roles) with no data;
+create table contact_method_details_archive as (select * from contact_method_details) with no data;
+create table contact_method_secondary_details_archive as (select * from contact_method_secondary_details) with no data;
+create table users_contact_method_details_archive as (select * from users_contact_method_details) with no data;
+create table user_field_details_archive as (select * from user_field_details) with no data;
+create table user_field_secondary_details_archive as (select * from user_field_secondary_details) with no data;
+create table users_user_field_details_archive as (select * from users_user_field_details) with no data;
+create table customers_archive as (select * from customers) with no data;
+create table carts_archive as (select * from carts) with no data;
+create table cart_items_archive as (select * from cart_items) with no data;
+
+-- Restoring an entity looks up its rows by the same columns used to move them
+create index idx_items_archive_id on items_archive (id);
+create index idx_items_item_field_details_archive_items_id on items_item_field_details_archive (items_id);
+create index idx_item_field_details_archive_id on item_field_details_archive (id);
+create index idx_item_field_secondary_details_archive_item_field_id on item_field_secondary_details_archive (item_field_id);
+create index idx_item_pricing_rules_archive_item_id on item_pricing_rules_archive (item_id);
+create index idx_roles_archive_id on roles_archive (id);
+create index idx_authorities_archive_role_id on authorities_archive (role_id);
+create index idx_users_archive_id on users_archive (id);
+create index idx_user_roles_archive_user_id on user_roles_archive (user_id);
+create index idx_user_roles_archive_role_id on user_roles_archive (role_id);
+create index idx_contact_method_details_archive_id on contact_method_details_archive (id);
+create index idx_contact_method_secondary_details_archive_contact_method_id on contact_method_secondary_details_archive (contact_method_id);
+create index idx_users_contact_method_details_archive_users_id on users_contact_method_details_archive (users_id);
+create index idx_user_field_details_archive_id on user_field_details_archive (id);
+create index idx_user_field_secondary_details_archive_user_field_id on user_field_secondary_details_archive (user_field_id);
+create index idx_users_user_field_details_archive_users_id on users_user_field_details_archive (users_id);
+create index idx_customers_archive_id on customers_archive (id);
+create index idx_carts_archive_id on carts_archive (id);
+create index idx_cart_items_archive_cart_id on cart_items_archive (cart_id);
+create index idx_cart_items_archive_item_id on cart_items_archive (item_id);
+
@@ -0,0 +1,8 @@
+-- Derive the totals of existing carts from their lines (all prices are currently held in BTC)
+update carts c set
+  item_total = (select count(*) from cart_items ci where ci.cart_id = c.id),
+  quantity_total = (select coalesce(sum(ci.quantity), 0) from cart_items ci where ci.cart_id = c.id),
+  price_total_amount = (select coalesce(sum(ci.quantity * i.amount), 0) from cart_items ci join items i on i.id = ci.item_id where ci.cart_id = c.id),
+  price_total_currency = 'BTC',
+  tax_total_amount = (select coalesce(sum(ci.quantity * i.amount * i.taxRate), 0) from cart_items ci join items i on i.id = ci.item_id where ci.cart_id = c.id),
+  tax_total_currency = 'BTC';
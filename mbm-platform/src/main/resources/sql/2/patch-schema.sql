@@ -0,0 +1,15 @@
+-- Running totals held on the Cart so that presenting it does not visit every line
+alter table carts add column item_total integer default 0 not null;
+alter table carts add column quantity_total integer default 0 not null;
+alter table carts add column price_total_amount numeric(19,12);
+alter table carts add column price_total_currency varchar(255);
+alter table carts add column tax_total_amount numeric(19,12);
+alter table carts add column tax_total_currency varchar(255);
+
+-- The archive table keeps the same columns as the hot table
+alter table carts_archive add column item_total integer default 0 not null;
+alter table carts_archive add column quantity_total integer default 0 not null;
+alter table carts_archive add column price_total_amount numeric(19,12);
+alter table carts_archive add column price_total_currency varchar(255);
+alter table carts_archive add column tax_total_amount numeric(19,12);
+alter table carts_archive add column tax_total_currency varchar(255);
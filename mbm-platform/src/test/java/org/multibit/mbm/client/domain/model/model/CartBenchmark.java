@@ -0,0 +1,98 @@
+package org.multibit.mbm.client.domain.model.model;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <p>Micro benchmark to verify that applying a client update to a Cart as a single batch of changes costs the
+ * same per line however large the Cart (lines are found through the index rather than by scanning). Timing
+ * dependent so not run as part of the build, remove the {@link Ignore} to run it from the IDE.</p>
+ * <p>Each update changes the quantity of every other line, removes every tenth line and adds as many new lines.</p>
+ */
+@Ignore
+public class CartBenchmark {
+
+  private static final int[] CART_SIZES = {10, 100, 1000};
+
+  /**
+   * How much more a line may cost in the largest Cart than in the smallest (a scan would cost 100 times more)
+   */
+  private static final double MAX_COST_PER_LINE_RATIO = 4.0;
+
+  private static final int WARM_UP_ROUNDS = 2000;
+
+  private static final int MEASURED_ROUNDS = 2000;
+
+  @Test
+  public void testBatchCostPerLineIsIndependentOfCartSize() {
+
+    double[] costPerLine = new double[CART_SIZES.length];
+    for (int i = 0; i < CART_SIZES.length; i++) {
+      int lines = CART_SIZES[i];
+      Map<Item, Integer> changes = newChanges(lines);
+
+      // Let the JIT settle before measuring
+      run(lines, changes, true, WARM_UP_ROUNDS);
+
+      costPerLine[i] = (double) run(lines, changes, true, MEASURED_ROUNDS) / lines;
+    }
+
+    double ratio = costPerLine[CART_SIZES.length - 1] / costPerLine[0];
+    assertTrue(String.format("Cost per line with %d lines was %.1f times that with %d lines",
+      CART_SIZES[CART_SIZES.length - 1], ratio, CART_SIZES[0]),
+      ratio <= MAX_COST_PER_LINE_RATIO);
+  }
+
+  /**
+   * @return The elapsed nanoseconds spent applying the changes (excludes building the Carts)
+   */
+  private static long run(int lines, Map<Item, Integer> changes, boolean batch, int rounds) {
+    List<Cart> carts = Lists.newArrayListWithCapacity(rounds);
+    for (int i = 0; i < rounds; i++) {
+      carts.add(CartTest.newCart(lines));
+    }
+
+    long start = System.nanoTime();
+    for (Cart cart : carts) {
+      if (batch) {
+        cart.applyChanges(changes);
+      } else {
+        for (Map.Entry<Item, Integer> change : changes.entrySet()) {
+          cart.setItemQuantity(change.getKey(), change.getValue());
+        }
+      }
+    }
+    long elapsed = System.nanoTime() - start;
+
+    // Keep the results reachable so the work cannot be eliminated
+    if (carts.get(rounds - 1).getItemTotal() != lines) {
+      throw new IllegalStateException("Unexpected item total");
+    }
+    return elapsed;
+  }
+
+  private static Map<Item, Integer> newChanges(int lines) {
+    Map<Item, Integer> changes = Maps.newLinkedHashMap();
+    int removed = 0;
+    for (int i = 0; i < lines; i++) {
+      if (i % 10 == 0) {
+        changes.put(CartTest.newItem((long) i), 0);
+        removed++;
+      } else if (i % 2 == 0) {
+        changes.put(CartTest.newItem((long) i), 2);
+      }
+    }
+    for (int i = 0; i < removed; i++) {
+      changes.put(CartTest.newItem((long) (lines + i)), 1);
+    }
+    return changes;
+  }
+
+}
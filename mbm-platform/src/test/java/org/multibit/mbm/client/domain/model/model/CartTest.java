@@ -0,0 +1,155 @@
+package org.multibit.mbm.client.domain.model.model;
+
+import com.google.common.collect.Maps;
+import com.xeiam.xchange.currency.MoneyUtils;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CartTest {
+
+  /**
+   * Verifies that a batch of changes updates, inserts and removes lines keeping the index values aligned
+   */
+  @Test
+  public void testApplyChanges() {
+
+    Cart testObject = newCart(5);
+    Item item1 = testObject.getCartItems().get(1).getItem();
+    Item item2 = testObject.getCartItems().get(2).getItem();
+    Item item3 = testObject.getCartItems().get(3).getItem();
+    Item newItem = newItem(100L);
+
+    Map<Item, Integer> changes = Maps.newLinkedHashMap();
+    changes.put(item1, 0);
+    changes.put(newItem, 7);
+    changes.put(item2, 5);
+    changes.put(item3, 0);
+
+    testObject.applyChanges(changes);
+
+    assertEquals(4, testObject.getItemTotal());
+    assertFalse(testObject.getCartItemByItem(item1).isPresent());
+    assertFalse(testObject.getCartItemByItem(item3).isPresent());
+    assertEquals(5, testObject.getCartItemByItem(item2).get().getQuantity());
+    assertEquals(7, testObject.getCartItemByItem(newItem).get().getQuantity());
+
+    // Removed lines leave no gaps and new lines are appended
+    for (int i = 0; i < testObject.getItemTotal(); i++) {
+      assertEquals(i, testObject.getCartItems().get(i).getIndex());
+    }
+    assertSame(newItem, testObject.getCartItems().get(3).getItem());
+
+  }
+
+  /**
+   * Verifies that removing a single line re-aligns the following index values
+   */
+  @Test
+  public void testSetItemQuantity() {
+
+    Cart testObject = newCart(3);
+    Item item0 = testObject.getCartItems().get(0).getItem();
+
+    testObject.setItemQuantity(item0, 0);
+    testObject.setItemQuantity(item0, 2);
+
+    assertEquals(3, testObject.getItemTotal());
+    assertEquals(2, testObject.getCartItemByItem(item0).get().getIndex());
+    for (int i = 0; i < testObject.getItemTotal(); i++) {
+      assertEquals(i, testObject.getCartItems().get(i).getIndex());
+    }
+
+  }
+
+  /**
+   * Verifies that Items without an ID and lines added directly to the list are still found
+   */
+  @Test
+  public void testGetCartItemByItem() {
+
+    Cart testObject = newCart(2);
+    Item unsavedItem = ItemBuilder.newInstance().withSKU("unsaved").build();
+
+    testObject.setItemQuantity(unsavedItem, 1);
+    assertTrue(testObject.getCartItemByItem(unsavedItem).isPresent());
+
+    // The unsaved Item is later persisted
+    unsavedItem.setId(200L);
+    assertTrue(testObject.getCartItemByItem(unsavedItem).isPresent());
+
+    // A line added without going through the Cart
+    Item directItem = newItem(300L);
+    CartItem cartItem = new CartItem(testObject, directItem);
+    cartItem.setIndex(testObject.getItemTotal());
+    cartItem.setQuantity(1);
+    testObject.getCartItems().add(cartItem);
+
+    assertSame(cartItem, testObject.getCartItemByItem(directItem).get());
+    assertFalse(testObject.getCartItemByItem(newItem(400L)).isPresent());
+
+  }
+
+  /**
+   * Verifies that the totals maintained by the mutations match those derived from every line
+   */
+  @Test
+  public void testTotals() {
+
+    Cart testObject = newCart(4);
+    Item item0 = testObject.getCartItems().get(0).getItem();
+    Item item1 = testObject.getCartItems().get(1).getItem();
+
+    Map<Item, Integer> changes = Maps.newLinkedHashMap();
+    changes.put(item0, 3);
+    changes.put(item1, 0);
+    changes.put(newItem(100L), 2);
+    testObject.applyChanges(changes);
+    testObject.setItemQuantity(item0, 5);
+
+    assertEquals(4, testObject.getItemTotal());
+    assertEquals(9, testObject.getQuantityTotal());
+    assertTrue(testObject.getPriceTotal().isEqual(MoneyUtils.parseBitcoin("BTC 9.9")));
+    assertTrue(testObject.getTaxTotal().isEqual(MoneyUtils.parseBitcoin("BTC 0.99")));
+
+    // A change in price is only reflected once the totals are re-derived
+    item0.setLocalPrice(MoneyUtils.parseBitcoin("BTC 2.0"));
+    assertTrue(item0.isPriceChanged());
+    testObject.recalculateTotals();
+    assertTrue(testObject.getPriceTotal().isEqual(MoneyUtils.parseBitcoin("BTC 14.4")));
+
+  }
+
+  /**
+   * @param lines The number of lines
+   *
+   * @return A Cart holding persistent Items with a quantity of 1
+   */
+  public static Cart newCart(int lines) {
+    Cart cart = CartBuilder
+      .newInstance()
+      .withCustomer(CustomerBuilder.newInstance().build())
+      .build();
+    for (int i = 0; i < lines; i++) {
+      cart.setItemQuantity(newItem((long) i), 1);
+    }
+    return cart;
+  }
+
+  public static Item newItem(Long id) {
+    Item item = ItemBuilder
+      .newInstance()
+      .withSKU("sku" + id)
+      .withLocalPrice(MoneyUtils.parseBitcoin("BTC 1.1"))
+      .build();
+    item.setTaxRate(0.1);
+    item.setId(id);
+    return item;
+  }
+
+}
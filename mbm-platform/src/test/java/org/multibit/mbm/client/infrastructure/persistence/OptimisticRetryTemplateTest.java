@@ -0,0 +1,72 @@
+package org.multibit.mbm.client.infrastructure.persistence;
+
+import org.junit.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class OptimisticRetryTemplateTest {
+
+  @Test
+  public void testRetryAfterConflict() {
+
+    OptimisticRetryTemplate testObject = new OptimisticRetryTemplate(3);
+
+    String result = testObject.execute(new OptimisticRetryTemplate.Callback<String>() {
+      @Override
+      public String doInAttempt(int attempt) {
+        if (attempt < 3) {
+          throw new OptimisticLockingFailureException("Concurrent update");
+        }
+        return "merged on " + attempt;
+      }
+    });
+
+    assertThat(result, equalTo("merged on 3"));
+  }
+
+  @Test
+  public void testAttemptsAreBounded() {
+
+    OptimisticRetryTemplate testObject = new OptimisticRetryTemplate(2);
+    final AtomicInteger attempts = new AtomicInteger();
+
+    try {
+      testObject.execute(new OptimisticRetryTemplate.Callback<String>() {
+        @Override
+        public String doInAttempt(int attempt) {
+          attempts.incrementAndGet();
+          throw new OptimisticLockingFailureException("Concurrent update");
+        }
+      });
+      fail("Expected the conflict to be re-thrown");
+    } catch (OptimisticLockingFailureException e) {
+      assertThat(attempts.get(), equalTo(2));
+    }
+  }
+
+  @Test
+  public void testOtherFailuresAreNotRetried() {
+
+    OptimisticRetryTemplate testObject = new OptimisticRetryTemplate();
+    final AtomicInteger attempts = new AtomicInteger();
+
+    try {
+      testObject.execute(new OptimisticRetryTemplate.Callback<String>() {
+        @Override
+        public String doInAttempt(int attempt) {
+          attempts.incrementAndGet();
+          throw new IllegalStateException("Not a conflict");
+        }
+      });
+      fail("Expected the failure to be re-thrown");
+    } catch (IllegalStateException e) {
+      assertThat(attempts.get(), equalTo(1));
+    }
+  }
+
+}
@@ -0,0 +1,209 @@
+package org.multibit.mbm.client.infrastructure.persistence.archive;
+
+import com.google.common.base.Optional;
+import org.hibernate.SessionFactory;
+import org.junit.Test;
+import org.multibit.mbm.client.common.pagination.PaginatedList;
+import org.multibit.mbm.client.domain.model.model.CustomerBuilder;
+import org.multibit.mbm.client.domain.model.model.Item;
+import org.multibit.mbm.client.domain.model.model.ItemBuilder;
+import org.multibit.mbm.client.domain.model.model.ItemField;
+import org.multibit.mbm.client.domain.model.model.Role;
+import org.multibit.mbm.client.domain.model.model.User;
+import org.multibit.mbm.client.domain.model.model.UserBuilder;
+import org.multibit.mbm.client.domain.repositories.ItemReadService;
+import org.multibit.mbm.client.domain.repositories.RoleReadService;
+import org.multibit.mbm.client.domain.repositories.UserReadService;
+import org.multibit.mbm.client.interfaces.rest.auth.Authority;
+import org.multibit.mbm.testing.BaseIntegrationTests;
+import org.springframework.test.context.ContextConfiguration;
+
+import javax.annotation.Resource;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Integration test to verify that entities are moved between the hot and archive tables
+ */
+@ContextConfiguration(locations = {"/spring/test-mbm-context.xml"})
+public class EntityArchiverIntegrationTest extends BaseIntegrationTests {
+
+  @Resource(name = "entityArchiver")
+  EntityArchiver testObject;
+
+  @Resource(name = "hibernateItemDao")
+  ItemReadService itemReadService;
+
+  @Resource(name = "hibernateUserDao")
+  UserReadService userReadService;
+
+  @Resource(name = "hibernateRoleDao")
+  RoleReadService roleReadService;
+
+  @Resource(name = "sessionFactory")
+  SessionFactory sessionFactory;
+
+  /**
+   * Verifies that a soft deleted Item leaves the lists, is archived with its fields and can be restored without
+   * being archived again
+   */
+  @Test
+  public void testArchiveAndRestoreDeletedItem() {
+
+    Item item = ItemBuilder
+      .newInstance()
+      .withSKU("archive123")
+      .withPrimaryFieldDetail(ItemField.SUMMARY, "Archived summary", "en")
+      .build();
+    item = itemReadService.saveOrUpdate(item);
+    itemReadService.flush();
+    Long id = item.getId();
+
+    int originalItemRows = countRowsInTable("items");
+    int originalFieldRows = countRowsInTable("item_field_details");
+
+    // Soft delete removes the Item from the lists but not the hot table
+    item.setDeleted(true);
+    item.setReasonForDelete("Discontinued");
+    itemReadService.saveOrUpdate(item);
+    itemReadService.flush();
+
+    PaginatedList<Item> page = itemReadService.getPaginatedList(10, 1);
+    assertFalse("Unexpected deleted Item in list", page.list().contains(item));
+    assertThat(countRowsInTable("items"), equalTo(originalItemRows));
+
+    // Archive moves the Item and its fields out of the hot tables
+    Map<String, Integer> archived = testObject.archive(EntityArchiver.DEFAULT_BATCH_SIZE, new Date());
+    sessionFactory.getCurrentSession().clear();
+
+    assertThat(archived.get(EntityArchiver.ITEMS), equalTo(1));
+    assertThat(countRowsInTable("items"), equalTo(originalItemRows - 1));
+    assertThat(countRowsInTable("item_field_details"), equalTo(originalFieldRows - 1));
+    assertThat(countRowsInTable("items_archive"), equalTo(1));
+    assertThat(countRowsInTable("item_field_details_archive"), equalTo(1));
+    assertFalse("Unexpected archived Item", itemReadService.getBySKU("archive123").isPresent());
+
+    // Nothing further to archive
+    assertThat(testObject.archive(EntityArchiver.DEFAULT_BATCH_SIZE, new Date()).get(EntityArchiver.ITEMS), equalTo(0));
+
+    // Restore brings back the Item (no longer deleted) with its fields
+    assertTrue("Expected restore", testObject.restore(Item.class, id));
+    assertFalse("Unexpected second restore", testObject.restore(Item.class, id));
+
+    assertThat(countRowsInTable("items"), equalTo(originalItemRows));
+    assertThat(countRowsInTable("items_archive"), equalTo(0));
+    Optional<Item> restored = itemReadService.getBySKU("archive123");
+    assertTrue("Expected restored Item", restored.isPresent());
+    assertFalse("Unexpected deleted Item", restored.get().isDeleted());
+    assertThat(restored.get().getItemFieldDetail(ItemField.SUMMARY).getPrimaryDetail().getContent(), equalTo("Archived summary"));
+
+    // The next run leaves the restored Item in place
+    assertThat(testObject.archive(EntityArchiver.DEFAULT_BATCH_SIZE, new Date()).get(EntityArchiver.ITEMS), equalTo(0));
+    assertThat(countRowsInTable("items"), equalTo(originalItemRows));
+    assertThat(countRowsInTable("items_archive"), equalTo(0));
+
+  }
+
+  /**
+   * Verifies that a soft deleted User is undeleted on restore so that archive, restore then archive leaves it in
+   * the hot tables
+   */
+  @Test
+  public void testArchiveRestoreArchiveDeletedUser() {
+
+    Optional<Role> publicRole = roleReadService.getByName(Authority.ROLE_PUBLIC.name());
+    User user = UserBuilder
+      .newInstance()
+      .withApiKey("deleted123")
+      .withSecretKey("deleted456")
+      .withUsername("deleted")
+      .withRole(publicRole.get())
+      .withCustomer(CustomerBuilder.newInstance().build())
+      .build();
+    user = userReadService.saveOrUpdate(user);
+    user.setDeleted(true);
+    user.setReasonForDelete("Closed account");
+    userReadService.saveOrUpdate(user);
+    userReadService.flush();
+    Long id = user.getId();
+
+    int originalUserRows = countRowsInTable("users");
+    // Keep recently changed visitor Carts out of the way
+    Date abandonedBefore = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(30));
+
+    assertThat(testObject.archive(EntityArchiver.DEFAULT_BATCH_SIZE, abandonedBefore).get(EntityArchiver.USERS), equalTo(1));
+    assertThat(countRowsInTable("users"), equalTo(originalUserRows - 1));
+
+    assertTrue("Expected restore", testObject.restore(User.class, id));
+    sessionFactory.getCurrentSession().clear();
+
+    Optional<User> restored = userReadService.getByApiKey("deleted123");
+    assertTrue("Expected restored User", restored.isPresent());
+    assertFalse("Unexpected deleted User", restored.get().isDeleted());
+    assertThat(restored.get().getReasonForDelete(), equalTo(null));
+
+    assertThat(testObject.archive(EntityArchiver.DEFAULT_BATCH_SIZE, abandonedBefore).get(EntityArchiver.USERS), equalTo(0));
+    assertThat(countRowsInTable("users"), equalTo(originalUserRows));
+    assertThat(countRowsInTable("users_archive"), equalTo(0));
+
+  }
+
+  /**
+   * Verifies that an unregistered visitor is archived with its Cart once it has been left unchanged and is not
+   * archived again once restored
+   */
+  @Test
+  public void testArchiveAndRestoreAbandonedCart() {
+
+    Optional<Role> publicRole = roleReadService.getByName(Authority.ROLE_PUBLIC.name());
+    User visitor = UserBuilder
+      .newInstance()
+      .withApiKey("visitor123")
+      .withSecretKey("visitor456")
+      .withRole(publicRole.get())
+      .withCustomer(CustomerBuilder.newInstance().build())
+      .build();
+    visitor = userReadService.saveOrUpdate(visitor);
+    userReadService.flush();
+    Long cartId = visitor.getCustomer().getCart().getId();
+
+    int originalUserRows = countRowsInTable("users");
+    int originalCartRows = countRowsInTable("carts");
+    Date abandonedBefore = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(30));
+
+    // A recently changed Cart is kept
+    assertThat(testObject.archive(EntityArchiver.DEFAULT_BATCH_SIZE, abandonedBefore).get(EntityArchiver.ABANDONED_CARTS), equalTo(0));
+
+    simpleJdbcTemplate.update("update carts set updated_at = ? where id = ?", new Date(abandonedBefore.getTime() - 1000), cartId);
+
+    Map<String, Integer> archived = testObject.archive(EntityArchiver.DEFAULT_BATCH_SIZE, abandonedBefore);
+    sessionFactory.getCurrentSession().clear();
+
+    // Only the visitor is abandoned (registered Customers can always sign in again)
+    assertThat(archived.get(EntityArchiver.ABANDONED_CARTS), equalTo(1));
+    assertThat(countRowsInTable("users"), equalTo(originalUserRows - 1));
+    assertThat(countRowsInTable("carts"), equalTo(originalCartRows - 1));
+    assertThat(countRowsInTable("user_roles_archive"), equalTo(1));
+    assertFalse("Unexpected archived visitor", userReadService.getByApiKey("visitor123").isPresent());
+
+    assertTrue("Expected restore", testObject.restore(User.class, visitor.getId()));
+
+    Optional<User> restored = userReadService.getByApiKey("visitor123");
+    assertTrue("Expected restored visitor", restored.isPresent());
+    assertThat(restored.get().getCustomer().getCart().getId(), equalTo(cartId));
+    assertThat(countRowsInTable("carts_archive"), equalTo(0));
+
+    // The restored Cart counts as just changed so the next run leaves it in place
+    assertThat(testObject.archive(EntityArchiver.DEFAULT_BATCH_SIZE, abandonedBefore).get(EntityArchiver.ABANDONED_CARTS), equalTo(0));
+    assertThat(countRowsInTable("users"), equalTo(originalUserRows));
+    assertThat(countRowsInTable("carts"), equalTo(originalCartRows));
+
+  }
+
+}
@@ -0,0 +1,60 @@
+package org.multibit.mbm.client.infrastructure.persistence.datasource;
+
+import com.yammer.dropwizard.util.Duration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.multibit.mbm.client.interfaces.rest.health.DataSourcePoolHealthCheck;
+
+import java.sql.Connection;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class PooledDataSourceTest {
+
+  private PooledDataSource testObject;
+
+  @Before
+  public void setUp() {
+
+    DataSourceConfiguration configuration = new DataSourceConfiguration();
+    configuration.setUrl("jdbc:hsqldb:mem:pooled-data-source-test");
+    configuration.setMinSize(0);
+    configuration.setMaxSize(1);
+    configuration.setMaxWaitForConnection(Duration.milliseconds(100));
+
+    testObject = new PooledDataSourceFactory().build(configuration, "test");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    testObject.stop();
+  }
+
+  @Test
+  public void testPoolUsageAndHealthCheck() throws Exception {
+
+    DataSourcePoolHealthCheck healthCheck = new DataSourcePoolHealthCheck(testObject);
+
+    assertThat("Expected healthy pool", healthCheck.execute().isHealthy(), equalTo(true));
+    assertThat("Unexpected active connections", testObject.getNumActive(), equalTo(0));
+
+    Connection connection = testObject.getConnection();
+    try {
+      assertThat("Unexpected active connections", testObject.getNumActive(), equalTo(1));
+      assertThat("Unexpected waiting requests", testObject.getNumWaiting(), equalTo(0));
+
+      // The only connection is in use so acquisition will time out
+      assertThat("Expected unhealthy pool", healthCheck.execute().isHealthy(), equalTo(false));
+    } finally {
+      connection.close();
+    }
+
+    assertThat("Unexpected active connections", testObject.getNumActive(), equalTo(0));
+    assertThat("Unexpected idle connections", testObject.getNumIdle(), equalTo(1));
+    assertThat("Expected healthy pool", healthCheck.execute().isHealthy(), equalTo(true));
+
+  }
+
+}
@@ -0,0 +1,142 @@
+package org.multibit.mbm.client.infrastructure.persistence.datasource;
+
+import com.google.common.collect.Lists;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class ReplicaRoutingDataSourceTest {
+
+  private PooledDataSource primary;
+
+  private PooledDataSource replica;
+
+  @Before
+  public void setUp() {
+
+    primary = buildMarkedDataSource("primary");
+    replica = buildMarkedDataSource("replica");
+
+    DataSourceRouting.clear();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    DataSourceRouting.clear();
+    primary.stop();
+    replica.stop();
+  }
+
+  @Test
+  public void testReadOnlyTransactionUsesReplica() {
+
+    DataSource testObject = new PooledDataSourceFactory().buildRouting(primary, Lists.newArrayList(replica));
+
+    assertThat(readMarker(testObject, true), equalTo("replica"));
+    assertThat("Unexpected stickiness after a read", DataSourceRouting.isSticky(), equalTo(false));
+    assertThat(readMarker(testObject, true), equalTo("replica"));
+
+  }
+
+  @Test
+  public void testReadYourWrites() {
+
+    DataSource testObject = new PooledDataSourceFactory().buildRouting(primary, Lists.newArrayList(replica));
+
+    // A read-write transaction goes to the primary
+    assertThat(readMarker(testObject, false), equalTo("primary"));
+    assertThat("Expected stickiness after a write", DataSourceRouting.isSticky(), equalTo(true));
+
+    // Later reads on the same thread must see the write
+    assertThat(readMarker(testObject, true), equalTo("primary"));
+
+    // The next unit of work can use the replica again
+    DataSourceRouting.clear();
+    assertThat(readMarker(testObject, true), equalTo("replica"));
+
+  }
+
+  @Test
+  public void testScheduledTaskIsNotPinned() {
+
+    final DataSource testObject = new PooledDataSourceFactory().buildRouting(primary, Lists.newArrayList(replica));
+
+    Runnable task = DataSourceRouting.unitOfWork(new Runnable() {
+      @Override
+      public void run() {
+        assertThat(readMarker(testObject, true), equalTo("replica"));
+        assertThat(readMarker(testObject, false), equalTo("primary"));
+      }
+    });
+
+    // Each run starts and ends clean on the same thread
+    task.run();
+    assertThat("Unexpected stickiness after a task", DataSourceRouting.isSticky(), equalTo(false));
+    task.run();
+
+  }
+
+  @Test
+  public void testNoReplicas() {
+
+    DataSource testObject = new PooledDataSourceFactory().buildRouting(primary, Lists.<DataSource>newArrayList());
+
+    assertThat(readMarker(testObject, true), equalTo("primary"));
+
+  }
+
+  /**
+   * @param name The name of the in-memory database and its marker row
+   *
+   * @return A data source with a table identifying the database
+   */
+  private PooledDataSource buildMarkedDataSource(String name) {
+
+    DataSourceConfiguration configuration = new DataSourceConfiguration();
+    configuration.setUrl("jdbc:hsqldb:mem:replica-routing-test-" + name);
+    configuration.setMinSize(0);
+    configuration.setMaxSize(2);
+
+    PooledDataSource dataSource = new PooledDataSourceFactory().build(configuration, "replica-routing-test-" + name);
+
+    JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+    jdbcTemplate.execute("drop table marker if exists");
+    jdbcTemplate.execute("create table marker (name varchar(20))");
+    jdbcTemplate.update("insert into marker (name) values (?)", name);
+
+    return dataSource;
+  }
+
+  /**
+   * @param dataSource The routing data source
+   * @param readOnly   True if the transaction should be read-only
+   *
+   * @return The name of the database that served the read
+   */
+  private String readMarker(DataSource dataSource, boolean readOnly) {
+
+    TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    transactionTemplate.setReadOnly(readOnly);
+
+    final JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+    return transactionTemplate.execute(new TransactionCallback<String>() {
+      @Override
+      public String doInTransaction(TransactionStatus status) {
+        List<String> names = jdbcTemplate.queryForList("select name from marker", String.class);
+        return names.get(0);
+      }
+    });
+  }
+
+}
@@ -0,0 +1,54 @@
+package org.multibit.mbm.client.infrastructure.persistence.diagnostics;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class IndexAdvisorTest {
+
+  @Test
+  public void testCountLookups() {
+
+    IndexAdvisor testObject = new IndexAdvisor(mock(DataSource.class));
+
+    List<StatementSummary> summaries = Lists.newArrayList(
+      summary("select user0_.id as id1_ from users user0_ where user0_.api_key=?", 3),
+      summary("select item0_.id as id2_ from items item0_ inner join cart_items cartitems1_ on item0_.id=cartitems1_.item_id where item0_.sku in (?, ?) and cartitems1_.cart_id=?", 2),
+      summary("update items set version=? where id=? and version=?", 5)
+    );
+
+    Map<String, Map<String, Long>> lookups = testObject.countLookups(summaries);
+
+    assertThat(lookups.get("users").get("api_key"), equalTo(3L));
+    assertThat(lookups.get("items").get("sku"), equalTo(2L));
+    assertThat(lookups.get("cart_items").get("cart_id"), equalTo(2L));
+    // Join conditions and unqualified columns are not lookups
+    assertTrue(!lookups.get("items").containsKey("id"));
+    assertThat(lookups.size(), equalTo(3));
+  }
+
+  @Test
+  public void testSuggestionDdl() {
+
+    IndexSuggestion suggestion = new IndexSuggestion("roles", "name", 10);
+
+    assertThat(suggestion.getDdl(), equalTo("create index idx_roles_name on roles (name);"));
+  }
+
+  private StatementSummary summary(String sql, int executions) {
+    StatementSummary summary = new StatementSummary(sql);
+    for (int i = 0; i < executions; i++) {
+      summary.add(new StatementSample(sql, "(string)", 1, 1000, 0));
+    }
+    return summary;
+  }
+
+}
@@ -0,0 +1,79 @@
+package org.multibit.mbm.client.infrastructure.persistence.diagnostics;
+
+import com.google.common.base.Optional;
+import org.junit.Test;
+import org.multibit.mbm.client.domain.model.model.Role;
+import org.multibit.mbm.client.domain.model.model.User;
+import org.multibit.mbm.client.domain.repositories.RoleReadService;
+import org.multibit.mbm.client.domain.repositories.UserReadService;
+import org.multibit.mbm.client.infrastructure.persistence.hibernate.cache.HibernateCacheRegions;
+import org.multibit.mbm.client.interfaces.rest.auth.Authority;
+import org.multibit.mbm.testing.BaseIntegrationTests;
+import org.springframework.test.context.ContextConfiguration;
+
+import javax.annotation.Resource;
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Integration test to verify that statements issued through Hibernate are recorded and advised on
+ */
+@ContextConfiguration(locations = {"/spring/test-mbm-context.xml"})
+public class StatementRecorderIntegrationTest extends BaseIntegrationTests {
+
+  @Resource(name = "statementRecorder")
+  private StatementRecorder statementRecorder;
+
+  @Resource(name = "dataSource")
+  private DataSource dataSource;
+
+  @Resource(name = "hibernateUserDao")
+  private UserReadService userReadService;
+
+  @Resource(name = "hibernateRoleDao")
+  private RoleReadService roleReadService;
+
+  @Resource(name = "hibernateCacheRegions")
+  private HibernateCacheRegions hibernateCacheRegions;
+
+  @Test
+  public void testRecordAndAdvise() throws Exception {
+
+    hibernateCacheRegions.evictAll();
+    statementRecorder.clear();
+
+    Optional<User> user = userReadService.getByApiKey("alice123");
+    assertTrue("Expected user", user.isPresent());
+    Optional<Role> role = roleReadService.getByName(Authority.ROLE_ADMIN.name());
+    assertTrue("Expected role", role.isPresent());
+
+    // The API key lookup is recorded with its bind shape and row count
+    StatementSummary apiKeyLookup = null;
+    for (StatementSummary summary : statementRecorder.summarise()) {
+      if (summary.getSql().contains("api_key=?")) {
+        apiKeyLookup = summary;
+      }
+    }
+    assertTrue("Expected the API key lookup to be recorded", apiKeyLookup != null);
+    assertThat(apiKeyLookup.getExecutions(), equalTo(1L));
+    assertThat(apiKeyLookup.getTotalRows(), equalTo(1L));
+    assertTrue("Unexpected bind shape " + apiKeyLookup.getBindShapes(), apiKeyLookup.getBindShapes().contains("(string)"));
+
+    // The mapped index on users.api_key is found whereas roles.name has none
+    List<IndexSuggestion> suggestions = new IndexAdvisor(dataSource).advise(statementRecorder.summarise(), 1);
+    boolean suggestedApiKey = false;
+    boolean suggestedRoleName = false;
+    for (IndexSuggestion suggestion : suggestions) {
+      suggestedApiKey |= "users".equals(suggestion.getTable()) && "api_key".equals(suggestion.getColumn());
+      suggestedRoleName |= "roles".equals(suggestion.getTable()) && "name".equals(suggestion.getColumn());
+    }
+    assertThat("Unexpected suggestion for users.api_key", suggestedApiKey, equalTo(false));
+    assertThat("Expected suggestion for roles.name", suggestedRoleName, equalTo(true));
+
+  }
+
+}
@@ -0,0 +1,81 @@
+package org.multibit.mbm.client.infrastructure.persistence.diagnostics;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class StatementRecorderTest {
+
+  @Test
+  public void testRingBufferIsBounded() {
+
+    StatementRecorder testObject = new StatementRecorder(3, 1000);
+
+    for (int i = 0; i < 5; i++) {
+      testObject.record(sample("select " + i, 1));
+    }
+
+    assertThat(testObject.getRecordedCount(), equalTo(5L));
+    assertThat(testObject.getSamples().size(), equalTo(3));
+    // The oldest samples have been overwritten
+    assertThat(testObject.summarise().size(), equalTo(3));
+    for (StatementSample sample : testObject.getSamples()) {
+      assertThat(sample.getSql().equals("select 0") || sample.getSql().equals("select 1"), equalTo(false));
+    }
+  }
+
+  @Test
+  public void testClear() {
+
+    StatementRecorder testObject = new StatementRecorder(3, 1000);
+    testObject.record(sample("select 0", 1));
+    testObject.record(sample("select 1", 1));
+
+    testObject.clear();
+
+    assertThat(testObject.getRecordedCount(), equalTo(0L));
+    assertThat(testObject.getSamples().isEmpty(), equalTo(true));
+
+    // Recording starts again from the first slot
+    testObject.record(sample("select 2", 1));
+    assertThat(testObject.getRecordedCount(), equalTo(1L));
+    assertThat(testObject.getSamples().size(), equalTo(1));
+  }
+
+  @Test
+  public void testSlowestAndMostFrequent() {
+
+    StatementRecorder testObject = new StatementRecorder(100, 1000);
+
+    // Frequent but fast
+    for (int i = 0; i < 10; i++) {
+      testObject.record(sample("select frequent", 1));
+    }
+    // Rare but slow
+    testObject.record(sample("select slow", 50));
+    testObject.record(sample("select slow", 30));
+    testObject.record(sample("select other", 5));
+
+    List<StatementSummary> slowest = testObject.getSlowest(2);
+    assertThat(slowest.size(), equalTo(2));
+    assertThat(slowest.get(0).getSql(), equalTo("select slow"));
+    assertThat(slowest.get(0).getMeanMillis(), equalTo(40.0));
+    assertThat(slowest.get(0).getMaxMillis(), equalTo(50.0));
+    assertThat(slowest.get(1).getSql(), equalTo("select other"));
+
+    List<StatementSummary> mostFrequent = testObject.getMostFrequent(1);
+    assertThat(mostFrequent.size(), equalTo(1));
+    assertThat(mostFrequent.get(0).getSql(), equalTo("select frequent"));
+    assertThat(mostFrequent.get(0).getExecutions(), equalTo(10L));
+    assertThat(mostFrequent.get(0).getTotalRows(), equalTo(10L));
+  }
+
+  private StatementSample sample(String sql, long millis) {
+    return new StatementSample(sql, "(string)", 1, TimeUnit.MILLISECONDS.toNanos(millis), System.currentTimeMillis());
+  }
+
+}
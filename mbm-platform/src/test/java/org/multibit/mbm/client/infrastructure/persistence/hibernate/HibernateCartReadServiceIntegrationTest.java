@@ -1,6 +1,10 @@
 package org.multibit.mbm.client.infrastructure.persistence.hibernate;
 
 import com.google.common.base.Optional;
+import com.xeiam.xchange.currency.MoneyUtils;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.event.EventSource;
 import org.junit.Test;
 import org.multibit.mbm.client.domain.model.model.*;
 import org.multibit.mbm.client.domain.repositories.CartReadService;
@@ -8,9 +12,12 @@ import org.multibit.mbm.client.domain.repositories.CustomerReadService;
 import org.multibit.mbm.client.domain.repositories.ItemReadService;
 import org.multibit.mbm.client.domain.repositories.UserReadService;
 import org.multibit.mbm.testing.BaseIntegrationTests;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.test.context.ContextConfiguration;
 
 import javax.annotation.Resource;
+import java.math.BigDecimal;
+import java.util.Map;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.junit.Assert.*;
@@ -33,6 +40,9 @@ public class HibernateCartReadServiceIntegrationTest extends BaseIntegrationTest
   @Resource(name = "hibernateUserDao")
   private UserReadService userReadService;
 
+  @Resource(name = "sessionFactory")
+  private SessionFactory sessionFactory;
+
   @Test
   public void testPersist() {
 
@@ -125,4 +135,152 @@ public class HibernateCartReadServiceIntegrationTest extends BaseIntegrationTest
 
   }
 
+  /**
+   * Verifies that the totals are persisted with the Cart and follow a change to the price of an Item
+   */
+  @Test
+  public void testTotalsFollowPriceChange() {
+
+    Optional<User> user = userReadService.getByApiKey("alice123");
+    Cart cart = testObject.saveOrUpdate(CartBuilder
+      .newInstance()
+      .withCustomer(user.get().getCustomer())
+      .build());
+
+    Optional<Item> book1 = itemReadService.getBySKU("0099410672");
+    Optional<Item> book2 = itemReadService.getBySKU("0140296034");
+    cart.setItemQuantity(book1.get(), 2);
+    cart.setItemQuantity(book2.get(), 3);
+    cart = testObject.saveOrUpdate(cart);
+    testObject.flush();
+
+    Map<String, Object> totals = simpleJdbcTemplate.queryForMap("select * from carts where id = ?", cart.getId());
+    assertThat(((Number) totals.get("ITEM_TOTAL")).intValue(), equalTo(2));
+    assertThat(((Number) totals.get("QUANTITY_TOTAL")).intValue(), equalTo(5));
+    BigDecimal expectedPriceTotal = book1.get().getLocalPrice().multipliedBy(2).plus(book2.get().getLocalPrice().multipliedBy(3)).getAmount();
+    assertThat(((BigDecimal) totals.get("PRICE_TOTAL_AMOUNT")).compareTo(expectedPriceTotal), equalTo(0));
+
+    // A price change re-derives the totals of the Carts holding the Item
+    book1.get().setLocalPrice(MoneyUtils.parseBitcoin("BTC 10.0"));
+    itemReadService.saveOrUpdate(book1.get());
+    itemReadService.flush();
+
+    expectedPriceTotal = MoneyUtils.parseBitcoin("BTC 20.0").plus(book2.get().getLocalPrice().multipliedBy(3)).getAmount();
+    totals = simpleJdbcTemplate.queryForMap("select * from carts where id = ?", cart.getId());
+    assertThat(((BigDecimal) totals.get("PRICE_TOTAL_AMOUNT")).compareTo(expectedPriceTotal), equalTo(0));
+    assertFalse("Expected price change to be acknowledged", book1.get().isPriceChanged());
+
+  }
+
+  /**
+   * Verifies that a Cart loaded before a price change cannot overwrite the re-derived totals
+   */
+  @Test
+  public void testStaleSaveAfterPriceChangeIsDetected() {
+
+    Optional<User> user = userReadService.getByApiKey("alice123");
+    Long cartId = user.get().getCustomer().getCart().getId();
+    Optional<Item> book1 = itemReadService.getBySKU("0099410672");
+
+    // The Cart holds the Item
+    Cart cart = testObject.getById(cartId).get();
+    cart.setItemQuantity(book1.get(), 2);
+    testObject.saveOrUpdate(cart);
+    testObject.flush();
+    ((EventSource) sessionFactory.getCurrentSession()).getActionQueue().beforeTransactionCompletion();
+
+    // A request loads the Cart before the price changes
+    sessionFactory.getCurrentSession().clear();
+    Cart staleCart = testObject.getById(cartId).get();
+    long originalVersion = staleCart.getVersion();
+    sessionFactory.getCurrentSession().clear();
+
+    book1 = itemReadService.getBySKU("0099410672");
+    book1.get().setLocalPrice(MoneyUtils.parseBitcoin("BTC 10.0"));
+    itemReadService.saveOrUpdate(book1.get());
+    itemReadService.flush();
+    ((EventSource) sessionFactory.getCurrentSession()).getActionQueue().beforeTransactionCompletion();
+    assertThat("Expected the recalculation to be versioned", simpleJdbcTemplate.queryForLong("select version from carts where id = ?", cartId), equalTo(originalVersion + 1));
+    sessionFactory.getCurrentSession().clear();
+
+    staleCart.setItemQuantity(book1.get(), 3);
+    try {
+      testObject.saveOrUpdate(staleCart);
+      testObject.flush();
+      fail("Expected an optimistic locking failure");
+    } catch (OptimisticLockingFailureException e) {
+      // Expected
+    }
+
+  }
+
+  /**
+   * Verifies that the lines are only loaded where a Cart is presented
+   */
+  @Test
+  public void testLinesAreOnlyLoadedForViews() {
+
+    Long cartId = userReadService.getByApiKey("alice123").get().getCustomer().getCart().getId();
+    sessionFactory.getCurrentSession().clear();
+
+    // Reached through a Customer without presenting it
+    Customer customer = (Customer) sessionFactory.getCurrentSession()
+      .createQuery("from Customer c where c.cart.id = :id")
+      .setParameter("id", cartId)
+      .uniqueResult();
+    assertThat("Unexpected cart items (customer)", Hibernate.isInitialized(customer.getCart().getCartItems()), equalTo(false));
+
+    sessionFactory.getCurrentSession().clear();
+    assertThat("Expected cart items (cart view)", Hibernate.isInitialized(testObject.getById(cartId).get().getCartItems()), equalTo(true));
+
+    sessionFactory.getCurrentSession().clear();
+    for (Cart cart : testObject.getPaginatedList(10, 1).list()) {
+      assertThat("Expected cart items (page)", Hibernate.isInitialized(cart.getCartItems()), equalTo(true));
+    }
+
+  }
+
+  /**
+   * Verifies that a change to the lines alone is versioned against the Cart
+   */
+  @Test
+  public void testConcurrentUpdateIsDetected() {
+
+    Optional<User> user = userReadService.getByApiKey("alice123");
+    assertTrue("Unexpected missing user",user.isPresent());
+
+    // A request loads the Cart afresh
+    Long cartId = user.get().getCustomer().getCart().getId();
+    sessionFactory.getCurrentSession().clear();
+    Cart cart = testObject.getById(cartId).get();
+    Optional<Item> book1 = itemReadService.getBySKU("0099410672");
+    long originalVersion = cart.getVersion();
+
+    // Changing only a quantity still increments the Cart version (when the transaction commits)
+    cart.setItemQuantity(book1.get(), 3);
+    cart = testObject.saveOrUpdate(cart);
+    testObject.flush();
+    assertThat("Unexpected version before commit", cart.getVersion(), equalTo(originalVersion));
+    // The test transaction is rolled back so run the version increments that a commit would
+    ((EventSource) sessionFactory.getCurrentSession()).getActionQueue().beforeTransactionCompletion();
+    assertThat("Unexpected version after update", cart.getVersion(), equalTo(originalVersion + 1));
+
+    // Simulate a concurrent writer replacing the version held by a later request (which has a detached Cart)
+    sessionFactory.getCurrentSession()
+      .createQuery("update Cart set version = version + 1 where id = :id")
+      .setParameter("id", cart.getId())
+      .executeUpdate();
+    sessionFactory.getCurrentSession().evict(cart);
+
+    cart.setItemQuantity(book1.get(), 2);
+    try {
+      testObject.saveOrUpdate(cart);
+      testObject.flush();
+      fail("Expected an optimistic locking failure");
+    } catch (OptimisticLockingFailureException e) {
+      // Expected
+    }
+
+  }
+
 }
@@ -1,18 +1,30 @@
 package org.multibit.mbm.client.infrastructure.persistence.hibernate;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.xeiam.xchange.currency.MoneyUtils;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.SecondLevelCacheStatistics;
 import org.junit.Test;
+import org.multibit.mbm.client.common.pagination.ContinuationToken;
 import org.multibit.mbm.client.common.pagination.PaginatedList;
 import org.multibit.mbm.client.domain.model.model.*;
 import org.multibit.mbm.client.domain.repositories.ItemReadService;
+import org.multibit.mbm.client.infrastructure.persistence.hibernate.cache.HibernateCacheRegions;
 import org.multibit.mbm.testing.BaseIntegrationTests;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.test.context.ContextConfiguration;
 
 import javax.annotation.Resource;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 /**
  * Integration test to verify the Hibernate annotations of the DTOs against a generated schema
@@ -23,6 +35,12 @@ public class HibernateItemReadServiceIntegrationTest extends BaseIntegrationTest
   @Resource(name= "hibernateItemDao")
   ItemReadService testObject;
 
+  @Resource(name = "sessionFactory")
+  SessionFactory sessionFactory;
+
+  @Resource(name = "hibernateCacheRegions")
+  HibernateCacheRegions hibernateCacheRegions;
+
   /**
    * Simple inserts and updates (includes price persistence check)
    */
@@ -112,6 +130,166 @@ public class HibernateItemReadServiceIntegrationTest extends BaseIntegrationTest
 
   }
 
+  /**
+   * Verifies that repeated SKU lookups are served from the query cache
+   */
+  @Test
+  public void testGetBySKUIsCached() {
+
+    hibernateCacheRegions.evictAll();
+    sessionFactory.getStatistics().clear();
+
+    // First lookup populates the query cache
+    Optional<Item> first = testObject.getBySKU("0140296034");
+    assertThat("Expected item", first.isPresent(), equalTo(true));
+
+    // Second lookup is served from the query cache
+    Optional<Item> second = testObject.getBySKU("0140296034");
+    assertThat("Unexpected item", second.get().getId(), equalTo(first.get().getId()));
+
+    SecondLevelCacheStatistics statistics = sessionFactory
+      .getStatistics()
+      .getSecondLevelCacheStatistics(HibernateCacheRegions.ITEM_QUERIES);
+    assertThat("Unexpected query cache misses", statistics.getMissCount(), equalTo(1L));
+    assertThat("Unexpected query cache hits", statistics.getHitCount(), equalTo(1L));
+    assertThat("Unexpected hit ratio", hibernateCacheRegions.hitRatio(HibernateCacheRegions.ITEM_QUERIES), equalTo(0.5));
+
+  }
+
+  /**
+   * Verifies that an update based on a replaced version is rejected rather than silently overwriting
+   */
+  @Test
+  public void testConcurrentUpdateIsDetected() {
+
+    Optional<Item> item = testObject.getBySKU("0140296034");
+    assertThat("Expected item", item.isPresent(), equalTo(true));
+    long originalVersion = item.get().getVersion();
+
+    // An update increments the version
+    item.get().setTaxRate(0.2);
+    testObject.saveOrUpdate(item.get());
+    testObject.flush();
+    assertThat("Unexpected version after update", item.get().getVersion(), equalTo(originalVersion + 1));
+
+    // Simulate a concurrent writer replacing the version held by this session
+    sessionFactory.getCurrentSession()
+      .createQuery("update Item set version = version + 1 where id = :id")
+      .setParameter("id", item.get().getId())
+      .executeUpdate();
+
+    item.get().setTaxRate(0.3);
+    testObject.saveOrUpdate(item.get());
+    try {
+      testObject.flush();
+      fail("Expected an optimistic locking failure");
+    } catch (OptimisticLockingFailureException e) {
+      // Expected
+    }
+
+  }
+
+  /**
+   * Verifies that the item views do not drag in the cart items from every cart referencing the item
+   */
+  @Test
+  public void testViewsDoNotLoadCartItems() {
+
+    Optional<Item> bySku = testObject.getBySKU("0140296034");
+    assertThat("Expected item", bySku.isPresent(), equalTo(true));
+    assertThat("Expected item fields (catalogue view)", Hibernate.isInitialized(bySku.get().getItemFieldMap()), equalTo(true));
+    assertThat("Unexpected cart items (catalogue view)", Hibernate.isInitialized(bySku.get().getCartItems()), equalTo(false));
+
+    sessionFactory.getCurrentSession().clear();
+
+    Optional<Item> byId = testObject.getById(bySku.get().getId());
+    assertThat("Expected item", byId.isPresent(), equalTo(true));
+    assertThat("Expected item fields (admin view)", Hibernate.isInitialized(byId.get().getItemFieldMap()), equalTo(true));
+    assertThat("Unexpected cart items (admin view)", Hibernate.isInitialized(byId.get().getCartItems()), equalTo(false));
+
+  }
+
+  /**
+   * Verifies that a catalogue summary page matches the entities it summarises and is projected using a
+   * fixed number of statements without loading any entities into the session
+   */
+  @Test
+  public void testGetCatalogueSummaryPage() {
+
+    PaginatedList<Item> items = testObject.getCataloguePage(5, 1);
+    sessionFactory.getCurrentSession().clear();
+
+    for (int pageSize = 1; pageSize <= 5; pageSize++) {
+
+      sessionFactory.getStatistics().clear();
+
+      PaginatedList<ItemSummaryView> page = testObject.getCatalogueSummaryPage(pageSize, 1);
+
+      assertThat("Unexpected size in summary page", page.list().size(), equalTo(pageSize));
+      assertThat("Unexpected statement count for summary page size " + pageSize, sessionFactory.getStatistics().getPrepareStatementCount(), equalTo(2L));
+      assertThat("Unexpected entities in session", sessionFactory.getCurrentSession().getStatistics().getEntityCount(), equalTo(0));
+    }
+
+    PaginatedList<ItemSummaryView> summaries = testObject.getCatalogueSummaryPage(5, 1);
+    for (int i = 0; i < 5; i++) {
+      Item item = items.list().get(i);
+      ItemSummaryView summary = summaries.list().get(i);
+      assertThat("Unexpected id [" + i + "]", summary.getId(), equalTo(item.getId()));
+      assertThat("Unexpected SKU [" + i + "]", summary.getSKU(), equalTo(item.getSKU()));
+      assertThat("Unexpected price [" + i + "]", summary.getLocalPrice(), equalTo(item.getLocalPrice()));
+      assertThat("Unexpected title [" + i + "]", summary.getItemFieldContent(ItemField.TITLE), equalTo(item.getItemFieldContent(ItemField.TITLE)));
+      assertThat("Unexpected fields [" + i + "]", Sets.newHashSet(summary.getFieldContent().keySet()), equalTo(Sets.newHashSet(item.getItemFieldMap().keySet())));
+    }
+
+    // Keyset paging follows the same order
+    PaginatedList<ItemSummaryView> page1 = testObject.getCatalogueSummaryPageAfter(2, Optional.<ContinuationToken>absent());
+    PaginatedList<ItemSummaryView> page2 = testObject.getCatalogueSummaryPageAfter(2, page1.pagination().getNextToken());
+    assertThat("Unexpected data ordering in summary [0,2]", page2.list().get(0).getId(), equalTo(3L));
+    assertThat("Unexpected data ordering in summary [1,2]", page2.list().get(1).getId(), equalTo(4L));
+
+  }
+
+  /**
+   * Verifies that the Items for an update are resolved in a single statement regardless of the number of lines
+   */
+  @Test
+  public void testGetBySKUsStatementCount() {
+
+    List<String> knownSKUs = Lists.newArrayList();
+    for (Item item : testObject.getCataloguePage(5, 1).list()) {
+      knownSKUs.add(item.getSKU());
+    }
+
+    for (int lines : new int[]{1, 5, 100, HibernateItemReadService.MAX_SKUS_PER_QUERY}) {
+
+      List<String> skus = Lists.newArrayList(knownSKUs.subList(0, Math.min(lines, knownSKUs.size())));
+      for (int i = skus.size(); i < lines; i++) {
+        skus.add("unknown" + i);
+      }
+
+      sessionFactory.getCurrentSession().clear();
+      hibernateCacheRegions.evictAll();
+      sessionFactory.getStatistics().clear();
+
+      Map<String, Item> items = testObject.getBySKUs(skus);
+
+      assertThat("Unexpected Items for " + lines + " lines", items.size(), equalTo(Math.min(lines, knownSKUs.size())));
+      assertThat("Unexpected statement count for " + lines + " lines", sessionFactory.getStatistics().getPrepareStatementCount(), equalTo(1L));
+    }
+
+    // Very large updates are split into chunks
+    List<String> skus = Lists.newArrayList(knownSKUs);
+    for (int i = 0; i < HibernateItemReadService.MAX_SKUS_PER_QUERY; i++) {
+      skus.add("unknown" + i);
+    }
+    hibernateCacheRegions.evictAll();
+    sessionFactory.getStatistics().clear();
+
+    assertThat(testObject.getBySKUs(skus).keySet(), equalTo((Set<String>) Sets.newHashSet(knownSKUs)));
+    assertThat("Unexpected statement count for chunked lines", sessionFactory.getStatistics().getPrepareStatementCount(), equalTo(2L));
+
+  }
+
   /**
    * Verifies that a populated database can be searched and paged
    */
@@ -152,6 +330,77 @@ public class HibernateItemReadServiceIntegrationTest extends BaseIntegrationTest
   }
 
 
+  /**
+   * Verifies that a populated database can be paged using continuation tokens
+   */
+  @Test
+  public void testGetPaginatedListAfter() {
+
+    // Page 1
+    final PaginatedList<Item> page1 = testObject.getPaginatedListAfter(2, Optional.<ContinuationToken>absent());
+
+    assertThat("Unexpected size in Item page 1", page1.list().size(), equalTo(2));
+    assertThat("Unexpected data ordering in Item [0,1]", page1.list().get(0).getId(), equalTo(1L));
+    assertThat("Unexpected data ordering in Item [1,1]", page1.list().get(1).getId(), equalTo(2L));
+    assertThat("Expected keyset pagination", page1.pagination().isKeyset(), equalTo(true));
+    assertThat("Expected a next token", page1.pagination().getNextToken().isPresent(), equalTo(true));
+
+    // Page 2 (continues from the token provided by page 1)
+    final PaginatedList<Item> page2 = testObject.getPaginatedListAfter(2, page1.pagination().getNextToken());
+
+    assertThat("Unexpected size in Item page 2", page2.list().size(), equalTo(2));
+    assertThat("Unexpected data ordering in Item [0,2]", page2.list().get(0).getId(), equalTo(3L));
+    assertThat("Unexpected data ordering in Item [1,2]", page2.list().get(1).getId(), equalTo(4L));
+    assertThat("Unexpected current page", page2.pagination().getCurrentPage(), equalTo(2));
+
+    // Page 3 (final page so no further token)
+    final PaginatedList<Item> page3 = testObject.getPaginatedListAfter(2, page2.pagination().getNextToken());
+
+    assertThat("Unexpected size in Item page 3", page3.list().size(), equalTo(1));
+    assertThat("Unexpected data ordering in Item [0,3]", page3.list().get(0).getId(), equalTo(5L));
+    assertThat("Unexpected next token", page3.pagination().getNextToken().isPresent(), equalTo(false));
+
+  }
+
+  /**
+   * Verifies that a catalogue page (including all fields and localised text) is loaded using a fixed
+   * number of statements regardless of the page size
+   */
+  @Test
+  public void testGetCataloguePageStatementCount() {
+
+    // Seed the entity counters so that only the page itself is measured
+    testObject.getCataloguePage(1, 1);
+
+    for (int pageSize = 1; pageSize <= 5; pageSize++) {
+
+      sessionFactory.getCurrentSession().clear();
+      hibernateCacheRegions.evictAll();
+      sessionFactory.getStatistics().clear();
+
+      PaginatedList<Item> page = testObject.getCataloguePage(pageSize, 1);
+      touchCatalogueFields(page);
+
+      assertThat("Unexpected size in Item page", page.list().size(), equalTo(pageSize));
+      assertThat("Unexpected statement count for page size " + pageSize, sessionFactory.getStatistics().getPrepareStatementCount(), equalTo(2L));
+
+      sessionFactory.getCurrentSession().clear();
+      sessionFactory.getStatistics().clear();
+
+      PaginatedList<Item> keysetPage = testObject.getCataloguePageAfter(pageSize, Optional.<ContinuationToken>absent());
+      touchCatalogueFields(keysetPage);
+
+      assertThat("Unexpected size in keyset Item page", keysetPage.list().size(), equalTo(pageSize));
+      assertThat("Unexpected statement count for keyset page size " + pageSize, sessionFactory.getStatistics().getPrepareStatementCount(), equalTo(2L));
+    }
+
+    // Page ordering is preserved
+    PaginatedList<Item> page2 = testObject.getCataloguePage(2, 2);
+    assertThat("Unexpected data ordering in Item [0,2]", page2.list().get(0).getId(), equalTo(3L));
+    assertThat("Unexpected data ordering in Item [1,2]", page2.list().get(1).getId(), equalTo(4L));
+
+  }
+
   /**
    * Verifies that a populated database can be searched and paged
    */
@@ -168,6 +417,8 @@ public class HibernateItemReadServiceIntegrationTest extends BaseIntegrationTest
 
     assertThat("Unexpected size in Item page 1 (title)", byTitle.list().size(), equalTo(1));
     assertThat("Unexpected data ordering in Item (title) [0,1]", byTitle.list().get(0).getId(), equalTo(3L));
+    assertThat("Unexpected total (title)", byTitle.pagination().getTotalResults(), equalTo(Optional.of(1L)));
+    assertThat("Expected an exact total (title)", byTitle.pagination().isTotalExact(), equalTo(true));
 
     // Search in both primary TITLE and SUMMARY field (only SUMMARY will succeed)
     example = ItemBuilder
@@ -181,6 +432,31 @@ public class HibernateItemReadServiceIntegrationTest extends BaseIntegrationTest
     assertThat("Unexpected size in Item page 1 (summary)", byTitleAndSummary.list().size(), equalTo(1));
     assertThat("Unexpected data ordering in Item (summary) [0,1]", byTitleAndSummary.list().get(0).getId(), equalTo(1L));
 
+    // Example content is never interpreted as part of a query
+    example = ItemBuilder
+      .newInstance()
+      .withPrimaryFieldDetail(ItemField.TITLE, "%') or ('%' = '", "en")
+      .build();
+
+    final PaginatedList<Item> byInjection = testObject.getPaginatedListByExample(5, 1, example);
+
+    assertThat("Unexpected size in Item page 1 (injection)", byInjection.list().size(), equalTo(0));
+    assertThat("Unexpected total pages (injection)", byInjection.pagination().getTotalPages(), equalTo(1));
+
+  }
+
+  /**
+   * Access everything that the catalogue representation will use
+   *
+   * @param items The page of items
+   */
+  private void touchCatalogueFields(PaginatedList<Item> items) {
+    for (Item item : items.list()) {
+      for (ItemFieldDetail itemFieldDetail : item.getItemFieldMap().values()) {
+        itemFieldDetail.getPrimaryDetail().getContent();
+        itemFieldDetail.getSecondaryDetails().size();
+      }
+    }
   }
 
 }
@@ -0,0 +1,74 @@
+package org.multibit.mbm.client.infrastructure.persistence.hibernate;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import org.hibernate.SessionFactory;
+import org.junit.Test;
+import org.multibit.mbm.client.domain.model.model.Item;
+import org.multibit.mbm.client.domain.model.model.ItemBuilder;
+import org.multibit.mbm.client.domain.model.model.ItemField;
+import org.multibit.mbm.client.domain.repositories.ItemReadService;
+import org.multibit.mbm.client.domain.repositories.ItemWriteService;
+import org.multibit.mbm.testing.BaseIntegrationTests;
+import org.springframework.test.context.ContextConfiguration;
+
+import javax.annotation.Resource;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Integration test to verify bulk writes against a generated schema
+ */
+@ContextConfiguration(locations = {"/spring/test-mbm-context.xml"})
+public class HibernateItemWriteServiceIntegrationTest extends BaseIntegrationTests {
+
+  @Resource(name = "hibernateItemWriteDao")
+  ItemWriteService testObject;
+
+  @Resource(name = "hibernateItemDao")
+  ItemReadService itemReadService;
+
+  @Resource(name = "sessionFactory")
+  SessionFactory sessionFactory;
+
+  /**
+   * Verifies that a bulk write persists all entities using batched statements
+   */
+  @Test
+  public void testSaveAll() {
+
+    int itemCount = 120;
+
+    List<Item> items = Lists.newArrayList();
+    for (int i = 0; i < itemCount; i++) {
+      items.add(ItemBuilder
+        .newInstance()
+        .withSKU("bulk-" + i)
+        .withPrimaryFieldDetail(ItemField.TITLE, "Bulk item " + i, "en")
+        .build());
+    }
+
+    int originalItemRows = countRowsInTable("items");
+    int originalItemFieldDetailRows = countRowsInTable("item_field_details");
+    sessionFactory.getStatistics().clear();
+
+    int written = testObject.saveAll(items);
+
+    assertThat("Unexpected written count", written, equalTo(itemCount));
+    assertThat("Unexpected data in items", countRowsInTable("items"), equalTo(originalItemRows + itemCount));
+    assertThat("Unexpected data in item_field_details", countRowsInTable("item_field_details"), equalTo(originalItemFieldDetailRows + itemCount));
+
+    // Without batching there would be at least one statement per item and item field detail
+    long statements = sessionFactory.getStatistics().getPrepareStatementCount();
+    assertTrue("Expected batched inserts but found " + statements + " statements", statements < itemCount / 4);
+
+    Optional<Item> item = itemReadService.getBySKU("bulk-" + (itemCount - 1));
+    assertThat("Expected item", item.isPresent(), equalTo(true));
+    assertThat("Unexpected title", item.get().getItemFieldDetail(ItemField.TITLE).getPrimaryDetail().getContent(), equalTo("Bulk item " + (itemCount - 1)));
+
+  }
+
+}
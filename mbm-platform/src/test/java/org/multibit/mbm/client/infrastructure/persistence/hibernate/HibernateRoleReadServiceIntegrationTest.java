@@ -1,7 +1,12 @@
 package org.multibit.mbm.client.infrastructure.persistence.hibernate;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.Maps;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
 import org.junit.Test;
+import org.multibit.mbm.client.common.pagination.ContinuationToken;
+import org.multibit.mbm.client.common.pagination.PaginatedList;
 import org.multibit.mbm.client.domain.repositories.RoleReadService;
 import org.multibit.mbm.client.interfaces.rest.auth.Authority;
 import org.multibit.mbm.client.domain.model.model.Role;
@@ -10,7 +15,9 @@ import org.multibit.mbm.testing.BaseIntegrationTests;
 import org.springframework.test.context.ContextConfiguration;
 
 import javax.annotation.Resource;
+import java.util.Map;
 
+import static junit.framework.Assert.assertNull;
 import static junit.framework.Assert.assertTrue;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.junit.Assert.assertThat;
@@ -24,6 +31,9 @@ public class HibernateRoleReadServiceIntegrationTest extends BaseIntegrationTest
   @Resource(name= "hibernateRoleDao")
   RoleReadService testObject;
 
+  @Resource(name = "sessionFactory")
+  SessionFactory sessionFactory;
+
   /**
    * Verifies Role creation and updates work against Authorities
    */
@@ -86,4 +96,33 @@ public class HibernateRoleReadServiceIntegrationTest extends BaseIntegrationTest
 
   }
 
+  /**
+   * Verifies that each page holds whole Roles with their authorities loaded (paging is not over joined rows)
+   */
+  @Test
+  public void testGetPaginatedListAfterHydratesWholeRoles() {
+
+    sessionFactory.getCurrentSession().clear();
+
+    // Walk every page of a pair of Roles (each Role has several authorities)
+    Map<Long, Role> roles = Maps.newHashMap();
+    Optional<ContinuationToken> continuationToken = Optional.absent();
+    do {
+      PaginatedList<Role> page = testObject.getPaginatedListAfter(2, continuationToken);
+      for (Role role : page.list()) {
+        assertNull("Unexpected duplicate Role", roles.put(role.getId(), role));
+        assertTrue("Expected initialized authorities", Hibernate.isInitialized(role.getAuthorities()));
+      }
+      continuationToken = page.pagination().getNextToken();
+    } while (continuationToken.isPresent());
+
+    assertThat("Unexpected Role count", roles.size(), equalTo(countRowsInTable("roles")));
+
+    // Offset pages are also whole Roles
+    PaginatedList<Role> page = testObject.getPaginatedList(2, 1);
+    assertThat("Unexpected page size", page.list().size(), equalTo(2));
+    assertThat("Unexpected Role ordering", page.list().get(0).getId() < page.list().get(1).getId(), equalTo(true));
+
+  }
+
 }
@@ -47,6 +47,7 @@ public class HibernateUserReadServiceIntegrationTest extends BaseIntegrationTest
     int originalContactMethodDetailRows = countRowsInTable("contact_method_details");
     int originalContactMethodDetailSecondaryRows = countRowsInTable("contact_method_secondary_details");
     testObject.saveOrUpdate(expected);
+    testObject.flush();
 
     // Session flush: Expect an insert in users only
     int updatedUserRows = countRowsInTable("users");
@@ -0,0 +1,67 @@
+package org.multibit.mbm.client.infrastructure.persistence.hibernate.counters;
+
+import org.junit.Test;
+import org.multibit.mbm.client.domain.model.model.Item;
+import org.multibit.mbm.client.domain.model.model.ItemBuilder;
+import org.multibit.mbm.client.domain.repositories.ItemReadService;
+import org.multibit.mbm.testing.BaseIntegrationTests;
+import org.springframework.test.context.ContextConfiguration;
+
+import javax.annotation.Resource;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Integration test to verify that entity counters are seeded, held back until commit and reconciled
+ */
+@ContextConfiguration(locations = {"/spring/test-mbm-context.xml"})
+public class EntityCounterReconcilerIntegrationTest extends BaseIntegrationTests {
+
+  @Resource(name = "entityCounterReconciler")
+  EntityCounterReconciler testObject;
+
+  @Resource(name = "entityCounters")
+  EntityCounters entityCounters;
+
+  @Resource(name = "hibernateItemDao")
+  ItemReadService itemReadService;
+
+  @Test
+  public void testRowCountAndReconcile() {
+
+    entityCounters.clear();
+
+    // Seed from the database
+    long originalItems = testObject.rowCount(Item.class);
+    long originalLiveItems = testObject.liveRowCount(Item.class);
+    assertThat("Unexpected seeded item count", originalItems, equalTo((long) countRowsInTable("items")));
+    assertThat("Unexpected seeded live item count", originalLiveItems, equalTo(originalItems));
+
+    Item item = ItemBuilder
+      .newInstance()
+      .withSKU("counter123")
+      .build();
+    itemReadService.saveOrUpdate(item);
+    itemReadService.flush();
+
+    // The insert is held back until the test transaction commits (which it never will)
+    assertThat("Counter changed before commit", testObject.rowCount(Item.class), equalTo(originalItems));
+
+    // Reconciliation sees the uncommitted row through the shared session
+    testObject.reconcile();
+    assertThat("Unexpected reconciled item count", testObject.rowCount(Item.class), equalTo(originalItems + 1));
+    assertThat("Unexpected reconciled live item count", testObject.liveRowCount(Item.class), equalTo(originalLiveItems + 1));
+
+    // Soft deletion only affects the live count
+    item.setDeleted(true);
+    itemReadService.saveOrUpdate(item);
+    itemReadService.flush();
+    testObject.reconcile();
+    assertThat("Unexpected item count after soft delete", testObject.rowCount(Item.class), equalTo(originalItems + 1));
+    assertThat("Unexpected live item count after soft delete", testObject.liveRowCount(Item.class), equalTo(originalLiveItems));
+
+    entityCounters.clear();
+  }
+
+}
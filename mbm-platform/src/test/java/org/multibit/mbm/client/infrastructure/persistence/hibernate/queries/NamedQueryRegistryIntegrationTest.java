@@ -0,0 +1,71 @@
+package org.multibit.mbm.client.infrastructure.persistence.hibernate.queries;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.junit.Test;
+import org.multibit.mbm.client.domain.model.model.*;
+import org.multibit.mbm.client.domain.repositories.UserReadService;
+import org.multibit.mbm.testing.BaseIntegrationTests;
+import org.springframework.test.context.ContextConfiguration;
+
+import javax.annotation.Resource;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Integration test to verify that the paging queries are declared and that executions are recorded
+ */
+@ContextConfiguration(locations = {"/spring/test-mbm-context.xml"})
+public class NamedQueryRegistryIntegrationTest extends BaseIntegrationTests {
+
+  @Resource(name = "namedQueryRegistry")
+  NamedQueryRegistry testObject;
+
+  @Resource(name = "hibernateUserDao")
+  UserReadService userReadService;
+
+  @Resource(name = "sessionFactory")
+  SessionFactory sessionFactory;
+
+  @Test
+  public void testPagingQueriesAreDeclared() {
+
+    SessionFactoryImplementor factory = (SessionFactoryImplementor) sessionFactory;
+
+    Class<?>[] pagedClasses = new Class<?>[]{
+      Cart.class, Customer.class, Delivery.class, Item.class, PurchaseOrder.class, Supplier.class, User.class
+    };
+    for (Class<?> clazz : pagedClasses) {
+      for (String suffix : new String[]{NamedQueryRegistry.ALL, NamedQueryRegistry.AFTER}) {
+        String queryName = NamedQueryRegistry.queryName(clazz, suffix);
+        assertThat("Missing " + queryName, factory.getNamedQuery(queryName), notNullValue());
+      }
+    }
+
+    // Two-phase paging requires the primary key queries
+    for (Class<?> clazz : new Class<?>[]{Item.class, Role.class}) {
+      for (String suffix : new String[]{NamedQueryRegistry.IDS, NamedQueryRegistry.IDS_AFTER}) {
+        String queryName = NamedQueryRegistry.queryName(clazz, suffix);
+        assertThat("Missing " + queryName, factory.getNamedQuery(queryName), notNullValue());
+      }
+    }
+
+  }
+
+  @Test
+  public void testExecutionsAreRecorded() {
+
+    long before = testObject.getExecutionCount("User.byApiKey");
+
+    userReadService.getByApiKey("alice123");
+    userReadService.getByApiKey("bob123");
+
+    assertThat("Unexpected execution count", testObject.getExecutionCount("User.byApiKey"), equalTo(before + 2));
+    assertThat("Missing query name", testObject.getQueryNames().contains("User.byApiKey"), equalTo(true));
+    assertThat("Unexpected count for an unused query", testObject.getExecutionCount("Unknown.query"), equalTo(0L));
+
+  }
+
+}
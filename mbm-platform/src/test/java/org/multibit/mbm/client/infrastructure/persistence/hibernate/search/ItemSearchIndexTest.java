@@ -0,0 +1,117 @@
+package org.multibit.mbm.client.infrastructure.persistence.hibernate.search;
+
+import com.google.common.collect.Lists;
+import org.junit.Before;
+import org.junit.Test;
+import org.multibit.mbm.client.domain.model.model.Item;
+import org.multibit.mbm.client.domain.model.model.ItemBuilder;
+import org.multibit.mbm.client.domain.model.model.ItemField;
+
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class ItemSearchIndexTest {
+
+  private ItemSearchIndex testObject;
+
+  @Before
+  public void setUp() {
+
+    testObject = new ItemSearchIndex();
+
+    Item plumbing = ItemBuilder
+      .newInstance()
+      .withSKU("plumbing")
+      .withPrimaryFieldDetail(ItemField.TITLE, "Plumbing and Central Heating", "en")
+      .withPrimaryFieldDetail(ItemField.SUMMARY, "From mending a leaking tap to installing a new shower unit.", "en")
+      .withSecondaryFieldDetail(ItemField.TITLE, "Plomberie et chauffage central", "fr")
+      .build();
+    plumbing.setId(1L);
+
+    Item heating = ItemBuilder
+      .newInstance()
+      .withSKU("heating")
+      .withPrimaryFieldDetail(ItemField.TITLE, "Heating Systems", "en")
+      .withPrimaryFieldDetail(ItemField.SUMMARY, "Plumbing for central heating.", "en")
+      .build();
+    heating.setId(2L);
+
+    testObject.update(plumbing);
+    testObject.update(heating);
+  }
+
+  @Test
+  public void testTokensArePrefixesWithinAField() {
+
+    assertThat(search(ItemField.TITLE, "cent heat", "en"), equalTo(ids(1L)));
+    assertThat(search(ItemField.TITLE, "HEATING", "en"), equalTo(ids(1L, 2L)));
+    assertThat(search(ItemField.TITLE, "heating aardvark", "en"), equalTo(ids()));
+    assertThat(search(ItemField.AUTHOR, "heating", "en"), equalTo(ids()));
+
+  }
+
+  @Test
+  public void testLocalesAreSeparate() {
+
+    assertThat(search(ItemField.TITLE, "chauffage", "fr"), equalTo(ids(1L)));
+    assertThat(search(ItemField.TITLE, "chauffage", "en"), equalTo(ids()));
+
+  }
+
+  @Test
+  public void testEquivalentQueriesShareResults() {
+
+    assertThat(search(ItemField.TITLE, "central heating", "en"), sameInstance(search(ItemField.TITLE, "Heating, CENTRAL!", "en")));
+
+  }
+
+  @Test
+  public void testRankByFieldsMatched() {
+
+    Item example = ItemBuilder
+      .newInstance()
+      .withPrimaryFieldDetail(ItemField.TITLE, "heating", "en")
+      .withPrimaryFieldDetail(ItemField.SUMMARY, "plumbing", "en")
+      .build();
+
+    // Item 2 matches both fields so ranks above Item 1 despite the higher primary key
+    assertThat(testObject.search(example.getItemFieldMap().values()), equalTo(ids(2L, 1L)));
+
+  }
+
+  @Test
+  public void testUpdateReplacesPreviousText() {
+
+    // Populate the result cache
+    assertThat(search(ItemField.TITLE, "heating", "en"), equalTo(ids(1L, 2L)));
+
+    Item heating = ItemBuilder
+      .newInstance()
+      .withSKU("heating")
+      .withPrimaryFieldDetail(ItemField.TITLE, "Ventilation", "en")
+      .build();
+    heating.setId(2L);
+    testObject.update(heating);
+
+    assertThat(testObject.size(), equalTo(2));
+    assertThat(search(ItemField.TITLE, "heating", "en"), equalTo(ids(1L)));
+    assertThat(search(ItemField.TITLE, "vent", "en"), equalTo(ids(2L)));
+
+  }
+
+  private List<Long> search(ItemField itemField, String content, String localeKey) {
+    Item example = ItemBuilder
+      .newInstance()
+      .withPrimaryFieldDetail(itemField, content, localeKey)
+      .build();
+    return testObject.search(example.getItemFieldMap().values());
+  }
+
+  private List<Long> ids(Long... ids) {
+    return Lists.newArrayList(ids);
+  }
+
+}
@@ -0,0 +1,59 @@
+package org.multibit.mbm.client.infrastructure.persistence.hibernate.statistics;
+
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.Meter;
+import com.yammer.metrics.core.Metric;
+import com.yammer.metrics.core.MetricName;
+import org.junit.Test;
+import org.multibit.mbm.client.domain.repositories.UserReadService;
+import org.multibit.mbm.testing.BaseIntegrationTests;
+import org.springframework.test.context.ContextConfiguration;
+
+import javax.annotation.Resource;
+
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Integration test to verify that the Hibernate statistics are published as metrics
+ */
+@ContextConfiguration(locations = {"/spring/test-mbm-context.xml"})
+public class HibernateStatisticsMetricsIntegrationTest extends BaseIntegrationTests {
+
+  @Resource(name = "hibernateStatisticsMetrics")
+  HibernateStatisticsMetrics testObject;
+
+  @Resource(name = "hibernateUserDao")
+  UserReadService userReadService;
+
+  @Test
+  public void testSample() {
+
+    userReadService.getByApiKey("alice123");
+
+    testObject.sample();
+
+    Meter sessionsOpened = (Meter) metric("sessions-opened", null);
+    assertThat("Missing sessions meter", sessionsOpened, notNullValue());
+    assertTrue("Expected sessions to be counted", sessionsOpened.count() > 0);
+
+    assertTrue("Expected User loads", gaugeValue("entity-loads", "User") > 0);
+    assertTrue("Expected User.byApiKey executions", gaugeValue("query-executions", "User.byApiKey") > 0);
+    assertTrue("Expected User.byApiKey rows", gaugeValue("query-rows", "User.byApiKey") > 0);
+    assertThat("Missing collection gauge", metric("collection-loads", "User.userRoles"), notNullValue());
+
+  }
+
+  private long gaugeValue(String name, String scope) {
+    Metric metric = metric(name, scope);
+    assertThat("Missing " + name + " for " + scope, metric, notNullValue());
+    return (Long) ((Gauge) metric).value();
+  }
+
+  private Metric metric(String name, String scope) {
+    return Metrics.defaultRegistry().allMetrics().get(new MetricName(HibernateStatisticsMetrics.class, name, scope));
+  }
+
+}
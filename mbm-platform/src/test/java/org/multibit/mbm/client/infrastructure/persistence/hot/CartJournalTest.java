@@ -0,0 +1,120 @@
+package org.multibit.mbm.client.infrastructure.persistence.hot;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+import org.junit.Before;
+import org.junit.Test;
+import org.multibit.mbm.client.domain.model.model.Cart;
+import org.multibit.mbm.client.domain.model.model.CartTest;
+import org.multibit.mbm.client.domain.model.model.Item;
+
+import java.io.File;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class CartJournalTest {
+
+  private File directory;
+
+  @Before
+  public void setUp() {
+    directory = Files.createTempDir();
+  }
+
+  @Test
+  public void testReplayProvidesLatestEntryForEachCart() {
+
+    CartJournal testObject = new CartJournal(directory);
+
+    Cart cart1 = CartTest.newCart(0);
+    cart1.setId(1L);
+    Cart cart2 = CartTest.newCart(0);
+    cart2.setId(2L);
+    Item item1 = CartTest.newItem(11L);
+    Item item2 = CartTest.newItem(12L);
+
+    cart1.setItemQuantity(item1, 1);
+    cart1.setVersion(1);
+    testObject.append(CartJournal.Entry.of(cart1, 0, 0));
+    cart2.setItemQuantity(item1, 4);
+    cart2.setVersion(1);
+    testObject.append(CartJournal.Entry.of(cart2, 0, 0));
+
+    // Later entries are written to a new segment (here while version 1 is being written)
+    testObject.roll();
+    cart1.setItemQuantity(item2, 2);
+    cart1.setItemQuantity(item1, 0);
+    cart1.setVersion(2);
+    testObject.append(CartJournal.Entry.of(cart1, 0, 1));
+    testObject.close();
+
+    Map<Long, CartJournal.Entry> entries = new CartJournal(directory).replay();
+
+    assertThat(entries.size(), equalTo(2));
+    assertThat(entries.get(1L).getVersion(), equalTo(2L));
+    assertThat(entries.get(1L).getQuantities(), equalTo((Map<String, Integer>) ImmutableMap.of("sku12", 2)));
+    assertThat(entries.get(2L).getQuantities(), equalTo((Map<String, Integer>) ImmutableMap.of("sku11", 4)));
+
+    // The database may hold either the persistent version or the one being written
+    assertThat(entries.get(1L).isBasedOn(0), equalTo(true));
+    assertThat(entries.get(1L).isBasedOn(1), equalTo(true));
+    assertThat(entries.get(1L).isBasedOn(3), equalTo(false));
+
+  }
+
+  @Test
+  public void testDeleteRemovesRolledSegments() {
+
+    CartJournal testObject = new CartJournal(directory);
+
+    Cart cart = CartTest.newCart(1);
+    cart.setId(1L);
+    testObject.append(CartJournal.Entry.of(cart, 0, 0));
+
+    long lastSegment = testObject.roll();
+    cart.setVersion(1);
+    testObject.append(CartJournal.Entry.of(cart, 0, 0));
+    testObject.delete(lastSegment);
+
+    Map<Long, CartJournal.Entry> entries = testObject.replay();
+    assertThat(entries.size(), equalTo(1));
+    assertThat(entries.get(1L).getVersion(), equalTo(1L));
+
+  }
+
+  @Test
+  public void testAnySkuIsJournalled() {
+
+    CartJournal testObject = new CartJournal(directory);
+
+    Cart cart = CartTest.newCart(0);
+    cart.setId(1L);
+    Item item = CartTest.newItem(11L);
+    item.setSKU("ab 12:3%");
+    cart.setItemQuantity(item, 5);
+    testObject.append(CartJournal.Entry.of(cart, 0, 0));
+    testObject.close();
+
+    Map<Long, CartJournal.Entry> entries = new CartJournal(directory).replay();
+
+    assertThat(entries.get(1L).getQuantities(), equalTo((Map<String, Integer>) ImmutableMap.of("ab 12:3%", 5)));
+
+  }
+
+  @Test
+  public void testIncompleteEntryIsIgnored() throws Exception {
+
+    // As left by a crash part way through a write
+    Files.write("1 3 1 1 sku11:2\n2 1 0 0 sk", new File(directory, "carts-0000000000.log"), Charsets.UTF_8);
+
+    Map<Long, CartJournal.Entry> entries = new CartJournal(directory).replay();
+
+    assertThat(entries.size(), equalTo(1));
+    assertThat(entries.get(1L).getQuantities(), equalTo((Map<String, Integer>) ImmutableMap.of("sku11", 2)));
+
+  }
+
+}
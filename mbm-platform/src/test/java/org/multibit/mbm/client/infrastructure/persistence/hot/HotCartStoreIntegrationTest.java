@@ -0,0 +1,328 @@
+package org.multibit.mbm.client.infrastructure.persistence.hot;
+
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.io.Files;
+import org.junit.Before;
+import org.junit.Test;
+import org.multibit.mbm.client.domain.model.model.Cart;
+import org.multibit.mbm.client.domain.model.model.CustomerBuilder;
+import org.multibit.mbm.client.domain.model.model.Item;
+import org.multibit.mbm.client.domain.model.model.Role;
+import org.multibit.mbm.client.domain.model.model.User;
+import org.multibit.mbm.client.domain.model.model.UserBuilder;
+import org.multibit.mbm.client.domain.repositories.CartReadService;
+import org.multibit.mbm.client.domain.repositories.ItemReadService;
+import org.multibit.mbm.client.domain.repositories.RoleReadService;
+import org.multibit.mbm.client.domain.repositories.UserReadService;
+import org.multibit.mbm.client.interfaces.rest.auth.Authority;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.AbstractJUnit4SpringContextTests;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.annotation.Resource;
+import javax.sql.DataSource;
+import java.io.File;
+import java.util.UUID;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * <p>Integration test to verify that held Carts reach the database on flush</p>
+ * <p>The store runs its own transactions (which must really commit or roll back for conflicts to be seen) so
+ * the tests do not run in a test transaction and the context is discarded afterwards.</p>
+ */
+@ContextConfiguration(locations = {"/spring/test-mbm-context.xml"})
+@DirtiesContext
+public class HotCartStoreIntegrationTest extends AbstractJUnit4SpringContextTests {
+
+  private static final Function<Cart, Long> VERSION = new Function<Cart, Long>() {
+    @Override
+    public Long apply(Cart cart) {
+      return cart.getVersion();
+    }
+  };
+
+  @Resource(name = "hibernateCartDao")
+  CartReadService cartReadService;
+
+  @Resource(name = "hibernateItemDao")
+  ItemReadService itemReadService;
+
+  @Resource(name = "hibernateUserDao")
+  UserReadService userReadService;
+
+  @Resource(name = "hibernateRoleDao")
+  RoleReadService roleReadService;
+
+  @Resource(name = "hotCartListener")
+  HotCartListener hotCartListener;
+
+  @Resource(name = "transactionManager")
+  PlatformTransactionManager transactionManager;
+
+  @Resource(name = "dataSource")
+  DataSource dataSource;
+
+  private JdbcTemplate jdbcTemplate;
+
+  private Item book1;
+
+  private Item book2;
+
+  @Before
+  public void setUp() {
+    jdbcTemplate = new JdbcTemplate(dataSource);
+    book1 = itemReadService.getBySKU("0099410672").get();
+    book2 = itemReadService.getBySKU("0575088893").get();
+  }
+
+  /**
+   * Verifies that several changes are coalesced into one write that carries the in-memory version
+   */
+  @Test
+  public void testChangesAreWrittenOnFlush() {
+
+    Cart cart = newCart();
+    long originalVersion = cart.getVersion();
+
+    HotCartStore testObject = newHotCartStore(Optional.<CartJournal>absent());
+
+    testObject.update(cart, setQuantity(book1, 2), VERSION);
+    testObject.update(cart, setQuantity(book2, 1), VERSION);
+    long version = testObject.update(cart, setQuantity(book1, 0), VERSION);
+
+    // Nothing has been written yet
+    assertThat(version, equalTo(originalVersion + 3));
+    assertThat(testObject.getDirtyCount(), equalTo(1));
+    assertThat(countCartItems(cart), equalTo(0));
+    assertThat(persistentVersion(cart), equalTo(originalVersion));
+
+    assertThat(testObject.flush(), equalTo(1));
+
+    assertThat(testObject.getDirtyCount(), equalTo(0));
+    assertThat("Unexpected held Cart after flush", testObject.getHeldCount(), equalTo(0));
+    assertThat(countCartItems(cart), equalTo(1));
+    assertThat(quantity(cart, book2), equalTo(1));
+    assertThat("Unexpected version after flush", persistentVersion(cart), equalTo(originalVersion + 3));
+    assertThat("Unexpected held version after flush", testObject.read(cart, VERSION), equalTo(originalVersion + 3));
+
+    // A clean Cart is not written again
+    assertThat(testObject.flush(), equalTo(0));
+
+  }
+
+  /**
+   * Verifies that a single Cart flush followed by a scheduled flush writes each change exactly once
+   */
+  @Test
+  public void testSingleFlushThenScheduledFlush() {
+
+    Cart cart = newCart();
+    long originalVersion = cart.getVersion();
+
+    HotCartStore testObject = newHotCartStore(Optional.<CartJournal>absent());
+
+    testObject.update(cart, setQuantity(book1, 2), VERSION);
+    assertThat(testObject.flush(cart), equalTo(true));
+    testObject.update(cart, setQuantity(book2, 3), VERSION);
+    assertThat(testObject.flush(), equalTo(1));
+
+    assertThat(testObject.getHeldCount(), equalTo(0));
+    assertThat(quantity(cart, book1), equalTo(2));
+    assertThat(quantity(cart, book2), equalTo(3));
+    assertThat(persistentVersion(cart), equalTo(originalVersion + 2));
+
+  }
+
+  /**
+   * Verifies that a Cart that is only read is not held
+   */
+  @Test
+  public void testReadDoesNotHold() {
+
+    Cart cart = newCart();
+
+    HotCartStore testObject = newHotCartStore(Optional.<CartJournal>absent());
+
+    // Simulate an administrator changing the Cart after the principal was cached
+    Cart administratorCart = cartReadService.getById(cart.getId()).get();
+    administratorCart.setItemQuantity(book2, 5);
+    cartReadService.saveOrUpdate(administratorCart);
+
+    assertThat(testObject.read(cart, VERSION), equalTo(cart.getVersion() + 1));
+    assertThat(testObject.getHeldCount(), equalTo(0));
+
+  }
+
+  /**
+   * Verifies that held changes to a Cart changed outside of the store are merged into the database version
+   */
+  @Test
+  public void testConflictingChangeIsMerged() {
+
+    Cart cart = newCart();
+    long originalVersion = cart.getVersion();
+
+    HotCartStore testObject = newHotCartStore(Optional.<CartJournal>absent());
+
+    testObject.update(cart, setQuantity(book1, 2), VERSION);
+
+    // Simulate an administrator changing another line
+    Cart administratorCart = cartReadService.getById(cart.getId()).get();
+    administratorCart.setItemQuantity(book2, 5);
+    cartReadService.saveOrUpdate(administratorCart);
+    assertThat(persistentVersion(cart), equalTo(originalVersion + 1));
+
+    // The change is seen before the next flush
+    assertThat(testObject.read(cart, new Function<Cart, Integer>() {
+      @Override
+      public Integer apply(Cart cart) {
+        return cart.getCartItemByItem(book2).get().getQuantity();
+      }
+    }), equalTo(5));
+
+    assertThat(testObject.flush(), equalTo(1));
+    assertThat(testObject.getDirtyCount(), equalTo(0));
+    assertThat(testObject.getHeldCount(), equalTo(0));
+
+    // Both changes survive and the entity tag moves past both versions
+    assertThat(quantity(cart, book1), equalTo(2));
+    assertThat(quantity(cart, book2), equalTo(5));
+    assertThat(persistentVersion(cart), equalTo(originalVersion + 2));
+    assertThat(testObject.read(cart, VERSION), equalTo(originalVersion + 2));
+
+  }
+
+  /**
+   * Verifies that changes which did not reach the database are recovered from the journal
+   */
+  @Test
+  public void testRecoverFromJournal() {
+
+    Cart cart = newCart();
+    long originalVersion = cart.getVersion();
+
+    File directory = Files.createTempDir();
+    HotCartStore crashed = newHotCartStore(Optional.of(new CartJournal(directory)));
+    crashed.update(cart, setQuantity(book1, 2), VERSION);
+    crashed.update(cart, setQuantity(book2, 3), VERSION);
+
+    // Restart without flushing
+    HotCartStore testObject = newHotCartStore(Optional.of(new CartJournal(directory)));
+    assertThat(testObject.recover(), equalTo(1));
+
+    assertThat(persistentVersion(cart), equalTo(originalVersion + 2));
+    assertThat(countCartItems(cart), equalTo(2));
+    assertThat(quantity(cart, book1) + quantity(cart, book2), equalTo(5));
+
+    // The journal is emptied once everything has been flushed
+    assertThat(new CartJournal(directory).replay().isEmpty(), equalTo(true));
+
+  }
+
+  /**
+   * Verifies that a change which could not be journalled is not kept
+   */
+  @Test
+  public void testUnjournalledChangeIsRolledBack() {
+
+    Cart cart = newCart();
+    long originalVersion = cart.getVersion();
+
+    File directory = Files.createTempDir();
+    HotCartStore testObject = newHotCartStore(Optional.of(new CartJournal(directory)));
+
+    // The first append cannot open a segment
+    assertThat(directory.delete(), equalTo(true));
+    try {
+      testObject.update(cart, setQuantity(book1, 2), VERSION);
+      fail("Expected the change to be refused");
+    } catch (IllegalStateException e) {
+      // Expected
+    }
+
+    assertThat(testObject.getDirtyCount(), equalTo(0));
+    assertThat(testObject.getHeldCount(), equalTo(0));
+    assertThat(testObject.read(cart, VERSION), equalTo(originalVersion));
+    assertThat(testObject.flush(), equalTo(0));
+    assertThat(quantity(cart, book1), equalTo(0));
+
+  }
+
+  /**
+   * Verifies that a journalled change to a Cart since changed outside of the store is not recovered over it
+   */
+  @Test
+  public void testRecoverLeavesChangedCart() {
+
+    Cart cart = newCart();
+    long originalVersion = cart.getVersion();
+
+    File directory = Files.createTempDir();
+    HotCartStore crashed = newHotCartStore(Optional.of(new CartJournal(directory)));
+    crashed.update(cart, setQuantity(book1, 2), VERSION);
+
+    // Simulate an administrator changing the Cart before the restart
+    Cart administratorCart = cartReadService.getById(cart.getId()).get();
+    administratorCart.setItemQuantity(book2, 5);
+    cartReadService.saveOrUpdate(administratorCart);
+
+    HotCartStore testObject = newHotCartStore(Optional.of(new CartJournal(directory)));
+    assertThat(testObject.recover(), equalTo(0));
+
+    assertThat(persistentVersion(cart), equalTo(originalVersion + 1));
+    assertThat(countCartItems(cart), equalTo(1));
+    assertThat(quantity(cart, book2), equalTo(5));
+
+  }
+
+  private HotCartStore newHotCartStore(Optional<CartJournal> journal) {
+    HotCartStore hotCartStore = new HotCartStore();
+    hotCartStore.setCartReadService(cartReadService);
+    hotCartStore.setItemReadService(itemReadService);
+    hotCartStore.setTransactionManager(transactionManager);
+    hotCartStore.configureWriteBehind(HotCartStore.DEFAULT_BATCH_SIZE, journal);
+    hotCartListener.register(hotCartStore);
+    return hotCartStore;
+  }
+
+  private Cart newCart() {
+    Optional<Role> publicRole = roleReadService.getByName(Authority.ROLE_PUBLIC.name());
+    User visitor = UserBuilder
+      .newInstance()
+      .withApiKey(UUID.randomUUID().toString())
+      .withSecretKey("visitor456")
+      .withRole(publicRole.get())
+      .withCustomer(CustomerBuilder.newInstance().build())
+      .build();
+    visitor = userReadService.saveOrUpdate(visitor);
+    return visitor.getCustomer().getCart();
+  }
+
+  private HotCartStore.Change setQuantity(final Item item, final int quantity) {
+    return new HotCartStore.Change() {
+      @Override
+      public void apply(Cart cart) {
+        cart.setItemQuantity(item, quantity);
+      }
+    };
+  }
+
+  private long persistentVersion(Cart cart) {
+    return jdbcTemplate.queryForLong("select version from carts where id = ?", cart.getId());
+  }
+
+  private int countCartItems(Cart cart) {
+    return jdbcTemplate.queryForInt("select count(*) from cart_items where cart_id = ?", cart.getId());
+  }
+
+  private int quantity(Cart cart, Item item) {
+    return jdbcTemplate.queryForInt("select coalesce(sum(quantity), 0) from cart_items where cart_id = ? and item_id = ?", cart.getId(), item.getId());
+  }
+
+}
@@ -0,0 +1,167 @@
+package org.multibit.mbm.client.infrastructure.persistence.memory;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import org.hibernate.SessionFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.multibit.mbm.client.common.pagination.ContinuationToken;
+import org.multibit.mbm.client.common.pagination.PaginatedList;
+import org.multibit.mbm.client.domain.model.model.Item;
+import org.multibit.mbm.client.domain.model.model.ItemBuilder;
+import org.multibit.mbm.client.domain.model.model.ItemSummaryView;
+import org.multibit.mbm.client.domain.model.model.Role;
+import org.multibit.mbm.client.domain.model.model.User;
+import org.multibit.mbm.client.domain.repositories.CartReadService;
+import org.multibit.mbm.client.domain.repositories.ItemReadService;
+import org.multibit.mbm.client.domain.repositories.RoleReadService;
+import org.multibit.mbm.client.domain.repositories.UserReadService;
+import org.multibit.mbm.client.infrastructure.persistence.hibernate.search.ItemSearchIndex;
+import org.multibit.mbm.client.interfaces.rest.auth.Authority;
+import org.multibit.mbm.testing.BaseIntegrationTests;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import javax.annotation.Resource;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Integration test to verify that the in-memory read services load a snapshot, serve reads without
+ * statements and write through to Hibernate
+ */
+@ContextConfiguration(locations = {"/spring/test-mbm-context.xml"})
+public class InMemoryReadServiceIntegrationTest extends BaseIntegrationTests {
+
+  @Resource(name = "hibernateItemDao")
+  ItemReadService hibernateItemReadService;
+
+  @Resource(name = "hibernateUserDao")
+  UserReadService hibernateUserReadService;
+
+  @Resource(name = "hibernateRoleDao")
+  RoleReadService hibernateRoleReadService;
+
+  @Resource(name = "hibernateCartDao")
+  CartReadService hibernateCartReadService;
+
+  @Resource(name = "itemSearchIndex")
+  ItemSearchIndex itemSearchIndex;
+
+  @Resource(name = "transactionManager")
+  PlatformTransactionManager transactionManager;
+
+  @Resource(name = "sessionFactory")
+  SessionFactory sessionFactory;
+
+  private InMemoryItemReadService itemReadService;
+  private InMemoryUserReadService userReadService;
+  private InMemoryRoleReadService roleReadService;
+  private InMemoryCartReadService cartReadService;
+
+  @Before
+  public void setUp() {
+
+    itemReadService = new InMemoryItemReadService();
+    itemReadService.setDelegate(hibernateItemReadService);
+    itemReadService.setItemSearchIndex(itemSearchIndex);
+
+    userReadService = new InMemoryUserReadService();
+    userReadService.setDelegate(hibernateUserReadService);
+
+    roleReadService = new InMemoryRoleReadService();
+    roleReadService.setDelegate(hibernateRoleReadService);
+
+    cartReadService = new InMemoryCartReadService();
+    cartReadService.setDelegate(hibernateCartReadService);
+
+    InMemoryRepositoryLoader loader = new InMemoryRepositoryLoader();
+    loader.setTransactionManager(transactionManager);
+    loader.setReadServices(Lists.<BaseInMemoryReadService<?, ?>>newArrayList(
+      roleReadService,
+      userReadService,
+      itemReadService,
+      cartReadService
+    ));
+    loader.load();
+  }
+
+  @Test
+  public void testSnapshotServesReadsWithoutStatements() {
+
+    assertThat("Unexpected item count", itemReadService.size(), equalTo((long) countRowsInTable("items")));
+    assertThat("Unexpected user count", userReadService.size(), equalTo((long) countRowsInTable("users")));
+
+    sessionFactory.getStatistics().clear();
+
+    Optional<Item> item = itemReadService.getBySKU("0099410672");
+    Optional<User> alice = userReadService.getByApiKey("alice123");
+    Optional<Role> adminRole = roleReadService.getByAuthority(Authority.ROLE_ADMIN);
+    PaginatedList<ItemSummaryView> summaries = itemReadService.getCatalogueSummaryPage(2, 2);
+
+    assertThat("Unexpected statement count", sessionFactory.getStatistics().getPrepareStatementCount(), equalTo(0L));
+
+    assertThat("Expected item", item.isPresent(), equalTo(true));
+    assertThat("Unexpected item", item.get().getSKU(), equalTo("0099410672"));
+    assertThat("Expected user", alice.isPresent(), equalTo(true));
+    assertThat("Expected role", adminRole.isPresent(), equalTo(true));
+    assertThat("Unexpected role", adminRole.get().getName(), equalTo(Authority.ROLE_ADMIN.name()));
+    assertThat("Unexpected missing SKU", itemReadService.getBySKU("missing").isPresent(), equalTo(false));
+
+    // Paging follows primary key order and the total is exact
+    assertThat("Unexpected data ordering in summary [0,2]", summaries.list().get(0).getId(), equalTo(3L));
+    assertThat("Unexpected data ordering in summary [1,2]", summaries.list().get(1).getId(), equalTo(4L));
+    assertThat("Unexpected total", summaries.pagination().getTotalResults(), equalTo(Optional.of(itemReadService.size())));
+    assertThat("Expected an exact total", summaries.pagination().isTotalExact(), equalTo(true));
+
+    PaginatedList<Item> page1 = itemReadService.getPaginatedListAfter(2, Optional.<ContinuationToken>absent());
+    PaginatedList<Item> page2 = itemReadService.getPaginatedListAfter(2, page1.pagination().getNextToken());
+    assertThat("Unexpected keyset ordering [0,2]", page2.list().get(0).getId(), equalTo(3L));
+    assertThat("Unexpected keyset ordering [1,2]", page2.list().get(1).getId(), equalTo(4L));
+
+    // A lookup is a copy so changing it leaves the shared page entries alone
+    String sku = page2.list().get(0).getSKU();
+    itemReadService.getById(3L).get().setSKU("changed");
+    assertThat("Unexpected change to held item", itemReadService.getPaginatedListAfter(2, page1.pagination().getNextToken()).list().get(0).getSKU(), equalTo(sku));
+
+  }
+
+  @Test
+  public void testWritesGoThroughAndReindex() {
+
+    long originalSize = itemReadService.size();
+
+    Item item = ItemBuilder
+      .newInstance()
+      .withSKU("memory123")
+      .build();
+    itemReadService.saveOrUpdate(item);
+
+    assertThat("Expected an assigned ID", item.getId() != null, equalTo(true));
+    assertThat("Unexpected item held before commit", itemReadService.getById(item.getId()).isPresent(), equalTo(false));
+    commit();
+    assertThat("Unexpected item count", itemReadService.size(), equalTo(originalSize + 1));
+    assertThat("Expected item in database", hibernateItemReadService.getBySKU("memory123").isPresent(), equalTo(true));
+
+    // A changed SKU replaces the earlier index entry
+    item.setSKU("memory456");
+    itemReadService.saveOrUpdate(item);
+    commit();
+
+    assertThat("Unexpected stale SKU", itemReadService.getBySKU("memory123").isPresent(), equalTo(false));
+    assertThat("Expected new SKU", itemReadService.getBySKU("memory456").get().getId(), equalTo(item.getId()));
+    assertThat("Unexpected item count", itemReadService.size(), equalTo(originalSize + 1));
+
+  }
+
+  /**
+   * Run the synchronizations that a commit would (the test transaction is always rolled back)
+   */
+  private void commit() {
+    TransactionSynchronizationUtils.invokeAfterCommit(TransactionSynchronizationManager.getSynchronizations());
+  }
+
+}
@@ -0,0 +1,104 @@
+package org.multibit.mbm.client.infrastructure.persistence.memory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.event.PostUpdateEvent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.multibit.mbm.client.domain.model.model.Item;
+import org.multibit.mbm.client.domain.repositories.ItemReadService;
+import org.multibit.mbm.testing.BaseIntegrationTests;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+
+import javax.annotation.Resource;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Integration test to verify the read services wired by the "memory" profile
+ */
+@ContextConfiguration(locations = {"/spring/test-mbm-context.xml"})
+@ActiveProfiles(InMemoryRepositoryLoader.MEMORY_PROFILE)
+public class InMemoryRepositoryProfileIntegrationTest extends BaseIntegrationTests {
+
+  @Resource(name = "itemReadService")
+  ItemReadService itemReadService;
+
+  @Resource(name = "inMemoryRepositoryLoader")
+  InMemoryRepositoryLoader inMemoryRepositoryLoader;
+
+  @Resource(name = "inMemorySnapshotListener")
+  InMemorySnapshotListener inMemorySnapshotListener;
+
+  @Resource(name = "sessionFactory")
+  SessionFactory sessionFactory;
+
+  @Before
+  public void setUp() {
+    inMemoryRepositoryLoader.load();
+    // The snapshot is normally taken in its own transaction so callers never share its session
+    sessionFactory.getCurrentSession().clear();
+  }
+
+  @After
+  public void tearDown() {
+    // The second-level cache is shared with the default test context so discard anything loaded from this one
+    sessionFactory.getCache().evictEntityRegions();
+    sessionFactory.getCache().evictCollectionRegions();
+    sessionFactory.getCache().evictQueryRegions();
+  }
+
+  /**
+   * Verifies that callers are given copies so that changes which are not written do not reach other callers
+   */
+  @Test
+  public void testReadsAreCopies() {
+
+    assertThat(itemReadService, instanceOf(InMemoryItemReadService.class));
+
+    Item item = itemReadService.getBySKU("0099410672").get();
+    item.setSKU("unsaved");
+
+    assertThat("Unexpected shared instance", itemReadService.getById(item.getId()).get().getSKU(), equalTo("0099410672"));
+    assertThat("Unexpected index change", itemReadService.getBySKU("unsaved").isPresent(), equalTo(false));
+
+  }
+
+  /**
+   * Verifies that a write which has not committed is not held
+   */
+  @Test
+  public void testUncommittedWriteIsNotHeld() {
+
+    Item item = itemReadService.getBySKU("0099410672").get();
+    item.setSKU("uncommitted");
+    itemReadService.saveOrUpdate(item);
+
+    // The test transaction will be rolled back
+    assertThat(itemReadService.getById(item.getId()).get().getSKU(), equalTo("0099410672"));
+
+  }
+
+  /**
+   * Verifies that a write made without the read service is seen once it commits
+   */
+  @Test
+  public void testCommittedWriteElsewhereIsReloaded() {
+
+    Item item = itemReadService.getBySKU("0099410672").get();
+
+    // Simulate a bulk write committed by another path (which Hibernate would also apply to its cache)
+    simpleJdbcTemplate.update("update items set sku = ? where id = ?", "bulk123", item.getId());
+    sessionFactory.evict(Item.class, item.getId());
+    inMemorySnapshotListener.onPostUpdate(new PostUpdateEvent(item, item.getId(), null, null, null, null, null));
+
+    assertThat(itemReadService.getById(item.getId()).get().getSKU(), equalTo("bulk123"));
+    assertThat(itemReadService.getBySKU("bulk123").isPresent(), equalTo(true));
+    assertThat(itemReadService.getBySKU("0099410672").isPresent(), equalTo(false));
+
+  }
+
+}
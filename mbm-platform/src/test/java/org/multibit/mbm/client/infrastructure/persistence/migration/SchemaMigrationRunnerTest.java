@@ -0,0 +1,70 @@
+package org.multibit.mbm.client.infrastructure.persistence.migration;
+
+import com.google.common.collect.Lists;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class SchemaMigrationRunnerTest {
+
+  private EmbeddedDatabase database;
+
+  @After
+  public void tearDown() {
+    if (database != null) {
+      database.shutdown();
+    }
+  }
+
+  @Test
+  public void testMigrateAppliesEachRevisionOnce() throws Exception {
+
+    database = new EmbeddedDatabaseBuilder().setName("migrate-empty").build();
+
+    SchemaMigrationRunner testObject = new SchemaMigrationRunner(database);
+    List<Integer> available = testObject.getAvailableRevisions();
+
+    assertThat(available.get(0), equalTo(0));
+    assertThat(testObject.migrate(), equalTo(available));
+    assertThat(Lists.newArrayList(testObject.getAppliedRevisions()), equalTo(available));
+
+    // Revision 0 creates the domain tables
+    JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+    assertThat(jdbcTemplate.queryForInt("select count(*) from users"), equalTo(0));
+
+    // Nothing outstanding on the next start
+    assertTrue(testObject.migrate().isEmpty());
+  }
+
+  @Test
+  public void testMigrateRecordsBaselineForExistingSchema() throws Exception {
+
+    database = new EmbeddedDatabaseBuilder().setName("migrate-existing").build();
+
+    // Simulate a schema created by Hibernate schema update (matches revision 0)
+    ResourceDatabasePopulator populator = new ResourceDatabasePopulator();
+    populator.addScript(new ClassPathResource("sql/0/patch-schema.sql"));
+    DatabasePopulatorUtils.execute(populator, database);
+    JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+
+    SchemaMigrationRunner testObject = new SchemaMigrationRunner(database);
+    List<Integer> applied = testObject.migrate();
+
+    assertTrue(!applied.contains(0));
+    assertThat(applied.size(), equalTo(testObject.getAvailableRevisions().size() - 1));
+    assertThat(testObject.getAppliedRevisions().first(), equalTo(0));
+    assertThat(jdbcTemplate.queryForInt("select elapsed_millis from schema_revisions where revision = 0"), equalTo(0));
+  }
+
+}
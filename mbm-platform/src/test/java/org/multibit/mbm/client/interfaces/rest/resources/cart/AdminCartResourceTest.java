@@ -1,6 +1,7 @@
 package org.multibit.mbm.client.interfaces.rest.resources.cart;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import org.junit.Test;
 import org.multibit.mbm.client.common.pagination.PaginatedList;
@@ -24,6 +25,7 @@ import javax.ws.rs.core.UriBuilder;
 import java.net.URI;
 import java.util.List;
 
+import static org.mockito.Matchers.anyCollectionOf;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -94,10 +96,11 @@ public class AdminCartResourceTest extends BaseJerseyHmacResourceTest {
     when(cartDao.saveOrUpdate(bobCart)).thenReturn(bobCart);
 
     // Configure Item DAO
-    when(itemReadService.getBySKU(book1.getSKU())).thenReturn(Optional.of(book1));
-    when(itemReadService.getBySKU(book2.getSKU())).thenReturn(Optional.of(book2));
-    when(itemReadService.getBySKU(book3.getSKU())).thenReturn(Optional.of(book3));
-    when(itemReadService.getBySKU(book4.getSKU())).thenReturn(Optional.of(book4));
+    when(itemReadService.getBySKUs(anyCollectionOf(String.class))).thenReturn(ImmutableMap.of(
+      book1.getSKU(), book1,
+      book2.getSKU(), book2,
+      book3.getSKU(), book3,
+      book4.getSKU(), book4));
 
     testObject.setCartDao(cartDao);
     testObject.setItemReadService(itemReadService);
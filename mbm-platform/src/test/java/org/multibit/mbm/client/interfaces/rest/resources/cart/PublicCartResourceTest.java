@@ -1,24 +1,43 @@
 package org.multibit.mbm.client.interfaces.rest.resources.cart;
 
 import com.google.common.base.Optional;
+import com.google.common.cache.CacheBuilderSpec;
+import com.google.common.collect.ImmutableMap;
+import com.sun.jersey.api.client.ClientResponse;
 import org.junit.Test;
+import org.multibit.mbm.client.interfaces.rest.api.cart.PatchCartDto;
+import org.multibit.mbm.client.interfaces.rest.api.cart.PatchCartItemDto;
 import org.multibit.mbm.client.interfaces.rest.api.cart.PublicCartItemDto;
 import org.multibit.mbm.client.interfaces.rest.api.cart.UpdateCartDto;
 import org.multibit.mbm.client.interfaces.rest.api.hal.HalMediaType;
+import org.multibit.mbm.client.interfaces.rest.auth.anonymous.AnonymousUserCache;
+import org.multibit.mbm.client.interfaces.rest.auth.hmac.HmacUtils;
+import org.multibit.mbm.client.interfaces.rest.common.PATCH;
+import org.multibit.mbm.client.interfaces.rest.resources.OptimisticLockingFailureExceptionMapper;
+import org.multibit.mbm.client.infrastructure.persistence.OptimisticRetryTemplate;
 import org.multibit.mbm.client.infrastructure.persistence.DatabaseLoader;
+import org.multibit.mbm.client.infrastructure.persistence.hot.HotCartStore;
 import org.multibit.mbm.client.domain.repositories.CartReadService;
 import org.multibit.mbm.client.domain.repositories.ItemReadService;
+import org.multibit.mbm.client.domain.repositories.UserReadService;
 import org.multibit.mbm.client.domain.model.model.Cart;
 import org.multibit.mbm.client.domain.model.model.Customer;
 import org.multibit.mbm.client.domain.model.model.Item;
 import org.multibit.mbm.client.domain.model.model.User;
+import org.multibit.mbm.client.domain.model.model.UserBuilder;
 import org.multibit.mbm.testing.BaseJerseyHmacResourceTest;
 import org.multibit.mbm.testing.FixtureAsserts;
+import org.springframework.dao.OptimisticLockingFailureException;
 
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.UUID;
 
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Mockito.*;
 
 public class PublicCartResourceTest extends BaseJerseyHmacResourceTest {
 
@@ -27,6 +46,8 @@ public class PublicCartResourceTest extends BaseJerseyHmacResourceTest {
 
   private final PublicCartResource testObject=new PublicCartResource();
 
+  private Cart customerCart;
+
   @Override
   protected void setUpResources() {
 
@@ -38,7 +59,7 @@ public class PublicCartResourceTest extends BaseJerseyHmacResourceTest {
     customer.setId(1L);
 
     // Configure the Cart with Items
-    Cart customerCart = customer.getCart();
+    customerCart = customer.getCart();
     customerCart.setId(1L);
 
     Item book1 = DatabaseLoader.buildBookItemCryptonomicon();
@@ -58,16 +79,24 @@ public class PublicCartResourceTest extends BaseJerseyHmacResourceTest {
     when(cartDao.saveOrUpdate(customerCart)).thenReturn(customerCart);
 
     // Configure Item DAO
-    when(itemReadService.getBySKU(book1.getSKU())).thenReturn(Optional.of(book1));
-    when(itemReadService.getBySKU(book2.getSKU())).thenReturn(Optional.of(book2));
-    when(itemReadService.getBySKU(book3.getSKU())).thenReturn(Optional.of(book3));
-    when(itemReadService.getBySKU(book4.getSKU())).thenReturn(Optional.of(book4));
+    when(itemReadService.getBySKUs(anyCollectionOf(String.class))).thenReturn(ImmutableMap.of(
+      book1.getSKU(), book1,
+      book2.getSKU(), book2,
+      book3.getSKU(), book3,
+      book4.getSKU(), book4));
+
+    // Changes are written through to the Cart DAO
+    HotCartStore hotCartStore = new HotCartStore();
+    hotCartStore.setCartReadService(cartDao);
 
     testObject.setCartDao(cartDao);
     testObject.setItemReadService(itemReadService);
+    testObject.setHotCartStore(hotCartStore);
+    testObject.setAnonymousUserCache(anonymousUserCache);
 
     // Configure resources
     addSingleton(testObject);
+    addSingleton(new OptimisticLockingFailureExceptionMapper());
 
   }
 
@@ -101,7 +130,221 @@ public class PublicCartResourceTest extends BaseJerseyHmacResourceTest {
 
     FixtureAsserts.assertStringMatchesJsonFixture("UpdateCart by admin response render to HAL+JSON",actualResponse, "/fixtures/hal/cart/expected-public-update-cart.json");
 
+    // Every line is resolved in a single lookup
+    verify(itemReadService, times(1)).getBySKUs(anyCollectionOf(String.class));
+    verify(itemReadService, never()).getBySKU(anyString());
+
+  }
+
+  @Test
+  public void patchCartAsHalJson() throws Exception {
+
+    // Starting condition is Customer has {book1: 1, book2: 2}
+    // Ending condition is Customer has {book2: 2, book3: 3}
+
+    PatchCartDto patchCartRequest = new PatchCartDto();
+    patchCartRequest.getCartItems().add(new PatchCartItemDto(PatchCartItemDto.INCREMENT, "0316184136", 2));
+    patchCartRequest.getCartItems().add(new PatchCartItemDto(PatchCartItemDto.INCREMENT, "0316184136", 1));
+    patchCartRequest.getCartItems().add(new PatchCartItemDto(PatchCartItemDto.REMOVE, "0099410672", 0));
+
+    String actualResponse = configureAsClient(PublicCartResource.class)
+      .accept(HalMediaType.APPLICATION_HAL_JSON)
+      .entity(patchCartRequest, MediaType.APPLICATION_JSON_TYPE)
+      .method(PATCH.NAME, String.class);
+
+    // Only the remaining changed line is provided along with the totals
+    FixtureAsserts.assertStringMatchesJsonFixture("PatchCart by customer response render to HAL+JSON", actualResponse, "/fixtures/hal/cart/expected-public-patch-cart.json");
+    assertThat(customerCart.getCartItems().size(), equalTo(2));
+
   }
 
+  @Test
+  public void patchCartWithReturnMinimal() throws Exception {
+
+    PatchCartDto patchCartRequest = new PatchCartDto();
+    patchCartRequest.getCartItems().add(new PatchCartItemDto(PatchCartItemDto.SET, "0316184136", 3));
+
+    ClientResponse response = configureAsClient(PublicCartResource.class)
+      .accept(HalMediaType.APPLICATION_HAL_JSON)
+      .header("Prefer", "return=minimal")
+      .entity(patchCartRequest, MediaType.APPLICATION_JSON_TYPE)
+      .method(PATCH.NAME, ClientResponse.class);
+
+    assertThat(response.getStatus(), equalTo(Response.Status.NO_CONTENT.getStatusCode()));
+    assertThat(response.getHeaders().getFirst("Preference-Applied"), equalTo("return=minimal"));
+    assertThat(response.getEntityTag().getValue(), equalTo(String.valueOf(customerCart.getVersion())));
+    assertThat(customerCart.getCartItems().get(2).getQuantity(), equalTo(3));
+
+  }
+
+  @Test
+  public void patchCartWithUnknownOperationIsRefused() throws Exception {
+
+    PatchCartDto patchCartRequest = new PatchCartDto();
+    patchCartRequest.getCartItems().add(new PatchCartItemDto("multiply", "0316184136", 3));
+
+    ClientResponse response = configureAsClient(PublicCartResource.class)
+      .accept(HalMediaType.APPLICATION_HAL_JSON)
+      .entity(patchCartRequest, MediaType.APPLICATION_JSON_TYPE)
+      .method(PATCH.NAME, ClientResponse.class);
+
+    assertThat(response.getStatus(), equalTo(Response.Status.BAD_REQUEST.getStatusCode()));
+    verify(cartDao, never()).saveOrUpdate(customerCart);
+
+  }
+
+  @Test
+  public void updateCartRetriesAfterConflict() throws Exception {
+
+    // A concurrent writer wins the first attempt
+    when(cartDao.saveOrUpdate(customerCart))
+      .thenThrow(new OptimisticLockingFailureException("Concurrent update"))
+      .thenReturn(customerCart);
+    when(cartDao.getById(1L)).thenReturn(Optional.of(customerCart));
+
+    UpdateCartDto updateCartRequest = new UpdateCartDto();
+    updateCartRequest.getCartItems().add(new PublicCartItemDto("0316184136",3));
+    updateCartRequest.getCartItems().add(new PublicCartItemDto("0099410672",0));
+
+    String actualResponse = configureAsClient(PublicCartResource.class)
+      .accept(HalMediaType.APPLICATION_HAL_JSON)
+      .entity(updateCartRequest, MediaType.APPLICATION_JSON_TYPE)
+      .put(String.class);
+
+    // Quantities are absolute so reapplying them gives the same outcome
+    FixtureAsserts.assertStringMatchesJsonFixture("UpdateCart after retry response render to HAL+JSON",actualResponse, "/fixtures/hal/cart/expected-public-update-cart.json");
+    verify(cartDao, times(2)).saveOrUpdate(customerCart);
+
+  }
+
+  @Test
+  public void updateCartReportsPersistentConflict() throws Exception {
+
+    when(cartDao.saveOrUpdate(customerCart)).thenThrow(new OptimisticLockingFailureException("Concurrent update"));
+    when(cartDao.getById(1L)).thenReturn(Optional.of(customerCart));
+
+    UpdateCartDto updateCartRequest = new UpdateCartDto();
+    updateCartRequest.getCartItems().add(new PublicCartItemDto("0316184136",3));
+
+    ClientResponse response = configureAsClient(PublicCartResource.class)
+      .accept(HalMediaType.APPLICATION_HAL_JSON)
+      .entity(updateCartRequest, MediaType.APPLICATION_JSON_TYPE)
+      .put(ClientResponse.class);
+
+    assertThat(response.getStatus(), equalTo(Response.Status.CONFLICT.getStatusCode()));
+    verify(cartDao, times(OptimisticRetryTemplate.DEFAULT_MAX_ATTEMPTS)).saveOrUpdate(customerCart);
+
+  }
+
+  @Test
+  public void updateCartWithStaleEntityTagIsRefused() throws Exception {
+
+    UpdateCartDto updateCartRequest = new UpdateCartDto();
+    updateCartRequest.getCartItems().add(new PublicCartItemDto("0316184136",3));
+
+    ClientResponse response = configureAsClient(PublicCartResource.class)
+      .accept(HalMediaType.APPLICATION_HAL_JSON)
+      .header(HttpHeaders.IF_MATCH, "\"7\"")
+      .entity(updateCartRequest, MediaType.APPLICATION_JSON_TYPE)
+      .put(ClientResponse.class);
+
+    assertThat(response.getStatus(), equalTo(Response.Status.PRECONDITION_FAILED.getStatusCode()));
+    verify(cartDao, never()).saveOrUpdate(customerCart);
+
+  }
+
+  @Test
+  public void updateCartPromotesAnonymousUser() throws Exception {
+
+    UserReadService userReadService = mock(UserReadService.class);
+    anonymousUserCache.setUserReadService(userReadService);
+
+    // Act as a visitor that has not been persisted
+    User anonymousUser = anonymousUserCache.create();
+    Cart anonymousCart = anonymousUser.getCustomer().getCart();
+    when(userReadService.saveOrUpdate(anonymousUser)).thenReturn(anonymousUser);
+    when(cartDao.saveOrUpdate(anonymousCart)).thenReturn(anonymousCart);
+    String signedSecretKey = anonymousUser.getSecretKey();
+    hmacUser = anonymousUser;
+
+    // Browsing the Cart does not write
+    configureAsClient(PublicCartResource.class)
+      .accept(HalMediaType.APPLICATION_HAL_JSON)
+      .get(String.class);
+    verify(userReadService, never()).saveOrUpdate(any(User.class));
+
+    UpdateCartDto updateCartRequest = new UpdateCartDto();
+    updateCartRequest.getCartItems().add(new PublicCartItemDto("0316184136",3));
+
+    ClientResponse response = configureAsClient(PublicCartResource.class)
+      .accept(HalMediaType.APPLICATION_HAL_JSON)
+      .entity(updateCartRequest, MediaType.APPLICATION_JSON_TYPE)
+      .put(ClientResponse.class);
+
+    // The first Cart write persists the visitor
+    verify(userReadService, times(1)).saveOrUpdate(anonymousUser);
+    verify(cartDao, times(1)).saveOrUpdate(anonymousCart);
+    assertThat(anonymousUserCache.getByApiKey(anonymousUser.getApiKey()).isPresent(), equalTo(false));
+
+    // The signed secret key is replaced by a random one that is returned to the client
+    assertThat(anonymousUser.getSecretKey().equals(signedSecretKey), equalTo(false));
+    assertThat(response.getHeaders().getFirst(HmacUtils.X_HMAC_SECRET_KEY), equalTo(anonymousUser.getSecretKey()));
+
+  }
+
+  @Test
+  public void retrieveCartRestoresEvictedAnonymousUser() throws Exception {
+
+    User anonymousUser = anonymousUserCache.create();
+    hmacUser = anonymousUser;
+    anonymousUserCache.clear();
+
+    // The signed secret key is sufficient to restore the visitor (with an empty Cart)
+    ClientResponse response = configureAsClient(PublicCartResource.class)
+      .accept(HalMediaType.APPLICATION_HAL_JSON)
+      .get(ClientResponse.class);
+
+    assertThat(response.getStatus(), equalTo(Response.Status.OK.getStatusCode()));
+    assertThat(anonymousUserCache.getByApiKey(anonymousUser.getApiKey()).isPresent(), equalTo(true));
+
+  }
+
+  @Test
+  public void retrieveCartRestoresAnonymousUserAfterRestart() throws Exception {
+
+    anonymousUserCache.configure(CacheBuilderSpec.parse(AnonymousUserCache.DEFAULT_CACHE_POLICY), "shared-secret");
+    User anonymousUser = anonymousUserCache.create();
+    hmacUser = anonymousUser;
+
+    // Reconfiguring discards every held User as a restart would but the signing secret is unchanged
+    anonymousUserCache.configure(CacheBuilderSpec.parse(AnonymousUserCache.DEFAULT_CACHE_POLICY), "shared-secret");
+
+    ClientResponse response = configureAsClient(PublicCartResource.class)
+      .accept(HalMediaType.APPLICATION_HAL_JSON)
+      .get(ClientResponse.class);
+
+    assertThat(response.getStatus(), equalTo(Response.Status.OK.getStatusCode()));
+    assertThat(anonymousUserCache.getByApiKey(anonymousUser.getApiKey()).isPresent(), equalTo(true));
+
+  }
+
+  @Test
+  public void retrieveCartWithForgedAnonymousUserIsRefused() throws Exception {
+
+    // Any API key can be restored but only this server can sign its secret key
+    hmacUser = UserBuilder
+      .newInstance()
+      .withApiKey(UUID.randomUUID().toString())
+      .withSecretKey("Zm9yZ2Vk")
+      .build();
+
+    ClientResponse response = configureAsClient(PublicCartResource.class)
+      .accept(HalMediaType.APPLICATION_HAL_JSON)
+      .get(ClientResponse.class);
+
+    assertThat(response.getStatus(), equalTo(Response.Status.UNAUTHORIZED.getStatusCode()));
+    assertThat(anonymousUserCache.getByApiKey(hmacUser.getApiKey()).isPresent(), equalTo(false));
+
+  }
 
 }
@@ -2,6 +2,7 @@ package org.multibit.mbm.client.interfaces.rest.resources.item;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.Lists;
+import com.sun.jersey.api.client.ClientResponse;
 import org.junit.Test;
 import org.multibit.mbm.client.common.pagination.PaginatedArrayList;
 import org.multibit.mbm.client.common.pagination.PaginatedLists;
@@ -12,13 +13,18 @@ import org.multibit.mbm.client.interfaces.rest.api.hal.HalMediaType;
 import org.multibit.mbm.client.infrastructure.persistence.DatabaseLoader;
 import org.multibit.mbm.client.domain.repositories.ItemReadService;
 import org.multibit.mbm.client.domain.model.model.Item;
+import org.multibit.mbm.client.domain.model.model.ItemSummaryView;
 import org.multibit.mbm.client.domain.model.model.User;
 import org.multibit.mbm.testing.BaseJerseyHmacResourceTest;
 import org.multibit.mbm.testing.FixtureAsserts;
 
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 import java.util.List;
 
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.isNotNull;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -43,20 +49,20 @@ public class AdminItemResourceTest extends BaseJerseyHmacResourceTest {
     book2.setId(2L);
 
     // Create pages
-    List<Item> itemsPage1 = Lists.newArrayList();
-    itemsPage1.add(book1);
-    List<Item> itemsPage2 = Lists.newArrayList();
-    itemsPage2.add(book2);
+    List<ItemSummaryView> itemsPage1 = Lists.newArrayList();
+    itemsPage1.add(ItemSummaryView.fromItem(book1));
+    List<ItemSummaryView> itemsPage2 = Lists.newArrayList();
+    itemsPage2.add(ItemSummaryView.fromItem(book2));
 
     // Configure the mock DAO
-    PaginatedArrayList<Item> page1 = PaginatedLists.newPaginatedArrayList(1, 2, 1, itemsPage1);
-    PaginatedArrayList<Item> page2 = PaginatedLists.newPaginatedArrayList(2,2, 1, itemsPage2);
+    PaginatedArrayList<ItemSummaryView> page1 = PaginatedLists.newPaginatedArrayList(1, 2, 1, itemsPage1);
+    PaginatedArrayList<ItemSummaryView> page2 = PaginatedLists.newPaginatedArrayList(2,2, 1, itemsPage2);
     // Create
     when(itemReadService.saveOrUpdate((Item) isNotNull())).thenReturn(book1);
     when(itemReadService.getBySKU("sku123")).thenReturn(Optional.<Item>absent());
     // Retrieve
-    when(itemReadService.getPaginatedList(1, 0)).thenReturn(page1);
-    when(itemReadService.getPaginatedList(1, 1)).thenReturn(page2);
+    when(itemReadService.getCatalogueSummaryPage(1, 0)).thenReturn(page1);
+    when(itemReadService.getCatalogueSummaryPage(1, 1)).thenReturn(page2);
     // Update
     when(itemReadService.getById(1L)).thenReturn(Optional.of(book1));
     when(itemReadService.getById(2L)).thenReturn(Optional.of(book2));
@@ -121,6 +127,34 @@ public class AdminItemResourceTest extends BaseJerseyHmacResourceTest {
 
   }
 
+  @Test
+  public void adminUpdateItemWithEntityTag() throws Exception {
+
+    AdminUpdateItemDto updateItemRequest = new AdminUpdateItemDto();
+    updateItemRequest.setSKU("sku123");
+    updateItemRequest.setGTIN("gtin123");
+
+    // A stale version is refused without applying the change
+    ClientResponse response = configureAsClient("/admin/item/1")
+      .accept(HalMediaType.APPLICATION_HAL_JSON)
+      .header(HttpHeaders.IF_MATCH, "\"7\"")
+      .entity(updateItemRequest, MediaType.APPLICATION_JSON_TYPE)
+      .put(ClientResponse.class);
+
+    assertThat(response.getStatus(), equalTo(Response.Status.PRECONDITION_FAILED.getStatusCode()));
+
+    // The current version is accepted and the new version provided
+    response = configureAsClient("/admin/item/1")
+      .accept(HalMediaType.APPLICATION_HAL_JSON)
+      .header(HttpHeaders.IF_MATCH, "\"0\"")
+      .entity(updateItemRequest, MediaType.APPLICATION_JSON_TYPE)
+      .put(ClientResponse.class);
+
+    assertThat(response.getStatus(), equalTo(Response.Status.OK.getStatusCode()));
+    assertThat(response.getEntityTag().getValue(), equalTo("0"));
+
+  }
+
   @Test
   public void adminDeleteItemAsHalJson() throws Exception {
 
@@ -9,6 +9,7 @@ import org.multibit.mbm.client.interfaces.rest.api.hal.HalMediaType;
 import org.multibit.mbm.client.infrastructure.persistence.DatabaseLoader;
 import org.multibit.mbm.client.domain.repositories.ItemReadService;
 import org.multibit.mbm.client.domain.model.model.Item;
+import org.multibit.mbm.client.domain.model.model.ItemSummaryView;
 import org.multibit.mbm.testing.BaseJerseyHmacResourceTest;
 import org.multibit.mbm.testing.FixtureAsserts;
 
@@ -35,18 +36,18 @@ public class PublicItemResourceTest extends BaseJerseyHmacResourceTest {
     book2.setId(2L);
 
     // Create pages
-    List<Item> itemsPage1 = Lists.newArrayList();
-    itemsPage1.add(book1);
-    List<Item> itemsPage2 = Lists.newArrayList();
-    itemsPage2.add(book2);
+    List<ItemSummaryView> itemsPage1 = Lists.newArrayList();
+    itemsPage1.add(ItemSummaryView.fromItem(book1));
+    List<ItemSummaryView> itemsPage2 = Lists.newArrayList();
+    itemsPage2.add(ItemSummaryView.fromItem(book2));
 
     // Configure the mock DAO
-    PaginatedArrayList<Item> page1 = PaginatedLists.newPaginatedArrayList(1, 2, 1, itemsPage1);
-    PaginatedArrayList<Item> page2 = PaginatedLists.newPaginatedArrayList(2,2, 1, itemsPage2);
+    PaginatedArrayList<ItemSummaryView> page1 = PaginatedLists.newPaginatedArrayList(1, 2, 1, itemsPage1);
+    PaginatedArrayList<ItemSummaryView> page2 = PaginatedLists.newPaginatedArrayList(2,2, 1, itemsPage2);
 
     // Retrieve
-    when(itemReadService.getPaginatedList(1, 1)).thenReturn(page1);
-    when(itemReadService.getPaginatedList(1, 2)).thenReturn(page2);
+    when(itemReadService.getCatalogueSummaryPage(1, 1)).thenReturn(page1);
+    when(itemReadService.getCatalogueSummaryPage(1, 2)).thenReturn(page2);
     when(itemReadService.getBySKU("0575088893")).thenReturn(Optional.of(book2));
 
     testObject.setItemReadService(itemReadService);
@@ -1,6 +1,7 @@
 package org.multibit.mbm.client.interfaces.rest.resources.purchaseorder;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.xeiam.xchange.currency.MoneyUtils;
@@ -21,6 +22,7 @@ import org.multibit.mbm.testing.FixtureAsserts;
 import javax.ws.rs.core.MediaType;
 import java.util.Set;
 
+import static org.mockito.Matchers.anyCollectionOf;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -108,10 +110,11 @@ public class AdminPurchaseOrderResourceTest extends BaseJerseyHmacResourceTest {
     when(purchaseOrderReadService.saveOrUpdate(samPurchaseOrder1)).thenReturn(samPurchaseOrder1);
 
     // Configure Item read service
-    when(itemReadService.getBySKU(book1.getSKU())).thenReturn(Optional.of(book1));
-    when(itemReadService.getBySKU(book2.getSKU())).thenReturn(Optional.of(book2));
-    when(itemReadService.getBySKU(book3.getSKU())).thenReturn(Optional.of(book3));
-    when(itemReadService.getBySKU(book4.getSKU())).thenReturn(Optional.of(book4));
+    when(itemReadService.getBySKUs(anyCollectionOf(String.class))).thenReturn(ImmutableMap.of(
+      book1.getSKU(), book1,
+      book2.getSKU(), book2,
+      book3.getSKU(), book3,
+      book4.getSKU(), book4));
 
     testObject.setPurchaseOrderReadService(purchaseOrderReadService);
     testObject.setItemReadService(itemReadService);
@@ -1,6 +1,6 @@
 package org.multibit.mbm.client.interfaces.rest.resources.purchaseorder;
 
-import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
 import org.junit.Test;
 import org.multibit.mbm.client.interfaces.rest.api.delivery.SupplierDeliveryItemDto;
 import org.multibit.mbm.client.interfaces.rest.api.delivery.SupplierUpdateDeliveryDto;
@@ -15,6 +15,7 @@ import org.multibit.mbm.testing.FixtureAsserts;
 
 import javax.ws.rs.core.MediaType;
 
+import static org.mockito.Matchers.anyCollectionOf;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -59,10 +60,11 @@ public class SupplierPurchaseOrderResourceTest extends BaseJerseyHmacResourceTes
     when(deliveryReadService.saveOrUpdate(supplierDelivery)).thenReturn(supplierDelivery);
 
     // Configure Item DAO
-    when(itemReadService.getBySKU(book1.getSKU())).thenReturn(Optional.of(book1));
-    when(itemReadService.getBySKU(book2.getSKU())).thenReturn(Optional.of(book2));
-    when(itemReadService.getBySKU(book3.getSKU())).thenReturn(Optional.of(book3));
-    when(itemReadService.getBySKU(book4.getSKU())).thenReturn(Optional.of(book4));
+    when(itemReadService.getBySKUs(anyCollectionOf(String.class))).thenReturn(ImmutableMap.of(
+      book1.getSKU(), book1,
+      book2.getSKU(), book2,
+      book3.getSKU(), book3,
+      book4.getSKU(), book4));
 
     testObject.setDeliveryReadService(deliveryReadService);
     testObject.setItemReadService(itemReadService);
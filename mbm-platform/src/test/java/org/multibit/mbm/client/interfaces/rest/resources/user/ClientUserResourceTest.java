@@ -1,5 +1,7 @@
 package org.multibit.mbm.client.interfaces.rest.resources.user;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Optional;
 import org.junit.Test;
 import org.multibit.mbm.client.interfaces.rest.api.user.WebFormAuthenticationDto;
@@ -15,9 +17,13 @@ import org.multibit.mbm.testing.FixtureAsserts;
 
 import javax.ws.rs.core.MediaType;
 
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -51,6 +57,7 @@ public class ClientUserResourceTest extends BaseJerseyHmacResourceTest {
     // Bind mocks
     testObject.setUserReadService(userReadService);
     testObject.setRoleReadService(roleReadService);
+    testObject.setAnonymousUserCache(anonymousUserCache);
 
     // Configure resources
     addSingleton(testObject);
@@ -68,7 +75,16 @@ public class ClientUserResourceTest extends BaseJerseyHmacResourceTest {
       .post(String.class);
 
     // Assert
-    FixtureAsserts.assertStringMatchesJsonFixture("Client register their anonymous User as HAL+JSON", actualResponse, "/fixtures/hal/user/expected-client-register-anonymous-user.json");
+    JsonNode representation = new ObjectMapper().readTree(actualResponse);
+    assertThat(representation.get("_links").get("self").get("href").asText(), equalTo("/customer/user"));
+
+    // The anonymous User is only held in memory
+    String apiKey = representation.get("api_key").asText();
+    Optional<User> anonymousUser = anonymousUserCache.getByApiKey(apiKey);
+    assertThat(anonymousUser.isPresent(), equalTo(true));
+    assertThat(representation.get("secret_key").asText(), equalTo(anonymousUser.get().getSecretKey()));
+    assertThat(anonymousUser.get().hasAuthority(Authority.ROLE_PUBLIC), equalTo(true));
+    verify(userReadService, never()).saveOrUpdate(any(User.class));
 
   }
 
@@ -21,8 +21,11 @@ import org.junit.Before;
 import org.multibit.mbm.client.domain.model.model.Role;
 import org.multibit.mbm.client.domain.model.model.User;
 import org.multibit.mbm.client.domain.model.model.UserBuilder;
+import org.multibit.mbm.client.domain.repositories.RoleReadService;
 import org.multibit.mbm.client.domain.repositories.UserReadService;
 import org.multibit.mbm.client.infrastructure.persistence.DatabaseLoader;
+import org.multibit.mbm.client.interfaces.rest.auth.Authority;
+import org.multibit.mbm.client.interfaces.rest.auth.anonymous.AnonymousUserCache;
 import org.multibit.mbm.client.interfaces.rest.auth.hmac.HmacClientFilter;
 import org.multibit.mbm.client.interfaces.rest.auth.hmac.HmacServerAuthenticator;
 import org.multibit.mbm.client.interfaces.rest.auth.hmac.HmacServerRestrictedToProvider;
@@ -33,6 +36,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -56,6 +60,11 @@ public abstract class BaseJerseyHmacResourceTest extends BaseResourceTest {
    */
   protected User hmacUser;
 
+  /**
+   * The anonymous Users known to the authenticator
+   */
+  protected AnonymousUserCache anonymousUserCache;
+
   /**
    * <p>Subclasses must use this to configure mocks of any objects that the
    * test object depends on.</p>
@@ -266,10 +275,19 @@ public abstract class BaseJerseyHmacResourceTest extends BaseResourceTest {
   protected User setUpHmacAuthenticator(User user) {
 
     UserReadService userReadService = mock(UserReadService.class);
+    when(userReadService.getByApiKey(anyString())).thenReturn(Optional.<User>absent());
     when(userReadService.getByApiKey(user.getApiKey())).thenReturn(Optional.of(user));
 
+    RoleReadService roleReadService = mock(RoleReadService.class);
+    when(roleReadService.getByName(Authority.ROLE_PUBLIC.name())).thenReturn(Optional.of(DatabaseLoader.buildPublicRole()));
+
+    anonymousUserCache = new AnonymousUserCache();
+    anonymousUserCache.setUserReadService(userReadService);
+    anonymousUserCache.setRoleReadService(roleReadService);
+
     HmacServerAuthenticator authenticator = new HmacServerAuthenticator();
     authenticator.setUserReadService(userReadService);
+    authenticator.setAnonymousUserCache(anonymousUserCache);
 
     addSingleton(new HmacServerRestrictedToProvider<User>(authenticator, "REST"));
 